@@ -42,6 +42,7 @@ android {
 
 dependencies {
 
+    implementation(project(":motion"))
     implementation("androidx.appcompat:appcompat:1.7.1")
     implementation("com.google.android.material:material:1.13.0")
     implementation("androidx.constraintlayout:constraintlayout:2.2.1")
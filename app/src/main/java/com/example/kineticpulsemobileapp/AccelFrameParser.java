@@ -0,0 +1,146 @@
+package com.example.kineticpulsemobileapp;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * parse "ACCEL:x,y,z" text frames directly from the receive buffer into x, y, z.
+ * use chain: FrameAssembler -> SerialProcessor -> AccelFrameParser
+ *
+ * Accepts the same syntax as the former substring/split/trim/Float.parseFloat parsing:
+ * - values are separated by ',', surrounding whitespace is ignored
+ * - frames with less than 3 values (trailing empty values not counted) are ignored
+ * - values after the third one are ignored
+ * - malformed values throw NumberFormatException
+ *
+ * Plain decimals with up to 7 significant digits, like the ESP32 and simulator send,
+ * are parsed without allocation and give exactly the Float.parseFloat result.
+ * Anything else (exponents beyond float exact range, NaN, hex, long mantissas)
+ * falls back to Float.parseFloat.
+ */
+final class AccelFrameParser {
+
+    private static final byte[] PREFIX = "ACCEL:".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_EXACT_MANTISSA = 1 << 24;
+    private static final float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+
+    float x, y, z;
+
+    private int fieldEnd; // end of last parsed value, parse thread only
+
+    static boolean isAccelFrame(byte[] buf, int offset, int length) {
+        if (length < PREFIX.length)
+            return false;
+        for (int i = 0; i < PREFIX.length; i++)
+            if (buf[offset + i] != PREFIX[i])
+                return false;
+        return true;
+    }
+
+    /**
+     * returns false if the frame is no ACCEL frame or has less than 3 values,
+     * else x, y, z contain the new values
+     */
+    boolean parse(byte[] buf, int offset, int length) {
+        if (!isAccelFrame(buf, offset, length))
+            return false;
+        int end = offset + length;
+        int pos = offset + PREFIX.length;
+        if (!hasThreeValues(buf, pos, end))
+            return false;
+        float vx = parseValue(buf, pos, end);
+        float vy = parseValue(buf, fieldEnd + 1, end);
+        float vz = parseValue(buf, fieldEnd + 1, end);
+        x = vx;
+        y = vy;
+        z = vz;
+        return true;
+    }
+
+    /**
+     * String.split(",") drops trailing empty values, so a third value only
+     * counts if anything but ',' follows the second separator
+     */
+    private static boolean hasThreeValues(byte[] buf, int pos, int end) {
+        int separators = 0;
+        for (; pos < end; pos++) {
+            if (buf[pos] == ',') {
+                separators++;
+            } else if (separators >= 2) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * parse value from pos up to the next ',' or end, sets fieldEnd
+     */
+    private float parseValue(byte[] buf, int pos, int end) {
+        int stop = pos;
+        while (stop < end && buf[stop] != ',')
+            stop++;
+        fieldEnd = stop;
+        return parseFloat(buf, pos, stop);
+    }
+
+    /**
+     * Float.parseFloat() on the bytes from pos to stop, without allocation for plain decimals
+     */
+    static float parseFloat(byte[] buf, int pos, int stop) {
+        // trim() removes all chars <= ' '
+        while (pos < stop && (buf[pos] & 0xff) <= ' ')
+            pos++;
+        while (stop > pos && (buf[stop - 1] & 0xff) <= ' ')
+            stop--;
+
+        int i = pos;
+        boolean negative = false;
+        if (i < stop && (buf[i] == '-' || buf[i] == '+')) {
+            negative = buf[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0; // decimal digits after '.'
+        boolean overflow = false;
+        for (; i < stop && buf[i] >= '0' && buf[i] <= '9'; i++, digits++) {
+            mantissa = mantissa * 10 + (buf[i] - '0');
+            overflow |= mantissa >= MAX_EXACT_MANTISSA;
+        }
+        if (i < stop && buf[i] == '.') {
+            for (i++; i < stop && buf[i] >= '0' && buf[i] <= '9'; i++, digits++, scale++) {
+                mantissa = mantissa * 10 + (buf[i] - '0');
+                overflow |= mantissa >= MAX_EXACT_MANTISSA;
+            }
+        }
+        int exponent = 0;
+        if (digits > 0 && i < stop && (buf[i] == 'e' || buf[i] == 'E')) {
+            int e = i + 1;
+            boolean negativeExponent = false;
+            if (e < stop && (buf[e] == '-' || buf[e] == '+')) {
+                negativeExponent = buf[e] == '-';
+                e++;
+            }
+            int expDigits = 0;
+            for (; e < stop && buf[e] >= '0' && buf[e] <= '9' && expDigits < 4; e++, expDigits++)
+                exponent = exponent * 10 + (buf[e] - '0');
+            if (expDigits == 0 || (e < stop && buf[e] >= '0' && buf[e] <= '9'))
+                return slowParse(buf, pos, stop);
+            if (negativeExponent)
+                exponent = -exponent;
+            i = e;
+        }
+        if (i < stop && (buf[i] == 'f' || buf[i] == 'F' || buf[i] == 'd' || buf[i] == 'D'))
+            i++;
+        exponent -= scale;
+        if (digits == 0 || i != stop || overflow || exponent < -10 || exponent > 10)
+            return slowParse(buf, pos, stop);
+        // mantissa and power of ten are exact floats, so one IEEE operation rounds correctly
+        float value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    private static float slowParse(byte[] buf, int pos, int stop) {
+        return Float.parseFloat(new String(buf, pos, stop - pos, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.kineticpulsemobileapp;
+
+import android.annotation.SuppressLint;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.bluetooth.BluetoothStatusCodes;
+import android.content.Context;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * GattLayer on top of BluetoothGatt. GATT callbacks run in an own HandlerThread,
+ * which ends with close().
+ */
+@SuppressLint("MissingPermission")
+final class AndroidGatt extends BluetoothGattCallback implements GattLayer {
+
+    static final UUID NUS_SERVICE = UUID.fromString("6E400001-B5A3-F393-E0A9-E50E24DCCA9E");
+    private static final UUID NUS_RX = UUID.fromString("6E400002-B5A3-F393-E0A9-E50E24DCCA9E"); // write
+    private static final UUID NUS_TX = UUID.fromString("6E400003-B5A3-F393-E0A9-E50E24DCCA9E"); // notify
+    private static final UUID CLIENT_CHARACTERISTIC_CONFIG = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb");
+
+    private final Context context;
+    private final BluetoothDevice device;
+    private HandlerThread thread;
+    private Handler handler;
+    private BluetoothGatt gatt;
+    private BluetoothGattCharacteristic rx, tx;
+    private Callback callback;
+
+    AndroidGatt(Context context, BluetoothDevice device) {
+        this.context = context;
+        this.device = device;
+    }
+
+    @Override
+    public void connect(Callback callback) throws IOException {
+        this.callback = callback;
+        thread = new HandlerThread("BleGatt", Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        gatt = device.connectGatt(context, false, this, BluetoothDevice.TRANSPORT_LE, BluetoothDevice.PHY_LE_1M_MASK, handler);
+        if (gatt == null) {
+            thread.quitSafely();
+            throw new IOException("gatt connect failed");
+        }
+    }
+
+    @Override
+    public boolean requestMtu(int mtu) {
+        return gatt.requestMtu(mtu);
+    }
+
+    @Override
+    public boolean requestHighPriority() {
+        return gatt.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH);
+    }
+
+    @Override
+    public boolean discoverServices() {
+        return gatt.discoverServices();
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public boolean enableNotifications() {
+        if (!gatt.setCharacteristicNotification(tx, true))
+            return false;
+        BluetoothGattDescriptor descriptor = tx.getDescriptor(CLIENT_CHARACTERISTIC_CONFIG);
+        if (descriptor == null)
+            return false;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU)
+            return gatt.writeDescriptor(descriptor, BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE) == BluetoothStatusCodes.SUCCESS;
+        descriptor.setValue(BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE);
+        return gatt.writeDescriptor(descriptor);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public boolean write(byte[] data) {
+        int writeType = (rx.getProperties() & BluetoothGattCharacteristic.PROPERTY_WRITE_NO_RESPONSE) != 0
+                ? BluetoothGattCharacteristic.WRITE_TYPE_NO_RESPONSE
+                : BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU)
+            return gatt.writeCharacteristic(rx, data, writeType) == BluetoothStatusCodes.SUCCESS;
+        rx.setWriteType(writeType);
+        rx.setValue(data);
+        return gatt.writeCharacteristic(rx);
+    }
+
+    @Override
+    public void post(Runnable runnable, long delayMs) {
+        handler.postDelayed(runnable, delayMs);
+    }
+
+    @Override
+    public void close() {
+        if (gatt != null) {
+            gatt.disconnect();
+            gatt.close();
+            gatt = null;
+        }
+        if (thread != null)
+            thread.quitSafely();
+    }
+
+    @Override
+    public String getName() {
+        return device.getName() != null ? device.getName() : device.getAddress();
+    }
+
+    /*
+     * BluetoothGattCallback, called in thread
+     */
+    @Override
+    public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+        callback.onConnectionStateChange(newState == BluetoothProfile.STATE_CONNECTED, status);
+    }
+
+    @Override
+    public void onMtuChanged(BluetoothGatt gatt, int mtu, int status) {
+        callback.onMtuChanged(mtu, status);
+    }
+
+    @Override
+    public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+        BluetoothGattService service = gatt.getService(NUS_SERVICE);
+        if (service != null) {
+            rx = service.getCharacteristic(NUS_RX);
+            tx = service.getCharacteristic(NUS_TX);
+        }
+        callback.onServicesDiscovered(rx != null && tx != null, status);
+    }
+
+    @Override
+    public void onDescriptorWrite(BluetoothGatt gatt, BluetoothGattDescriptor descriptor, int status) {
+        callback.onNotificationsEnabled(status);
+    }
+
+    @Override
+    public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
+        callback.onWriteComplete(status);
+    }
+
+    @Override
+    public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, byte[] value) {
+        callback.onCharacteristicChanged(value);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onCharacteristicChanged(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic) {
+        // only called before Android 13
+        callback.onCharacteristicChanged(characteristic.getValue());
+    }
+}
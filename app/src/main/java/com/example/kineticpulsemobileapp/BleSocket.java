@@ -0,0 +1,231 @@
+package com.example.kineticpulsemobileapp;
+
+import android.app.Activity;
+import android.bluetooth.BluetoothDevice;
+import android.content.Context;
+
+import java.io.IOException;
+import java.security.InvalidParameterException;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * serial connection over BLE GATT with the Nordic UART Service, counterpart to SerialSocket.
+ * use listener chain: BleSocket -> SerialService -> UI fragment
+ *
+ * connect: gatt connect -> request MTU -> high connection priority -> discover services
+ *          -> enable TX notifications -> onSerialConnect
+ *
+ * Notifications are copied into pooled chunks. Notifications arriving within
+ * BATCH_DELAY_MS are batched into one chunk, so the service gets one chunk per
+ * connection event instead of one per notification.
+ * Writes are split into MTU sized pieces and sent one at a time, as GATT
+ * allows only one outstanding write.
+ */
+class BleSocket implements Transport, GattLayer.Callback {
+
+    static final int REQUESTED_MTU = 247;   // 244 byte payload, fits one LE data length extension packet
+    static final int DEFAULT_MTU = 23;
+    static final long BATCH_DELAY_MS = 8;   // about one connection interval at high priority
+
+    private final GattLayer gatt;
+    private volatile SerialListener listener;
+    private BufferPool bufferPool;
+    private volatile boolean connected;
+    private volatile int payloadSize = DEFAULT_MTU - 3;
+
+    // gatt thread only
+    private BufferPool.Chunk batch;
+    private boolean flushPosted;
+    private final Runnable flusher = this::flush;
+
+    // guarded by writeQueue
+    private final ArrayDeque<byte[]> writeQueue = new ArrayDeque<>();
+    private boolean writing;
+
+    BleSocket(Context context, BluetoothDevice device) {
+        if(context instanceof Activity)
+            throw new InvalidParameterException("expected non UI context");
+        this.gatt = new AndroidGatt(context, device);
+    }
+
+    BleSocket(GattLayer gatt) {
+        this.gatt = gatt;
+    }
+
+    @Override
+    public String getName() {
+        return gatt.getName();
+    }
+
+    int getPayloadSize() {
+        return payloadSize;
+    }
+
+    /**
+     * GATT is asynchronous, executor is not needed
+     */
+    @Override
+    public void connect(SerialListener listener, BufferPool bufferPool, Executor executor) throws IOException {
+        this.listener = listener;
+        this.bufferPool = bufferPool;
+        gatt.connect(this);
+    }
+
+    @Override
+    public void disconnect() {
+        listener = null; // ignore remaining data and errors
+        connected = false;
+        gatt.post(this::close, 0);
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        if (!connected)
+            throw new IOException("not connected");
+        int size = payloadSize;
+        synchronized (writeQueue) {
+            for (int pos = 0; pos < data.length; pos += size) {
+                byte[] piece = new byte[Math.min(size, data.length - pos)];
+                System.arraycopy(data, pos, piece, 0, piece.length);
+                writeQueue.add(piece);
+            }
+        }
+        if (!writeNext())
+            throw new IOException("write failed");
+    }
+
+    private boolean writeNext() {
+        byte[] data;
+        synchronized (writeQueue) {
+            if (writing || writeQueue.isEmpty())
+                return true;
+            data = writeQueue.poll();
+            writing = true;
+        }
+        if (gatt.write(data))
+            return true;
+        synchronized (writeQueue) {
+            writing = false;
+            writeQueue.clear();
+        }
+        return false;
+    }
+
+    private void close() {
+        if (batch != null) {
+            batch.release();
+            batch = null;
+        }
+        gatt.close();
+    }
+
+    private void flush() {
+        flushPosted = false;
+        if (batch != null)
+            deliver();
+    }
+
+    private void deliver() {
+        BufferPool.Chunk chunk = batch;
+        batch = null;
+        SerialListener l = listener;
+        if (l != null)
+            l.onSerialRead(chunk);
+        else
+            chunk.release();
+    }
+
+    private void connectError(Exception e) {
+        SerialListener l = listener;
+        if (l != null)
+            l.onSerialConnectError(e);
+    }
+
+    private void ioError(Exception e) {
+        connected = false;
+        SerialListener l = listener;
+        if (l != null)
+            l.onSerialIoError(e);
+    }
+
+    /*
+     * GattLayer.Callback, called in gatt thread
+     */
+    @Override
+    public void onConnectionStateChange(boolean connected, int status) {
+        if (connected && status == GattLayer.GATT_SUCCESS) {
+            if (!gatt.requestMtu(REQUESTED_MTU))
+                onMtuChanged(DEFAULT_MTU, GattLayer.GATT_SUCCESS);
+        } else if (this.connected) {
+            ioError(new IOException("connection lost, status " + status));
+        } else {
+            connectError(new IOException("gatt connect failed, status " + status));
+        }
+    }
+
+    @Override
+    public void onMtuChanged(int mtu, int status) {
+        if (status == GattLayer.GATT_SUCCESS)
+            payloadSize = mtu - 3;
+        gatt.requestHighPriority(); // only a hint, continue if not granted
+        if (!gatt.discoverServices())
+            connectError(new IOException("service discovery failed"));
+    }
+
+    @Override
+    public void onServicesDiscovered(boolean uartServiceFound, int status) {
+        if (status != GattLayer.GATT_SUCCESS)
+            connectError(new IOException("service discovery failed, status " + status));
+        else if (!uartServiceFound)
+            connectError(new IOException("Nordic UART service not found"));
+        else if (!gatt.enableNotifications())
+            connectError(new IOException("enable notifications failed"));
+    }
+
+    @Override
+    public void onNotificationsEnabled(int status) {
+        if (status != GattLayer.GATT_SUCCESS) {
+            connectError(new IOException("enable notifications failed, status " + status));
+            return;
+        }
+        connected = true;
+        SerialListener l = listener;
+        if (l != null)
+            l.onSerialConnect();
+    }
+
+    @Override
+    public void onCharacteristicChanged(byte[] value) {
+        if (listener == null || value == null || value.length == 0)
+            return;
+        if (batch != null && batch.length + value.length > batch.data.length)
+            deliver();
+        if (batch == null)
+            batch = bufferPool.acquire();
+        int n = Math.min(value.length, batch.data.length); // MTU is always below slab size
+        System.arraycopy(value, 0, batch.data, batch.length, n);
+        batch.length += n;
+        if (batch.data.length - batch.length < payloadSize) {
+            deliver(); // next notification would not fit
+        } else if (!flushPosted) {
+            flushPosted = true;
+            gatt.post(flusher, BATCH_DELAY_MS);
+        }
+    }
+
+    @Override
+    public void onWriteComplete(int status) {
+        synchronized (writeQueue) {
+            writing = false;
+        }
+        if (status != GattLayer.GATT_SUCCESS) {
+            synchronized (writeQueue) {
+                writeQueue.clear();
+            }
+            ioError(new IOException("write failed, status " + status));
+        } else if (!writeNext()) {
+            ioError(new IOException("write failed"));
+        }
+    }
+}
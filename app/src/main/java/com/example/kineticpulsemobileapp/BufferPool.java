@@ -0,0 +1,100 @@
+package com.example.kineticpulsemobileapp;
+
+import java.util.ArrayDeque;
+
+/**
+ * fixed-size byte slabs recycled between the socket read loop and the consumer.
+ * use chain: SerialSocket acquire() -> SerialService -> UI fragment release()
+ *
+ * Slabs are created up front, so the steady state read path does not allocate.
+ * If all slabs are in use (consumer too slow), acquire() creates an extra slab
+ * and counts it as allocation; extra slabs are dropped on release() once the
+ * pool is full again.
+ */
+final class BufferPool {
+
+    static final class Chunk {
+        final byte[] data;
+        int length;
+        long receivedNanos; // set by SerialService, for queue latency metrics
+        private final BufferPool pool;
+        private boolean inUse;
+
+        private Chunk(BufferPool pool, int size) {
+            this.pool = pool;
+            this.data = new byte[size];
+        }
+
+        /**
+         * return slab to pool. chunk must not be accessed afterwards
+         */
+        void release() {
+            pool.release(this);
+        }
+    }
+
+    private final int capacity;
+    private final int slabSize;
+    private final ArrayDeque<Chunk> free;
+    private long acquired;
+    private long allocated;
+    private long dropped;
+
+    BufferPool(int capacity, int slabSize) {
+        this.capacity = capacity;
+        this.slabSize = slabSize;
+        free = new ArrayDeque<>(capacity);
+        for (int i = 0; i < capacity; i++)
+            free.add(new Chunk(this, slabSize));
+    }
+
+    int getSlabSize() {
+        return slabSize;
+    }
+
+    synchronized Chunk acquire() {
+        acquired++;
+        Chunk chunk = free.poll();
+        if (chunk == null) {
+            allocated++;
+            chunk = new Chunk(this, slabSize);
+        }
+        chunk.inUse = true;
+        chunk.length = 0;
+        return chunk;
+    }
+
+    private synchronized void release(Chunk chunk) {
+        if (!chunk.inUse)
+            throw new IllegalStateException("chunk released twice");
+        chunk.inUse = false;
+        if (free.size() < capacity)
+            free.add(chunk);
+        else
+            dropped++;
+    }
+
+    /**
+     * number of slabs created after construction. Stays constant while the
+     * consumer keeps up, i.e. the read path is allocation free.
+     */
+    synchronized long getAllocatedCount() {
+        return allocated;
+    }
+
+    synchronized long getAcquiredCount() {
+        return acquired;
+    }
+
+    synchronized int getFreeCount() {
+        return free.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BufferPool{free=" + free.size() + "/" + capacity
+                + ", acquired=" + acquired
+                + ", allocated=" + allocated
+                + ", dropped=" + dropped + "}";
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.kineticpulsemobileapp;
+
+import java.util.Locale;
+
+/**
+ * map device time (firmware millis()) to phone time (elapsedRealtimeNanos).
+ * use chain: SerialService PING id -> {"pong":id,"t":ms} -> SerialProcessor -> ClockSync -> sample phone time
+ *
+ * NTP style: each exchange gives the device time somewhere between send and receive,
+ * the midpoint is assumed with an error of at most half the round trip time.
+ * The last exchanges are kept, only those with a round trip close to the minimum
+ * are used as they had the least queueing delay. The mapping is the least squares
+ * line through them: offset and drift (crystal tolerance, tens of ppm). Drift is only
+ * fitted once the exchanges span MIN_DRIFT_SPAN_MS, and limited to MAX_DRIFT_PPM.
+ *
+ * A different delay in both directions (e.g. BLE connection interval) is not
+ * visible to the phone and remains as offset error, bounded by getErrorBoundNanos().
+ *
+ * If an exchange is far off the mapping, the device has restarted and the
+ * previous exchanges are dropped.
+ *
+ * Pure Java, no allocation after construction, single thread.
+ */
+final class ClockSync {
+
+    static final int WINDOW = 32;
+    static final int MIN_EXCHANGES = 3;
+    static final long MIN_DRIFT_SPAN_MS = 20_000;
+    static final double MAX_DRIFT_PPM = 500;
+    static final long MAX_ROUND_TRIP_NANOS = 1_000_000_000L;
+    static final long MAX_STEP_NANOS = 500_000_000L;
+    private static final long MIN_ROUND_TRIP_TOLERANCE_NANOS = 2_000_000L;
+    private static final double NANOS_PER_MS = 1e6;
+
+    private final long[] deviceMs = new long[WINDOW];
+    private final long[] midNanos = new long[WINDOW];
+    private final long[] roundTripNanos = new long[WINDOW];
+    private int count;
+    private int next;
+
+    // mapping: phone = basePhoneNanos + (device - baseDeviceMs) * slope
+    private boolean synced;
+    private long baseDeviceMs;
+    private long basePhoneNanos;
+    private double slope = NANOS_PER_MS;
+    private long minRoundTripNanos;
+    private long exchanges;
+    private long rejected;
+    private long restarts;
+
+    void reset() {
+        count = next = 0;
+        synced = false;
+        slope = NANOS_PER_MS;
+        exchanges = rejected = restarts = 0;
+    }
+
+    /**
+     * PING sent at sendNanos, pong with deviceMs received at receiveNanos.
+     * returns false if the exchange was rejected
+     */
+    boolean addExchange(long sendNanos, long receiveNanos, long deviceMs) {
+        long roundTrip = receiveNanos - sendNanos;
+        if (roundTrip < 0 || roundTrip > MAX_ROUND_TRIP_NANOS) {
+            rejected++;
+            return false;
+        }
+        long mid = sendNanos + roundTrip / 2;
+        if (synced && Math.abs(mid - toPhoneNanos(deviceMs)) > MAX_STEP_NANOS + roundTrip) {
+            restarts++;
+            count = next = 0;
+            synced = false;
+        }
+        this.deviceMs[next] = deviceMs;
+        this.midNanos[next] = mid;
+        this.roundTripNanos[next] = roundTrip;
+        next = (next + 1) % WINDOW;
+        if (count < WINDOW)
+            count++;
+        exchanges++;
+        fit();
+        return true;
+    }
+
+    /**
+     * true once the mapping can be used
+     */
+    boolean isSynchronized() {
+        return synced;
+    }
+
+    /**
+     * phone time of device time, only meaningful if isSynchronized()
+     */
+    long toPhoneNanos(long deviceMs) {
+        return basePhoneNanos + Math.round((deviceMs - baseDeviceMs) * slope);
+    }
+
+    /**
+     * device time of phone time, the inverse of toPhoneNanos(), only meaningful if isSynchronized()
+     */
+    long toDeviceMs(long phoneNanos) {
+        return baseDeviceMs + (long) Math.floor((phoneNanos - basePhoneNanos) / slope);
+    }
+
+    /**
+     * device clock rate error, positive if the device clock is slow
+     */
+    double getDriftPpm() {
+        return (slope / NANOS_PER_MS - 1) * 1e6;
+    }
+
+    /**
+     * half the smallest round trip in the window
+     */
+    long getErrorBoundNanos() {
+        return minRoundTripNanos / 2;
+    }
+
+    long getExchangeCount() {
+        return exchanges;
+    }
+
+    long getRejectedCount() {
+        return rejected;
+    }
+
+    long getRestartCount() {
+        return restarts;
+    }
+
+    @Override
+    public String toString() {
+        if (!synced)
+            return "not synchronized, exchanges=" + exchanges;
+        return String.format(Locale.US, "offset=%.3fms at device %dms, drift=%.1fppm, error<=%.2fms, exchanges=%d, rejected=%d, restarts=%d",
+                (toPhoneNanos(baseDeviceMs) - baseDeviceMs * NANOS_PER_MS) / NANOS_PER_MS, baseDeviceMs,
+                getDriftPpm(), getErrorBoundNanos() / NANOS_PER_MS, exchanges, rejected, restarts);
+    }
+
+    private void fit() {
+        long minRoundTrip = Long.MAX_VALUE;
+        for (int i = 0; i < count; i++)
+            minRoundTrip = Math.min(minRoundTrip, roundTripNanos[i]);
+        minRoundTripNanos = minRoundTrip;
+        if (count < MIN_EXCHANGES)
+            return;
+        long limit = minRoundTrip + Math.max(minRoundTrip / 2, MIN_ROUND_TRIP_TOLERANCE_NANOS);
+
+        // relative to the newest exchange, keeps the sums small for double precision
+        int newest = (next + WINDOW - 1) % WINDOW;
+        long x0 = deviceMs[newest];
+        long y0 = midNanos[newest];
+        int n = 0;
+        double sumX = 0, sumY = 0;
+        long minX = Long.MAX_VALUE, maxX = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            if (roundTripNanos[i] > limit)
+                continue;
+            n++;
+            sumX += deviceMs[i] - x0;
+            sumY += midNanos[i] - y0;
+            minX = Math.min(minX, deviceMs[i]);
+            maxX = Math.max(maxX, deviceMs[i]);
+        }
+        double meanX = sumX / n, meanY = sumY / n;
+        double fitted = NANOS_PER_MS;
+        if (n >= 2 && maxX - minX >= MIN_DRIFT_SPAN_MS) {
+            double sxy = 0, sxx = 0;
+            for (int i = 0; i < count; i++) {
+                if (roundTripNanos[i] > limit)
+                    continue;
+                double dx = deviceMs[i] - x0 - meanX;
+                sxy += dx * (midNanos[i] - y0 - meanY);
+                sxx += dx * dx;
+            }
+            double maxDrift = MAX_DRIFT_PPM * 1e-6 * NANOS_PER_MS;
+            fitted = Math.max(NANOS_PER_MS - maxDrift, Math.min(NANOS_PER_MS + maxDrift, sxy / sxx));
+        }
+        slope = fitted;
+        baseDeviceMs = x0;
+        basePhoneNanos = y0 + Math.round(meanY - meanX * fitted);
+        synced = true;
+    }
+}
@@ -4,10 +4,18 @@ import android.Manifest;
 import android.annotation.SuppressLint;
 import android.bluetooth.BluetoothAdapter;
 import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanFilter;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelUuid;
 import android.view.Menu;
 import android.view.MenuInflater;
 import android.view.MenuItem;
@@ -28,12 +36,32 @@ import java.util.Collections;
 
 public class DevicesFragment extends ListFragment {
 
+    private static final long LE_SCAN_PERIOD_MS = 10000;
+
     private BluetoothAdapter bluetoothAdapter;
     private final ArrayList<BluetoothDevice> listItems = new ArrayList<>();
     private ArrayAdapter<BluetoothDevice> listAdapter;
     ActivityResultLauncher<String> requestBluetoothPermissionLauncherForRefresh;
+    ActivityResultLauncher<String> requestScanPermissionLauncher;
     private Menu menu;
     private boolean permissionMissing;
+    private boolean scanPermissionRequested;
+    private final Handler mainLooper = new Handler(Looper.getMainLooper());
+    private final Runnable leScanStopper = this::stopLeScan;
+    private BluetoothLeScanner leScanner;
+    private final ScanCallback leScanCallback = new ScanCallback() {
+        @SuppressLint("MissingPermission")
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            BluetoothDevice device = result.getDevice();
+            for (BluetoothDevice item : listItems)
+                if (item.getAddress().equals(device.getAddress()))
+                    return;
+            listItems.add(device);
+            Collections.sort(listItems, BluetoothUtil::compareTo);
+            listAdapter.notifyDataSetChanged();
+        }
+    };
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -52,13 +80,17 @@ public class DevicesFragment extends ListFragment {
                 TextView text2 = view.findViewById(R.id.text2);
                 @SuppressLint("MissingPermission") String deviceName = device.getName();
                 text1.setText(deviceName);
-                text2.setText(device.getAddress());
+                @SuppressLint("MissingPermission") boolean le = device.getType() == BluetoothDevice.DEVICE_TYPE_LE;
+                text2.setText(le ? device.getAddress() + "  BLE" : device.getAddress());
                 return view;
             }
         };
         requestBluetoothPermissionLauncherForRefresh = registerForActivityResult(
                 new ActivityResultContracts.RequestPermission(),
                 granted -> BluetoothUtil.onPermissionsResult(this, granted, this::refresh));
+        requestScanPermissionLauncher = registerForActivityResult(
+                new ActivityResultContracts.RequestPermission(),
+                granted -> { if (granted) refresh(); });
     }
 
     @Override
@@ -88,6 +120,12 @@ public class DevicesFragment extends ListFragment {
         refresh();
     }
 
+    @Override
+    public void onPause() {
+        stopLeScan();
+        super.onPause();
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         int id = item.getItemId();
@@ -96,6 +134,9 @@ public class DevicesFragment extends ListFragment {
             intent.setAction(android.provider.Settings.ACTION_BLUETOOTH_SETTINGS);
             startActivity(intent);
             return true;
+        } else if (id == R.id.tcp_simulator) {
+            openTerminal(TcpSocket.EMULATOR_HOST_ADDRESS);
+            return true;
         } else if (id == R.id.bt_refresh) {
             if(BluetoothUtil.hasPermissions(this, requestBluetoothPermissionLauncherForRefresh))
                 refresh();
@@ -115,10 +156,9 @@ public class DevicesFragment extends ListFragment {
                     menu.findItem(R.id.bt_refresh).setVisible(permissionMissing);
             }
             if(!permissionMissing) {
-                for (BluetoothDevice device : bluetoothAdapter.getBondedDevices())
-                    if (device.getType() != BluetoothDevice.DEVICE_TYPE_LE)
-                        listItems.add(device);
+                listItems.addAll(bluetoothAdapter.getBondedDevices()); // classic SPP and LE Nordic UART
                 Collections.sort(listItems, BluetoothUtil::compareTo);
+                startLeScan();
             }
         }
         if(bluetoothAdapter == null)
@@ -132,11 +172,51 @@ public class DevicesFragment extends ListFragment {
         listAdapter.notifyDataSetChanged();
     }
 
+    /**
+     * ESP32 Nordic UART devices usually are not bonded, so scan for them for a while
+     */
+    @SuppressLint("MissingPermission")
+    private void startLeScan() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.S || !bluetoothAdapter.isEnabled())
+            return; // before Android 12 scanning requires location permission, only bonded devices are shown
+        if (getActivity().checkSelfPermission(Manifest.permission.BLUETOOTH_SCAN) != PackageManager.PERMISSION_GRANTED) {
+            if (!scanPermissionRequested) {
+                scanPermissionRequested = true;
+                requestScanPermissionLauncher.launch(Manifest.permission.BLUETOOTH_SCAN);
+            }
+            return;
+        }
+        stopLeScan();
+        leScanner = bluetoothAdapter.getBluetoothLeScanner();
+        if (leScanner == null)
+            return;
+        ScanFilter filter = new ScanFilter.Builder().setServiceUuid(new ParcelUuid(AndroidGatt.NUS_SERVICE)).build();
+        ScanSettings settings = new ScanSettings.Builder().setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY).build();
+        leScanner.startScan(Collections.singletonList(filter), settings, leScanCallback);
+        mainLooper.postDelayed(leScanStopper, LE_SCAN_PERIOD_MS);
+    }
+
+    @SuppressLint("MissingPermission")
+    private void stopLeScan() {
+        mainLooper.removeCallbacks(leScanStopper);
+        if (leScanner != null) {
+            try {
+                leScanner.stopScan(leScanCallback);
+            } catch (Exception ignored) {
+            }
+            leScanner = null;
+        }
+    }
+
     @Override
     public void onListItemClick(@NonNull ListView l, @NonNull View v, int position, long id) {
         BluetoothDevice device = listItems.get(position-1);
+        openTerminal(device.getAddress());
+    }
+
+    private void openTerminal(String address) {
         Bundle args = new Bundle();
-        args.putString("device", device.getAddress());
+        args.putString("device", address);
         Fragment fragment = new TerminalFragment();
         fragment.setArguments(args);
         getParentFragmentManager().beginTransaction().replace(R.id.fragment, fragment, "terminal").addToBackStack(null).commit();
@@ -0,0 +1,208 @@
+package com.example.kineticpulsemobileapp;
+
+import com.example.kineticpulsemobileapp.motion.Movement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * side effects of detected movements, each sink on its own executor with its own coalescing policy.
+ * use chain: TerminalFragment movement handlers -> FeedbackDispatcher.dispatch() -> LED, API, UI, TTS sinks
+ *
+ * dispatch() only hands the feedback to every sink and returns. A sink keeps at
+ * most one pending feedback, so a slow sink (network, TTS engine) only delays and
+ * coalesces its own work and never blocks the caller or the other sinks:
+ * - LATEST: run with the latest feedback, feedback arriving meanwhile replaces the
+ *   pending one (LED: only the current color matters; UI on a frame executor: once per frame)
+ * - BATCH: like LATEST, but runs are at least the batch interval apart (API: totals)
+ * - DROP_IF_BUSY: dropped while the sink is busy or a run is pending (TTS: no queue of phrases)
+ *
+ * Feedback carries the totals at the time of the movement, so skipping one loses nothing.
+ * Per sink metrics: offered, run, coalesced, dropped, failed, queue delay and run time.
+ */
+final class FeedbackDispatcher {
+
+    enum Policy { LATEST, BATCH, DROP_IF_BUSY }
+
+    static final class Feedback {
+        final Movement movement;
+        final boolean phone;          // phone gyroscope, else ESP32
+        final int left, right, up, back;     // totals including this movement
+        final long sensorNanos;       // elapsedRealtimeNanos of the sensor sample, 0 if unknown
+        final long createdNanos;
+
+        Feedback(Movement movement, boolean phone, int left, int right, int up, int back, long sensorNanos) {
+            this.movement = movement;
+            this.phone = phone;
+            this.left = left;
+            this.right = right;
+            this.up = up;
+            this.back = back;
+            this.sensorNanos = sensorNanos;
+            createdNanos = System.nanoTime();
+        }
+    }
+
+    interface Action {
+        void run(Feedback feedback) throws Exception;
+    }
+
+    interface Busy {
+        boolean isBusy();
+    }
+
+    static final class Sink {
+        private final String name;
+        private final Policy policy;
+        private final Executor executor;
+        private final long batchNanos;
+        private final Busy busy;
+        private final Action action;
+        private final AtomicReference<Feedback> pending = new AtomicReference<>();
+        private final AtomicLong lastRunNanos = new AtomicLong(Long.MIN_VALUE);
+        private final Runnable drain = this::drain;
+
+        private final SerialMetrics.Counter offered;
+        private final SerialMetrics.Counter runs;
+        private final SerialMetrics.Counter coalesced;
+        private final SerialMetrics.Counter dropped;
+        private final SerialMetrics.Counter failed;
+        private final SerialMetrics.Histogram delay;
+        private final SerialMetrics.Histogram runTime;
+
+        private Sink(String name, Policy policy, Executor executor, long batchNanos, Busy busy, Action action, SerialMetrics metrics) {
+            this.name = name;
+            this.policy = policy;
+            this.executor = executor;
+            this.batchNanos = batchNanos;
+            this.busy = busy;
+            this.action = action;
+            offered = metrics.counter(name + " offered");
+            runs = metrics.counter(name + " run");
+            coalesced = metrics.counter(name + " coalesced");
+            dropped = metrics.counter(name + " dropped");
+            failed = metrics.counter(name + " failed");
+            delay = metrics.histogram(name + " delay", "us");
+            runTime = metrics.histogram(name + " time", "us");
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getRunCount() {
+            return runs.get();
+        }
+
+        long getCoalescedCount() {
+            return coalesced.get();
+        }
+
+        long getDroppedCount() {
+            return dropped.get();
+        }
+
+        private void offer(Feedback feedback) {
+            offered.inc();
+            if (policy == Policy.DROP_IF_BUSY) {
+                if ((busy != null && busy.isBusy()) || !pending.compareAndSet(null, feedback)) {
+                    dropped.inc();
+                    return;
+                }
+            } else if (pending.getAndSet(feedback) != null) {
+                coalesced.inc(); // the scheduled run takes the new one
+                return;
+            }
+            try {
+                if (policy == Policy.BATCH) {
+                    long wait = lastRunNanos.get() == Long.MIN_VALUE ? 0 : lastRunNanos.get() + batchNanos - System.nanoTime();
+                    ((ScheduledExecutorService) executor).schedule(drain, Math.max(0, wait), TimeUnit.NANOSECONDS);
+                } else {
+                    executor.execute(drain);
+                }
+            } catch (RejectedExecutionException e) {
+                pending.set(null); // shut down
+                dropped.inc();
+            }
+        }
+
+        private void drain() {
+            Feedback feedback = pending.getAndSet(null);
+            if (feedback == null)
+                return;
+            long start = System.nanoTime();
+            delay.record((start - feedback.createdNanos) / 1000);
+            lastRunNanos.set(start);
+            try {
+                action.run(feedback);
+                runs.inc();
+            } catch (Exception e) {
+                failed.inc(); // actions log their own errors
+            }
+            runTime.record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    /**
+     * single thread per sink, named after it
+     */
+    static final class SinkThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        SinkThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "Feedback-" + name + "-" + count.incrementAndGet());
+        }
+    }
+
+    private final SerialMetrics metrics;
+    private final List<Sink> sinks = new ArrayList<>(); // set up before the first dispatch()
+
+    FeedbackDispatcher(SerialMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    Sink addSink(String name, Policy policy, Executor executor, Action action) {
+        if (policy == Policy.BATCH)
+            throw new IllegalArgumentException("use addBatchSink");
+        return add(new Sink(name, policy, executor, 0, null, action, metrics));
+    }
+
+    Sink addBatchSink(String name, ScheduledExecutorService executor, long batchMs, Action action) {
+        return add(new Sink(name, Policy.BATCH, executor, TimeUnit.MILLISECONDS.toNanos(batchMs), null, action, metrics));
+    }
+
+    Sink addDropIfBusySink(String name, Executor executor, Busy busy, Action action) {
+        return add(new Sink(name, Policy.DROP_IF_BUSY, executor, 0, busy, action, metrics));
+    }
+
+    /**
+     * hand the feedback to all sinks, any thread, does not block
+     */
+    void dispatch(Feedback feedback) {
+        for (int i = 0; i < sinks.size(); i++)
+            sinks.get(i).offer(feedback);
+    }
+
+    SerialMetrics getMetrics() {
+        return metrics;
+    }
+
+    private Sink add(Sink sink) {
+        sinks.add(sink);
+        return sink;
+    }
+}
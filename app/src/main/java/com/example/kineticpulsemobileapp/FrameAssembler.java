@@ -0,0 +1,152 @@
+package com.example.kineticpulsemobileapp;
+
+/**
+ * reassemble messages from serial chunks. Chunk boundaries are arbitrary,
+ * so partial frames are kept until the rest arrives.
+ *
+ * NEWLINE:          frames end with \n, a trailing \r is removed, empty lines are skipped
+ * LENGTH_PREFIXED:  2 byte big endian length, followed by the payload
+ *
+ * Frames are reported as byte ranges. The range is only valid during the callback.
+ * Frames completely contained in one chunk are reported from the chunk itself,
+ * only frames spanning chunks are copied to the internal buffer.
+ * UTF-8 multi byte sequences never contain \n, so NEWLINE frames always hold
+ * complete sequences, regardless of where the chunks were split.
+ */
+final class FrameAssembler {
+
+    enum Mode { NEWLINE, LENGTH_PREFIXED }
+
+    interface FrameListener {
+        void onFrame(byte[] buf, int offset, int length);
+    }
+
+    private final Mode mode;
+    private final FrameListener listener;
+    private final byte[] partial;
+    private int partialLength;
+    private boolean discarding;     // frame too long, skip until next \n or end of payload
+    private int header;             // LENGTH_PREFIXED: header bytes received (0..2)
+    private int expected;           // LENGTH_PREFIXED: payload length
+    private long frames;
+    private long dropped;
+
+    FrameAssembler(Mode mode, int maxFrameLength, FrameListener listener) {
+        this.mode = mode;
+        this.listener = listener;
+        this.partial = new byte[maxFrameLength];
+    }
+
+    void append(byte[] data, int offset, int length) {
+        if (mode == Mode.NEWLINE)
+            appendNewline(data, offset, offset + length);
+        else
+            appendLengthPrefixed(data, offset, offset + length);
+    }
+
+    void reset() {
+        partialLength = 0;
+        discarding = false;
+        header = 0;
+        expected = 0;
+    }
+
+    long getFrameCount() {
+        return frames;
+    }
+
+    long getDroppedCount() {
+        return dropped;
+    }
+
+    private void appendNewline(byte[] data, int pos, int end) {
+        while (pos < end) {
+            int nl = pos;
+            while (nl < end && data[nl] != '\n')
+                nl++;
+            if (nl == end) {
+                keep(data, pos, end);
+                return;
+            }
+            if (!discarding) {
+                if (partialLength == 0) {
+                    if (nl - pos <= partial.length)
+                        emitLine(data, pos, nl);
+                    else
+                        dropped++; // same limit as for frames spanning chunks
+                } else if (keep(data, pos, nl))
+                    emitLine(partial, 0, partialLength);
+            }
+            discarding = false;
+            partialLength = 0;
+            pos = nl + 1;
+        }
+    }
+
+    private void emitLine(byte[] buf, int begin, int end) {
+        if (end > begin && buf[end - 1] == '\r')
+            end--;
+        if (end > begin)
+            emit(buf, begin, end - begin);
+    }
+
+    private void appendLengthPrefixed(byte[] data, int pos, int end) {
+        while (pos < end) {
+            if (header < 2) {
+                expected = (expected << 8) | (data[pos++] & 0xff);
+                if (++header == 2) {
+                    discarding = expected > partial.length; // skip payload, next header follows it
+                    if (discarding)
+                        dropped++;
+                    if (expected == 0)
+                        nextPrefixedFrame();
+                }
+                continue;
+            }
+            int n = Math.min(end - pos, expected - partialLength);
+            if (!discarding) {
+                if (partialLength == 0 && n == expected) {
+                    emit(data, pos, n);
+                } else {
+                    System.arraycopy(data, pos, partial, partialLength, n);
+                    if (partialLength + n == expected)
+                        emit(partial, 0, expected);
+                }
+            }
+            partialLength += n;
+            pos += n;
+            if (partialLength == expected)
+                nextPrefixedFrame();
+        }
+    }
+
+    private void nextPrefixedFrame() {
+        header = 0;
+        expected = 0;
+        partialLength = 0;
+        discarding = false;
+    }
+
+    /**
+     * append to partial frame, returns false if frame exceeds the maximum length
+     */
+    private boolean keep(byte[] data, int begin, int end) {
+        if (discarding)
+            return false;
+        int n = end - begin;
+        if (partialLength + n > partial.length) {
+            dropped++;
+            discarding = true;
+            partialLength = 0;
+            return false;
+        }
+        System.arraycopy(data, begin, partial, partialLength, n);
+        partialLength += n;
+        return true;
+    }
+
+    private void emit(byte[] buf, int offset, int length) {
+        frames++;
+        listener.onFrame(buf, offset, length);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.kineticpulsemobileapp;
+
+import java.io.IOException;
+
+/**
+ * the parts of BluetoothGatt used by BleSocket, with the Nordic UART
+ * characteristics already resolved. Allows BleSocket to be tested without a device.
+ *
+ * Callbacks and posted runnables run in one thread, one at a time.
+ */
+interface GattLayer {
+
+    interface Callback {
+        void onConnectionStateChange(boolean connected, int status);
+        void onMtuChanged(int mtu, int status);
+        void onServicesDiscovered(boolean uartServiceFound, int status);
+        void onNotificationsEnabled(int status);
+        void onCharacteristicChanged(byte[] value);
+        void onWriteComplete(int status);
+    }
+
+    int GATT_SUCCESS = 0;
+
+    void connect(Callback callback) throws IOException;
+    boolean requestMtu(int mtu);
+    boolean requestHighPriority();
+    boolean discoverServices();
+    boolean enableNotifications();
+    boolean write(byte[] data);
+    void post(Runnable runnable, long delayMs);
+    void close();
+    String getName();
+}
@@ -3,53 +3,111 @@ package com.example.kineticpulsemobileapp;
 import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
+import android.hardware.SensorEventListener2;
 import android.hardware.SensorManager;
+import android.os.Debug;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
-class GyroManager implements SensorEventListener {
+import com.example.kineticpulsemobileapp.motion.GyroBiasEstimator;
+import com.example.kineticpulsemobileapp.motion.GyroPoseClassifier;
+import com.example.kineticpulsemobileapp.motion.MotionEngine;
+import com.example.kineticpulsemobileapp.motion.MovementEvent;
+
+/**
+ * phone gyroscope and accelerometer for pose detection.
+ * use chain: SensorManager -> GyroManager.onSensorChanged -> SensorRing, MotionEngine -> MovementListener
+ *
+ * Delivery modes: LOW_LATENCY reports every sample as it is measured, which wakes
+ * the app at the sampling rate. BATCHED lets the sensor hub FIFO collect samples
+ * for up to the batch latency and delivers them as one burst, for idle operation
+ * where only the history is kept. With auto delivery (default) the mode follows
+ * the session: low latency while processing is enabled and the app is visible
+ * (setVisible(), false e.g. with the screen off), batched otherwise. A visible
+ * session is not batched after a quiet phase, its next movement would wait for
+ * the FIFO. Before leaving BATCHED the FIFO is flushed, so no samples are lost by
+ * registering again.
+ *
+ * Events are handled per sample, work that only needs the latest sample (raw
+ * listener, statistics) runs once per burst, after the burst.
+ * Thread CPU time is sampled at the start and the end of a burst.
+ *
+ * Threads: sensor events are delivered to the own "GyroSensor" HandlerThread, so
+ * detection timing does not depend on UI load. All state except the history is
+ * owned by this thread, calls from other threads are posted to it. The per sample
+ * path does not allocate. Movement and calibration callbacks are posted to the
+ * main thread, onRaw() is called in the sensor thread.
+ */
+class GyroManager implements SensorEventListener2 {
+
+    enum Delivery { LOW_LATENCY, BATCHED }
 
     private static final String TAG = "Gyro";
     private final SensorManager sensorManager;
     private final Sensor gyro;
+    private final Sensor accelerometer; // optional, corrects gyro drift
     private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final HandlerThread sensorThread;
+    private final Handler sensorHandler;    // sensor events are delivered here
     interface MovementListener {
         void onLeft();
         void onRight();
         void onMiddle(); // up/forward
         void onBack();   // backward tilt
-        default void onRaw(float x, float y, float z) {}
+        default void onRaw(float x, float y, float z) {} // sensor thread, once per burst
     }
     
     interface CalibrationListener {
         void onCalibrationStart();
-        void onCalibrationPhase(String instruction, int color);
         void onCalibrationComplete();
     }
 
     private boolean started = false;
     private int firstLogs = 0;
     private volatile boolean processingEnabled = false;
-    private MovementListener listener;
-    private CalibrationListener calibrationListener;
-    private long lastEventMs = 0L;
-    private long lastTsNs = 0L;
-    private float yawAngle = 0f;   // integrate z (yaw)
-    private float pitchAngle = 0f; // integrate x (pitch)
-
-    private enum Pose { LEFT, MIDDLE, RIGHT, BACK }
-    private Pose currentPose = Pose.MIDDLE;
-    private boolean calibrating = false;
-    private long calibStartMs = 0L;
-    private static final long CALIBRATION_MS = 2000L;
-    
-    // Interactive calibration states
-    private enum CalibrationPhase { NONE, STEADY, LEFT, RIGHT, FORWARD, BACK, COMPLETE }
-    private CalibrationPhase calibrationPhase = CalibrationPhase.NONE;
-    private long phaseStartMs = 0L;
-    private static final long PHASE_DURATION_MS = 800L; // Reduced from 1500ms to 800ms for much faster calibration
+    private volatile MovementListener listener;
+    private volatile CalibrationListener calibrationListener;
+
+    // Raw rates (x, y, z in rad/s) with event timestamp in ns, about 10s at 200Hz
+    private static final int HISTORY_SAMPLES = 2048;
+    private final SensorRing history = new SensorRing(HISTORY_SAMPLES, 3);
+
+    // 5ms = 200Hz, fast response without requiring special permissions
+    private static final int PERIOD_US = 5000;
+    static final int DEFAULT_BATCH_LATENCY_US = 1_000_000;
+    static final int FEATURE_WINDOW = 200;          // 1s at 200Hz
+    private static final long FEATURE_SUMMARY_NANOS = 1_000_000_000L;
+
+    private volatile Delivery delivery = Delivery.BATCHED;
+    private Delivery pendingDelivery;   // waiting for the FIFO flush
+    private boolean autoDelivery = true;
+    private int batchLatencyUs = DEFAULT_BATCH_LATENCY_US;
+    private boolean visible = true;
+    private final SensorBatchStats batchStats = new SensorBatchStats(Delivery.LOW_LATENCY.name(), Delivery.BATCHED.name());
+
+    // current burst, sensor thread only
+    private final Runnable burstEnd = this::onBurstEnd;
+    private boolean burstPending;
+    private int burstEvents;
+    private long burstCpuStartNanos;
+    private float lastX, lastY, lastZ;
+    private boolean hasRaw;
+    private long featureSummaryNanos;
+    private final StringBuilder featureSummary = new StringBuilder("none"); // guarded by itself, reused
+
+    // movements crossing to the main thread, no allocation per event
+    private final Runnable leftOnMain = () -> { MovementListener l = listener; if (l != null) l.onLeft(); };
+    private final Runnable rightOnMain = () -> { MovementListener l = listener; if (l != null) l.onRight(); };
+    private final Runnable middleOnMain = () -> { MovementListener l = listener; if (l != null) l.onMiddle(); };
+    private final Runnable backOnMain = () -> { MovementListener l = listener; if (l != null) l.onBack(); };
+
+    // detection runs in the sensor thread, timing from event timestamps
+    private final GyroPoseClassifier poseClassifier = new GyroPoseClassifier();
+    private final MotionEngine engine = new MotionEngine(SystemClock::elapsedRealtimeNanos, this::onMovement);
 
     GyroManager(Context context) {
         sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
@@ -59,6 +117,35 @@ class GyroManager implements SensorEventListener {
         } else {
             Log.i(TAG, "Gyroscope initialized: " + gyro.getName());
         }
+        accelerometer = sensorManager != null ? sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER) : null;
+        if (accelerometer == null)
+            Log.w(TAG, "Accelerometer not available, poses from gyroscope only");
+        if (gyro != null && gyro.getFifoMaxEventCount() == 0)
+            Log.w(TAG, "Gyroscope has no FIFO, batched delivery wakes per sample");
+        else if (gyro != null)
+            Log.i(TAG, "Gyroscope FIFO: " + gyro.getFifoReservedEventCount() + " reserved, " + gyro.getFifoMaxEventCount() + " max events");
+        sensorThread = new HandlerThread("GyroSensor", Process.THREAD_PRIORITY_URGENT_DISPLAY);
+        sensorThread.start();
+        sensorHandler = new Handler(sensorThread.getLooper());
+        engine.setFeatureWindow(FEATURE_WINDOW);
+        engine.addClassifier(poseClassifier);
+        poseClassifier.setCalibrationListener(() -> {
+            Log.i(TAG, "Calibration complete! Motion detection active.");
+            updateAutoDelivery();
+            mainHandler.post(() -> {
+                CalibrationListener l = calibrationListener;
+                if (l != null)
+                    l.onCalibrationComplete();
+            });
+        });
+    }
+
+    /**
+     * stop the sensors and the sensor thread, the manager can not be started again
+     */
+    void release() {
+        sensorHandler.post(this::stopInSensorThread);
+        sensorThread.quitSafely();
     }
 
     boolean isAvailable() {
@@ -70,23 +157,140 @@ class GyroManager implements SensorEventListener {
             Log.w(TAG, "start called but gyroscope unavailable");
             return;
         }
+        sensorHandler.post(this::startInSensorThread);
+    }
+
+    void stop() {
+        if (sensorManager == null) return;
+        sensorHandler.post(this::stopInSensorThread);
+    }
+
+    private void startInSensorThread() {
         if (started) {
             Log.d(TAG, "start ignored (already started)");
             return;
         }
         started = true;
         firstLogs = 0;
-        // Use a fast but safe sampling rate (5ms = 200Hz)
-        int periodUs = 5000; // 5ms intervals for fast response without requiring special permissions
-        boolean ok = sensorManager.registerListener(this, gyro, periodUs, periodUs);
-        Log.i(TAG, ok ? "Gyro started" : "Failed to start Gyro listener");
+        pendingDelivery = null;
+        if (autoDelivery)
+            delivery = processingEnabled ? Delivery.LOW_LATENCY : Delivery.BATCHED;
+        register();
     }
 
-    void stop() {
-        if (!started || sensorManager == null) return;
+    private void stopInSensorThread() {
+        if (!started) return;
         sensorManager.unregisterListener(this);
         started = false;
-        Log.i(TAG, "Gyro stopped");
+        sensorHandler.removeCallbacks(burstEnd);
+        burstPending = false;
+        batchStats.stop(SystemClock.elapsedRealtimeNanos(), Process.getElapsedCpuTime());
+        Log.i(TAG, "Gyro stopped, " + getBatchStats());
+    }
+
+    /**
+     * fixed delivery mode, disables auto delivery
+     */
+    void setDelivery(Delivery mode) {
+        sensorHandler.post(() -> {
+            autoDelivery = false;
+            requestDelivery(mode);
+        });
+    }
+
+    void setAutoDelivery() {
+        sensorHandler.post(() -> {
+            autoDelivery = true;
+            updateAutoDelivery();
+        });
+    }
+
+    /**
+     * app visible, screen on. auto delivery batches while not visible
+     */
+    void setVisible(boolean visible) {
+        sensorHandler.post(() -> {
+            this.visible = visible;
+            updateAutoDelivery();
+        });
+    }
+
+    Delivery getDelivery() {
+        return delivery;
+    }
+
+    /**
+     * max report latency in batched mode, applies on the next registration
+     */
+    void setBatchLatencyUs(int latencyUs) {
+        sensorHandler.post(() -> batchLatencyUs = latencyUs);
+    }
+
+    /**
+     * gyro and accelerometer window features, refreshed about once per second
+     */
+    String getFeatureSummary() {
+        synchronized (featureSummary) {
+            return featureSummary.toString();
+        }
+    }
+
+    /**
+     * wakeups and CPU time per delivery mode
+     */
+    String getBatchStats() {
+        return batchStats.toString(SystemClock.elapsedRealtimeNanos(), Process.getElapsedCpuTime());
+    }
+
+    private void register() {
+        int latencyUs = delivery == Delivery.BATCHED ? batchLatencyUs : 0;
+        boolean ok = sensorManager.registerListener(this, gyro, PERIOD_US, latencyUs, sensorHandler);
+        Log.i(TAG, ok ? "Gyro started, " + delivery + " latency=" + latencyUs + "us" : "Failed to start Gyro listener");
+        if (accelerometer != null && !sensorManager.registerListener(this, accelerometer, PERIOD_US, latencyUs, sensorHandler))
+            Log.w(TAG, "Failed to start accelerometer listener");
+        batchStats.switchTo(delivery.ordinal(), SystemClock.elapsedRealtimeNanos(), Process.getElapsedCpuTime());
+    }
+
+    /**
+     * switch mode, re-registers the sensors. Samples still in the FIFO are flushed
+     * first and delivered before the switch, see onFlushCompleted()
+     */
+    private void requestDelivery(Delivery mode) {
+        if (mode == (pendingDelivery != null ? pendingDelivery : delivery))
+            return;
+        if (!started) {
+            delivery = mode;
+            return;
+        }
+        Log.i(TAG, "Delivery " + delivery + " -> " + mode);
+        if (delivery == Delivery.BATCHED && sensorManager.flush(this)) {
+            pendingDelivery = mode;
+            return;
+        }
+        applyDelivery(mode);
+    }
+
+    private void applyDelivery(Delivery mode) {
+        pendingDelivery = null;
+        if (!started || mode == delivery)
+            return;
+        sensorManager.unregisterListener(this);
+        delivery = mode;
+        register();
+    }
+
+    private void updateAutoDelivery() {
+        if (!autoDelivery)
+            return;
+        boolean active = processingEnabled && (visible || poseClassifier.isCalibrating());
+        requestDelivery(active ? Delivery.LOW_LATENCY : Delivery.BATCHED);
+    }
+
+    /**
+     * raw gyro rates, written in sensor thread, readable from any thread
+     */
+    SensorRing getHistory() {
+        return history;
     }
 
     void setMovementListener(MovementListener l) {
@@ -98,170 +302,103 @@ class GyroManager implements SensorEventListener {
     }
 
     void setProcessingEnabled(boolean enabled) {
-        processingEnabled = enabled;
         Log.i(TAG, "processingEnabled=" + enabled);
         if (enabled) {
-            // Start interactive calibration sequence
-            startInteractiveCalibration();
-        } else {
-            calibrationPhase = CalibrationPhase.NONE;
-            calibrating = false;
-            currentPose = Pose.MIDDLE; // Reset to middle position
+            CalibrationListener l = calibrationListener;
+            if (l != null)
+                l.onCalibrationStart();
         }
+        sensorHandler.post(() -> applyProcessingEnabled(enabled));
     }
-    
-    private void startInteractiveCalibration() {
-        calibrationPhase = CalibrationPhase.STEADY;
-        phaseStartMs = System.currentTimeMillis();
-        calibrating = true;
-        yawAngle = 0f;
-        pitchAngle = 0f;
-        lastTsNs = 0L;
-        currentPose = Pose.MIDDLE;
-        if (calibrationListener != null) {
-            calibrationListener.onCalibrationStart();
-            calibrationListener.onCalibrationPhase("Hold device steady", 0xFFFFFFFF); // white
+
+    private void applyProcessingEnabled(boolean enabled) {
+        processingEnabled = enabled;
+        if (enabled) {
+            Log.i(TAG, "Calibrating neutral pose, bias " + biasToString());
+            poseClassifier.reset();
+        } else {
+            engine.reset(); // back to neutral pose
         }
-        Log.i(TAG, "Starting interactive calibration - hold device steady");
+        updateAutoDelivery();
     }
 
     @Override
     public void onSensorChanged(SensorEvent event) {
-        if (event.sensor.getType() != Sensor.TYPE_GYROSCOPE) return;
+        if (!burstPending) {
+            // runs after all events of this delivery were dispatched
+            burstPending = true;
+            burstCpuStartNanos = Debug.threadCpuTimeNanos();
+            sensorHandler.post(burstEnd);
+        }
+        burstEvents++;
+        if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+            if (processingEnabled && listener != null)
+                engine.accel(event.timestamp, event.values[0], event.values[1], event.values[2]);
+        } else if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
+            onGyro(event);
+        }
+    }
+
+    private void onGyro(SensorEvent event) {
         if (firstLogs < 3) {
             firstLogs++;
-            Log.d(TAG, String.format("event #%d x=%.4f y=%.4f z=%.4f t=%d", firstLogs, event.values[0], event.values[1], event.values[2], event.timestamp));
+            Log.d(TAG, "event #" + firstLogs + " x=" + event.values[0] + " y=" + event.values[1] + " z=" + event.values[2] + " t=" + event.timestamp);
         }
+        history.append(event.timestamp, event.values[0], event.values[1], event.values[2]);
         if (!processingEnabled || listener == null) return;
 
         final float x = event.values[0]; // pitch rate
         final float y = event.values[1]; // roll rate (unused in detection)
         final float z = event.values[2]; // yaw rate
-        listener.onRaw(x, y, z);
-
-        // Integrate angular velocity into approximate angles (radians)
-        long ts = event.timestamp; // ns
-        if (lastTsNs == 0L) { lastTsNs = ts; return; }
-        float dt = (ts - lastTsNs) / 1_000_000_000f; // seconds
-        lastTsNs = ts;
-        yawAngle += z * dt;
-        pitchAngle += x * dt;
-
-        // Handle interactive calibration phases
-        if (calibrating && calibrationPhase != CalibrationPhase.COMPLETE) {
-            long phaseElapsed = System.currentTimeMillis() - phaseStartMs;
-            if (phaseElapsed >= PHASE_DURATION_MS) {
-                advanceCalibrationPhase();
-            }
-            return; // Don't process movements during calibration
-        }
+        lastX = x;
+        lastY = y;
+        lastZ = z;
+        hasRaw = true;
+        engine.gyro(event.timestamp, x, y, z);
+    }
 
-        // Clamp to avoid runaway drift during long inactivity
-        final float MAX_ANGLE = (float)Math.toRadians(90);
-        yawAngle = Math.max(-MAX_ANGLE, Math.min(MAX_ANGLE, yawAngle));
-        pitchAngle = Math.max(-MAX_ANGLE, Math.min(MAX_ANGLE, pitchAngle));
-
-        // Determine pose from angles with VERY SENSITIVE thresholds for fast response
-        final float YAW_THRESH = (float)Math.toRadians(6);    // left/right (reduced from 10 to 6 degrees)
-        final float PITCH_THRESH = (float)Math.toRadians(6);  // forward/back (reduced from 10 to 6 degrees)
-        
-        Pose newPose = Pose.MIDDLE; // Default to middle/neutral
-        
-        // Priority: check for stronger movements first
-        if (Math.abs(yawAngle) > Math.abs(pitchAngle)) {
-            // Horizontal movement is stronger
-            if (yawAngle > YAW_THRESH) {
-                newPose = Pose.RIGHT;
-            } else if (yawAngle < -YAW_THRESH) {
-                newPose = Pose.LEFT;
-            }
-        } else {
-            // Vertical movement is stronger
-            if (pitchAngle > PITCH_THRESH) {
-                newPose = Pose.MIDDLE; // forward tilt (jumping up/forward)
-            } else if (pitchAngle < -PITCH_THRESH) {
-                newPose = Pose.BACK; // backward tilt
+    private void onBurstEnd() {
+        burstPending = false;
+        batchStats.onBurst(burstEvents, Debug.threadCpuTimeNanos() - burstCpuStartNanos);
+        burstEvents = 0;
+        MovementListener l = listener;
+        if (hasRaw && l != null)
+            l.onRaw(lastX, lastY, lastZ);
+        hasRaw = false;
+        long now = SystemClock.elapsedRealtimeNanos();
+        if (now - featureSummaryNanos >= FEATURE_SUMMARY_NANOS) {
+            featureSummaryNanos = now;
+            synchronized (featureSummary) {
+                featureSummary.setLength(0);
+                engine.getGyroFeatures().appendTo(featureSummary.append("gyro "));
+                engine.getAccelFeatures().appendTo(featureSummary.append("; accel "));
             }
         }
+    }
 
-        long now = System.currentTimeMillis();
-        final long DEBOUNCE_MS = 150; // Reduced from 300ms to 150ms for much faster response
-        final float MIN_MOVEMENT = (float)Math.toRadians(3); // Reduced from 5 to 3 degrees for more sensitive detection
-        
-        // Only trigger if we have significant movement and enough time has passed
-        boolean hasSignificantMovement = Math.abs(yawAngle) > MIN_MOVEMENT || Math.abs(pitchAngle) > MIN_MOVEMENT;
-        
-        if (newPose != currentPose && hasSignificantMovement && now - lastEventMs > DEBOUNCE_MS) {
-            currentPose = newPose;
-            lastEventMs = now;
-            Log.d(TAG, "pose=" + currentPose + " yaw=" + String.format("%.1f", Math.toDegrees(yawAngle)) + "° pitch=" + String.format("%.1f", Math.toDegrees(pitchAngle)) + "°");
-            // Notify listener and reset baseline to make new position the reference
-            switch (currentPose) {
-                case LEFT: listener.onLeft(); break;
-                case RIGHT: listener.onRight(); break;
-                case MIDDLE: listener.onMiddle(); break;
-                case BACK: listener.onBack(); break;
-            }
-            yawAngle = 0f;
-            pitchAngle = 0f;
-            lastTsNs = 0L; // reset integration baseline
-        }
+    /**
+     * gyro bias estimate, sensor thread only
+     */
+    private String biasToString() {
+        GyroBiasEstimator e = poseClassifier.getBiasEstimator();
+        if (!e.hasEstimate())
+            return "unknown";
+        return "x=" + e.getBias(0) + " y=" + e.getBias(1) + " z=" + e.getBias(2) + " rad/s, "
+                + e.getStationaryBlockCount() + " stationary blocks";
     }
-    
-    private void advanceCalibrationPhase() {
-        switch (calibrationPhase) {
-            case STEADY:
-                calibrationPhase = CalibrationPhase.LEFT;
-                phaseStartMs = System.currentTimeMillis();
-                yawAngle = 0f; // Reset angles for next phase
-                pitchAngle = 0f;
-                if (calibrationListener != null) {
-                    calibrationListener.onCalibrationPhase("🔄 Tilt LEFT", 0xFFFFFF00); // yellow
-                }
-                Log.i(TAG, "Calibration: Tilt LEFT");
-                break;
-            case LEFT:
-                calibrationPhase = CalibrationPhase.RIGHT;
-                phaseStartMs = System.currentTimeMillis();
-                yawAngle = 0f;
-                pitchAngle = 0f;
-                if (calibrationListener != null) {
-                    calibrationListener.onCalibrationPhase("🔄 Tilt RIGHT", 0xFF00FF00); // green
-                }
-                Log.i(TAG, "Calibration: Tilt RIGHT");
-                break;
-            case RIGHT:
-                calibrationPhase = CalibrationPhase.FORWARD;
-                phaseStartMs = System.currentTimeMillis();
-                yawAngle = 0f;
-                pitchAngle = 0f;
-                if (calibrationListener != null) {
-                    calibrationListener.onCalibrationPhase("🔄 Tilt FORWARD", 0xFFFFFFFF); // white
-                }
-                Log.i(TAG, "Calibration: Tilt FORWARD");
-                break;
-            case FORWARD:
-                calibrationPhase = CalibrationPhase.BACK;
-                phaseStartMs = System.currentTimeMillis();
-                yawAngle = 0f;
-                pitchAngle = 0f;
-                if (calibrationListener != null) {
-                    calibrationListener.onCalibrationPhase("🔄 Tilt BACK", 0xFFFF00FF); // pink/magenta
-                }
-                Log.i(TAG, "Calibration: Tilt BACK");
-                break;
-            case BACK:
-                calibrationPhase = CalibrationPhase.COMPLETE;
-                calibrating = false;
-                yawAngle = 0f;
-                pitchAngle = 0f;
-                if (calibrationListener != null) {
-                    calibrationListener.onCalibrationComplete();
-                }
-                Log.i(TAG, "Calibration complete! Motion detection active.");
-                break;
-            default:
-                break;
+
+    @Override
+    public void onFlushCompleted(Sensor sensor) {
+        if (sensor == gyro && pendingDelivery != null)
+            applyDelivery(pendingDelivery);
+    }
+
+    private void onMovement(MovementEvent event) {
+        switch (event.getMovement()) {
+            case LEFT: mainHandler.post(leftOnMain); break;
+            case RIGHT: mainHandler.post(rightOnMain); break;
+            case FORWARD: mainHandler.post(middleOnMain); break;
+            case BACK: mainHandler.post(backOnMain); break;
         }
     }
 
@@ -0,0 +1,350 @@
+package com.example.kineticpulsemobileapp;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * split the ESP32 text stream into flat JSON objects and remaining text.
+ *
+ * sample: {"t":ms,"ax":..,"ay":..,"az":..,"gx":..,"gy":..,"gz":..,"mm":..}
+ * status: {"state":"GYRO_ON"|"GYRO_OFF"}, {"cal":"started"|"ok"}, {"pong":true},
+ *         {"pong":id,"t":ms}, {"rate":hz}, {"fmt":"bin"|"json"}
+ *
+ * Over BLE the firmware sends one object per notification without line end,
+ * so objects are delimited by braces, not by lines. An object starts with '{'
+ * at the beginning of a line or directly after the previous object and must
+ * end before the next line end, else it is passed on as text.
+ * Objects spanning chunks are collected in an internal buffer.
+ *
+ * Objects are parsed with a small pull parser for flat objects, values are
+ * only compared or converted, never copied into Strings.
+ * Samples are reported in a reused Sample and not passed on, like binary
+ * sample frames. Status objects are reported with typed callbacks and also
+ * passed on as text line, as all other objects (e.g. {"error":"bad_cmd"}),
+ * so they stay visible in the terminal.
+ *
+ * Decoding does not allocate. Text ranges and the sample are only valid during the callback.
+ */
+final class JsonSampleDecoder {
+
+    static final int MAX_OBJECT_LENGTH = 256;
+
+    interface Listener {
+        void onSample(Sample sample);
+        void onState(boolean gyroOn);
+        void onCalibration(boolean done);
+        /**
+         * reply to "PING id" with the device time, both -1 for the reply to "PING"
+         */
+        void onPong(long id, long deviceTimeMs);
+        void onRate(int hz);
+        void onFormat(boolean binary);
+        void onText(byte[] buf, int offset, int length);
+    }
+
+    static final class Sample {
+        long timeMs;
+        float ax, ay, az;   // g
+        float gx, gy, gz;   // dps
+        float mm;           // movement magnitude computed by the firmware
+    }
+
+    private static final byte[] NEWLINE = {'\n'};
+    private static final int INCOMPLETE = -1, BROKEN = -2;
+
+    // keys, index is the bit in the seen mask
+    private static final int T = 0, AX = 1, AY = 2, AZ = 3, GX = 4, GY = 5, GZ = 6, MM = 7;
+    private static final int STATE = 8, CAL = 9, PONG = 10, RATE = 11, FMT = 12;
+    private static final byte[][] KEYS = ascii("t", "ax", "ay", "az", "gx", "gy", "gz", "mm", "state", "cal", "pong", "rate", "fmt");
+    private static final int SAMPLE_REQUIRED = 1 << T | 1 << AX | 1 << AY | 1 << AZ;
+
+    private static final byte[][] STATE_VALUES = ascii("GYRO_OFF", "GYRO_ON");
+    private static final byte[][] CAL_VALUES = ascii("started", "ok");
+    private static final byte[][] FMT_VALUES = ascii("json", "bin");
+    private static final byte[][] PONG_VALUES = ascii("false", "true");
+    private static final long NO_PONG = -2;
+
+    private final Listener listener;
+    private final Sample sample = new Sample();
+    private final byte[] partial = new byte[MAX_OBJECT_LENGTH];
+    private int partialLength;
+    private boolean inObject, inString, escape, tooLong;
+    private boolean lineStart = true;
+    private int brokenAt;
+    private long samples;
+    private long errors;
+
+    // pull parser state, only valid during decode()
+    private byte[] buf;
+    private int pos, end;
+    private int valueStart, valueEnd;
+    private boolean valueIsString;
+
+    JsonSampleDecoder(Listener listener) {
+        this.listener = listener;
+    }
+
+    void append(byte[] data, int offset, int length) {
+        int pos = offset;
+        int end = offset + length;
+        while (pos < end) {
+            if (!inObject) {
+                int start = pos;
+                while (pos < end && !(lineStart && data[pos] == '{')) {
+                    byte b = data[pos++];
+                    if (b == '\n' || b == '\r')
+                        lineStart = true;
+                    else if (b != ' ' && b != '\t')
+                        lineStart = false;
+                }
+                if (pos > start)
+                    listener.onText(data, start, pos - start);
+                if (pos == end)
+                    return;
+                inObject = true;
+                inString = escape = tooLong = false;
+                partialLength = 0;
+            }
+            int objectEnd = scan(data, pos, end);
+            if (objectEnd == INCOMPLETE) {
+                collect(data, pos, end);
+                return;
+            }
+            inObject = false;
+            if (objectEnd == BROKEN) {
+                // no JSON object, pass on as text, the line end is handled as text
+                errors++;
+                if (partialLength > 0 && !tooLong)
+                    listener.onText(partial, 0, partialLength);
+                if (brokenAt > pos)
+                    listener.onText(data, pos, brokenAt - pos);
+                partialLength = 0;
+                pos = brokenAt;
+                continue;
+            }
+            if (partialLength == 0 && !tooLong) {
+                decode(data, pos, objectEnd); // complete object in chunk, decode in place
+            } else {
+                collect(data, pos, objectEnd);
+                if (tooLong)
+                    errors++;
+                else
+                    decode(partial, 0, partialLength);
+                partialLength = 0;
+            }
+            lineStart = true;
+            pos = objectEnd;
+        }
+    }
+
+    void reset() {
+        inObject = inString = escape = tooLong = false;
+        partialLength = 0;
+        lineStart = true;
+    }
+
+    long getSampleCount() {
+        return samples;
+    }
+
+    /**
+     * objects that could not be decoded, were too long or interrupted by a line end
+     */
+    long getErrorCount() {
+        return errors;
+    }
+
+    /**
+     * continue scanning the current object. returns position after the closing brace,
+     * INCOMPLETE if the object continues in the next chunk or BROKEN at a line end
+     */
+    private int scan(byte[] data, int pos, int end) {
+        for (; pos < end; pos++) {
+            byte b = data[pos];
+            if (b == '\n' || b == '\r') {
+                brokenAt = pos;
+                return BROKEN;
+            }
+            if (inString) {
+                if (escape)
+                    escape = false;
+                else if (b == '\\')
+                    escape = true;
+                else if (b == '"')
+                    inString = false;
+            } else if (b == '"') {
+                inString = true;
+            } else if (b == '}') {
+                return pos + 1;
+            }
+        }
+        return INCOMPLETE;
+    }
+
+    private void collect(byte[] data, int pos, int end) {
+        int n = end - pos;
+        if (tooLong || partialLength + n > partial.length) {
+            tooLong = true;
+            return;
+        }
+        System.arraycopy(data, pos, partial, partialLength, n);
+        partialLength += n;
+    }
+
+    private void decode(byte[] data, int start, int stop) {
+        buf = data;
+        pos = start + 1; // after '{'
+        end = stop - 1;  // at '}'
+        int seen = 0;
+        int state = -1, cal = -1, rate = -1, fmt = -1;
+        long pong = NO_PONG;
+        sample.timeMs = 0;
+        sample.ax = sample.ay = sample.az = sample.gx = sample.gy = sample.gz = sample.mm = 0;
+        boolean valid = true;
+        try {
+            skipWhitespace();
+            while (valid && pos < end) {
+                if (!readValue() || !valueIsString) {
+                    valid = false;
+                    break;
+                }
+                int key = match(KEYS);
+                skipWhitespace();
+                if (!consume(':') || !readValue()) {
+                    valid = false;
+                    break;
+                }
+                if (key >= 0) {
+                    seen |= 1 << key;
+                    switch (key) {
+                        case T:     sample.timeMs = integerValue(); break;
+                        case AX:    sample.ax = floatValue(); break;
+                        case AY:    sample.ay = floatValue(); break;
+                        case AZ:    sample.az = floatValue(); break;
+                        case GX:    sample.gx = floatValue(); break;
+                        case GY:    sample.gy = floatValue(); break;
+                        case GZ:    sample.gz = floatValue(); break;
+                        case MM:    sample.mm = floatValue(); break;
+                        case STATE: state = match(STATE_VALUES); break;
+                        case CAL:   cal = match(CAL_VALUES); break;
+                        case PONG:  pong = pongValue(); break;
+                        case RATE:  rate = (int) integerValue(); break;
+                        case FMT:   fmt = match(FMT_VALUES); break;
+                    }
+                }
+                skipWhitespace();
+                if (pos < end && (!consume(',') || pos == end))
+                    valid = false; // no separator or trailing ','
+            }
+        } catch (NumberFormatException e) {
+            valid = false;
+        }
+        buf = null;
+        if (valid && (seen & SAMPLE_REQUIRED) == SAMPLE_REQUIRED) {
+            samples++;
+            listener.onSample(sample);
+            return;
+        }
+        if (!valid) {
+            errors++;
+        } else {
+            if (state >= 0) listener.onState(state == 1);
+            if (cal >= 0)   listener.onCalibration(cal == 1);
+            if (pong != NO_PONG) listener.onPong(pong, pong >= 0 && (seen & 1 << T) != 0 ? sample.timeMs : -1);
+            if (rate >= 0)  listener.onRate(rate);
+            if (fmt >= 0)   listener.onFormat(fmt == 1);
+        }
+        listener.onText(data, start, stop - start);
+        listener.onText(NEWLINE, 0, 1);
+    }
+
+    private void skipWhitespace() {
+        while (pos < end && (buf[pos] == ' ' || buf[pos] == '\t'))
+            pos++;
+    }
+
+    private boolean consume(char c) {
+        if (pos < end && buf[pos] == c) {
+            pos++;
+            skipWhitespace();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * next string (without quotes) or literal/number as value range
+     */
+    private boolean readValue() {
+        if (pos >= end)
+            return false;
+        if (buf[pos] == '"') {
+            valueIsString = true;
+            valueStart = ++pos;
+            while (pos < end && buf[pos] != '"')
+                pos += buf[pos] == '\\' ? 2 : 1;
+            if (pos >= end)
+                return false;
+            valueEnd = pos++;
+            return true;
+        }
+        valueIsString = false;
+        valueStart = pos;
+        while (pos < end && buf[pos] != ',' && buf[pos] != ' ' && buf[pos] != '\t')
+            pos++;
+        valueEnd = pos;
+        return valueEnd > valueStart;
+    }
+
+    /**
+     * index of the value in candidates, or -1
+     */
+    private int match(byte[][] candidates) {
+        int length = valueEnd - valueStart;
+        for (int i = 0; i < candidates.length; i++) {
+            byte[] candidate = candidates[i];
+            if (candidate.length != length)
+                continue;
+            int j = 0;
+            while (j < length && buf[valueStart + j] == candidate[j])
+                j++;
+            if (j == length)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * -1 for true, id for a number, NO_PONG for false
+     */
+    private long pongValue() {
+        int literal = match(PONG_VALUES);
+        if (literal >= 0)
+            return literal == 1 ? -1 : NO_PONG;
+        return integerValue();
+    }
+
+    private float floatValue() {
+        if (valueIsString)
+            throw new NumberFormatException();
+        return AccelFrameParser.parseFloat(buf, valueStart, valueEnd);
+    }
+
+    private long integerValue() {
+        if (valueIsString || valueEnd - valueStart > 18)
+            throw new NumberFormatException();
+        long value = 0;
+        for (int i = valueStart; i < valueEnd; i++) {
+            if (buf[i] < '0' || buf[i] > '9')
+                throw new NumberFormatException();
+            value = value * 10 + (buf[i] - '0');
+        }
+        return value;
+    }
+
+    private static byte[][] ascii(String... values) {
+        byte[][] result = new byte[values.length][];
+        for (int i = 0; i < values.length; i++)
+            result[i] = values[i].getBytes(StandardCharsets.US_ASCII);
+        return result;
+    }
+}
@@ -36,6 +36,19 @@ public class MainActivity extends AppCompatActivity implements FragmentManager.O
         return true;
     }
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (gyroManager != null) gyroManager.setVisible(true);
+    }
+
+    @Override
+    protected void onStop() {
+        // screen off or app in background, auto delivery batches the gyro
+        if (gyroManager != null) gyroManager.setVisible(false);
+        super.onStop();
+    }
+
     @Override
     protected void onResume() {
         super.onResume();
@@ -50,6 +63,12 @@ public class MainActivity extends AppCompatActivity implements FragmentManager.O
         super.onPause();
     }
 
+    @Override
+    protected void onDestroy() {
+        if (gyroManager != null) gyroManager.release();
+        super.onDestroy();
+    }
+
     public void startGyro() {
         if (gyroManager != null) gyroManager.start();
     }
@@ -0,0 +1,207 @@
+package com.example.kineticpulsemobileapp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * dispatch text frames to handlers registered for a prefix or a phrase.
+ * use chain: FrameAssembler -> SerialProcessor -> MessageDispatcher -> handler
+ *
+ * All patterns are compiled into one Aho-Corasick automaton over bytes, so each
+ * frame is scanned once, in O(frame length) regardless of the number of patterns.
+ * Prefixes are phrases anchored with a virtual start-of-frame symbol.
+ *
+ * If several patterns match, one handler is called: prefixes win over phrases,
+ * within each kind the pattern registered first wins.
+ *
+ * Registration is thread safe and can happen while frames are dispatched,
+ * the automaton is rebuilt and published on each registration.
+ */
+final class MessageDispatcher {
+
+    interface Handler {
+        /**
+         * complete frame, only valid during the call
+         */
+        void onMessage(byte[] buf, int offset, int length);
+    }
+
+    private static final int NO_MATCH = Integer.MAX_VALUE;
+
+    private static final class Pattern {
+        final byte[] bytes;
+        final boolean prefix;
+        final Handler handler;
+
+        Pattern(String text, boolean prefix, Handler handler) {
+            this.bytes = text.getBytes(StandardCharsets.UTF_8);
+            this.prefix = prefix;
+            this.handler = handler;
+        }
+    }
+
+    /**
+     * immutable compiled form. next[state * alphabet + symbol] is the full
+     * transition function, failure links are already folded in
+     */
+    private static final class Automaton {
+        final byte[] symbols;   // byte -> symbol, 0 for bytes in no pattern
+        final int alphabet;     // symbols incl. 0 and start-of-frame
+        final int[] next;
+        final int[] match;      // best rank ending in state, NO_MATCH if none
+        final Handler[] handlers; // by rank
+
+        Automaton(byte[] symbols, int alphabet, int[] next, int[] match, Handler[] handlers) {
+            this.symbols = symbols;
+            this.alphabet = alphabet;
+            this.next = next;
+            this.match = match;
+            this.handlers = handlers;
+        }
+    }
+
+    private final List<Pattern> patterns = new ArrayList<>(); // guarded by this
+    private volatile Automaton automaton = compile(new ArrayList<>());
+
+    /**
+     * handle frames starting with prefix
+     */
+    synchronized void registerPrefix(String prefix, Handler handler) {
+        register(new Pattern(prefix, true, handler));
+    }
+
+    /**
+     * handle frames containing phrase
+     */
+    synchronized void registerPhrase(String phrase, Handler handler) {
+        register(new Pattern(phrase, false, handler));
+    }
+
+    private void register(Pattern pattern) {
+        if (pattern.bytes.length == 0)
+            throw new IllegalArgumentException("empty pattern");
+        patterns.add(pattern);
+        automaton = compile(patterns);
+    }
+
+    /**
+     * returns false if no pattern matched
+     */
+    boolean dispatch(byte[] buf, int offset, int length) {
+        Automaton a = automaton;
+        int alphabet = a.alphabet;
+        int state = a.next[alphabet - 1]; // start-of-frame symbol from root
+        int best = a.match[state];
+        for (int i = offset, end = offset + length; i < end && best != 0; i++) {
+            state = a.next[state * alphabet + (a.symbols[buf[i] & 0xff] & 0xff)];
+            int rank = a.match[state];
+            if (rank < best)
+                best = rank;
+        }
+        if (best == NO_MATCH)
+            return false;
+        a.handlers[best].onMessage(buf, offset, length);
+        return true;
+    }
+
+    /**
+     * true if the bytes from offset to end, without surrounding whitespace,
+     * equal the ASCII word ignoring case
+     */
+    static boolean equalsIgnoreCase(byte[] buf, int offset, int end, String word) {
+        while (offset < end && (buf[offset] & 0xff) <= ' ')
+            offset++;
+        while (end > offset && (buf[end - 1] & 0xff) <= ' ')
+            end--;
+        if (end - offset != word.length())
+            return false;
+        for (int i = 0; i < word.length(); i++) {
+            int b = buf[offset + i];
+            int c = word.charAt(i);
+            boolean letter = (c | 0x20) >= 'a' && (c | 0x20) <= 'z';
+            if (b != c && !(letter && (b | 0x20) == (c | 0x20)))
+                return false;
+        }
+        return true;
+    }
+
+    private static Automaton compile(List<Pattern> patterns) {
+        // symbols: 0 = byte in no pattern, 1..n = pattern bytes, n+1 = start of frame
+        byte[] symbols = new byte[256];
+        int alphabet = 1;
+        for (Pattern pattern : patterns) {
+            for (byte b : pattern.bytes) {
+                if (symbols[b & 0xff] == 0) {
+                    if (alphabet == 255)
+                        throw new IllegalStateException("too many distinct pattern bytes");
+                    symbols[b & 0xff] = (byte) alphabet++;
+                }
+            }
+        }
+        int startOfFrame = alphabet++;
+
+        // ranks: prefixes first, then phrases, each in registration order
+        List<Pattern> ranked = new ArrayList<>();
+        for (Pattern pattern : patterns)
+            if (pattern.prefix)
+                ranked.add(pattern);
+        for (Pattern pattern : patterns)
+            if (!pattern.prefix)
+                ranked.add(pattern);
+
+        // trie, goto[state * alphabet + symbol], -1 if missing
+        int maxStates = 2;
+        for (Pattern pattern : patterns)
+            maxStates += pattern.bytes.length + 1;
+        int[] next = new int[maxStates * alphabet];
+        Arrays.fill(next, -1);
+        int[] match = new int[maxStates];
+        Arrays.fill(match, NO_MATCH);
+        int states = 1;
+        Handler[] handlers = new Handler[ranked.size()];
+        for (int rank = 0; rank < ranked.size(); rank++) {
+            Pattern pattern = ranked.get(rank);
+            handlers[rank] = pattern.handler;
+            int state = 0;
+            for (int i = pattern.prefix ? -1 : 0; i < pattern.bytes.length; i++) {
+                int symbol = i < 0 ? startOfFrame : symbols[pattern.bytes[i] & 0xff] & 0xff;
+                if (next[state * alphabet + symbol] < 0)
+                    next[state * alphabet + symbol] = states++;
+                state = next[state * alphabet + symbol];
+            }
+            match[state] = Math.min(match[state], rank);
+        }
+
+        // breadth first: failure links folded into the transition table,
+        // match includes the best match of the failure state (suffix patterns)
+        int[] fail = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < alphabet; symbol++) {
+            int target = next[symbol];
+            if (target < 0) {
+                next[symbol] = 0;
+            } else {
+                fail[target] = 0;
+                queue.add(target);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            match[state] = Math.min(match[state], match[fail[state]]);
+            for (int symbol = 0; symbol < alphabet; symbol++) {
+                int target = next[state * alphabet + symbol];
+                int fallback = next[fail[state] * alphabet + symbol];
+                if (target < 0) {
+                    next[state * alphabet + symbol] = fallback;
+                } else {
+                    fail[target] = fallback;
+                    queue.add(target);
+                }
+            }
+        }
+        return new Automaton(symbols, alphabet, Arrays.copyOf(next, states * alphabet), Arrays.copyOf(match, states), handlers);
+    }
+}
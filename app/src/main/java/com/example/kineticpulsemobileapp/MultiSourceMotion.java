@@ -0,0 +1,186 @@
+package com.example.kineticpulsemobileapp;
+
+import com.example.kineticpulsemobileapp.motion.AgreementFilter;
+import com.example.kineticpulsemobileapp.motion.MotionEngine;
+import com.example.kineticpulsemobileapp.motion.Movement;
+import com.example.kineticpulsemobileapp.motion.PeakClassifier;
+import com.example.kineticpulsemobileapp.motion.SampleMerger;
+
+/**
+ * movement detection from the ESP32 and remote phones together, SECOND_PHONE_GYRO mode.
+ * use chain: SerialProcessor samples, RemotePhoneStream -> MultiSourceMotion -> SampleMerger
+ *            -> MotionEngine per source -> AgreementFilter -> Listener
+ *
+ * Samples of all sources are in phone time (elapsedRealtimeNanos) and merged in event
+ * time order with a REORDER_WINDOW_NANOS reorder window. A source is active from its
+ * first sample until deactivate() or SOURCE_TIMEOUT_NANOS without samples, so a
+ * connected ESP32 that only sends ACCEL text frames does not wait for agreement.
+ * While two or more sources are active, every source has its own classifier with
+ * thresholds lowered by THRESHOLD_SCALE and a movement is reported once two of them
+ * agree within AGREEMENT_NANOS. A single active source uses the full thresholds and
+ * is reported right away.
+ * Engines are ticked with the merged time (now - REORDER_WINDOW_NANOS) on every sample,
+ * so a source that pauses within a peak still reports it, and once more before a
+ * source is deactivated and its engine reset.
+ *
+ * Source ESP32 is the serial device (accel in g), sources from FIRST_REMOTE on are
+ * remote phones (gyro in rad/s). Sources call from their own threads, samples are
+ * merged under the lock and the listener is called with it held, it must only hand over.
+ */
+final class MultiSourceMotion {
+
+    static final int ESP32 = 0;
+    static final int FIRST_REMOTE = 1;
+    static final int SOURCES = 4;                            // ESP32 and up to 3 remote phones
+    static final long REORDER_WINDOW_NANOS = 100_000_000L;   // BLE and Wi-Fi delay jitter
+    static final long AGREEMENT_NANOS = 200_000_000L;
+    static final float THRESHOLD_SCALE = 0.7f;               // only with agreement of two sources
+    static final long SOURCE_TIMEOUT_NANOS = 1_000_000_000L;
+    private static final int BUFFER_SAMPLES = 1024;          // window at 4 sources, 2 sensors, 500Hz
+
+    interface Listener {
+        void onMovement(Movement movement, long sampleNanos);
+    }
+
+    private final MotionEngine.Clock clock;
+    private final SampleMerger merger;
+    private final MotionEngine[] engines = new MotionEngine[SOURCES];
+    private final PeakClassifier[] classifiers = new PeakClassifier[SOURCES];
+    private final long[] lastSampleNanos = new long[SOURCES]; // clock time
+    private final AgreementFilter agreement;
+    private float thresholdScale;
+
+    MultiSourceMotion(MotionEngine.Clock clock, Listener listener) {
+        this.clock = clock;
+        agreement = new AgreementFilter(SOURCES, AGREEMENT_NANOS, listener::onMovement);
+        merger = new SampleMerger(SOURCES, BUFFER_SAMPLES, REORDER_WINDOW_NANOS, this::merged);
+        for (int i = 0; i < SOURCES; i++) {
+            int source = i;
+            engines[i] = new MotionEngine(clock, event -> agreement.onMovement(source, event.getMovement(), event.getSampleNanos()));
+        }
+        updateRequired();
+    }
+
+    /**
+     * source stopped, e.g. disconnected. It no longer holds back merging or counts for
+     * agreement until its next sample
+     */
+    synchronized void deactivate(int source) {
+        setActive(source, false);
+    }
+
+    synchronized void sample(int source, int kind, long timeNanos, float x, float y, float z) {
+        long now = received(source);
+        merger.offer(source, kind, timeNanos, x, y, z);
+        advance(now);
+    }
+
+    /**
+     * ESP32 sample, accel in g, gyro in dps, see SerialProcessor.SampleListener
+     */
+    synchronized void espSample(long timeNanos, float ax, float ay, float az, float gx, float gy, float gz) {
+        long now = received(ESP32);
+        merger.offer(ESP32, SampleMerger.ACCEL, timeNanos, ax, ay, az);
+        merger.offer(ESP32, SampleMerger.GYRO, timeNanos, gx, gy, gz);
+        advance(now);
+    }
+
+    /**
+     * start over, e.g. when the mode is entered. buffered samples are dropped
+     */
+    synchronized void reset() {
+        merger.clear();
+        agreement.reset();
+        for (MotionEngine engine : engines)
+            engine.reset();
+    }
+
+    /**
+     * process buffered samples, e.g. when the mode is left
+     */
+    synchronized void flush() {
+        merger.flush();
+    }
+
+    synchronized String getStats() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("merged=").append(merger.getMergedCount())
+                .append(", buffered=").append(merger.getBufferedCount())
+                .append(", forced=").append(merger.getForcedCount())
+                .append(", late=");
+        for (int i = 0; i < SOURCES; i++)
+            sb.append(i == 0 ? "" : "/").append(merger.getLateCount(i));
+        sb.append(", active=");
+        for (int i = 0; i < SOURCES; i++)
+            sb.append(merger.isActive(i) ? '1' : '0');
+        sb.append(", confirmed=").append(agreement.getConfirmedCount())
+                .append(", unconfirmed=").append(agreement.getUnconfirmedCount())
+                .append(", required=").append(agreement.getRequired());
+        return sb.toString();
+    }
+
+    /**
+     * activate source with its first sample, deactivate sources without samples. returns now.
+     * timed out sources go first, their pending peaks are reported with the old thresholds
+     */
+    private long received(int source) {
+        long now = clock.nanoTime();
+        lastSampleNanos[source] = now;
+        for (int i = 0; i < SOURCES; i++) {
+            if (merger.isActive(i) && now - lastSampleNanos[i] > SOURCE_TIMEOUT_NANOS)
+                setActive(i, false);
+        }
+        if (!merger.isActive(source))
+            setActive(source, true);
+        return now;
+    }
+
+    /**
+     * emit samples due and let engines end peaks of sources that paused
+     */
+    private void advance(long now) {
+        merger.advance(now);
+        long mergedNanos = now - REORDER_WINDOW_NANOS;
+        for (int i = 0; i < SOURCES; i++) {
+            if (merger.isActive(i))
+                engines[i].tick(mergedNanos);
+        }
+    }
+
+    private void setActive(int source, boolean active) {
+        if (merger.isActive(source) == active)
+            return;
+        merger.setActive(source, active);
+        if (!active)
+            engines[source].tick(clock.nanoTime()); // report a pending peak before it is reset
+        engines[source].reset();
+        updateRequired();
+    }
+
+    private void merged(int source, int kind, long timeNanos, float x, float y, float z) {
+        if (kind == SampleMerger.ACCEL)
+            engines[source].accel(timeNanos, x, y, z);
+        else
+            engines[source].gyro(timeNanos, x, y, z);
+    }
+
+    private void updateRequired() {
+        int active = 0;
+        for (int i = 0; i < SOURCES; i++) {
+            if (merger.isActive(i))
+                active++;
+        }
+        int required = Math.min(2, active);
+        agreement.setRequired(required);
+        float scale = required >= 2 ? THRESHOLD_SCALE : 1;
+        if (scale == thresholdScale)
+            return;
+        thresholdScale = scale;
+        for (int i = 0; i < SOURCES; i++) {
+            if (classifiers[i] != null)
+                engines[i].removeClassifier(classifiers[i]);
+            classifiers[i] = i == ESP32 ? PeakClassifier.espAccelerometer(scale) : PeakClassifier.phoneGyroscope(scale);
+            engines[i].addClassifier(classifiers[i]);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.kineticpulsemobileapp;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.kineticpulsemobileapp.motion.SampleMerger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * sensor samples of another phone over TCP, stamped with the phone time of this phone.
+ * use chain: TcpSocket -> RemotePhoneStream -> JsonSampleDecoder, ClockSync -> MultiSourceMotion
+ *
+ * The remote phone sends JSON samples like the ESP32 firmware (see JsonSampleDecoder:
+ * device time in ms, accel in g, gyro in dps) and answers "PING id" with
+ * {"pong":id,"t":ms}, e.g. tools/serial_simulator.py --format json. PINGs feed a
+ * ClockSync, every SYNC_PING_INTERVAL_MS until it is synchronized, then every
+ * PING_INTERVAL_MS. After UNANSWERED_PINGS_WARNING pings in a row without a timed pong
+ * a warning is logged, once until the next pong. Such a peer never synchronizes and contributes
+ * no samples. Device times are mapped to elapsedRealtimeNanos, samples received
+ * before the first synchronization are held back in a ring of PENDING_SAMPLES and
+ * passed on once they can be mapped, oldest dropped. Gyro is passed on in rad/s like
+ * the phone gyroscope.
+ *
+ * A lost or failed connection is retried on the scheduler, after RECONNECT_MIN_MS
+ * doubling up to RECONNECT_MAX_MS, until disconnect().
+ *
+ * Reading and decoding run in the socket thread, pings and reconnects in the scheduler thread.
+ * Owners share newReadExecutor() and newScheduler() between all remote phones.
+ */
+final class RemotePhoneStream implements SerialListener {
+
+    private static final String TAG = "RemotePhoneStream";
+    static final long PING_INTERVAL_MS = 1000;
+    static final long SYNC_PING_INTERVAL_MS = 100;
+    static final int UNANSWERED_PINGS_WARNING = 10;
+    static final long RECONNECT_MIN_MS = 1000;
+    static final long RECONNECT_MAX_MS = 30_000;
+    private static final int PENDING_SAMPLES = 512;          // about 1s at 500Hz
+    private static final int READ_BUFFER_COUNT = 8;
+    private static final int READ_BUFFER_SIZE = 4096;
+    private static final int READ_THREAD_COUNT = MultiSourceMotion.SOURCES - MultiSourceMotion.FIRST_REMOTE; // one read loop per remote phone
+    private static final long READ_THREAD_KEEP_ALIVE_S = 30;
+    private static final float DEG_TO_RAD = (float) (Math.PI / 180);
+
+    private static final class RemoteThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        RemoteThreadFactory(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "RemotePhone-" + name + "-" + count.incrementAndGet());
+        }
+    }
+
+    private final String address;
+    private final int source;
+    private final MultiSourceMotion motion;
+    private final ScheduledExecutorService scheduler;
+    private final BufferPool bufferPool = new BufferPool(READ_BUFFER_COUNT, READ_BUFFER_SIZE);
+    private final Runnable pinger = this::ping;
+    private final Runnable reconnector = this::open;
+    private volatile TcpSocket socket;
+    private volatile Executor executor;
+    private volatile ScheduledFuture<?> pingFuture;
+    private volatile ScheduledFuture<?> reconnectFuture;
+    private volatile boolean connected;
+    private volatile boolean closed;
+
+    // guarded by this
+    private final ClockSync clockSync = new ClockSync();
+    private final JsonSampleDecoder decoder;
+    private final SensorRing pending = new SensorRing(PENDING_SAMPLES, 6);
+    private final SensorRing.Window pendingWindow = new SensorRing.Window();
+    private long chunkReceivedNanos;
+    private long pingId = -1;         // outstanding ping
+    private long lastPingId;
+    private long pingSentNanos;
+    private int unansweredPings;
+    private long reconnectDelayMs = RECONNECT_MIN_MS;
+
+    /**
+     * address tcp:host:port, throws IllegalArgumentException if malformed
+     */
+    RemotePhoneStream(String address, int source, MultiSourceMotion motion, ScheduledExecutorService scheduler) {
+        this.address = address;
+        this.source = source;
+        this.motion = motion;
+        this.scheduler = scheduler;
+        socket = TcpSocket.fromAddress(address);
+        decoder = new JsonSampleDecoder(new JsonSampleDecoder.Listener() {
+            @Override
+            public void onSample(JsonSampleDecoder.Sample sample) {
+                if (clockSync.isSynchronized())
+                    deliver(clockSync.toPhoneNanos(sample.timeMs), sample.ax, sample.ay, sample.az, sample.gx, sample.gy, sample.gz);
+                else
+                    pending.append(sample.timeMs, sample.ax, sample.ay, sample.az, sample.gx, sample.gy, sample.gz);
+            }
+
+            @Override
+            public void onPong(long id, long deviceTimeMs) {
+                if (id >= 0 && id == pingId && deviceTimeMs >= 0) {
+                    pingId = -1;
+                    unansweredPings = 0;
+                    if (!clockSync.addExchange(pingSentNanos, chunkReceivedNanos, deviceTimeMs))
+                        Log.w(TAG, "📱📱 " + address + " PONG: round trip out of range");
+                    else if (clockSync.isSynchronized())
+                        deliverPending();
+                }
+            }
+
+            @Override
+            public void onState(boolean gyroOn) {
+            }
+
+            @Override
+            public void onCalibration(boolean done) {
+            }
+
+            @Override
+            public void onRate(int hz) {
+            }
+
+            @Override
+            public void onFormat(boolean binary) {
+            }
+
+            @Override
+            public void onText(byte[] buf, int offset, int length) {
+                // no terminal for remote phones
+            }
+        });
+    }
+
+    /**
+     * socket read loops of all remote phones, a fixed thread budget
+     */
+    static ExecutorService newReadExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(READ_THREAD_COUNT, READ_THREAD_COUNT,
+                READ_THREAD_KEEP_ALIVE_S, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new RemoteThreadFactory("Read"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * pings and reconnects of all remote phones
+     */
+    static ScheduledExecutorService newScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(new RemoteThreadFactory("Scheduler"));
+    }
+
+    String getAddress() {
+        return address;
+    }
+
+    boolean isConnected() {
+        return connected;
+    }
+
+    void connect(Executor executor) {
+        this.executor = executor;
+        closed = false;
+        open();
+    }
+
+    void disconnect() {
+        closed = true;
+        ScheduledFuture<?> future = reconnectFuture;
+        if (future != null)
+            future.cancel(false);
+        stopPing();
+        socket.disconnect();
+        connected = false;
+        motion.deactivate(source);
+    }
+
+    synchronized String getClockStatus() {
+        return clockSync.toString();
+    }
+
+    @Override
+    public void onSerialConnect() {
+        Log.i(TAG, "📱📱 connected to " + address);
+        synchronized (this) {
+            clockSync.reset();
+            decoder.reset();
+            pending.clear();
+            pingId = -1;
+            unansweredPings = 0;
+            reconnectDelayMs = RECONNECT_MIN_MS;
+        }
+        connected = true;
+        stopPing();
+        schedulePing(0);
+    }
+
+    @Override
+    public void onSerialConnectError(Exception e) {
+        Log.w(TAG, "📱📱 connection to " + address + " failed: " + e.getMessage());
+        connected = false;
+        motion.deactivate(source);
+        scheduleReconnect();
+    }
+
+    @Override
+    public void onSerialRead(BufferPool.Chunk chunk) {
+        try {
+            synchronized (this) {
+                chunkReceivedNanos = SystemClock.elapsedRealtimeNanos();
+                decoder.append(chunk.data, 0, chunk.length);
+            }
+        } finally {
+            chunk.release();
+        }
+    }
+
+    @Override
+    public void onSerialRead(SerialProcessor.Update update) {
+        // only used between SerialService and UI
+    }
+
+    @Override
+    public void onSerialIoError(Exception e) {
+        Log.w(TAG, "📱📱 connection to " + address + " lost: " + e.getMessage());
+        stopPing();
+        connected = false;
+        motion.deactivate(source);
+        scheduleReconnect();
+    }
+
+    /**
+     * scheduler thread or connect(). a new TcpSocket per attempt, a closed one is not reused
+     */
+    private void open() {
+        if (closed)
+            return;
+        Log.i(TAG, "📱📱 connecting to " + address);
+        TcpSocket socket = TcpSocket.fromAddress(address);
+        this.socket = socket;
+        socket.connect(this, bufferPool, executor);
+    }
+
+    private void scheduleReconnect() {
+        socket.disconnect(); // ignore late callbacks of the failed socket
+        if (closed)
+            return;
+        long delayMs;
+        synchronized (this) {
+            delayMs = reconnectDelayMs;
+            reconnectDelayMs = Math.min(2 * delayMs, RECONNECT_MAX_MS);
+        }
+        Log.i(TAG, "📱📱 reconnecting to " + address + " in " + delayMs + " ms");
+        try {
+            reconnectFuture = scheduler.schedule(reconnector, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // scheduler shut down, owner is gone
+        }
+    }
+
+    private void schedulePing(long delayMs) {
+        try {
+            pingFuture = scheduler.schedule(pinger, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+            // scheduler shut down, owner is gone
+        }
+    }
+
+    private void stopPing() {
+        ScheduledFuture<?> future = pingFuture;
+        if (future != null)
+            future.cancel(false);
+    }
+
+    private void ping() {
+        if (!connected)
+            return;
+        long id;
+        boolean synced;
+        boolean warn = false;
+        synchronized (this) {
+            if (pingId >= 0)
+                warn = ++unansweredPings == UNANSWERED_PINGS_WARNING;
+            id = pingId = ++lastPingId;
+            pingSentNanos = SystemClock.elapsedRealtimeNanos();
+            synced = clockSync.isSynchronized();
+        }
+        if (warn)
+            Log.w(TAG, "📱📱 " + address + " " + UNANSWERED_PINGS_WARNING + " PINGs without timed PONG, no samples until it answers \"PING id\"");
+        try {
+            socket.write(("PING " + id + "\n").getBytes(StandardCharsets.US_ASCII));
+        } catch (IOException e) {
+            Log.w(TAG, "📱📱 " + address + " PING failed: " + e.getMessage());
+        }
+        schedulePing(synced ? PING_INTERVAL_MS : SYNC_PING_INTERVAL_MS);
+    }
+
+    /**
+     * socket thread, with lock. samples held back until the first synchronization
+     */
+    private void deliverPending() {
+        SensorRing.Window window = pending.latest(pendingWindow, PENDING_SAMPLES);
+        for (int i = 0; i < window.size(); i++) {
+            deliver(clockSync.toPhoneNanos(window.time(i)), window.value(0, i), window.value(1, i), window.value(2, i),
+                    window.value(3, i), window.value(4, i), window.value(5, i));
+        }
+        pending.clear();
+    }
+
+    private void deliver(long time, float ax, float ay, float az, float gx, float gy, float gz) {
+        motion.sample(source, SampleMerger.ACCEL, time, ax, ay, az);
+        motion.sample(source, SampleMerger.GYRO, time, gx * DEG_TO_RAD, gy * DEG_TO_RAD, gz * DEG_TO_RAD);
+    }
+}
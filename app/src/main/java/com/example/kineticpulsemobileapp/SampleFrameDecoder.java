@@ -0,0 +1,174 @@
+package com.example.kineticpulsemobileapp;
+
+/**
+ * split the ESP32 stream into binary sample frames and text.
+ *
+ * frame, 20 bytes, little endian:
+ *   0       sync 0xA5
+ *   1       version
+ *   2       sequence number, uint8, wraps around
+ *   3..6    sample time in ms, uint32
+ *   7..18   ax, ay, az, gx, gy, gz as int16 raw counts, bias already removed
+ *   19      CRC-8 (poly 0x07, init 0x00) over bytes 1..18
+ *
+ * The firmware only sends ASCII text, so 0xA5 starts a frame. If version or CRC
+ * do not match, the sync byte is passed on as text and the search continues
+ * with the next byte.
+ *
+ * Decoding does not allocate. Text ranges and the sample are only valid during the callback.
+ */
+final class SampleFrameDecoder {
+
+    static final int SYNC = 0xA5;
+    static final int VERSION = 1;
+    static final int FRAME_LENGTH = 20;
+    static final float ACCEL_LSB_PER_G = 4096.0f;   // MPU-6050 at ±8g
+    static final float GYRO_LSB_PER_DPS = 16.4f;    // MPU-6050 at ±2000 dps
+
+    interface Listener {
+        void onSample(Sample sample);
+        void onText(byte[] buf, int offset, int length);
+    }
+
+    static final class Sample {
+        int sequence;
+        long timeMs;
+        short ax, ay, az;
+        short gx, gy, gz;
+
+        float accelX() { return ax / ACCEL_LSB_PER_G; }
+        float accelY() { return ay / ACCEL_LSB_PER_G; }
+        float accelZ() { return az / ACCEL_LSB_PER_G; }
+        float gyroX()  { return gx / GYRO_LSB_PER_DPS; }
+        float gyroY()  { return gy / GYRO_LSB_PER_DPS; }
+        float gyroZ()  { return gz / GYRO_LSB_PER_DPS; }
+    }
+
+    private final Listener listener;
+    private final Sample sample = new Sample();
+    private final byte[] partial = new byte[FRAME_LENGTH];
+    private int partialLength;
+    private long frames;
+    private long errors;
+
+    SampleFrameDecoder(Listener listener) {
+        this.listener = listener;
+    }
+
+    void append(byte[] data, int offset, int length) {
+        int pos = offset;
+        int end = offset + length;
+        while (pos < end) {
+            if (partialLength == 0) {
+                int sync = pos;
+                while (sync < end && (data[sync] & 0xff) != SYNC)
+                    sync++;
+                if (sync > pos)
+                    listener.onText(data, pos, sync - pos);
+                if (sync == end)
+                    return;
+                pos = sync;
+                if (end - pos >= FRAME_LENGTH) { // complete frame in chunk, decode in place
+                    if (decode(data, pos)) {
+                        pos += FRAME_LENGTH;
+                    } else {
+                        listener.onText(data, pos, 1);
+                        pos++;
+                    }
+                    continue;
+                }
+            }
+            int n = Math.min(end - pos, FRAME_LENGTH - partialLength);
+            System.arraycopy(data, pos, partial, partialLength, n);
+            partialLength += n;
+            pos += n;
+            if (partialLength == FRAME_LENGTH) {
+                if (decode(partial, 0))
+                    partialLength = 0;
+                else
+                    resync();
+            }
+        }
+    }
+
+    void reset() {
+        partialLength = 0;
+    }
+
+    long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * sync bytes not followed by a valid frame
+     */
+    long getErrorCount() {
+        return errors;
+    }
+
+    /**
+     * partial holds an invalid frame. pass on the sync byte as text
+     * and keep the bytes from the next sync byte on
+     */
+    private void resync() {
+        int sync = 1;
+        while (sync < partialLength && (partial[sync] & 0xff) != SYNC)
+            sync++;
+        listener.onText(partial, 0, sync);
+        System.arraycopy(partial, sync, partial, 0, partialLength - sync);
+        partialLength -= sync;
+    }
+
+    private boolean decode(byte[] buf, int offset) {
+        if ((buf[offset + 1] & 0xff) != VERSION
+                || crc8(buf, offset + 1, FRAME_LENGTH - 2) != (buf[offset + FRAME_LENGTH - 1] & 0xff)) {
+            errors++;
+            return false;
+        }
+        sample.sequence = buf[offset + 2] & 0xff;
+        sample.timeMs = (buf[offset + 3] & 0xffL)
+                | (buf[offset + 4] & 0xffL) << 8
+                | (buf[offset + 5] & 0xffL) << 16
+                | (buf[offset + 6] & 0xffL) << 24;
+        sample.ax = int16(buf, offset + 7);
+        sample.ay = int16(buf, offset + 9);
+        sample.az = int16(buf, offset + 11);
+        sample.gx = int16(buf, offset + 13);
+        sample.gy = int16(buf, offset + 15);
+        sample.gz = int16(buf, offset + 17);
+        frames++;
+        listener.onSample(sample);
+        return true;
+    }
+
+    private static short int16(byte[] buf, int offset) {
+        return (short) ((buf[offset] & 0xff) | buf[offset + 1] << 8);
+    }
+
+    static int crc8(byte[] buf, int offset, int length) {
+        int crc = 0;
+        for (int i = offset; i < offset + length; i++) {
+            crc ^= buf[i] & 0xff;
+            for (int bit = 0; bit < 8; bit++)
+                crc = (crc & 0x80) != 0 ? ((crc << 1) ^ 0x07) & 0xff : (crc << 1) & 0xff;
+        }
+        return crc;
+    }
+
+    /**
+     * encode sample as the firmware does, e.g. for test sequences
+     */
+    static void encode(Sample sample, byte[] buf, int offset) {
+        buf[offset] = (byte) SYNC;
+        buf[offset + 1] = (byte) VERSION;
+        buf[offset + 2] = (byte) sample.sequence;
+        for (int i = 0; i < 4; i++)
+            buf[offset + 3 + i] = (byte) (sample.timeMs >>> (8 * i));
+        short[] axes = {sample.ax, sample.ay, sample.az, sample.gx, sample.gy, sample.gz};
+        for (int i = 0; i < axes.length; i++) {
+            buf[offset + 7 + 2 * i] = (byte) axes[i];
+            buf[offset + 8 + 2 * i] = (byte) (axes[i] >> 8);
+        }
+        buf[offset + FRAME_LENGTH - 1] = (byte) crc8(buf, offset + 1, FRAME_LENGTH - 2);
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.kineticpulsemobileapp;
+
+import java.util.Locale;
+
+/**
+ * detect lost, duplicate and late samples from device timestamps and sequence numbers.
+ * use chain: SampleFrameDecoder / JsonSampleDecoder -> SerialProcessor -> SampleGapTracker -> SensorRing
+ *
+ * The firmware stamps each sample with millis() and silently drops samples from its
+ * ring buffer when the link is slower than the sensor. The number of missing samples is:
+ * - from the uint8 sequence number of binary frames if available, corrected by
+ *   multiples of 256 with the time difference if the gap is longer than the sequence range
+ * - else from the time difference and the sample period: the nominal period set from
+ *   the RATE acknowledgement, or the period estimated from the timestamps. Without a
+ *   nominal period no loss is counted until the estimate has settled.
+ *
+ * A time step back within MAX_GAP_MS is a late (reordered) sample, a longer step back
+ * means the device restarted, a longer step forward that streaming was paused. Neither
+ * counts as loss, tracking starts again with the next sample.
+ *
+ * Statistics are kept until reset(), i.e. per connection. Single thread, no allocation.
+ */
+final class SampleGapTracker {
+
+    enum Result {
+        FIRST,      // first sample after reset() or restart()
+        NEXT,       // expected next sample
+        GAP,        // samples are missing before this one, see getLastMissing()
+        DUPLICATE,  // same sample again, should be dropped
+        LATE,       // older than the previous sample, should be dropped
+        RESTART,    // time went back, e.g. device reboot
+        RESUME,     // time jumped forward, e.g. streaming was stopped
+    }
+
+    static final long MAX_GAP_MS = 2000;
+    private static final int MIN_ESTIMATES = 8;
+    private static final double ESTIMATE_WEIGHT = 1.0 / 16;
+
+    private long nominalPeriodMs;
+    private double estimatedPeriodMs;
+    private int estimates;
+    private boolean started;
+    private long lastTimeMs;
+    private int lastSequence;
+    private long gapStartMs;
+    private int lastMissing;
+    private float[] fillSample;
+
+    private long received;
+    private long lost;
+    private long filled;
+    private long gaps;
+    private long duplicates;
+    private long late;
+    private long restarts;
+
+    /**
+     * sample period from the device rate, 0 if unknown to estimate it from the timestamps
+     */
+    void setNominalPeriod(long periodMs) {
+        nominalPeriodMs = Math.max(periodMs, 0);
+    }
+
+    /**
+     * expected time between samples in ms, 0 if not known yet
+     */
+    double getPeriod() {
+        if (nominalPeriodMs > 0)
+            return nominalPeriodMs;
+        return estimates >= MIN_ESTIMATES ? estimatedPeriodMs : 0;
+    }
+
+    /**
+     * start a new connection, clears statistics and the period estimate
+     */
+    void reset() {
+        restart();
+        nominalPeriodMs = 0;
+        estimatedPeriodMs = 0;
+        estimates = 0;
+        received = lost = filled = gaps = duplicates = late = restarts = 0;
+    }
+
+    /**
+     * next sample is not compared with the previous one, e.g. when the device
+     * stopped streaming or changed the format
+     */
+    void restart() {
+        started = false;
+        lastMissing = 0;
+    }
+
+    /**
+     * sequence -1 if the samples are not numbered
+     */
+    Result track(long timeMs, int sequence) {
+        if (!started) {
+            start(timeMs, sequence);
+            return Result.FIRST;
+        }
+        long delta = timeMs - lastTimeMs;
+        if (delta > MAX_GAP_MS || delta < -MAX_GAP_MS) {
+            restarts++;
+            start(timeMs, sequence);
+            return delta < 0 ? Result.RESTART : Result.RESUME;
+        }
+        if (delta < 0) {
+            late++;
+            return Result.LATE;
+        }
+
+        double period = getPeriod();
+        long missing;
+        if (sequence >= 0 && lastSequence >= 0) {
+            missing = ((sequence - lastSequence) & 0xff) - 1;
+            if (period > 0) {
+                long timeMissing = Math.round(delta / period) - 1;
+                missing += 256 * Math.round((timeMissing - missing) / 256.0);
+            }
+        } else if (delta == 0) {
+            missing = -1;
+        } else {
+            missing = period > 0 ? Math.max(Math.round(delta / period) - 1, 0) : 0;
+        }
+        if (missing == -1) {
+            duplicates++;
+            return Result.DUPLICATE;
+        }
+        if (missing < -1) {
+            late++;
+            return Result.LATE;
+        }
+
+        if (delta > 0)
+            estimate(delta / (double) (missing + 1));
+        gapStartMs = lastTimeMs;
+        lastTimeMs = timeMs;
+        lastSequence = sequence;
+        lastMissing = (int) missing;
+        received++;
+        if (missing == 0)
+            return Result.NEXT;
+        gaps++;
+        lost += missing;
+        return Result.GAP;
+    }
+
+    /**
+     * samples missing before the last sample
+     */
+    int getLastMissing() {
+        return lastMissing;
+    }
+
+    /**
+     * after GAP: append the missing samples, linearly interpolated between the previous
+     * and the current sample, if at most maxSamples are missing.
+     * returns the number of samples appended
+     */
+    int fill(SensorRing ring, float[] previous, float[] current, int maxSamples) {
+        int missing = lastMissing;
+        if (missing <= 0 || missing > maxSamples)
+            return 0;
+        if (fillSample == null || fillSample.length != current.length)
+            fillSample = new float[current.length];
+        long span = lastTimeMs - gapStartMs;
+        for (int i = 1; i <= missing; i++) {
+            float f = i / (float) (missing + 1);
+            for (int axis = 0; axis < current.length; axis++)
+                fillSample[axis] = previous[axis] + (current[axis] - previous[axis]) * f;
+            ring.append(gapStartMs + span * i / (missing + 1), fillSample);
+        }
+        filled += missing;
+        return missing;
+    }
+
+    long getReceivedCount() {
+        return received;
+    }
+
+    long getLostCount() {
+        return lost;
+    }
+
+    long getFilledCount() {
+        return filled;
+    }
+
+    long getGapCount() {
+        return gaps;
+    }
+
+    long getDuplicateCount() {
+        return duplicates;
+    }
+
+    long getLateCount() {
+        return late;
+    }
+
+    long getRestartCount() {
+        return restarts;
+    }
+
+    /**
+     * lost / (received + lost)
+     */
+    double getLossRate() {
+        long total = received + lost;
+        return total == 0 ? 0 : lost / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "received=%d, lost=%d (%.2f%%), gaps=%d, filled=%d, duplicates=%d, late=%d, restarts=%d, period=%.1fms",
+                received, lost, getLossRate() * 100, gaps, filled, duplicates, late, restarts, getPeriod());
+    }
+
+    private void start(long timeMs, int sequence) {
+        started = true;
+        lastTimeMs = timeMs;
+        gapStartMs = timeMs;
+        lastSequence = sequence;
+        lastMissing = 0;
+        received++;
+    }
+
+    private void estimate(double periodMs) {
+        // minimum while settling, in case the first deltas include a gap
+        if (estimates == 0 || (estimates < MIN_ESTIMATES && periodMs < estimatedPeriodMs))
+            estimatedPeriodMs = periodMs;
+        else if (estimates >= MIN_ESTIMATES)
+            estimatedPeriodMs += (periodMs - estimatedPeriodMs) * ESTIMATE_WEIGHT;
+        estimates++;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.kineticpulsemobileapp;
+
+import java.util.Locale;
+
+/**
+ * wakeups and CPU time of the phone sensor path per delivery mode.
+ * use chain: GyroManager.onSensorChanged -> burst end -> SensorBatchStats, toString() in diagnostics
+ *
+ * A burst is one delivery of sensor events to the app, i.e. one wakeup of the sensor
+ * thread: a single sample in low latency mode, the FIFO contents when batched.
+ * Handler CPU is the thread CPU time spent in onSensorChanged, process CPU the
+ * CPU time of the whole app while the mode was active. Rates are per minute in mode.
+ *
+ * Times are passed in, so the class does not depend on the Android clocks.
+ * Written from the sensor thread, read from any thread.
+ */
+final class SensorBatchStats {
+
+    private static final double NANOS_PER_MINUTE = 60e9;
+
+    private final int modes;
+    private final long[] modeNanos;
+    private final long[] bursts;
+    private final long[] events;
+    private final long[] handlerCpuNanos;
+    private final long[] processCpuMs;
+    private final String[] names;
+
+    private int mode = -1;          // -1 before the first switchTo()
+    private long modeStartNanos;
+    private long modeStartCpuMs;
+
+    SensorBatchStats(String... names) {
+        this.names = names;
+        modes = names.length;
+        modeNanos = new long[modes];
+        bursts = new long[modes];
+        events = new long[modes];
+        handlerCpuNanos = new long[modes];
+        processCpuMs = new long[modes];
+    }
+
+    /**
+     * start accounting for mode, closes the previous one
+     */
+    synchronized void switchTo(int mode, long nowNanos, long processCpuMs) {
+        close(nowNanos, processCpuMs);
+        this.mode = mode;
+        modeStartNanos = nowNanos;
+        modeStartCpuMs = processCpuMs;
+    }
+
+    /**
+     * stop accounting, e.g. sensors unregistered
+     */
+    synchronized void stop(long nowNanos, long processCpuMs) {
+        close(nowNanos, processCpuMs);
+        mode = -1;
+    }
+
+    synchronized void onBurst(int eventCount, long cpuNanos) {
+        if (mode < 0)
+            return;
+        bursts[mode]++;
+        events[mode] += eventCount;
+        handlerCpuNanos[mode] += cpuNanos;
+    }
+
+    synchronized double getWakeupsPerMinute(int mode, long nowNanos) {
+        return perMinute(bursts[mode], mode, nowNanos);
+    }
+
+    synchronized double getEventsPerBurst(int mode) {
+        return bursts[mode] > 0 ? (double) events[mode] / bursts[mode] : 0;
+    }
+
+    synchronized double getHandlerCpuMsPerMinute(int mode, long nowNanos) {
+        return perMinute(handlerCpuNanos[mode], mode, nowNanos) / 1e6;
+    }
+
+    synchronized double getProcessCpuMsPerMinute(int mode, long nowNanos, long processCpuMs) {
+        long cpu = this.processCpuMs[mode];
+        if (mode == this.mode)
+            cpu += processCpuMs - modeStartCpuMs;
+        return perMinute(cpu, mode, nowNanos);
+    }
+
+    synchronized String toString(long nowNanos, long processCpuMs) {
+        StringBuilder sb = new StringBuilder();
+        for (int m = 0; m < modes; m++) {
+            if (m > 0)
+                sb.append("; ");
+            sb.append(String.format(Locale.US, "%s%s %.1fs: %.0f wakeups/min, %.1f events/wakeup, handler cpu %.1fms/min, process cpu %.0fms/min",
+                    names[m], m == mode ? "*" : "", inMode(m, nowNanos) / 1e9, getWakeupsPerMinute(m, nowNanos),
+                    getEventsPerBurst(m), getHandlerCpuMsPerMinute(m, nowNanos), getProcessCpuMsPerMinute(m, nowNanos, processCpuMs)));
+        }
+        return sb.toString();
+    }
+
+    private void close(long nowNanos, long processCpuMs) {
+        if (mode < 0)
+            return;
+        modeNanos[mode] += nowNanos - modeStartNanos;
+        this.processCpuMs[mode] += processCpuMs - modeStartCpuMs;
+    }
+
+    private long inMode(int mode, long nowNanos) {
+        return modeNanos[mode] + (mode == this.mode ? nowNanos - modeStartNanos : 0);
+    }
+
+    private double perMinute(double value, int mode, long nowNanos) {
+        long nanos = inMode(mode, nowNanos);
+        return nanos > 0 ? value * NANOS_PER_MINUTE / nanos : 0;
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.kineticpulsemobileapp;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * fixed capacity sample history, stored as parallel primitive arrays:
+ * one AtomicLongArray for timestamps and one AtomicIntegerArray of float bits per axis.
+ * use chain: sensor thread append() -> detection, charts, recording read windows
+ *
+ * Samples are numbered with a sequence starting at 0. Sample n is kept until
+ * sample n + capacity is appended.
+ *
+ * One writer thread, any number of reader threads:
+ * - the writer announces the sequence it is about to overwrite (claimed),
+ *   writes the slot, then publishes it (published)
+ * - readers only see published samples. Windows read the arrays directly
+ *   without copying, so a reader that falls behind by more than the capacity
+ *   may see overwritten values. Check Window.isValid() after reading, like a
+ *   seqlock, and read again or skip the window if it is no longer valid.
+ * - slots are written with release semantics after the claim and read with volatile
+ *   loads, so a reader that saw an overwritten value also sees the claim in isValid().
+ *   Plain arrays would allow the slot loads to move after the claimed load on ARM
+ *
+ * append() and windows do not allocate, windows are reused by the caller.
+ */
+final class SensorRing {
+
+    /**
+     * view on samples [start, end) of the ring, accessors take index 0 .. size()-1
+     */
+    static final class Window {
+        private SensorRing ring;
+        private long start, end;
+
+        long getStart() {
+            return start;
+        }
+
+        long getEnd() {
+            return end;
+        }
+
+        int size() {
+            return (int) (end - start);
+        }
+
+        long time(int index) {
+            return ring.times.get(ring.slot(start + index));
+        }
+
+        float value(int axis, int index) {
+            return Float.intBitsToFloat(ring.values[axis].get(ring.slot(start + index)));
+        }
+
+        /**
+         * false if the writer overwrote samples of this window since it was taken
+         */
+        boolean isValid() {
+            return ring.claimed - ring.capacity <= start;
+        }
+
+        private Window set(SensorRing ring, long start, long end) {
+            this.ring = ring;
+            this.start = start;
+            this.end = end;
+            return this;
+        }
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray times;
+    private final AtomicIntegerArray[] values;
+    private volatile long claimed;   // sequence + 1 of the sample being written
+    private volatile long published; // number of complete samples
+    private volatile long clearedBefore;
+
+    /**
+     * capacity is rounded up to a power of two
+     */
+    SensorRing(int capacity, int axes) {
+        if (capacity < 1 || capacity > 1 << 24 || axes < 1)
+            throw new IllegalArgumentException("capacity " + capacity + ", axes " + axes);
+        int size = 1;
+        while (size < capacity)
+            size <<= 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        times = new AtomicLongArray(size);
+        values = new AtomicIntegerArray[axes];
+        for (int axis = 0; axis < axes; axis++)
+            values[axis] = new AtomicIntegerArray(size);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int getAxes() {
+        return values.length;
+    }
+
+    /**
+     * number of samples appended so far, i.e. sequence of the next sample
+     */
+    long getSequence() {
+        return published;
+    }
+
+    /**
+     * writer thread
+     */
+    void append(long time, float x, float y, float z) {
+        int slot = claim(time);
+        put(0, slot, x);
+        put(1, slot, y);
+        put(2, slot, z);
+        publish();
+    }
+
+    /**
+     * writer thread
+     */
+    void append(long time, float ax, float ay, float az, float gx, float gy, float gz) {
+        int slot = claim(time);
+        put(0, slot, ax);
+        put(1, slot, ay);
+        put(2, slot, az);
+        put(3, slot, gx);
+        put(4, slot, gy);
+        put(5, slot, gz);
+        publish();
+    }
+
+    /**
+     * writer thread, values.length must match the number of axes
+     */
+    void append(long time, float[] sample) {
+        int slot = claim(time);
+        for (int axis = 0; axis < values.length; axis++)
+            put(axis, slot, sample[axis]);
+        publish();
+    }
+
+    /**
+     * hide samples appended so far from new windows, sequence numbers continue
+     */
+    void clear() {
+        clearedBefore = published;
+    }
+
+    /**
+     * the latest samples, at most maxSamples
+     */
+    Window latest(Window reuse, int maxSamples) {
+        long end = published;
+        long start = Math.max(Math.max(end - Math.min(maxSamples, capacity), 0), clearedBefore);
+        return reuse.set(this, start, end);
+    }
+
+    /**
+     * all available samples from sequence on, e.g. to continue after the previous window.
+     * starts later if sequence was already overwritten
+     */
+    Window since(Window reuse, long sequence) {
+        long end = published;
+        long start = Math.max(Math.max(sequence, end - capacity), clearedBefore);
+        return reuse.set(this, Math.min(start, end), end);
+    }
+
+    /**
+     * available samples with time >= fromTime, timestamps must not decrease
+     */
+    Window sinceTime(Window reuse, long fromTime) {
+        since(reuse, 0);
+        long low = reuse.start, high = reuse.end; // binary search first time >= fromTime
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (times.get(slot(mid)) < fromTime)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        reuse.start = low;
+        return reuse;
+    }
+
+    private int slot(long sequence) {
+        return (int) sequence & mask;
+    }
+
+    private int claim(long time) {
+        long sequence = published;
+        claimed = sequence + 1;
+        int slot = slot(sequence);
+        times.lazySet(slot, time); // release, stays behind the claim
+        return slot;
+    }
+
+    private void put(int axis, int slot, float value) {
+        values[axis].lazySet(slot, Float.floatToRawIntBits(value));
+    }
+
+    private void publish() {
+        published = published + 1;
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.kineticpulsemobileapp;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * keep received messages while the UI is detached.
+ *
+ * Records are collected in a fixed memory buffer. When the buffer is full,
+ * it is appended to a file. The file is rotated when it reaches half of the
+ * file budget, so at most two generations are kept on disk and the oldest
+ * records are dropped first.
+ *
+ * record format: time (long) | flags (byte) | length (unsigned short) | payload
+ */
+final class SerialBacklog {
+
+    enum Policy {
+        ALL,        // keep everything within budget
+        LATEST,     // keep records of the last keepMs
+        MOVEMENTS   // keep only records with FLAG_MOVEMENT, in hex mode chunks with a movement
+    }
+
+    static final int FLAG_MOVEMENT = 1;
+    static final int FLAG_HEX = 2;
+    private static final int HEADER_LENGTH = 8 + 1 + 2;
+    private static final int MAX_PAYLOAD = 0xffff;
+    private static final String PREFIX = "serial-backlog.";
+
+    interface RecordListener {
+        void onRecord(long timeMs, int flags, byte[] buf, int offset, int length);
+    }
+
+    private final File dir;
+    private final File current, previous;
+    private final byte[] memory;
+    private final long maxFileBytes;
+    private int memoryLength;
+    private long currentLength;
+    private long currentFirstTimeMs = -1;
+    private Policy policy = Policy.ALL;
+    private long keepMs;
+    private volatile long records;  // written in the owner thread, read by metrics gauges
+    private volatile long dropped;
+    private int replays;
+
+    SerialBacklog(File dir, int memoryBudget, long maxFileBytes) {
+        this.dir = dir;
+        current = new File(dir, PREFIX + "0");
+        previous = new File(dir, PREFIX + "1");
+        memory = new byte[Math.max(memoryBudget, 2 * HEADER_LENGTH)];
+        this.maxFileBytes = maxFileBytes;
+    }
+
+    void setPolicy(Policy policy, long keepMs) {
+        this.policy = policy;
+        this.keepMs = keepMs;
+    }
+
+    Policy getPolicy() {
+        return policy;
+    }
+
+    long getRecordCount() {
+        return records;
+    }
+
+    long getDroppedCount() {
+        return dropped;
+    }
+
+    void add(long timeMs, int flags, byte[] buf, int offset, int length) throws IOException {
+        if (policy == Policy.MOVEMENTS && (flags & FLAG_MOVEMENT) == 0)
+            return;
+        length = Math.min(length, Math.min(MAX_PAYLOAD, memory.length - HEADER_LENGTH));
+        if (memoryLength + HEADER_LENGTH + length > memory.length)
+            spill(timeMs);
+        int pos = memoryLength;
+        for (int shift = 56; shift >= 0; shift -= 8)
+            memory[pos++] = (byte) (timeMs >>> shift);
+        memory[pos++] = (byte) flags;
+        memory[pos++] = (byte) (length >>> 8);
+        memory[pos++] = (byte) length;
+        System.arraycopy(buf, offset, memory, pos, length);
+        memoryLength = pos + length;
+        if (currentFirstTimeMs < 0)
+            currentFirstTimeMs = timeMs;
+        records++;
+    }
+
+    /**
+     * move all records into a Replay and start with an empty backlog.
+     * Replays have their own files, so the backlog can be reused while a replay is read.
+     */
+    Replay startReplay(long nowMs) throws IOException {
+        spill(nowMs);
+        int replay = replays++;
+        File replayPrevious = new File(dir, PREFIX + "replay" + replay + ".1");
+        File replayCurrent = new File(dir, PREFIX + "replay" + replay + ".0");
+        if (previous.exists() && !previous.renameTo(replayPrevious))
+            throw new IOException("rename failed: " + previous);
+        if (current.exists() && !current.renameTo(replayCurrent))
+            throw new IOException("rename failed: " + current);
+        currentLength = 0;
+        currentFirstTimeMs = -1;
+        records = 0;
+        long minTimeMs = policy == Policy.LATEST ? nowMs - keepMs : Long.MIN_VALUE;
+        return new Replay(new File[]{replayPrevious, replayCurrent}, minTimeMs);
+    }
+
+    /**
+     * drop all records, including files left over from a previous process
+     */
+    void clear() {
+        memoryLength = 0;
+        currentLength = 0;
+        currentFirstTimeMs = -1;
+        records = 0;
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX));
+        if (files != null)
+            for (File file : files)
+                delete(file);
+    }
+
+    private void spill(long nowMs) throws IOException {
+        if (memoryLength == 0)
+            return;
+        boolean expired = policy == Policy.LATEST && currentFirstTimeMs >= 0 && currentFirstTimeMs < nowMs - keepMs;
+        if (currentLength > 0 && (currentLength + memoryLength > maxFileBytes / 2 || expired))
+            rotate();
+        try (FileOutputStream out = new FileOutputStream(current, true)) {
+            out.write(memory, 0, memoryLength);
+        } finally {
+            currentLength += memoryLength;
+            memoryLength = 0;
+        }
+    }
+
+    private void rotate() {
+        if (previous.exists())
+            dropped += countRecords(previous);
+        delete(previous);
+        if (!current.renameTo(previous))
+            delete(current);
+        currentLength = 0;
+        currentFirstTimeMs = -1;
+    }
+
+    private static long countRecords(File file) {
+        long count = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            //noinspection InfiniteLoopStatement
+            while (true) {
+                in.skipBytes(8 + 1);
+                in.skipBytes(in.readUnsignedShort());
+                count++;
+            }
+        } catch (IOException ignored) {
+        }
+        return count;
+    }
+
+    private static void delete(File file) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+    }
+
+    /**
+     * read records in slices, oldest first. files are deleted when done
+     */
+    static final class Replay {
+        private final File[] files;
+        private final long minTimeMs;
+        private final byte[] payload = new byte[MAX_PAYLOAD];
+        private int fileIndex;
+        private DataInputStream in;
+
+        private Replay(File[] files, long minTimeMs) {
+            this.files = files;
+            this.minTimeMs = minTimeMs;
+        }
+
+        /**
+         * report records until about maxBytes payload are read.
+         * returns false when all records have been read
+         */
+        boolean read(int maxBytes, RecordListener listener) throws IOException {
+            int bytes = 0;
+            while (bytes < maxBytes) {
+                if (in == null) {
+                    while (fileIndex < files.length && !files[fileIndex].exists())
+                        fileIndex++;
+                    if (fileIndex == files.length)
+                        return false;
+                    in = new DataInputStream(new BufferedInputStream(new FileInputStream(files[fileIndex])));
+                }
+                long timeMs;
+                try {
+                    timeMs = in.readLong();
+                } catch (EOFException e) {
+                    in.close();
+                    in = null;
+                    delete(files[fileIndex++]);
+                    continue;
+                }
+                int flags = in.readUnsignedByte();
+                int length = in.readUnsignedShort();
+                in.readFully(payload, 0, length);
+                bytes += length;
+                if (timeMs >= minTimeMs)
+                    listener.onRecord(timeMs, flags, payload, 0, length);
+            }
+            return true;
+        }
+
+        void close() {
+            try {
+                if (in != null)
+                    in.close();
+            } catch (IOException ignored) {
+            }
+            in = null;
+            for (File file : files)
+                delete(file);
+        }
+    }
+}
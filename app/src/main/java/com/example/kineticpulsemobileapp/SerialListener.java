@@ -1,11 +1,9 @@
 package com.example.kineticpulsemobileapp;
 
-import java.util.ArrayDeque;
-
 interface SerialListener {
     void onSerialConnect      ();
     void onSerialConnectError (Exception e);
-    void onSerialRead         (byte[] data);                // socket -> service
-    void onSerialRead         (ArrayDeque<byte[]> datas);   // service -> UI thread
+    void onSerialRead         (BufferPool.Chunk chunk);                 // socket -> service, consumer releases chunk
+    void onSerialRead         (SerialProcessor.Update update);          // service -> UI thread, coalesced results
     void onSerialIoError      (Exception e);
 }
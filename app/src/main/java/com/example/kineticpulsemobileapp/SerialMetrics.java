@@ -0,0 +1,223 @@
+package com.example.kineticpulsemobileapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * in-process counters, gauges and histograms for the serial ingest path.
+ * use chain: Transport -> SerialService -> UI fragment record, summary() is logged periodically
+ *
+ * Recording is lock free and does not allocate, so it can be called for every read.
+ * Metrics are never removed, registering a name again returns the existing metric.
+ */
+final class SerialMetrics {
+
+    interface Gauge {
+        long get();
+    }
+
+    static final class Counter {
+        private final AtomicLong value = new AtomicLong();
+        private long reported; // summary thread only
+
+        void inc() {
+            value.incrementAndGet();
+        }
+
+        void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * power of two buckets: bucket 0 holds 0, bucket i holds [2^(i-1), 2^i).
+     * percentiles are reported as bucket upper bound, which is good enough to spot shifts
+     */
+    static final class Histogram {
+        private static final int BUCKETS = 64;
+
+        private final String unit;
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        Histogram(String unit) {
+            this.unit = unit;
+        }
+
+        void record(long value) {
+            if (value < 0)
+                value = 0;
+            buckets.incrementAndGet(bucket(value));
+            count.incrementAndGet();
+            sum.addAndGet(value);
+            long m;
+            while (value > (m = max.get()) && !max.compareAndSet(m, value))
+                ;
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        long getMax() {
+            return max.get();
+        }
+
+        double getMean() {
+            long n = count.get();
+            return n > 0 ? (double) sum.get() / n : 0;
+        }
+
+        /**
+         * upper bound of the bucket containing the given percentile (0..100)
+         */
+        long getPercentile(double percentile) {
+            long n = count.get();
+            if (n == 0)
+                return 0;
+            long rank = (long) Math.ceil(n * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= rank)
+                    return Math.min(upperBound(i), max.get());
+            }
+            return max.get();
+        }
+
+        void reset() {
+            for (int i = 0; i < BUCKETS; i++)
+                buckets.set(i, 0);
+            count.set(0);
+            sum.set(0);
+            max.set(0);
+        }
+
+        static int bucket(long value) {
+            return 64 - Long.numberOfLeadingZeros(value);
+        }
+
+        private static long upperBound(int bucket) {
+            return bucket == 0 ? 0 : bucket >= 63 ? Long.MAX_VALUE : (1L << bucket) - 1;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "n=%d avg=%.1f p50=%d p99=%d max=%d%s",
+                    getCount(), getMean(), getPercentile(50), getPercentile(99), getMax(), unit);
+        }
+    }
+
+    private static final class Entry {
+        final String name;
+        final Object metric;
+
+        Entry(String name, Object metric) {
+            this.name = name;
+            this.metric = metric;
+        }
+    }
+
+    // guarded by this
+    private final List<Entry> entries = new ArrayList<>();
+    private long lastSummaryNanos;
+
+    SerialMetrics() {
+        lastSummaryNanos = System.nanoTime();
+    }
+
+    synchronized Counter counter(String name) {
+        Object existing = find(name);
+        if (existing instanceof Counter)
+            return (Counter) existing;
+        Counter counter = new Counter();
+        entries.add(new Entry(name, counter));
+        return counter;
+    }
+
+    synchronized Histogram histogram(String name, String unit) {
+        Object existing = find(name);
+        if (existing instanceof Histogram)
+            return (Histogram) existing;
+        Histogram histogram = new Histogram(unit);
+        entries.add(new Entry(name, histogram));
+        return histogram;
+    }
+
+    /**
+     * gauges are read in the summary thread, so the source must tolerate concurrent reads
+     */
+    synchronized void gauge(String name, Gauge gauge) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).name.equals(name)) {
+                entries.set(i, new Entry(name, gauge));
+                return;
+            }
+        }
+        entries.add(new Entry(name, gauge));
+    }
+
+    private Object find(String name) {
+        for (Entry entry : entries)
+            if (entry.name.equals(name))
+                return entry.metric;
+        return null;
+    }
+
+    /**
+     * one line per metric. counters show total and rate, histograms show values
+     * since the previous summary and are reset, so each summary covers one interval
+     */
+    synchronized String summary() {
+        long now = System.nanoTime();
+        double seconds = Math.max(now - lastSummaryNanos, 1) / 1e9;
+        lastSummaryNanos = now;
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : entries) {
+            if (sb.length() > 0)
+                sb.append('\n');
+            sb.append(entry.name).append(": ");
+            if (entry.metric instanceof Counter) {
+                Counter counter = (Counter) entry.metric;
+                long value = counter.get();
+                sb.append(value).append(String.format(Locale.US, " (%.1f/s)", (value - counter.reported) / seconds));
+                counter.reported = value;
+            } else if (entry.metric instanceof Histogram) {
+                Histogram histogram = (Histogram) entry.metric;
+                sb.append(histogram);
+                histogram.reset();
+            } else {
+                sb.append(((Gauge) entry.metric).get());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * like summary(), but without resetting histograms and rates, e.g. for diagnostics
+     */
+    synchronized String snapshot() {
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : entries) {
+            if (sb.length() > 0)
+                sb.append(", ");
+            sb.append(entry.name).append('=');
+            if (entry.metric instanceof Counter)
+                sb.append(((Counter) entry.metric).get());
+            else if (entry.metric instanceof Histogram)
+                sb.append('{').append(entry.metric).append('}');
+            else
+                sb.append(((Gauge) entry.metric).get());
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,696 @@
+package com.example.kineticpulsemobileapp;
+
+import android.os.SystemClock;
+import android.text.SpannableStringBuilder;
+import android.util.Log;
+
+import com.example.kineticpulsemobileapp.motion.MotionEngine;
+import com.example.kineticpulsemobileapp.motion.Movement;
+import com.example.kineticpulsemobileapp.motion.PeakClassifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+
+/**
+ * decode and classify serial data on the SerialService processing thread.
+ * use chain: SerialSocket -> SerialService -> SerialProcessor -> Update -> UI fragment
+ *
+ * The processing thread appends to the pending results, the UI thread takes
+ * them with drain() at most once per dispatch, so the UI cost does not grow
+ * with the sensor rate.
+ *
+ * Binary sample frames (see SampleFrameDecoder) and JSON samples (see JsonSampleDecoder)
+ * are split off before the text framing and only used for movement detection,
+ * they are not displayed. JSON status objects update the device status.
+ *
+ * All samples are kept in a SensorRing history (ax, ay, az, gx, gy, gz), time is the
+ * device time in ms. ACCEL text frames have no device time, their receive time is mapped
+ * to device time with the ClockSync. Without mapping they are kept in receive time
+ * (elapsedRealtime ms) as long as no device samples arrive, the first device sample
+ * clears them, and dropped from history otherwise.
+ * Device samples go through a SampleGapTracker first: duplicate and late samples are
+ * dropped, short gaps are filled by linear interpolation for windowed detectors.
+ *
+ * Device samples also go to an optional SampleListener, e.g. MultiSourceMotion.
+ *
+ * Pong replies with device time feed a ClockSync. Once synchronized, device samples are
+ * stamped with phone time (elapsedRealtimeNanos) for the "sensor to receive" latency and
+ * movements carry it to the UI in Update.sensorNanos.
+ *
+ * While the UI is detached, received text goes to a SerialBacklog instead.
+ * On attach the backlog is replayed in slices, live text is held back until
+ * the replay is done to keep the order.
+ */
+final class SerialProcessor {
+
+    private static final String TAG = "SerialProcessor";
+    private static final int MAX_FRAME_LENGTH = 512;
+    private static final int MAX_PENDING_TEXT = 16 * 1024; // keep tail, if UI falls behind
+    private static final int REPLAY_SLICE = 4 * 1024;
+    private static final int HISTORY_SAMPLES = 1024;         // about 10s at 100Hz
+    private static final int MAX_GAP_FILL = 5;               // longer gaps stay gaps in history
+    private static final int FEATURE_WINDOW = 100;           // about 1s at 100Hz
+    private static final long FEATURE_SUMMARY_NANOS = 1_000_000_000L;
+
+    /**
+     * coalesced results since the last drain(), only accessed in main thread
+     */
+    static final class Update {
+        final int[] counts = new int[Movement.values().length];
+        Movement lastMovement;
+        long sensorNanos;   // phone time of the sample with lastMovement, 0 if unknown
+        CharSequence text = "";
+
+        int count(Movement movement) {
+            return counts[movement.ordinal()];
+        }
+
+        boolean hasMovement() {
+            return lastMovement != null;
+        }
+    }
+
+    /**
+     * device samples for other detectors, in processing thread. time as for movements,
+     * accel in g, gyro in dps
+     */
+    interface SampleListener {
+        void onSample(long timeNanos, float ax, float ay, float az, float gx, float gy, float gz);
+    }
+
+    private final FrameAssembler frameAssembler;
+    private final SampleFrameDecoder sampleDecoder;
+    private final JsonSampleDecoder jsonDecoder;
+    private final AccelFrameParser accelParser = new AccelFrameParser();
+    private final MessageDispatcher dispatcher = new MessageDispatcher();
+    private final SensorRing history = new SensorRing(HISTORY_SAMPLES, 6);
+    private final SampleGapTracker gapTracker = new SampleGapTracker();
+    private final ClockSync clockSync = new ClockSync();
+    private final SerialMetrics.Histogram sensorLatency;
+    private final MotionEngine engine;
+    private volatile boolean hexEnabled;
+    private volatile boolean movementDetectionEnabled = true;
+    private volatile SampleListener sampleListener;
+    private final SerialBacklog.RecordListener replayListener = this::replayRecord;
+
+    // processing thread only
+    private SerialBacklog backlog;
+    private final ArrayDeque<SerialBacklog.Replay> replays = new ArrayDeque<>();
+    private boolean frameMovement;
+    private boolean chunkMovement;
+    private float[] sampleValues = new float[6];
+    private float[] previousValues = new float[6];
+    private long chunkReceivedNanos;  // elapsedRealtimeNanos
+    private long samplePhoneNanos;    // 0 if not synchronized or no device time
+    private long pingId = -1;         // outstanding ping
+    private long lastPingId;
+    private long pingSentNanos;       // 0 until the writer wrote the ping
+    private long featureSummaryNanos;
+    private boolean deviceSamples;    // history is in device time
+    private boolean receiveTimeHistory; // history holds ACCEL frames in receive time
+    private long historyTimeMs;       // last appended, keeps history times increasing
+    private final StringBuilder featureSummary = new StringBuilder("none"); // guarded by itself, reused
+
+    // pending results, guarded by this
+    private final int[] pendingCounts = new int[Movement.values().length];
+    private Movement pendingMovement;
+    private long pendingSensorNanos;
+    private SpannableStringBuilder pendingText = new SpannableStringBuilder(); // keeps caret spans of toCaretString()
+    private SpannableStringBuilder replayText = new SpannableStringBuilder();
+    private boolean replaying;
+
+    // device status from JSON status objects, -1 if not reported yet
+    private volatile int deviceGyroOn = -1;
+    private volatile int deviceCalibrated = -1;
+    private volatile int deviceRateHz = -1;
+    private volatile int deviceBinaryFormat = -1;
+    private volatile boolean deviceProtocol;
+
+    SerialProcessor(SerialMetrics metrics) {
+        sensorLatency = metrics.histogram("sensor to receive", "us");
+        engine = new MotionEngine(SystemClock::elapsedRealtimeNanos, event -> movement(event.getMovement()));
+        engine.setFeatureWindow(FEATURE_WINDOW);
+        engine.addClassifier(PeakClassifier.espAccelerometer());
+        frameAssembler = new FrameAssembler(FrameAssembler.Mode.NEWLINE, MAX_FRAME_LENGTH, this::processFrame);
+        sampleDecoder = new SampleFrameDecoder(new SampleFrameDecoder.Listener() {
+            @Override
+            public void onSample(SampleFrameDecoder.Sample sample) {
+                processSample(sample);
+            }
+
+            @Override
+            public void onText(byte[] buf, int offset, int length) {
+                jsonDecoder.append(buf, offset, length);
+            }
+        });
+        registerMessageHandlers();
+        jsonDecoder = new JsonSampleDecoder(new JsonSampleDecoder.Listener() {
+            @Override
+            public void onSample(JsonSampleDecoder.Sample sample) {
+                if (!recordSample(sample.timeMs, -1, sample.ax, sample.ay, sample.az, sample.gx, sample.gy, sample.gz))
+                    return;
+                if (movementDetectionEnabled)
+                    detectMovement(sample.ax, sample.ay, sample.az, sample.gx, sample.gy, sample.gz);
+                notifySample(sample.ax, sample.ay, sample.az, sample.gx, sample.gy, sample.gz);
+            }
+
+            @Override
+            public void onState(boolean gyroOn) {
+                Log.i(TAG, "📡 ESP32 STATE: " + (gyroOn ? "GYRO_ON" : "GYRO_OFF"));
+                deviceGyroOn = gyroOn ? 1 : 0;
+                deviceProtocol = true;
+                gapTracker.restart();
+            }
+
+            @Override
+            public void onCalibration(boolean done) {
+                Log.i(TAG, "📡 ESP32 CALIBRATION: " + (done ? "ok" : "started"));
+                deviceCalibrated = done ? 1 : 0;
+                deviceProtocol = true;
+            }
+
+            @Override
+            public void onPong(long id, long deviceTimeMs) {
+                Log.d(TAG, "📡 ESP32 PONG " + id);
+                deviceProtocol = true;
+                if (id >= 0 && id == pingId && pingSentNanos != 0 && deviceTimeMs >= 0) {
+                    pingId = -1;
+                    if (!clockSync.addExchange(pingSentNanos, chunkReceivedNanos, deviceTimeMs))
+                        Log.w(TAG, "📡 ESP32 PONG: round trip out of range");
+                }
+            }
+
+            @Override
+            public void onRate(int hz) {
+                Log.i(TAG, "📡 ESP32 RATE: " + hz + " Hz");
+                deviceRateHz = hz;
+                deviceProtocol = true;
+                updateNominalPeriod();
+            }
+
+            @Override
+            public void onFormat(boolean binary) {
+                Log.i(TAG, "📡 ESP32 FORMAT: " + (binary ? "bin" : "json"));
+                deviceBinaryFormat = binary ? 1 : 0;
+                deviceProtocol = true;
+                gapTracker.restart();
+                updateNominalPeriod();
+            }
+
+            @Override
+            public void onText(byte[] buf, int offset, int length) {
+                frameAssembler.append(buf, offset, length);
+            }
+        });
+    }
+
+    /**
+     * text frames are dispatched here for movement detection,
+     * further message types can be registered, handlers run in processing thread
+     */
+    MessageDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * received samples, written in processing thread, readable from any thread
+     */
+    SensorRing getHistory() {
+        return history;
+    }
+
+    /**
+     * device to phone time mapping of the current connection, updated in processing thread
+     */
+    ClockSync getClockSync() {
+        return clockSync;
+    }
+
+    /**
+     * true once data in the ESP32 firmware protocol was received, i.e. PING is understood
+     */
+    boolean hasDeviceProtocol() {
+        return deviceProtocol;
+    }
+
+    /**
+     * processing thread. returns id for the next "PING id", only the latest ping is answered
+     */
+    long startPing() {
+        pingId = ++lastPingId;
+        pingSentNanos = 0;
+        return pingId;
+    }
+
+    /**
+     * processing thread. "PING id" was written at sentNanos (elapsedRealtimeNanos)
+     */
+    void pingWritten(long id, long sentNanos) {
+        if (id == pingId)
+            pingSentNanos = sentNanos;
+    }
+
+    /**
+     * loss statistics of the current connection, updated in processing thread
+     */
+    SampleGapTracker getGapTracker() {
+        return gapTracker;
+    }
+
+    void setHexEnabled(boolean enabled) {
+        hexEnabled = enabled;
+    }
+
+    void setMovementDetectionEnabled(boolean enabled) {
+        movementDetectionEnabled = enabled;
+    }
+
+    /**
+     * listener for device samples, null to stop
+     */
+    void setSampleListener(SampleListener listener) {
+        sampleListener = listener;
+    }
+
+    /**
+     * accel and gyro window features of the detection input, refreshed about once per second
+     */
+    String getFeatureSummary() {
+        synchronized (featureSummary) {
+            return featureSummary.toString();
+        }
+    }
+
+    long getFrameCount() {
+        return frameAssembler.getFrameCount();
+    }
+
+    long getDroppedFrameCount() {
+        return frameAssembler.getDroppedCount();
+    }
+
+    long getSampleCount() {
+        return sampleDecoder.getFrameCount();
+    }
+
+    long getSampleErrorCount() {
+        return sampleDecoder.getErrorCount();
+    }
+
+    long getJsonSampleCount() {
+        return jsonDecoder.getSampleCount();
+    }
+
+    long getJsonErrorCount() {
+        return jsonDecoder.getErrorCount();
+    }
+
+    /**
+     * last reported device status, for diagnostics
+     */
+    String getDeviceStatus() {
+        return "gyro=" + status(deviceGyroOn, "off", "on")
+                + ", calibration=" + status(deviceCalibrated, "started", "ok")
+                + ", rate=" + (deviceRateHz >= 0 ? deviceRateHz + " Hz" : "?")
+                + ", format=" + status(deviceBinaryFormat, "json", "bin");
+    }
+
+    private static String status(int value, String no, String yes) {
+        return value < 0 ? "?" : value == 1 ? yes : no;
+    }
+
+    /**
+     * processing thread
+     */
+    void reset() {
+        sampleDecoder.reset();
+        jsonDecoder.reset();
+        frameAssembler.reset();
+        gapTracker.reset();
+        clockSync.reset();
+        pingId = -1;
+        deviceProtocol = false;
+        deviceSamples = false;
+        historyTimeMs = 0;
+    }
+
+    /**
+     * processing thread. chunk is not released here
+     */
+    void process(BufferPool.Chunk chunk) {
+        // receive time is System.nanoTime, convert to the clock used for device time
+        chunkReceivedNanos = SystemClock.elapsedRealtimeNanos() - (System.nanoTime() - chunk.receivedNanos);
+        chunkMovement = false;
+        sampleDecoder.append(chunk.data, 0, chunk.length);
+        // after decoding, so Policy.MOVEMENTS keeps the chunks a movement was detected in
+        if (hexEnabled) {
+            if (backlog != null) {
+                addToBacklog(SerialBacklog.FLAG_HEX | (chunkMovement ? SerialBacklog.FLAG_MOVEMENT : 0), chunk.data, 0, chunk.length);
+            } else {
+                synchronized (this) {
+                    pendingText.append(TextUtil.toHexString(chunk.data, 0, chunk.length)).append('\n');
+                    trimPendingText();
+                }
+            }
+        }
+    }
+
+    /**
+     * processing thread. keep received text in backlog until stopBacklog()
+     */
+    void startBacklog(SerialBacklog backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * processing thread. stop collecting and queue the collected text for replay()
+     */
+    void stopBacklog(long nowMs) {
+        if (backlog == null)
+            return;
+        try {
+            replays.add(backlog.startReplay(nowMs));
+            synchronized (this) {
+                replaying = true;
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "backlog replay failed: " + e.getMessage());
+            backlog.clear();
+        }
+        backlog = null;
+    }
+
+    /**
+     * processing thread. read next slice of backlog, once the previous slice has been drained.
+     * returns true while more is to be replayed
+     */
+    boolean replay() {
+        synchronized (this) {
+            if (replayText.length() > 0)
+                return true;
+        }
+        SerialBacklog.Replay replay = replays.peek();
+        if (replay == null)
+            return false;
+        try {
+            if (replay.read(REPLAY_SLICE, replayListener))
+                return true;
+        } catch (IOException e) {
+            Log.w(TAG, "backlog replay failed: " + e.getMessage());
+        }
+        replay.close();
+        replays.remove();
+        if (replays.isEmpty()) {
+            synchronized (this) {
+                replaying = false;
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * processing thread. test sequence message, received now
+     */
+    void processTestFrame(byte[] buf, int offset, int length) {
+        chunkReceivedNanos = SystemClock.elapsedRealtimeNanos();
+        processFrame(buf, offset, length);
+    }
+
+    /**
+     * processing thread. complete message without line end
+     */
+    void processFrame(byte[] buf, int offset, int length) {
+        // ACCEL samples are parsed from the bytes without String and without
+        // debug log, at 100+ Hz both would be most of the per-sample garbage
+        String msg = null;
+        boolean accelFrame = AccelFrameParser.isAccelFrame(buf, offset, length);
+        if (!accelFrame) {
+            msg = new String(buf, offset, length, StandardCharsets.UTF_8);
+            // Debug: Log all received messages from ESP32
+            Log.d(TAG, "📥 ESP32 DATA: '" + msg + "'");
+        }
+
+        // ===== ESP32 + ADXL345 MOVEMENT DETECTION =====
+        frameMovement = false;
+        samplePhoneNanos = 0;
+        if (movementDetectionEnabled) {
+            dispatcher.dispatch(buf, offset, length);
+        }
+
+        // Display received line in terminal, hex mode shows the raw chunks instead
+        if (!hexEnabled) {
+            if (backlog != null) {
+                addToBacklog(frameMovement ? SerialBacklog.FLAG_MOVEMENT : 0, buf, offset, length);
+            } else {
+                if (msg == null)
+                    msg = new String(buf, offset, length, StandardCharsets.UTF_8);
+                synchronized (this) {
+                    pendingText.append(TextUtil.toCaretString(msg, false)).append('\n');
+                    trimPendingText();
+                }
+            }
+        }
+    }
+
+    private void processSample(SampleFrameDecoder.Sample sample) {
+        if (!recordSample(sample.timeMs, sample.sequence, sample.accelX(), sample.accelY(), sample.accelZ(), sample.gyroX(), sample.gyroY(), sample.gyroZ()))
+            return;
+        if (movementDetectionEnabled)
+            detectMovement(sample.accelX(), sample.accelY(), sample.accelZ(), sample.gyroX(), sample.gyroY(), sample.gyroZ());
+        notifySample(sample.accelX(), sample.accelY(), sample.accelZ(), sample.gyroX(), sample.gyroY(), sample.gyroZ());
+    }
+
+    /**
+     * processing thread, some time after the last received data. Reports a movement that
+     * waited for a following sample, e.g. a single ACCEL frame of a test sequence
+     */
+    void tick() {
+        if (!movementDetectionEnabled)
+            return;
+        samplePhoneNanos = 0;
+        engine.tick(engine.now());
+    }
+
+    /**
+     * track device sample and append it to history.
+     * returns false for duplicate and late samples, they are dropped
+     */
+    private boolean recordSample(long timeMs, int sequence, float ax, float ay, float az, float gx, float gy, float gz) {
+        SampleGapTracker.Result result = gapTracker.track(timeMs, sequence);
+        deviceProtocol = true;
+        if (result == SampleGapTracker.Result.DUPLICATE || result == SampleGapTracker.Result.LATE)
+            return false;
+        if (clockSync.isSynchronized()) {
+            samplePhoneNanos = clockSync.toPhoneNanos(timeMs);
+            sensorLatency.record((chunkReceivedNanos - samplePhoneNanos) / 1000);
+        } else {
+            samplePhoneNanos = 0;
+        }
+        float[] values = sampleValues;
+        values[0] = ax;
+        values[1] = ay;
+        values[2] = az;
+        values[3] = gx;
+        values[4] = gy;
+        values[5] = gz;
+        if (result == SampleGapTracker.Result.RESTART) {
+            Log.w(TAG, "📡 ESP32 TIME RESTART: history cleared");
+            history.clear(); // keep history times increasing
+        } else if (receiveTimeHistory) {
+            history.clear(); // ACCEL frames in receive time do not fit device time
+        } else if (result == SampleGapTracker.Result.GAP) {
+            gapTracker.fill(history, previousValues, values, MAX_GAP_FILL);
+        }
+        history.append(timeMs, values);
+        historyTimeMs = timeMs;
+        deviceSamples = true;
+        receiveTimeHistory = false;
+        sampleValues = previousValues;
+        previousValues = values;
+        return true;
+    }
+
+    /**
+     * binary frames are sent at the sample rate, JSON samples are downsampled by the
+     * firmware, their period is estimated from the timestamps
+     */
+    private void updateNominalPeriod() {
+        int hz = deviceRateHz;
+        gapTracker.setNominalPeriod(hz > 0 && deviceBinaryFormat == 1 ? 1000 / hz : 0); // firmware: integer ms period
+    }
+
+    /**
+     * true if results are pending that have not been taken by drain()
+     */
+    synchronized boolean hasPending() {
+        return pendingMovement != null
+                || replayText.length() > 0
+                || (!replaying && pendingText.length() > 0);
+    }
+
+    /**
+     * main thread. move pending results into update
+     */
+    synchronized void drain(Update update) {
+        for (int i = 0; i < pendingCounts.length; i++) {
+            update.counts[i] = pendingCounts[i];
+            pendingCounts[i] = 0;
+        }
+        update.lastMovement = pendingMovement;
+        update.sensorNanos = pendingSensorNanos;
+        pendingMovement = null;
+        if (replayText.length() > 0) {
+            update.text = replayText;
+            replayText = new SpannableStringBuilder();
+        } else if (!replaying && pendingText.length() > 0) {
+            update.text = pendingText;
+            pendingText = new SpannableStringBuilder();
+        } else {
+            update.text = "";
+        }
+    }
+
+    private void trimPendingText() {
+        if (pendingText.length() > MAX_PENDING_TEXT)
+            pendingText.delete(0, pendingText.length() - MAX_PENDING_TEXT);
+    }
+
+    private void addToBacklog(int flags, byte[] buf, int offset, int length) {
+        try {
+            backlog.add(System.currentTimeMillis(), flags, buf, offset, length);
+        } catch (IOException e) {
+            Log.w(TAG, "backlog write failed: " + e.getMessage());
+        }
+    }
+
+    private void replayRecord(long timeMs, int flags, byte[] buf, int offset, int length) {
+        synchronized (this) {
+            if ((flags & SerialBacklog.FLAG_HEX) != 0)
+                replayText.append(TextUtil.toHexString(buf, offset, offset + length));
+            else
+                replayText.append(TextUtil.toCaretString(new String(buf, offset, length, StandardCharsets.UTF_8), false));
+            replayText.append('\n');
+        }
+    }
+
+    private void movement(Movement movement) {
+        Log.i(TAG, "🎯 ESP32 MOVEMENT: " + movement + " detected!");
+        frameMovement = true;
+        chunkMovement = true;
+        synchronized (this) {
+            pendingCounts[movement.ordinal()]++;
+            pendingMovement = movement;
+            pendingSensorNanos = samplePhoneNanos;
+        }
+    }
+
+    // ===== ESP32 + ADXL345 DATA PROCESSING =====
+    private void registerMessageHandlers() {
+        // Format 1: Raw accelerometer data "ACCEL:x,y,z"
+        dispatcher.registerPrefix("ACCEL:", this::processAccelerometerData);
+
+        // Format 2: Processed movement commands "MOVE:LEFT", "MOVE:RIGHT", etc.
+        dispatcher.registerPrefix("MOVE:", this::processMovementCommand);
+
+        // Format 3: Legacy movement text messages (for compatibility), first match wins
+        dispatcher.registerPhrase("Lateral-Left Movement Detected", (buf, offset, length) -> movement(Movement.LEFT));
+        dispatcher.registerPhrase("Jump detected! Yahoo! ^^", (buf, offset, length) -> movement(Movement.FORWARD));
+        dispatcher.registerPhrase("Lateral- Right Movement Detected", (buf, offset, length) -> movement(Movement.RIGHT));
+        dispatcher.registerPhrase("Back Movement Detected", (buf, offset, length) -> movement(Movement.BACK));
+        dispatcher.registerPhrase("Backward Jump", (buf, offset, length) -> movement(Movement.BACK));
+    }
+
+    private void processAccelerometerData(byte[] buf, int offset, int length) {
+        // Expected format: "ACCEL:x,y,z" (e.g., "ACCEL:0.25,-0.13,0.07")
+        try {
+            if (accelParser.parse(buf, offset, length)) {
+                appendAccelFrame(accelParser.x, accelParser.y, accelParser.z);
+                long time = sampleNanos();
+                engine.accel(time, accelParser.x, accelParser.y, accelParser.z);
+                updateFeatureSummary(time);
+            }
+        } catch (NumberFormatException e) {
+            Log.e(TAG, "🔧 ESP32 DATA ERROR: Failed to process ESP32 data: " + new String(buf, offset, length, StandardCharsets.UTF_8) + " - " + e.getMessage());
+        }
+    }
+
+    /**
+     * ACCEL text frame into history, receive time mapped to device time if possible
+     */
+    private void appendAccelFrame(float x, float y, float z) {
+        long receivedNanos = chunkReceivedNanos != 0 ? chunkReceivedNanos : SystemClock.elapsedRealtimeNanos();
+        long timeMs;
+        boolean receiveTime;
+        if (clockSync.isSynchronized()) {
+            timeMs = clockSync.toDeviceMs(receivedNanos);
+            receiveTime = false;
+        } else if (!deviceSamples) {
+            timeMs = receivedNanos / 1_000_000;
+            receiveTime = true;
+        } else {
+            return; // device time history, but no mapping yet
+        }
+        if (receiveTime != receiveTimeHistory) {
+            history.clear(); // other time base
+            receiveTimeHistory = receiveTime;
+            historyTimeMs = timeMs;
+        }
+        timeMs = Math.max(timeMs, historyTimeMs);
+        history.append(timeMs, x, y, z, 0, 0, 0);
+        historyTimeMs = timeMs;
+    }
+
+    private void processMovementCommand(byte[] buf, int offset, int length) {
+        // Expected format: "MOVE:LEFT", "MOVE:RIGHT", "MOVE:FORWARD", "MOVE:BACK", case insensitive
+        int start = offset + 5;
+        int end = offset + length;
+        if (MessageDispatcher.equalsIgnoreCase(buf, start, end, "LEFT"))
+            movement(Movement.LEFT);
+        else if (MessageDispatcher.equalsIgnoreCase(buf, start, end, "RIGHT"))
+            movement(Movement.RIGHT);
+        else if (MessageDispatcher.equalsIgnoreCase(buf, start, end, "FORWARD") || MessageDispatcher.equalsIgnoreCase(buf, start, end, "UP"))
+            movement(Movement.FORWARD);
+        else if (MessageDispatcher.equalsIgnoreCase(buf, start, end, "BACK") || MessageDispatcher.equalsIgnoreCase(buf, start, end, "BACKWARD"))
+            movement(Movement.BACK);
+        else
+            Log.d(TAG, "🎯 ESP32 MOVE COMMAND unknown: " + new String(buf, start, end - start, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * device sample with accel in g and gyro in dps
+     */
+    private void detectMovement(float ax, float ay, float az, float gx, float gy, float gz) {
+        long time = sampleNanos();
+        engine.accel(time, ax, ay, az);
+        engine.gyro(time, gx, gy, gz);
+        updateFeatureSummary(time);
+    }
+
+    private void updateFeatureSummary(long timeNanos) {
+        if (timeNanos - featureSummaryNanos < FEATURE_SUMMARY_NANOS)
+            return;
+        featureSummaryNanos = timeNanos;
+        synchronized (featureSummary) {
+            featureSummary.setLength(0);
+            engine.getAccelFeatures().appendTo(featureSummary.append("accel "));
+            engine.getGyroFeatures().appendTo(featureSummary.append("; gyro "));
+        }
+    }
+
+    private void notifySample(float ax, float ay, float az, float gx, float gy, float gz) {
+        SampleListener listener = sampleListener;
+        if (listener != null)
+            listener.onSample(sampleNanos(), ax, ay, az, gx, gy, gz);
+    }
+
+    /**
+     * phone time of the current sample: from device time if synchronized, else receive time
+     */
+    private long sampleNanos() {
+        if (samplePhoneNanos != 0)
+            return samplePhoneNanos;
+        return chunkReceivedNanos != 0 ? chunkReceivedNanos : engine.now();
+    }
+}
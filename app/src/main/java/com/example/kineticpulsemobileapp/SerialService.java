@@ -5,24 +5,41 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.os.Binder;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.Message;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * create notification and queue serial data while activity is not in the foreground
- * use listener chain: SerialSocket -> SerialService -> UI fragment
+ * use listener chain: Transport -> SerialService -> UI fragment
+ *
+ * received data is decoded and classified on a processing thread,
+ * the UI thread only gets coalesced SerialProcessor.Update results
  */
 public class SerialService extends Service implements SerialListener {
 
@@ -30,29 +47,61 @@ public class SerialService extends Service implements SerialListener {
         SerialService getService() { return SerialService.this; }
     }
 
-    private enum QueueType {Connect, ConnectError, Read, IoError}
+    private enum QueueType {Connect, ConnectError, IoError}
 
     private static class QueueItem {
         QueueType type;
-        ArrayDeque<byte[]> datas;
         Exception e;
 
-        QueueItem(QueueType type) { this.type=type; if(type== QueueType.Read) init(); }
+        QueueItem(QueueType type) { this.type=type; }
         QueueItem(QueueType type, Exception e) { this.type=type; this.e=e; }
-        QueueItem(QueueType type, ArrayDeque<byte[]> datas) { this.type=type; this.datas=datas; }
-
-        void init() { datas = new ArrayDeque<>(); }
-        void add(byte[] data) { datas.add(data); }
     }
 
+    private static final int READ_BUFFER_COUNT = 64;
+    private static final int READ_BUFFER_SIZE = 1024;
+    private static final int MSG_READ = 1;
+    private static final int BACKLOG_MEMORY_BYTES = 64 * 1024;
+    private static final long BACKLOG_FILE_BYTES = 8 * 1024 * 1024;
+    private static final long REPLAY_INTERVAL_MS = 50;
+    private static final int IO_THREAD_COUNT = 2;            // active connection + one still closing
+    private static final long IO_THREAD_KEEP_ALIVE_S = 30;
+    private static final int WRITE_QUEUE_BYTES = 4096;
+    private static final int WRITE_MERGE_BYTES = 512;
+    private static final long METRICS_LOG_INTERVAL_MS = 10000;
+    private static final long PING_INTERVAL_MS = 2000;
+    private static final long DETECTION_TICK_MS = 200;         // pause after which a stream counts as released
+    private static final int WRITE_STATE_PING = 100;          // fragments use small keys
+
     private final Handler mainLooper;
     private final IBinder binder;
     private final ArrayDeque<QueueItem> queue1, queue2;
-    private final QueueItem lastRead;
+    private final BufferPool bufferPool;
+    private final SerialProcessor processor;
+    private final SerialProcessor.Update update; // only used in main thread
+    private final Runnable updateDispatcher;
+    private final Runnable replayStarter, replayer;
+    private SerialBacklog backlog;
+    private HandlerThread processingThread;
+    private Handler processingHandler;
+    private ThreadPoolExecutor ioExecutor;
+    private SerialWriter writer;
+    private boolean updatePosted;
+    private long updatePostedNanos;
+
+    private final SerialMetrics metrics;
+    private final SerialMetrics.Counter readCount, readBytes;
+    private final SerialMetrics.Histogram readSize, processQueueTime, processTime, processBacklog;
+    private final SerialMetrics.Histogram updateChunks, updateDelay;
+    private final AtomicInteger pendingChunks = new AtomicInteger();
+    private final AtomicInteger chunksSinceUpdate = new AtomicInteger();
+    private final Runnable metricsLogger;
+    private final Runnable pinger;
+    private final Runnable detectionTicker;
 
-    private SerialSocket socket;
+    private final BroadcastReceiver disconnectBroadcastReceiver;
+    private Transport transport;
     private SerialListener listener;
-    private boolean connected;
+    private volatile boolean connected;
 
     /**
      * Lifecylce
@@ -62,13 +111,78 @@ public class SerialService extends Service implements SerialListener {
         binder = new SerialBinder();
         queue1 = new ArrayDeque<>();
         queue2 = new ArrayDeque<>();
-        lastRead = new QueueItem(QueueType.Read);
+        bufferPool = new BufferPool(READ_BUFFER_COUNT, READ_BUFFER_SIZE);
+        metrics = new SerialMetrics();
+        processor = new SerialProcessor(metrics);
+        update = new SerialProcessor.Update();
+        updateDispatcher = this::dispatchUpdate;
+        replayStarter = () -> {
+            processor.stopBacklog(System.currentTimeMillis());
+            replay();
+        };
+        replayer = this::replay;
+        readCount = metrics.counter("reads");
+        readBytes = metrics.counter("read bytes");
+        readSize = metrics.histogram("read size", "B");
+        processBacklog = metrics.histogram("chunks queued", "");
+        processQueueTime = metrics.histogram("read to process", "us");
+        processTime = metrics.histogram("process chunk", "us");
+        updateChunks = metrics.histogram("chunks per update", "");
+        updateDelay = metrics.histogram("post to dispatch", "us");
+        metrics.gauge("queue1", queue1::size);
+        metrics.gauge("queue2", queue2::size);
+        metrics.gauge("read buffers free", bufferPool::getFreeCount);
+        metrics.gauge("read buffers allocated", bufferPool::getAllocatedCount);
+        metrics.gauge("samples lost", () -> processor.getGapTracker().getLostCount());
+        metrics.gauge("samples filled", () -> processor.getGapTracker().getFilledCount());
+        metrics.gauge("samples duplicate", () -> processor.getGapTracker().getDuplicateCount());
+        metrics.gauge("samples late", () -> processor.getGapTracker().getLateCount());
+        metricsLogger = this::logMetrics;
+        pinger = this::ping;
+        detectionTicker = () -> {
+            processor.tick();
+            requestUpdate();
+        };
+        disconnectBroadcastReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                onSerialIoError(new IOException("background disconnect"));
+                disconnect(); // disconnect now, else would be queued until UI re-attached
+            }
+        };
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        processingThread = new HandlerThread("SerialProcessor", Process.THREAD_PRIORITY_DISPLAY);
+        processingThread.start();
+        processingHandler = new Handler(processingThread.getLooper(), this::handleProcessingMessage);
+        backlog = new SerialBacklog(getCacheDir(), BACKLOG_MEMORY_BYTES, BACKLOG_FILE_BYTES);
+        backlog.clear();
+        ioExecutor = new ThreadPoolExecutor(IO_THREAD_COUNT, IO_THREAD_COUNT,
+                IO_THREAD_KEEP_ALIVE_S, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new IoThreadFactory());
+        ioExecutor.allowCoreThreadTimeOut(true);
+        writer = new SerialWriter(WRITE_QUEUE_BYTES, WRITE_MERGE_BYTES, this::onSerialIoError);
+        writer.start();
+        metrics.gauge("write queue", writer::getQueueDepth);
+        metrics.gauge("writes dropped", writer::getDroppedCount);
+        metrics.gauge("backlog records", backlog::getRecordCount);
+        metrics.gauge("backlog dropped", backlog::getDroppedCount);
+        processingHandler.postDelayed(metricsLogger, METRICS_LOG_INTERVAL_MS);
+        processingHandler.postDelayed(pinger, PING_INTERVAL_MS);
     }
 
     @Override
     public void onDestroy() {
         cancelNotification();
         disconnect();
+        ioExecutor.shutdown(); // socket is closed, so the read loop ends
+        writer.quit();
+        processingHandler.removeCallbacks(metricsLogger);
+        processingHandler.removeCallbacks(pinger);
+        processingHandler.removeCallbacks(detectionTicker);
+        processingThread.quitSafely();
         super.onDestroy();
     }
 
@@ -81,25 +195,92 @@ public class SerialService extends Service implements SerialListener {
     /**
      * Api
      */
-    public void connect(SerialSocket socket) throws IOException {
-        socket.connect(this);
-        this.socket = socket;
+    public void connect(Transport transport) throws IOException {
+        processingHandler.post(processor::reset);
+        transport.connect(this, bufferPool, ioExecutor);
+        ContextCompat.registerReceiver(this, disconnectBroadcastReceiver, new IntentFilter(Constants.INTENT_ACTION_DISCONNECT), ContextCompat.RECEIVER_NOT_EXPORTED);
+        this.transport = transport;
+        writer.setSink(transport::write);
         connected = true;
     }
 
     public void disconnect() {
         connected = false; // ignore data,errors while disconnecting
         cancelNotification();
-        if(socket != null) {
-            socket.disconnect();
-            socket = null;
+        writer.setSink(null);
+        if(transport != null) {
+            transport.disconnect();
+            transport = null;
+            try {
+                unregisterReceiver(disconnectBroadcastReceiver);
+            } catch (Exception ignored) {
+            }
         }
     }
 
+    /**
+     * queue data for the writer thread, write errors are reported with onSerialIoError
+     */
     public void write(byte[] data) throws IOException {
+        writeState(SerialWriter.NO_STATE, data);
+    }
+
+    /**
+     * like write(), but replaces data with the same stateKey that is still queued
+     */
+    public void writeState(int stateKey, byte[] data) throws IOException {
+        writeState(stateKey, data, null);
+    }
+
+    private void writeState(int stateKey, byte[] data, SerialWriter.WrittenListener written) throws IOException {
         if(!connected)
             throw new IOException("not connected");
-        socket.write(data);
+        writer.write(data, stateKey, written);
+    }
+
+    SerialWriter getWriter() {
+        return writer;
+    }
+
+    BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * executor running the transport connect & read loops, e.g. for pool size in diagnostics
+     */
+    ThreadPoolExecutor getIoExecutor() {
+        return ioExecutor;
+    }
+
+    SerialProcessor getProcessor() {
+        return processor;
+    }
+
+    /**
+     * ingest path metrics, the UI records its own receive time here
+     */
+    SerialMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * select what is kept while detached. keepSeconds is used for Policy.LATEST
+     */
+    void setBacklogPolicy(SerialBacklog.Policy policy, int keepSeconds) {
+        processingHandler.post(() -> backlog.setPolicy(policy, keepSeconds * 1000L));
+    }
+
+    /**
+     * process message as if received, e.g. for test sequences
+     */
+    void processTestFrame(String msg) {
+        byte[] frame = msg.getBytes(StandardCharsets.UTF_8);
+        processingHandler.post(() -> {
+            processor.processTestFrame(frame, 0, frame.length);
+            scheduleDetectionTick();
+            requestUpdate();
+        });
     }
 
     public void attach(SerialListener listener) {
@@ -116,7 +297,6 @@ public class SerialService extends Service implements SerialListener {
             switch(item.type) {
                 case Connect:       listener.onSerialConnect      (); break;
                 case ConnectError:  listener.onSerialConnectError (item.e); break;
-                case Read:          listener.onSerialRead         (item.datas); break;
                 case IoError:       listener.onSerialIoError      (item.e); break;
             }
         }
@@ -124,12 +304,18 @@ public class SerialService extends Service implements SerialListener {
             switch(item.type) {
                 case Connect:       listener.onSerialConnect      (); break;
                 case ConnectError:  listener.onSerialConnectError (item.e); break;
-                case Read:          listener.onSerialRead         (item.datas); break;
                 case IoError:       listener.onSerialIoError      (item.e); break;
             }
         }
         queue1.clear();
         queue2.clear();
+        // movements detected while detached are still pending in processor,
+        // received text is streamed from backlog
+        if (processor.hasPending()) {
+            processor.drain(update);
+            listener.onSerialRead(update);
+        }
+        processingHandler.post(replayStarter);
     }
 
     public void detach() {
@@ -139,6 +325,7 @@ public class SerialService extends Service implements SerialListener {
         // items occurring later, will be moved directly to queue2
         // detach() and mainLooper.post run in the main thread, so all items are caught
         listener = null;
+        processingHandler.post(() -> processor.startBacklog(backlog));
     }
 
     private void initNotification() {
@@ -172,7 +359,7 @@ public class SerialService extends Service implements SerialListener {
                 .setSmallIcon(R.drawable.ic_notification)
                 .setColor(getResources().getColor(R.color.colorPrimary))
                 .setContentTitle(getResources().getString(R.string.app_name))
-                .setContentText(socket != null ? "Connected to "+socket.getName() : "Background Service")
+                .setContentText(transport != null ? "Connected to "+transport.getName() : "Background Service")
                 .setContentIntent(restartPendingIntent)
                 .setOngoing(true)
                 .addAction(new NotificationCompat.Action(R.drawable.ic_clear_white_24dp, "Disconnect", disconnectPendingIntent));
@@ -227,48 +414,121 @@ public class SerialService extends Service implements SerialListener {
         }
     }
 
-    public void onSerialRead(ArrayDeque<byte[]> datas) { throw new UnsupportedOperationException(); }
+    public void onSerialRead(SerialProcessor.Update update) { throw new UnsupportedOperationException(); }
 
     /**
-     * reduce number of UI updates by merging data chunks.
+     * decode data in processing thread and reduce number of UI updates by merging results.
      * Data can arrive at hundred chunks per second, but the UI can only
      * perform a dozen updates if receiveText already contains much text.
      *
-     * On new data inform UI thread once (1).
-     * While not consumed (2), add more data (3).
+     * On new results inform UI thread once (1).
+     * While not consumed (2), processor merges more results (3).
+     * While detached, results stay in processor until attach().
      */
-    public void onSerialRead(byte[] data) {
+    public void onSerialRead(BufferPool.Chunk chunk) {
         if(connected) {
-            synchronized (this) {
-                if (listener != null) {
-                    boolean first;
-                    synchronized (lastRead) {
-                        first = lastRead.datas.isEmpty(); // (1)
-                        lastRead.add(data); // (3)
-                    }
-                    if(first) {
-                        mainLooper.post(() -> {
-                            ArrayDeque<byte[]> datas;
-                            synchronized (lastRead) {
-                                datas = lastRead.datas;
-                                lastRead.init(); // (2)
-                            }
-                            if (listener != null) {
-                                listener.onSerialRead(datas);
-                            } else {
-                                queue1.add(new QueueItem(QueueType.Read, datas));
-                            }
-                        });
-                    }
-                } else {
-                    if(queue2.isEmpty() || queue2.getLast().type != QueueType.Read)
-                        queue2.add(new QueueItem(QueueType.Read));
-                    queue2.getLast().add(data);
-                }
+            readCount.inc();
+            readBytes.add(chunk.length);
+            readSize.record(chunk.length);
+            processBacklog.record(pendingChunks.incrementAndGet());
+            chunk.receivedNanos = System.nanoTime();
+            processingHandler.obtainMessage(MSG_READ, chunk).sendToTarget();
+        } else {
+            chunk.release();
+        }
+    }
+
+    private boolean handleProcessingMessage(Message msg) {
+        if (msg.what != MSG_READ)
+            return false;
+        BufferPool.Chunk chunk = (BufferPool.Chunk) msg.obj;
+        long start = System.nanoTime();
+        pendingChunks.decrementAndGet();
+        processQueueTime.record((start - chunk.receivedNanos) / 1000);
+        try {
+            processor.process(chunk); // (3)
+        } finally {
+            chunk.release();
+        }
+        processTime.record((System.nanoTime() - start) / 1000);
+        scheduleDetectionTick();
+        chunksSinceUpdate.incrementAndGet();
+        requestUpdate();
+        return true;
+    }
+
+    /**
+     * processing thread. tick once DETECTION_TICK_MS after the last data, so a movement
+     * is not held back until the next sample arrives
+     */
+    private void scheduleDetectionTick() {
+        processingHandler.removeCallbacks(detectionTicker);
+        processingHandler.postDelayed(detectionTicker, DETECTION_TICK_MS);
+    }
+
+    private void requestUpdate() {
+        if (!processor.hasPending())
+            return;
+        synchronized (this) {
+            if (listener != null && !updatePosted) {
+                updatePosted = true; // (1)
+                updatePostedNanos = System.nanoTime();
+                mainLooper.post(updateDispatcher);
             }
         }
     }
 
+    private void replay() {
+        processingHandler.removeCallbacks(replayer);
+        if (processor.replay())
+            processingHandler.postDelayed(replayer, REPLAY_INTERVAL_MS);
+        requestUpdate();
+    }
+
+    private void dispatchUpdate() {
+        long postedNanos;
+        synchronized (this) {
+            updatePosted = false; // (2)
+            postedNanos = updatePostedNanos;
+        }
+        updateDelay.record((System.nanoTime() - postedNanos) / 1000);
+        updateChunks.record(chunksSinceUpdate.getAndSet(0));
+        if (listener != null) {
+            processor.drain(update);
+            listener.onSerialRead(update);
+        }
+    }
+
+    /**
+     * periodic "PING id" in processing thread for clock synchronization, the device
+     * answers with its time. Only sent to devices known to speak the ESP32 protocol.
+     * The send time is taken when the writer thread writes the PING, not when it is queued
+     */
+    private void ping() {
+        if (connected && processor.hasDeviceProtocol()) {
+            long id = processor.startPing();
+            try {
+                writeState(WRITE_STATE_PING, ("PING " + id + "\n").getBytes(StandardCharsets.US_ASCII), writeNanos -> {
+                    long sentNanos = SystemClock.elapsedRealtimeNanos() - (System.nanoTime() - writeNanos);
+                    processingHandler.post(() -> processor.pingWritten(id, sentNanos));
+                });
+            } catch (IOException ignored) {
+                // disconnected meanwhile
+            }
+        }
+        processingHandler.postDelayed(pinger, PING_INTERVAL_MS);
+    }
+
+    /**
+     * periodic summary in processing thread, only while connected to keep idle logcat quiet
+     */
+    private void logMetrics() {
+        String summary = metrics.summary(); // also starts the next interval while disconnected
+        if (connected)
+            Log.i("SerialService", "📊 SERIAL METRICS:\n" + summary);
+        processingHandler.postDelayed(metricsLogger, METRICS_LOG_INTERVAL_MS);
+    }
+
     public void onSerialIoError(Exception e) {
         if(connected) {
             synchronized (this) {
@@ -289,4 +549,13 @@ public class SerialService extends Service implements SerialListener {
         }
     }
 
+    private static class IoThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, "SerialIO-" + count.incrementAndGet());
+        }
+    }
+
 }
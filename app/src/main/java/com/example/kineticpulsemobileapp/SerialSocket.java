@@ -1,63 +1,47 @@
 package com.example.kineticpulsemobileapp;
 
-import android.app.Activity;
 import android.bluetooth.BluetoothDevice;
 import android.bluetooth.BluetoothSocket;
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
-
-import androidx.core.content.ContextCompat;
 
 import java.io.IOException;
-import java.security.InvalidParameterException;
-import java.util.Arrays;
+import java.io.InputStream;
 import java.util.UUID;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Executor;
 
-class SerialSocket implements Runnable {
+class SerialSocket implements Transport, Runnable {
 
     private static final UUID BLUETOOTH_SPP = UUID.fromString("00001101-0000-1000-8000-00805F9B34FB");
 
-    private final BroadcastReceiver disconnectBroadcastReceiver;
-
-    private final Context context;
     private SerialListener listener;
+    private BufferPool bufferPool;
     private final BluetoothDevice device;
-    private BluetoothSocket socket;
-    private boolean connected;
+    private volatile BluetoothSocket socket;
+    private volatile boolean disconnected;
+    private volatile boolean connected;
 
-    SerialSocket(Context context, BluetoothDevice device) {
-        if(context instanceof Activity)
-            throw new InvalidParameterException("expected non UI context");
-        this.context = context;
+    SerialSocket(BluetoothDevice device) {
         this.device = device;
-        disconnectBroadcastReceiver = new BroadcastReceiver() {
-            @Override
-            public void onReceive(Context context, Intent intent) {
-                if(listener != null)
-                    listener.onSerialIoError(new IOException("background disconnect"));
-                disconnect(); // disconnect now, else would be queued until UI re-attached
-            }
-        };
     }
 
-    String getName() {
+    @Override
+    public String getName() {
         return device.getName() != null ? device.getName() : device.getAddress();
     }
 
     /**
-     * connect-success and most connect-errors are returned asynchronously to listener
+     * connect & read loop run in executor, the thread is returned after disconnect
      */
-    void connect(SerialListener listener) throws IOException {
+    @Override
+    public void connect(SerialListener listener, BufferPool bufferPool, Executor executor) {
         this.listener = listener;
-        ContextCompat.registerReceiver(context, disconnectBroadcastReceiver, new IntentFilter(Constants.INTENT_ACTION_DISCONNECT), ContextCompat.RECEIVER_NOT_EXPORTED);
-        Executors.newSingleThreadExecutor().submit(this);
+        this.bufferPool = bufferPool;
+        executor.execute(this);
     }
 
-    void disconnect() {
+    @Override
+    public void disconnect() {
         listener = null; // ignore remaining data and errors
+        disconnected = true; // socket created after this point is closed by run loop
         // connected = false; // run loop will reset connected
         if(socket != null) {
             try {
@@ -66,14 +50,12 @@ class SerialSocket implements Runnable {
             }
             socket = null;
         }
-        try {
-            context.unregisterReceiver(disconnectBroadcastReceiver);
-        } catch (Exception ignored) {
-        }
     }
 
-    void write(byte[] data) throws IOException {
-        if (!connected)
+    @Override
+    public void write(byte[] data) throws IOException {
+        BluetoothSocket socket = this.socket; // disconnect() may clear the field concurrently
+        if (!connected || socket == null)
             throw new IOException("not connected");
         socket.getOutputStream().write(data);
     }
@@ -82,10 +64,14 @@ class SerialSocket implements Runnable {
     public void run() { // connect & read
         try {
             socket = device.createRfcommSocketToServiceRecord(BLUETOOTH_SPP);
+            if(disconnected)
+                throw new IOException("disconnected");
             socket.connect();
+            connected = true; // before onSerialConnect, writer thread may write right away
             if(listener != null)
                 listener.onSerialConnect();
         } catch (Exception e) {
+            connected = false;
             if(listener != null)
                 listener.onSerialConnectError(e);
             try {
@@ -95,16 +81,28 @@ class SerialSocket implements Runnable {
             socket = null;
             return;
         }
-        connected = true;
         try {
-            byte[] buffer = new byte[1024];
-            int len;
+            InputStream inputStream = socket.getInputStream();
             //noinspection InfiniteLoopStatement
             while (true) {
-                len = socket.getInputStream().read(buffer);
-                byte[] data = Arrays.copyOf(buffer, len);
-                if(listener != null)
-                    listener.onSerialRead(data);
+                BufferPool.Chunk chunk = bufferPool.acquire();
+                int len;
+                try {
+                    len = inputStream.read(chunk.data);
+                } catch (IOException e) {
+                    chunk.release(); // read fails on every disconnect, keep the slab in the pool
+                    throw e;
+                }
+                if (len < 0) {
+                    chunk.release();
+                    throw new IOException("end of stream");
+                }
+                chunk.length = len;
+                SerialListener l = listener;
+                if(l != null)
+                    l.onSerialRead(chunk);
+                else
+                    chunk.release();
             }
         } catch (Exception e) {
             connected = false;
@@ -0,0 +1,215 @@
+package com.example.kineticpulsemobileapp;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * write queue with own thread, so SerialService.write() does not block the caller.
+ * use chain: UI fragment -> SerialService -> SerialWriter -> Transport
+ *
+ * Messages queued while a write is in progress are merged into one transport write.
+ * Messages written with a state key replace a queued message with the same key,
+ * e.g. for LED colors only the latest one matters.
+ * The queue is bounded, messages exceeding it are dropped and counted.
+ * A WrittenListener learns when its message was actually written, e.g. for the
+ * send time of a PING, which may wait in the queue.
+ */
+final class SerialWriter {
+
+    static final int NO_STATE = 0;
+
+    interface Sink {
+        void write(byte[] data) throws IOException;
+    }
+
+    interface ErrorListener {
+        void onWriteError(IOException e);
+    }
+
+    /**
+     * called in writer thread after a successful write, with System.nanoTime() when the write started
+     */
+    interface WrittenListener {
+        void onWritten(long writeNanos);
+    }
+
+    private static final class Entry {
+        byte[] data;
+        WrittenListener written;
+        final int stateKey;
+        final long queuedNanos;
+
+        Entry(byte[] data, WrittenListener written, int stateKey, long queuedNanos) {
+            this.data = data;
+            this.written = written;
+            this.stateKey = stateKey;
+            this.queuedNanos = queuedNanos;
+        }
+    }
+
+    private final int maxQueuedBytes;
+    private final int maxWriteBytes;
+    private final ErrorListener errorListener;
+    private Thread thread;
+
+    // guarded by this
+    private final ArrayDeque<Entry> queue = new ArrayDeque<>();
+    private int queuedBytes;
+    private Sink sink;
+    private boolean quit;
+    private long writes, messages, replaced, dropped;
+    private int maxDepth;
+    private long latencySumNanos, maxLatencyNanos;
+
+    SerialWriter(int maxQueuedBytes, int maxWriteBytes, ErrorListener errorListener) {
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.maxWriteBytes = maxWriteBytes;
+        this.errorListener = errorListener;
+    }
+
+    void start() {
+        thread = new Thread(this::run, "SerialWriter");
+        thread.start();
+    }
+
+    synchronized void quit() {
+        quit = true;
+        notifyAll();
+    }
+
+    /**
+     * messages queued for the previous sink are dropped
+     */
+    synchronized void setSink(Sink sink) {
+        this.sink = sink;
+        queue.clear();
+        queuedBytes = 0;
+    }
+
+    /**
+     * returns false if there is no sink or the queue is full
+     */
+    synchronized boolean write(byte[] data, int stateKey) {
+        return write(data, stateKey, null);
+    }
+
+    /**
+     * like write(data, stateKey), written is called once data was written, not if it was replaced or dropped
+     */
+    synchronized boolean write(byte[] data, int stateKey, WrittenListener written) {
+        if (sink == null || quit)
+            return false;
+        if (stateKey != NO_STATE) {
+            for (Entry entry : queue) {
+                if (entry.stateKey == stateKey) {
+                    queuedBytes += data.length - entry.data.length;
+                    entry.data = data;
+                    entry.written = written;
+                    replaced++;
+                    return true;
+                }
+            }
+        }
+        if (queuedBytes + data.length > maxQueuedBytes) {
+            dropped++;
+            return false;
+        }
+        queue.add(new Entry(data, written, stateKey, System.nanoTime()));
+        queuedBytes += data.length;
+        maxDepth = Math.max(maxDepth, queue.size());
+        notifyAll();
+        return true;
+    }
+
+    synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    synchronized long getReplacedCount() {
+        return replaced;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "SerialWriter{queued=" + queue.size() + " (" + queuedBytes + " bytes), maxQueued=" + maxDepth
+                + ", messages=" + messages + " in " + writes + " writes"
+                + ", replaced=" + replaced + ", dropped=" + dropped
+                + ", latency avg=" + (messages > 0 ? latencySumNanos / messages / 1000 : 0) + "us"
+                + " max=" + maxLatencyNanos / 1000 + "us}";
+    }
+
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        while (true) {
+            Sink target;
+            int bytes = 0;
+            synchronized (this) {
+                try {
+                    while (!quit && queue.isEmpty())
+                        wait();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (quit)
+                    return;
+                target = sink;
+                while (!queue.isEmpty() && (batch.isEmpty() || bytes + queue.peek().data.length <= maxWriteBytes)) {
+                    Entry entry = queue.poll();
+                    bytes += entry.data.length;
+                    batch.add(entry);
+                }
+                queuedBytes -= bytes;
+            }
+            byte[] data = batch.get(0).data;
+            if (batch.size() > 1) {
+                data = new byte[bytes];
+                int pos = 0;
+                for (Entry entry : batch) {
+                    System.arraycopy(entry.data, 0, data, pos, entry.data.length);
+                    pos += entry.data.length;
+                }
+            }
+            IOException error = null;
+            long writeNanos = System.nanoTime();
+            try {
+                target.write(data);
+            } catch (IOException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                error = new IOException("write failed", e); // keep the writer thread alive
+            }
+            long now = System.nanoTime();
+            synchronized (this) {
+                if (error == null) {
+                    writes++;
+                    messages += batch.size();
+                    for (Entry entry : batch) {
+                        long latency = now - entry.queuedNanos;
+                        latencySumNanos += latency;
+                        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+                    }
+                } else if (sink == target) {
+                    queue.clear();
+                    queuedBytes = 0;
+                } else {
+                    error = null; // sink already replaced, error belongs to previous connection
+                }
+            }
+            if (error == null) {
+                for (Entry entry : batch) {
+                    if (entry.written != null)
+                        entry.written.onWritten(writeNanos);
+                }
+            }
+            batch.clear();
+            if (error != null)
+                errorListener.onWriteError(error);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.kineticpulsemobileapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.Executor;
+
+/**
+ * serial connection over TCP, e.g. to tools/serial_simulator.py for load tests without hardware.
+ * address format: tcp:host:port, the Android emulator reaches the host computer as 10.0.2.2
+ */
+class TcpSocket implements Transport, Runnable {
+
+    static final String ADDRESS_PREFIX = "tcp:";
+    static final String EMULATOR_HOST_ADDRESS = ADDRESS_PREFIX + "10.0.2.2:7777";
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+
+    private final String host;
+    private final int port;
+    private SerialListener listener;
+    private BufferPool bufferPool;
+    private volatile Socket socket;
+    private volatile boolean disconnected;
+    private volatile boolean connected;
+
+    TcpSocket(String host, int port) {
+        this.host = host;
+        this.port = port;
+    }
+
+    static boolean isAddress(String address) {
+        return address != null && address.startsWith(ADDRESS_PREFIX);
+    }
+
+    /**
+     * parse tcp:host:port
+     */
+    static TcpSocket fromAddress(String address) {
+        int colon = address.lastIndexOf(':');
+        if (!isAddress(address) || colon < ADDRESS_PREFIX.length())
+            throw new IllegalArgumentException("expected tcp:host:port, got " + address);
+        return new TcpSocket(address.substring(ADDRESS_PREFIX.length(), colon), Integer.parseInt(address.substring(colon + 1)));
+    }
+
+    @Override
+    public String getName() {
+        return host + ":" + port;
+    }
+
+    @Override
+    public void connect(SerialListener listener, BufferPool bufferPool, Executor executor) {
+        this.listener = listener;
+        this.bufferPool = bufferPool;
+        executor.execute(this);
+    }
+
+    @Override
+    public void disconnect() {
+        listener = null; // ignore remaining data and errors
+        disconnected = true; // socket created after this point is closed by run loop
+        if(socket != null) {
+            try {
+                socket.close();
+            } catch (Exception ignored) {
+            }
+            socket = null;
+        }
+    }
+
+    @Override
+    public void write(byte[] data) throws IOException {
+        Socket socket = this.socket; // disconnect() may clear the field concurrently
+        if (!connected || socket == null)
+            throw new IOException("not connected");
+        socket.getOutputStream().write(data);
+    }
+
+    @Override
+    public void run() { // connect & read
+        try {
+            socket = new Socket();
+            if(disconnected)
+                throw new IOException("disconnected");
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MS);
+            connected = true; // before onSerialConnect, writer thread may write right away
+            if(listener != null)
+                listener.onSerialConnect();
+        } catch (Exception e) {
+            connected = false;
+            if(listener != null)
+                listener.onSerialConnectError(e);
+            try {
+                socket.close();
+            } catch (Exception ignored) {
+            }
+            socket = null;
+            return;
+        }
+        try {
+            InputStream inputStream = socket.getInputStream();
+            //noinspection InfiniteLoopStatement
+            while (true) {
+                BufferPool.Chunk chunk = bufferPool.acquire();
+                int len;
+                try {
+                    len = inputStream.read(chunk.data);
+                } catch (IOException e) {
+                    chunk.release(); // read fails on every disconnect, keep the slab in the pool
+                    throw e;
+                }
+                if (len < 0) {
+                    chunk.release();
+                    throw new IOException("end of stream");
+                }
+                chunk.length = len;
+                SerialListener l = listener;
+                if(l != null)
+                    l.onSerialRead(chunk);
+                else
+                    chunk.release();
+            }
+        } catch (Exception e) {
+            connected = false;
+            if (listener != null)
+                listener.onSerialIoError(e);
+            try {
+                socket.close();
+            } catch (Exception ignored) {
+            }
+            socket = null;
+        }
+    }
+}
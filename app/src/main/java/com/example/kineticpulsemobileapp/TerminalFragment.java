@@ -19,11 +19,13 @@ import android.os.Bundle;
 import android.os.IBinder;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
 import android.text.method.ScrollingMovementMethod;
 import android.text.style.ForegroundColorSpan;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.animation.Animation;
 import android.view.animation.AnimationUtils;
 import android.view.LayoutInflater;
@@ -50,13 +52,21 @@ import com.google.firebase.auth.FirebaseUser;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 
+import com.example.kineticpulsemobileapp.motion.MotionEngine;
+import com.example.kineticpulsemobileapp.motion.Movement;
+import com.example.kineticpulsemobileapp.motion.PeakClassifier;
 
 
-import java.util.ArrayDeque;
+
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
-import retrofit2.Call;
-import retrofit2.Callback;
 import retrofit2.Response;
 
 public class TerminalFragment extends Fragment implements ServiceConnection, SerialListener {
@@ -66,18 +76,21 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
     
     private FirebaseAuth auth;
     private String deviceAddress;
-    private SerialService service;
+    private volatile SerialService service;   // volatile: read by feedback sinks
+    private SerialMetrics.Histogram receiveTime;
+    private volatile SerialMetrics.Histogram feedbackLatency;
     private SensorMode currentSensorMode = SensorMode.ESP32_ADXL345; // Default to ESP32
 
     private TextView receiveText;
     private TextView sendText;
     private TextUtil.HexWatcher hexWatcher;
 
-    private Connected connected = Connected.False;
+    private volatile Connected connected = Connected.False;
     private boolean initialStart = true;
     private boolean hexEnabled = false;
     private boolean pendingNewline = false;
     private String newline = TextUtil.newline_crlf;
+    private SerialBacklog.Policy backlogPolicy = SerialBacklog.Policy.ALL;
     
     // Phone sensor variables
     private SensorManager sensorManager;
@@ -86,6 +99,8 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
     private boolean gyroEnabled = false;
     
     private static final int REQ_BT_CONNECT = 1001;
+    private static final String LED_COMMANDS = "wrbgtlamo"; // single letter LED color/mode commands
+    private static final int WRITE_STATE_LED = 1;
     private final Handler reconnectHandler = new Handler(Looper.getMainLooper());
     private final Runnable reconnectRunnable = () -> {
         if (connected != Connected.True) connect();
@@ -144,6 +159,9 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
     // Mode + TTS
     private static final String PREFS_APP = "AppPrefs";
     private static final String PREF_PROD_MODE = "prod_mode";
+    private static final String PREF_REMOTE_PHONES = "remote_phones"; // tcp:host:port, comma separated
+    private static final String PREF_BACKLOG_POLICY = "backlog_policy"; // SerialBacklog.Policy name
+    private static final int BACKLOG_KEEP_SECONDS = 60;
     private boolean isProductionMode = true; // default
     private TextToSpeech tts;
     
@@ -164,6 +182,13 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
         auth = FirebaseAuth.getInstance();
         Bundle args = getArguments();
         deviceAddress = args != null ? args.getString("device") : null;
+        String policy = requireContext().getSharedPreferences(PREFS_APP, Context.MODE_PRIVATE)
+                .getString(PREF_BACKLOG_POLICY, backlogPolicy.name());
+        try {
+            backlogPolicy = SerialBacklog.Policy.valueOf(policy);
+        } catch (IllegalArgumentException ignored) {
+            // unknown name from another version, keep default
+        }
     }
 
     @Override
@@ -176,6 +201,12 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
         Activity a = getActivity();
         if (a != null) a.stopService(new Intent(a, SerialService.class));
         reconnectHandler.removeCallbacksAndMessages(null);
+        ledExecutor.shutdown();
+        apiExecutor.shutdown();
+        ttsExecutor.shutdown();
+        stopMultiSource();
+        remoteScheduler.shutdown();
+        remoteExecutor.shutdown();
         super.onDestroy();
     }
 
@@ -238,6 +269,9 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
     @Override
     public void onServiceConnected(ComponentName name, IBinder binder) {
         service = ((SerialService.SerialBinder) binder).getService();
+        receiveTime = service.getMetrics().histogram("ui receive", "us");
+        feedbackLatency = service.getMetrics().histogram("sensor to feedback", "us");
+        updateProcessorSettings();
         service.attach(this);
         if(initialStart && isResumed() && isAdded()) {
             initialStart = false;
@@ -431,12 +465,25 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
             });
             builder.create().show();
             return true;
+        } else if (id == R.id.backlog) {
+            AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+            builder.setTitle("Background backlog");
+            builder.setSingleChoiceItems(R.array.backlog_names, backlogPolicy.ordinal(), (dialog, item1) -> {
+                backlogPolicy = SerialBacklog.Policy.values()[item1];
+                requireContext().getSharedPreferences(PREFS_APP, Context.MODE_PRIVATE)
+                        .edit().putString(PREF_BACKLOG_POLICY, backlogPolicy.name()).apply();
+                updateProcessorSettings();
+                dialog.dismiss();
+            });
+            builder.create().show();
+            return true;
         } else if (id == R.id.hex) {
             hexEnabled = !hexEnabled;
             sendText.setText("");
             hexWatcher.enable(hexEnabled);
             sendText.setHint(hexEnabled ? "HEX mode" : "");
             item.setChecked(hexEnabled);
+            updateProcessorSettings();
             return true;
         } else if (id == R.id.backgroundNotification) {
             if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -457,6 +504,16 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
      */
     private void connect() {
         try {
+            if (TcpSocket.isAddress(deviceAddress)) { // simulator, no bluetooth needed
+                if (service == null) {
+                    status("Service not available");
+                    return;
+                }
+                status("connecting...");
+                connected = Connected.Pending;
+                service.connect(TcpSocket.fromAddress(deviceAddress));
+                return;
+            }
             BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
             if (bluetoothAdapter == null) {
                 status("Bluetooth not available");
@@ -481,8 +538,11 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
                 status("Service not available");
                 return;
             }
-            SerialSocket socket = new SerialSocket(a.getApplicationContext(), device);
-            service.connect(socket);
+            if (device.getType() == BluetoothDevice.DEVICE_TYPE_LE) {
+                service.connect(new BleSocket(a.getApplicationContext(), device));
+            } else {
+                service.connect(new SerialSocket(device));
+            }
         } catch (Exception e) {
             onSerialConnectError(e);
         }
@@ -498,6 +558,7 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
     private void disconnect() {
         connected = Connected.False;
         if (service != null) service.disconnect();
+        multiSourceMotion.deactivate(MultiSourceMotion.ESP32);
         
         // Update button to show disconnected status
         updateGyroToggleButton();
@@ -525,198 +586,139 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
             SpannableStringBuilder spn = new SpannableStringBuilder(msg + '\n');
             spn.setSpan(new ForegroundColorSpan(getResources().getColor(R.color.colorSendText)), 0, spn.length(), Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
             receiveText.append(spn);
-            service.write(data);
+            if (!hexEnabled && str.length() == 1 && LED_COMMANDS.indexOf(str.charAt(0)) >= 0)
+                service.writeState(WRITE_STATE_LED, data); // only the latest color matters
+            else
+                service.write(data);
         } catch (Exception e) {
             onSerialIoError(e);
         }
     }
 
-    private void receive(ArrayDeque<byte[]> datas) {
-        SpannableStringBuilder spn = new SpannableStringBuilder();
-        for (byte[] data : datas) {
-            String msg = new String(data);
-            
-            // Debug: Log all received messages from ESP32
-            Log.d("TerminalFragment", "📥 ESP32 DATA: '" + msg + "'");
-
-            // ===== ESP32 + ADXL345 MOVEMENT DETECTION =====
-            if (currentSensorMode == SensorMode.ESP32_ADXL345) {
-                processESP32MovementData(msg);
-            }
-
-            // Display received data in terminal
-            if (hexEnabled) {
-                spn.append(TextUtil.toHexString(data)).append('\n');
-            } else {
-                if (newline.equals(TextUtil.newline_crlf) && msg.length() > 0) {
-                    // Special handling if CR and LF come in separate fragments
-                    msg = msg.replace(TextUtil.newline_crlf, TextUtil.newline_lf);
-                }
-                spn.append(TextUtil.toCaretString(msg, newline.length() != 0));
-            }
+    private void receive(SerialProcessor.Update update) {
+        if (update.text.length() > 0) {
+            receiveText.append(update.text);
         }
-        receiveText.append(spn);
+        if (!update.hasMovement()) return;
+
+        // counts of all movements since the last update, feedback only for the latest one
+        jumpLeft += update.count(Movement.LEFT);
+        jumpRight += update.count(Movement.RIGHT);
+        jumpUp += update.count(Movement.FORWARD);
+        jumpBack += update.count(Movement.BACK);
+        handleMovement(update.lastMovement, 0, update.sensorNanos);
     }
 
-    // ===== ESP32 + ADXL345 DATA PROCESSING =====
-    private void processESP32MovementData(String msg) {
-        try {
-            // Handle different ESP32 data formats:
-            
-            // Format 1: Raw accelerometer data "ACCEL:x,y,z"
-            if (msg.startsWith("ACCEL:")) {
-                parseAccelerometerData(msg);
-            }
-            // Format 2: Processed movement commands "MOVE:LEFT", "MOVE:RIGHT", etc.
-            else if (msg.startsWith("MOVE:")) {
-                parseMovementCommand(msg);
-            }
-            // Format 3: Legacy movement text messages (for compatibility)
-            else if (msg.contains("Movement Detected") || msg.contains("Jump detected")) {
-                parseMovementText(msg);
-            }
-            
-        } catch (Exception e) {
-            Log.e("TerminalFragment", "🔧 ESP32 DATA ERROR: Failed to process ESP32 data: " + msg + " - " + e.getMessage());
+    private void updateProcessorSettings() {
+        if (service != null) {
+            service.getProcessor().setHexEnabled(hexEnabled);
+            service.getProcessor().setMovementDetectionEnabled(currentSensorMode == SensorMode.ESP32_ADXL345);
+            service.getProcessor().setSampleListener(currentSensorMode == SensorMode.SECOND_PHONE_GYRO ? multiSourceMotion::espSample : null);
+            service.setBacklogPolicy(backlogPolicy, BACKLOG_KEEP_SECONDS);
         }
     }
 
-    private void parseAccelerometerData(String accelMessage) {
-        // Expected format: "ACCEL:x,y,z" (e.g., "ACCEL:0.25,-0.13,0.07")
-        if (!accelMessage.startsWith("ACCEL:")) return;
-        
-        String values = accelMessage.substring(6); // Remove "ACCEL:" prefix
-        String[] parts = values.split(",");
-        
-        if (parts.length >= 3) {
-            float accelX = Float.parseFloat(parts[0].trim());
-            float accelY = Float.parseFloat(parts[1].trim());
-            float accelZ = Float.parseFloat(parts[2].trim());
-            
-            // Log raw accelerometer data
-            Log.d("TerminalFragment", String.format("🔄 ESP32 ACCEL RAW: x=%.3f y=%.3f z=%.3f", accelX, accelY, accelZ));
-            
-            // Process movement detection based on accelerometer thresholds
-            processAccelerometerMovement(accelX, accelY, accelZ);
-        }
+    // ===== MOVEMENT HANDLERS =====
+    // count and dispatch only, LED/API/UI/TTS run in the feedback sinks
+    private void handleMovement(Movement movement, int count, long sensorNanos) {
+        Log.i("TerminalFragment", "🎯 ESP32 MOVEMENT: " + movement + " detected!");
+        countMovement(movement, count);
+        feedbackDispatcher.dispatch(new FeedbackDispatcher.Feedback(movement, false, jumpLeft, jumpRight, jumpUp, jumpBack, sensorNanos));
     }
 
-    private void parseMovementCommand(String moveMessage) {
-        // Expected format: "MOVE:LEFT", "MOVE:RIGHT", "MOVE:FORWARD", "MOVE:BACK"
-        if (!moveMessage.startsWith("MOVE:")) return;
-        
-        String direction = moveMessage.substring(5).trim().toUpperCase();
-        Log.d("TerminalFragment", "🎯 ESP32 MOVE COMMAND: " + direction);
-        
-        switch (direction) {
-            case "LEFT":
-                handleLeftMovement();
-                break;
-            case "RIGHT":
-                handleRightMovement();
-                break;
-            case "FORWARD":
-            case "UP":
-                handleForwardMovement();
-                break;
-            case "BACK":
-            case "BACKWARD":
-                handleBackMovement();
-                break;
-        }
+    private void handlePhoneMovement(Movement movement) {
+        Log.i("TerminalFragment", "🎯 GYRO EVENT: " + movement + " movement detected!");
+        countMovement(movement, 1);
+        feedbackDispatcher.dispatch(new FeedbackDispatcher.Feedback(movement, true, jumpLeft, jumpRight, jumpUp, jumpBack, 0));
     }
 
-    private void parseMovementText(String textMessage) {
-        // Handle legacy text formats for compatibility
-        if (textMessage.contains("Lateral-Left Movement Detected")) {
-            handleLeftMovement();
-        } else if (textMessage.contains("Jump detected! Yahoo! ^^")) {
-            handleForwardMovement();
-        } else if (textMessage.contains("Lateral- Right Movement Detected")) {
-            handleRightMovement();
-        } else if (textMessage.contains("Back Movement Detected") || textMessage.contains("Backward Jump")) {
-            handleBackMovement();
+    private void countMovement(Movement movement, int count) {
+        switch (movement) {
+            case LEFT: jumpLeft += count; break;
+            case RIGHT: jumpRight += count; break;
+            case FORWARD: jumpUp += count; break;
+            case BACK: jumpBack += count; break;
         }
     }
 
-    private void processAccelerometerMovement(float accelX, float accelY, float accelZ) {
-        // Define movement thresholds for ADXL345 accelerometer
-        final float ACCEL_THRESHOLD = 2.0f; // Adjust based on your ESP32 sensitivity
-        
-        // Determine movement direction based on acceleration values
-        // Note: These may need adjustment based on your ESP32 orientation
-        
-        if (Math.abs(accelX) > ACCEL_THRESHOLD) {
-            if (accelX > ACCEL_THRESHOLD) {
-                handleRightMovement();
-            } else {
-                handleLeftMovement();
-            }
-        }
-        else if (Math.abs(accelY) > ACCEL_THRESHOLD) {
-            if (accelY > ACCEL_THRESHOLD) {
-                handleForwardMovement();
-            } else {
-                handleBackMovement();
-            }
-        }
-    }
-
-    // ===== MOVEMENT HANDLERS =====
-    private void handleLeftMovement() {
-        Log.i("TerminalFragment", "🎯 ESP32 MOVEMENT: LEFT detected!");
-        jumpLeft++;
-        updateJumpLabels();
-        updateLastMovementText("⬅️ LEFT MOVEMENT (ESP32)", "#0000FF");
-        saveJumpDataToAPI();
-        setLEDForLeftJump();
-        showToast("Left movement detected! LED: BLUE");
-
-        // Show flash animation for left movement using your GIF/WebP
-        showMovementFlash("mwm_dress_left");
-        speakIfProd("Left movement detected");
+    // ===== MOVEMENT FEEDBACK =====
+    private final Handler feedbackHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService ledExecutor = Executors.newSingleThreadExecutor(new FeedbackDispatcher.SinkThreadFactory("LED"));
+    private final ScheduledExecutorService apiExecutor = Executors.newSingleThreadScheduledExecutor(new FeedbackDispatcher.SinkThreadFactory("API"));
+    private final ExecutorService ttsExecutor = Executors.newSingleThreadExecutor(new FeedbackDispatcher.SinkThreadFactory("TTS"));
+    // runs with the next frame, Choreographer is per looper so always from the main thread
+    private final Executor frameExecutor = runnable -> {
+        Choreographer.FrameCallback callback = frameTimeNanos -> runnable.run();
+        if (Looper.myLooper() == Looper.getMainLooper())
+            Choreographer.getInstance().postFrameCallback(callback);
+        else
+            feedbackHandler.post(() -> Choreographer.getInstance().postFrameCallback(callback));
+    };
+    private static final long API_BATCH_MS = 2000;
+    private final FeedbackDispatcher feedbackDispatcher = createFeedbackDispatcher();
+
+    private FeedbackDispatcher createFeedbackDispatcher() {
+        FeedbackDispatcher dispatcher = new FeedbackDispatcher(new SerialMetrics());
+        dispatcher.addSink("led", FeedbackDispatcher.Policy.LATEST, ledExecutor, this::sendMovementLed);
+        dispatcher.addBatchSink("api", apiExecutor, API_BATCH_MS, this::saveJumpData);
+        dispatcher.addSink("ui", FeedbackDispatcher.Policy.LATEST, frameExecutor, this::showMovementFeedback);
+        dispatcher.addDropIfBusySink("tts", ttsExecutor, () -> tts != null && tts.isSpeaking(),
+                feedback -> speakIfProd(movementName(feedback.movement) + " movement detected"));
+        return dispatcher;
     }
 
-    private void handleRightMovement() {
-        Log.i("TerminalFragment", "🎯 ESP32 MOVEMENT: RIGHT detected!");
-        jumpRight++;
-        updateJumpLabels();
-        updateLastMovementText("➡️ RIGHT MOVEMENT (ESP32)", "#00FF00");
-        saveJumpDataToAPI();
-        setLEDForRightJump();
-        showToast("Right movement detected! LED: GREEN");
-
-        // Show flash animation for right movement using your GIF/WebP
-        showMovementFlash("mwm_jump_right");
-        speakIfProd("Right movement detected");
+    // LED sink thread, latest wins
+    private void sendMovementLed(FeedbackDispatcher.Feedback feedback) throws IOException {
+        SerialService s = service;
+        if (connected != Connected.True || s == null)
+            return;
+        String command;
+        switch (feedback.movement) {
+            case LEFT: command = "b"; break;    // blue (yellow not available)
+            case RIGHT: command = "g"; break;   // green
+            case FORWARD: command = "w"; break; // white
+            default: command = "r"; break;      // red (pink not available)
+        }
+        s.writeState(WRITE_STATE_LED, (command + newline).getBytes());
+        // end to end: sensor read on the device until the LED command is queued
+        SerialMetrics.Histogram latency = feedbackLatency;
+        if (feedback.sensorNanos != 0 && latency != null)
+            latency.record((SystemClock.elapsedRealtimeNanos() - feedback.sensorNanos) / 1000);
     }
 
-    private void handleForwardMovement() {
-        Log.i("TerminalFragment", "🎯 ESP32 MOVEMENT: FORWARD detected!");
-        jumpUp++;
+    // main thread, once per frame with the latest movement
+    private void showMovementFeedback(FeedbackDispatcher.Feedback feedback) {
+        if (!isAdded())
+            return;
         updateJumpLabels();
-        updateLastMovementText("⬆️ FORWARD MOVEMENT (ESP32)", "#FFFFFF");
-        saveJumpDataToAPI();
-        setLEDForForwardJump();
-        showToast("Forward movement detected! LED: WHITE");
-
-        // Show flash animation for forward movement using your GIF/WebP
-        showMovementFlash("mwm_jump_bounce");
-        speakIfProd("Forward movement detected");
+        String name = movementName(feedback.movement);
+        String arrow, color, led;
+        switch (feedback.movement) {
+            case LEFT: arrow = "⬅️"; color = feedback.phone ? "#FFD700" : "#0000FF"; led = feedback.phone ? "YELLOW" : "BLUE"; break;
+            case RIGHT: arrow = "➡️"; color = "#00FF00"; led = "GREEN"; break;
+            case FORWARD: arrow = "⬆️"; color = "#FFFFFF"; led = "WHITE"; break;
+            default: arrow = "⬇️"; color = feedback.phone ? "#FF69B4" : "#FF0000"; led = feedback.phone ? "PINK" : "RED"; break;
+        }
+        String upper = feedback.movement.toString();
+        updateLastMovementText(arrow + " " + upper + (feedback.phone ? " MOVEMENT DETECTED" : " MOVEMENT (ESP32)"), color);
+        if (feedback.phone)
+            showToast((feedback.movement == Movement.FORWARD ? "Up" : name) + " jump detected! LED: " + led);
+        else
+            showToast(name + " movement detected! LED: " + led);
+        switch (feedback.movement) {
+            case LEFT: showMovementFlash("mwm_dress_left"); break;
+            case RIGHT: showMovementFlash("mwm_jump_right"); break;
+            default: showMovementFlash("mwm_jump_bounce"); break; // forward and back
+        }
     }
 
-    private void handleBackMovement() {
-        Log.i("TerminalFragment", "🎯 ESP32 MOVEMENT: BACK detected!");
-        jumpBack++;
-        updateJumpLabels();
-        updateLastMovementText("⬇️ BACK MOVEMENT (ESP32)", "#FF0000");
-        saveJumpDataToAPI();
-        setLEDForBackJump();
-        showToast("Back movement detected! LED: RED");
-
-        // Show flash animation for back movement using your GIF/WebP
-        showMovementFlash("mwm_jump_bounce"); // Reusing the bounce GIF for back movement
-        speakIfProd("Back movement detected");
+    private static String movementName(Movement movement) {
+        switch (movement) {
+            case LEFT: return "Left";
+            case RIGHT: return "Right";
+            case FORWARD: return "Forward";
+            default: return "Back";
+        }
     }
 
     // ===== showMovementFlash =====
@@ -749,55 +751,23 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
     // ===== Gyro Listener =====
     private final GyroManager.MovementListener gyroListener = new GyroManager.MovementListener() {
         @Override public void onLeft() {
-            Log.i("TerminalFragment", "🎯 GYRO EVENT: LEFT movement detected!");
-            jumpLeft++;
-            updateJumpLabels();
-            updateLastMovementText("⬅️ LEFT MOVEMENT DETECTED", "#FFD700");
-            saveJumpDataToAPI();
-            setLEDForLeftJump(); // Set LED to YELLOW
-            showToast("Left jump detected! LED: YELLOW");
-            showMovementFlash("mwm_dress_left");
-            speakIfProd("Left movement detected");
+            handlePhoneMovement(Movement.LEFT);
         }
         @Override public void onRight() {
-            Log.i("TerminalFragment", "🎯 GYRO EVENT: RIGHT movement detected!");
-            jumpRight++;
-            updateJumpLabels();
-            updateLastMovementText("➡️ RIGHT MOVEMENT DETECTED", "#00FF00");
-            saveJumpDataToAPI();
-            setLEDForRightJump(); // Set LED to GREEN
-            showToast("Right jump detected! LED: GREEN");
-            showMovementFlash("mwm_jump_right");
-            speakIfProd("Right movement detected");
+            handlePhoneMovement(Movement.RIGHT);
         }
         @Override public void onMiddle() {
-            Log.i("TerminalFragment", "🎯 GYRO EVENT: FORWARD movement detected!");
-            jumpUp++;
-            updateJumpLabels();
-            updateLastMovementText("⬆️ FORWARD MOVEMENT DETECTED", "#FFFFFF");
-            saveJumpDataToAPI();
-            setLEDForForwardJump(); // Set LED to WHITE
-            showToast("Up jump detected! LED: WHITE");
-            showMovementFlash("mwm_jump_bounce");
-            speakIfProd("Forward movement detected");
+            handlePhoneMovement(Movement.FORWARD);
         }
         @Override public void onBack() {
-            Log.i("TerminalFragment", "🎯 GYRO EVENT: BACK movement detected!");
-            jumpBack++;
-            updateJumpLabels();
-            updateLastMovementText("⬇️ BACK MOVEMENT DETECTED", "#FF69B4");
-            saveJumpDataToAPI();
-            setLEDForBackJump(); // Set LED to PINK
-            showToast("Back jump detected! LED: PINK");
-            showMovementFlash("mwm_jump_bounce"); // Reusing bounce GIF
-            speakIfProd("Back movement detected");
+            handlePhoneMovement(Movement.BACK);
         }
 
         @Override
         public void onRaw(float x, float y, float z) {
-            // Log raw gyroscope data periodically to verify sensor is working
+            // Log raw gyroscope data periodically to verify sensor is working, runs in the sensor thread
             if (System.currentTimeMillis() % 5000 < 50) {
-                Log.d("TerminalFragment", String.format("🔄 GYRO RAW: x=%.3f y=%.3f z=%.3f", x, y, z));
+                Log.d("TerminalFragment", "🔄 GYRO RAW: x=" + x + " y=" + y + " z=" + z);
             }
         }
     };
@@ -809,24 +779,12 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
             if (activity != null && tvCalibrationPrompt != null) {
                 activity.runOnUiThread(() -> {
                     tvCalibrationPrompt.setVisibility(View.VISIBLE);
-                    tvCalibrationPrompt.setText("🔧 Calibration Starting...");
+                    tvCalibrationPrompt.setText("🔧 Hold device steady...");
                     tvCalibrationPrompt.setTextColor(0xFFFFFFFF); // white
                 });
             }
         }
 
-        @Override
-        public void onCalibrationPhase(String instruction, int color) {
-            Activity activity = getActivity();
-            if (activity != null && tvCalibrationPrompt != null) {
-                activity.runOnUiThread(() -> {
-                    tvCalibrationPrompt.setVisibility(View.VISIBLE);
-                    tvCalibrationPrompt.setText(instruction);
-                    tvCalibrationPrompt.setTextColor(color);
-                });
-            }
-        }
-
         @Override
         public void onCalibrationComplete() {
             Activity activity = getActivity();
@@ -871,6 +829,7 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
                 if (sensorManager != null && phoneSensorListener != null) {
                     sensorManager.unregisterListener(phoneSensorListener);
                 }
+                startMultiSource();
                 
                 Toast.makeText(getActivity(), "Switched to Second Phone Gyroscope mode", Toast.LENGTH_SHORT).show();
                 Log.i("TerminalFragment", "📱📱 Switched to Second Phone Gyroscope for movement detection");
@@ -882,6 +841,7 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
                 // Switch back to ESP32 mode
                 currentSensorMode = SensorMode.ESP32_ADXL345;
                 gyroEnabled = true;
+                stopMultiSource();
                 
                 Toast.makeText(getActivity(), "Switched to ESP32 ADXL345 mode", Toast.LENGTH_SHORT).show();
                 Log.i("TerminalFragment", "🔧 Switched to ESP32 ADXL345 for movement detection");
@@ -892,8 +852,51 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
         
         // Update button text and color
         updateGyroToggleButton();
+        updateProcessorSettings();
     }
     
+    // ===== SECOND PHONE: ESP32 + remote phones, confirmed by agreement =====
+    private final MultiSourceMotion multiSourceMotion = new MultiSourceMotion(SystemClock::elapsedRealtimeNanos,
+            (movement, sampleNanos) -> feedbackHandler.post(() -> handleMovement(movement, 1, sampleNanos)));
+    private final List<RemotePhoneStream> remotePhones = new ArrayList<>();
+    private final ExecutorService remoteExecutor = RemotePhoneStream.newReadExecutor();
+    private final ScheduledExecutorService remoteScheduler = RemotePhoneStream.newScheduler();
+
+    private void startMultiSource() {
+        multiSourceMotion.reset(); // sources become active with their first sample
+        Context context = getContext();
+        String addresses = context != null
+                ? context.getSharedPreferences(PREFS_APP, Context.MODE_PRIVATE).getString(PREF_REMOTE_PHONES, "") : "";
+        int source = MultiSourceMotion.FIRST_REMOTE;
+        for (String address : addresses.split(",")) {
+            address = address.trim();
+            if (address.isEmpty())
+                continue;
+            if (source >= MultiSourceMotion.SOURCES) {
+                Log.w("TerminalFragment", "📱📱 too many remote phones, ignoring " + address);
+                continue;
+            }
+            try {
+                RemotePhoneStream stream = new RemotePhoneStream(address, source, multiSourceMotion, remoteScheduler);
+                stream.connect(remoteExecutor);
+                remotePhones.add(stream);
+                source++;
+            } catch (IllegalArgumentException e) {
+                Log.w("TerminalFragment", "📱📱 remote phone: " + e.getMessage());
+            }
+        }
+        if (remotePhones.isEmpty())
+            Log.i("TerminalFragment", "📱📱 no remote phones in " + PREF_REMOTE_PHONES + ", ESP32 only");
+    }
+
+    private void stopMultiSource() {
+        for (RemotePhoneStream stream : remotePhones)
+            stream.disconnect();
+        remotePhones.clear();
+        multiSourceMotion.deactivate(MultiSourceMotion.ESP32);
+        multiSourceMotion.flush();
+    }
+
     private void updateGyroToggleButton() {
         Log.i("TerminalFragment", "🔄 BUTTON UPDATE: Current mode: " + currentSensorMode + ", gyroEnabled: " + gyroEnabled);
         if (btnGyroToggle != null) {
@@ -1043,12 +1046,32 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
             if (gm != null) {
                 Log.i("TerminalFragment", "🔍 Gyroscope available: " + gm.isAvailable());
                 Log.i("TerminalFragment", "🔍 Current gyroEnabled: " + gyroEnabled);
+                Log.i("TerminalFragment", "🔍 Sensor delivery: " + gm.getDelivery() + ", " + gm.getBatchStats());
+                Log.i("TerminalFragment", "🔍 Phone features: " + gm.getFeatureSummary());
             }
         }
         
         // Test 2: Check Bluetooth connection
         Log.i("TerminalFragment", "🔍 Bluetooth connected: " + (connected == Connected.True));
         Log.i("TerminalFragment", "🔍 Service available: " + (service != null));
+        if (service != null) {
+            Log.i("TerminalFragment", "🔍 Read buffers: " + service.getBufferPool());
+            Log.i("TerminalFragment", "🔍 Writer: " + service.getWriter());
+            Log.i("TerminalFragment", "🔍 I/O threads: " + service.getIoExecutor().getPoolSize() + " running, " + service.getIoExecutor().getActiveCount() + " busy, " + service.getIoExecutor().getLargestPoolSize() + " max");
+            Log.i("TerminalFragment", "🔍 Frames: " + service.getProcessor().getFrameCount() + " received, " + service.getProcessor().getDroppedFrameCount() + " dropped");
+            Log.i("TerminalFragment", "🔍 Binary samples: " + service.getProcessor().getSampleCount() + " received, " + service.getProcessor().getSampleErrorCount() + " bad");
+            Log.i("TerminalFragment", "🔍 JSON samples: " + service.getProcessor().getJsonSampleCount() + " received, " + service.getProcessor().getJsonErrorCount() + " bad");
+            Log.i("TerminalFragment", "🔍 Device: " + service.getProcessor().getDeviceStatus());
+            Log.i("TerminalFragment", "🔍 Sample history: " + service.getProcessor().getHistory().getSequence() + " samples, keeps " + service.getProcessor().getHistory().getCapacity());
+            Log.i("TerminalFragment", "🔍 Sample loss: " + service.getProcessor().getGapTracker());
+            Log.i("TerminalFragment", "🔍 Clock sync: " + service.getProcessor().getClockSync());
+            Log.i("TerminalFragment", "🔍 Metrics: " + service.getMetrics().snapshot());
+            Log.i("TerminalFragment", "🔍 ESP32 features: " + service.getProcessor().getFeatureSummary());
+            Log.i("TerminalFragment", "🔍 Feedback: " + feedbackDispatcher.getMetrics().snapshot());
+            Log.i("TerminalFragment", "🔍 Multi-source: " + multiSourceMotion.getStats());
+            for (RemotePhoneStream stream : remotePhones)
+                Log.i("TerminalFragment", "🔍 Remote phone " + stream.getAddress() + (stream.isConnected() ? " connected, " : " disconnected, ") + stream.getClockStatus());
+        }
         
 
         // Test 3: Try to manually trigger a gyro event
@@ -1125,6 +1148,10 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
         }, 6000);
     }
 
+    private void simulateESP32Data(String msg) {
+        if (service != null) service.processTestFrame(msg);
+    }
+
     private void runAccelTestSequence() {
         Log.i("TerminalFragment", "🧪 Running ESP32 accelerometer data simulation test...");
         Toast.makeText(getActivity(), "Testing ESP32 Movement Detection...", Toast.LENGTH_SHORT).show();
@@ -1134,36 +1161,36 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
         // Test LEFT movement
         handler.postDelayed(() -> {
             Log.i("TerminalFragment", "🧪 Simulating LEFT movement: ACCEL:3.0,0.5,0.2");
-            processESP32MovementData("ACCEL:3.0,0.5,0.2");
+            simulateESP32Data("ACCEL:3.0,0.5,0.2");
         }, 500);
         
         // Test RIGHT movement  
         handler.postDelayed(() -> {
             Log.i("TerminalFragment", "🧪 Simulating RIGHT movement: ACCEL:-3.0,0.5,0.2");
-            processESP32MovementData("ACCEL:-3.0,0.5,0.2");
+            simulateESP32Data("ACCEL:-3.0,0.5,0.2");
         }, 2000);
         
         // Test FORWARD movement
         handler.postDelayed(() -> {
             Log.i("TerminalFragment", "🧪 Simulating FORWARD movement: ACCEL:0.2,3.0,0.5");
-            processESP32MovementData("ACCEL:0.2,3.0,0.5");
+            simulateESP32Data("ACCEL:0.2,3.0,0.5");
         }, 3500);
         
         // Test BACK movement
         handler.postDelayed(() -> {
             Log.i("TerminalFragment", "🧪 Simulating BACK movement: ACCEL:0.2,-3.0,0.5");
-            processESP32MovementData("ACCEL:0.2,-3.0,0.5");
+            simulateESP32Data("ACCEL:0.2,-3.0,0.5");
         }, 5000);
         
         // Test direct commands
         handler.postDelayed(() -> {
             Log.i("TerminalFragment", "🧪 Testing direct command: MOVE:LEFT (should be BLUE)");
-            processESP32MovementData("MOVE:LEFT");
+            simulateESP32Data("MOVE:LEFT");
         }, 6500);
         
         handler.postDelayed(() -> {
             Log.i("TerminalFragment", "🧪 Testing direct command: MOVE:BACK (should be RED)");
-            processESP32MovementData("MOVE:BACK");
+            simulateESP32Data("MOVE:BACK");
         }, 8000);
         
         handler.postDelayed(() -> {
@@ -1223,21 +1250,6 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
         Log.d("TerminalFragment", "LED set to BLUE for left jump");
     }
 
-    private void setLEDForRightJump() {
-        send("g"); // Green for right jump
-        Log.d("TerminalFragment", "LED set to GREEN for right jump");
-    }
-
-    private void setLEDForForwardJump() {
-        send("w"); // White for forward jump
-        Log.d("TerminalFragment", "LED set to WHITE for forward jump");
-    }
-
-    private void setLEDForBackJump() {
-        send("r"); // Red for back jump (since pink not available)
-        Log.d("TerminalFragment", "LED set to RED for back jump");
-    }
-
     private boolean isInConnectionLostState = false;
     
     private void setLEDForConnectionLost() {
@@ -1330,7 +1342,7 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
         Log.i("TerminalFragment", "📱 Auto-connect attempt " + currentConnectAttempt + "/" + MAX_CONNECT_ATTEMPTS + " to: " + savedAddress);
         
         BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
-        if (bluetoothAdapter == null || !bluetoothAdapter.isEnabled()) {
+        if (!TcpSocket.isAddress(savedAddress) && (bluetoothAdapter == null || !bluetoothAdapter.isEnabled())) {
             Log.w("TerminalFragment", "📱 Bluetooth not available/enabled - showing device selection");
             showDeviceSelectionDialog();
             return;
@@ -1411,14 +1423,13 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
     }
 
     @Override
-    public void onSerialRead(byte[] data) {
-        ArrayDeque<byte[]> datas = new ArrayDeque<>();
-        datas.add(data);
-        receive(datas);
-    }
+    public void onSerialRead(BufferPool.Chunk chunk) { throw new UnsupportedOperationException(); }
 
-    public void onSerialRead(ArrayDeque<byte[]> datas) {
-        receive(datas);
+    public void onSerialRead(SerialProcessor.Update update) {
+        long start = System.nanoTime();
+        receive(update);
+        if (receiveTime != null)
+            receiveTime.record((System.nanoTime() - start) / 1000);
     }
 
     @Override
@@ -1431,37 +1442,24 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
         reconnectHandler.postDelayed(reconnectRunnable, 1500);
     }
     
-    private void saveJumpDataToAPI() {
+    // API sink thread, batched: the request carries the totals at the time of the movement
+    private void saveJumpData(FeedbackDispatcher.Feedback feedback) throws IOException {
         if (auth == null) auth = FirebaseAuth.getInstance();
         FirebaseUser currentUser = auth != null ? auth.getCurrentUser() : null;
-        if (currentUser != null) {
-            JumpDataRequest jumpDataRequest = new JumpDataRequest(
-                    jumpLeft,   // Send leftJump score
-                    jumpRight,  // Send rightJump score
-                    jumpUp,     // Send jumpUp score (was middleJump)
-                    currentUser.getUid() // Send the current user's UID
-            );
-
-            // Use getApi() to get the APIHandler instance
-            RetrofitInstance.getApi().saveJumpData(jumpDataRequest).enqueue(new Callback<ApiResponse>() {
-                @Override
-                public void onResponse(Call<ApiResponse> call, Response<ApiResponse> response) {
-                    if (response.isSuccessful()) {
-                        // Handle successful response
-                        Log.d("JumpDataAPI", "Score saved successfully: " + response.body().getMessage());
-                    } else {
-                        // Handle unsuccessful response
-                        Log.e("JumpDataAPI", "Failed to save score: " + response.message());
-                    }
-                }
-
-                @Override
-                public void onFailure(Call<ApiResponse> call, Throwable t) {
-                    // Handle failure
-                    Log.e("JumpDataAPI", "Error: " + t.getMessage());
-                }
-            });
+        if (currentUser == null)
+            return;
+        JumpDataRequest jumpDataRequest = new JumpDataRequest(feedback.left, feedback.right, feedback.up, currentUser.getUid());
+        Response<ApiResponse> response;
+        try {
+            response = RetrofitInstance.getApi().saveJumpData(jumpDataRequest).execute();
+        } catch (IOException e) {
+            Log.e("JumpDataAPI", "Error: " + e.getMessage());
+            throw e;
         }
+        if (response.isSuccessful())
+            Log.d("JumpDataAPI", "Score saved successfully: " + response.body().getMessage());
+        else
+            Log.e("JumpDataAPI", "Failed to save score: " + response.message());
     }
 
     public void changeLanguage(String languageCode) {
@@ -1509,36 +1507,24 @@ public class TerminalFragment extends Fragment implements ServiceConnection, Ser
         testLEDConnection();
     }
     
-    // Phone sensor event listener
+    // Phone sensor event listener, movements from MotionEngine in main thread
+    private final MotionEngine phoneMotionEngine = createPhoneMotionEngine();
+
+    private MotionEngine createPhoneMotionEngine() {
+        MotionEngine engine = new MotionEngine(SystemClock::elapsedRealtimeNanos, event -> handleMovement(event.getMovement(), 1, 0));
+        engine.addClassifier(PeakClassifier.phoneGyroscope());
+        return engine;
+    }
+
     private final SensorEventListener phoneSensorListener = new SensorEventListener() {
         @Override
         public void onSensorChanged(SensorEvent event) {
             if (currentSensorMode != SensorMode.PHONE_GYRO) return;
-            
-            if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
-                float x = event.values[0];
-                float y = event.values[1];
-                float z = event.values[2];
-                
-                // Basic threshold-based movement detection
-                float threshold = 2.0f;
-                
-                if (Math.abs(x) > threshold) {
-                    if (x > 0) {
-                        handleLeftMovement();
-                    } else {
-                        handleRightMovement();
-                    }
-                } else if (Math.abs(y) > threshold) {
-                    if (y > 0) {
-                        handleForwardMovement();
-                    } else {
-                        handleBackMovement();
-                    }
-                }
-            }
+
+            if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE)
+                phoneMotionEngine.gyro(event.timestamp, event.values[0], event.values[1], event.values[2]);
         }
-        
+
         @Override
         public void onAccuracyChanged(Sensor sensor, int accuracy) {
             // Handle accuracy changes if needed
@@ -0,0 +1,24 @@
+package com.example.kineticpulsemobileapp;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+/**
+ * connection used by SerialService: SPP SerialSocket, BLE BleSocket or TcpSocket for simulators.
+ * use listener chain: Transport -> SerialService -> UI fragment
+ */
+interface Transport {
+
+    String getName();
+
+    /**
+     * connect-success and most connect-errors are returned asynchronously to listener
+     * received data is read into chunks from bufferPool, the listener chain releases them
+     * blocking connect & read loops run in executor
+     */
+    void connect(SerialListener listener, BufferPool bufferPool, Executor executor) throws IOException;
+
+    void disconnect();
+
+    void write(byte[] data) throws IOException;
+}
@@ -0,0 +1,64 @@
+package com.example.kineticpulsemobileapp;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * compare AccelFrameParser with the former String based parsing.
+ * not a unit test, run main() manually from the IDE, e.g. before and after parser changes.
+ * allocation is measured with the HotSpot thread allocation counter, so run it on the desktop JVM
+ */
+public class AccelFrameParserBenchmark {
+
+    private static final int FRAMES = 1024;
+    private static final int ROUNDS = 2000;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        byte[][] frames = new byte[FRAMES][];
+        for (int i = 0; i < FRAMES; i++)
+            frames[i] = String.format(Locale.US, "ACCEL:%.2f,%.2f,%.2f",
+                    random.nextGaussian() * 2, random.nextGaussian() * 2, 9.81 + random.nextGaussian()).getBytes(StandardCharsets.US_ASCII);
+        for (int warmup = 0; warmup < 3; warmup++) {
+            run("String split", frames, AccelFrameParserBenchmark::stringParse);
+            run("AccelFrameParser", frames, new BytesParse());
+        }
+    }
+
+    private interface Parse {
+        float parse(byte[] frame);
+    }
+
+    private static final class BytesParse implements Parse {
+        private final AccelFrameParser parser = new AccelFrameParser();
+
+        @Override
+        public float parse(byte[] frame) {
+            parser.parse(frame, 0, frame.length);
+            return parser.x + parser.y + parser.z;
+        }
+    }
+
+    private static float stringParse(byte[] frame) {
+        String msg = new String(frame, 0, frame.length, StandardCharsets.UTF_8);
+        float[] values = AccelFrameParserTest.reference(msg);
+        return values[0] + values[1] + values[2];
+    }
+
+    private static void run(String name, byte[][] frames, Parse parse) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        float sum = 0;
+        long start = System.nanoTime();
+        for (int round = 0; round < ROUNDS; round++)
+            for (byte[] frame : frames)
+                sum += parse.parse(frame);
+        long nanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf(Locale.US, "%-18s %6.1f ns/frame  %6.1f bytes/frame  (checksum %.1f)%n",
+                name, (double) nanos / (ROUNDS * FRAMES), (double) allocated / (ROUNDS * FRAMES), sum);
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AccelFrameParserTest {
+
+    /**
+     * former String based parsing, result is null if the frame was ignored
+     */
+    static float[] reference(String msg) {
+        if (!msg.startsWith("ACCEL:"))
+            return null;
+        String[] parts = msg.substring(6).split(",");
+        if (parts.length < 3)
+            return null;
+        return new float[]{Float.parseFloat(parts[0].trim()), Float.parseFloat(parts[1].trim()), Float.parseFloat(parts[2].trim())};
+    }
+
+    private final AccelFrameParser parser = new AccelFrameParser();
+
+    private void assertSameAsReference(String msg) {
+        float[] expected;
+        try {
+            expected = reference(msg);
+        } catch (NumberFormatException e) {
+            expected = null;
+            byte[] frame = msg.getBytes(StandardCharsets.UTF_8);
+            try {
+                parser.parse(frame, 0, frame.length);
+                fail("expected NumberFormatException for '" + msg + "'");
+            } catch (NumberFormatException ignored) {
+            }
+            return;
+        }
+        // parse from the middle of a larger buffer, like from the receive chunk
+        byte[] bytes = ("xx" + msg + "yy").getBytes(StandardCharsets.UTF_8);
+        boolean parsed = parser.parse(bytes, 2, bytes.length - 4);
+        assertEquals(msg, expected != null, parsed);
+        if (parsed) {
+            // bit exact, also for -0.0 and NaN
+            assertEquals(msg, Float.floatToIntBits(expected[0]), Float.floatToIntBits(parser.x));
+            assertEquals(msg, Float.floatToIntBits(expected[1]), Float.floatToIntBits(parser.y));
+            assertEquals(msg, Float.floatToIntBits(expected[2]), Float.floatToIntBits(parser.z));
+        }
+    }
+
+    @Test
+    public void simpleValues() {
+        byte[] frame = "ACCEL:0.25,-0.13,9.81".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(parser.parse(frame, 0, frame.length));
+        assertEquals(0.25f, parser.x, 0);
+        assertEquals(-0.13f, parser.y, 0);
+        assertEquals(9.81f, parser.z, 0);
+    }
+
+    @Test
+    public void acceptedSyntax() {
+        String[] frames = {
+                "ACCEL:1,2,3", "ACCEL: 1 , 2 ,\t3 ", "ACCEL:+1.5,-.5,5.", "ACCEL:-0,0.000,-0.0",
+                "ACCEL:1,2,3,4", "ACCEL:1,2,3,", "ACCEL:1,2,3,,,", "ACCEL:1,2,3,abc",
+                "ACCEL:1e2,1E-3,2.5e+1", "ACCEL:1.5f,2D,3d", "ACCEL:NaN,-Infinity,Infinity",
+                "ACCEL:0x1p3,1,2", "ACCEL:0.1234567,123456789,0.00000000001",
+                "ACCEL:16777216,16777217,33554433", "ACCEL:1e10,1e-10,1e11", "ACCEL:3.4e38,1.4e-45,1e39",
+                "ACCEL:00000001.50000000,007,0.0000001",
+        };
+        for (String frame : frames)
+            assertSameAsReference(frame);
+    }
+
+    @Test
+    public void ignoredFrames() {
+        String[] frames = {"ACCEL:", "ACCEL:1", "ACCEL:1,2", "ACCEL:1,2,", "ACCEL:1,2,,", "ACCEL:,,,", "ACC", "MOVE:LEFT", "accel:1,2,3"};
+        for (String frame : frames)
+            assertSameAsReference(frame);
+    }
+
+    @Test
+    public void malformedValues() {
+        String[] frames = {"ACCEL:,1,2", "ACCEL:1,,3", "ACCEL:1,2, ", "ACCEL:1,2,3x", "ACCEL:-,1,2", "ACCEL:1e,2,3",
+                "ACCEL:1.2.3,4,5", "ACCEL:1 2,3,4", "ACCEL:e5,1,2", "ACCEL:1,2,3ü"};
+        for (String frame : frames)
+            assertSameAsReference(frame);
+    }
+
+    @Test
+    public void malformedValueKeepsPreviousSample() {
+        byte[] good = "ACCEL:1,2,3".getBytes(StandardCharsets.US_ASCII);
+        byte[] bad = "ACCEL:4,5,x".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(parser.parse(good, 0, good.length));
+        try {
+            parser.parse(bad, 0, bad.length);
+            fail();
+        } catch (NumberFormatException ignored) {
+        }
+        assertEquals(1f, parser.x, 0);
+        assertEquals(3f, parser.z, 0);
+    }
+
+    @Test
+    public void randomValuesMatchFloatParseFloat() {
+        Random random = new Random(42);
+        String[] formats = {"%.2f", "%.3f", "%.6f", "%.1f", "%.7f", "%.0f"};
+        for (int i = 0; i < 20000; i++) {
+            String format = formats[i % formats.length];
+            double scale = Math.pow(10, random.nextInt(8) - 4);
+            String msg = "ACCEL:" + String.format(Locale.US, format, (random.nextDouble() * 2 - 1) * scale)
+                    + "," + String.format(Locale.US, format, random.nextGaussian() * 16)
+                    + "," + String.format(Locale.US, format, random.nextGaussian());
+            assertSameAsReference(msg);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BleSocketTest {
+
+    /**
+     * records requests, the test plays the GATT stack and calls the callbacks
+     */
+    private static class FakeGatt implements GattLayer {
+        final List<String> calls = new ArrayList<>();
+        final List<byte[]> writes = new ArrayList<>();
+        final ArrayDeque<Runnable> posted = new ArrayDeque<>();
+        Callback callback;
+        boolean closed;
+
+        @Override public void connect(Callback callback) { this.callback = callback; calls.add("connect"); }
+        @Override public boolean requestMtu(int mtu) { calls.add("mtu " + mtu); return true; }
+        @Override public boolean requestHighPriority() { calls.add("priority"); return true; }
+        @Override public boolean discoverServices() { calls.add("discover"); return true; }
+        @Override public boolean enableNotifications() { calls.add("notify"); return true; }
+        @Override public boolean write(byte[] data) { writes.add(data); return true; }
+        @Override public void post(Runnable runnable, long delayMs) { posted.add(runnable); }
+        @Override public void close() { closed = true; }
+        @Override public String getName() { return "ESP32-GYRO"; }
+
+        void runPosted() {
+            while (!posted.isEmpty())
+                posted.poll().run();
+        }
+    }
+
+    private static class Listener implements SerialListener {
+        final List<String> events = new ArrayList<>();
+        final List<Integer> chunkLengths = new ArrayList<>();
+
+        @Override public void onSerialConnect() { events.add("connect"); }
+        @Override public void onSerialConnectError(Exception e) { events.add("connectError " + e.getMessage()); }
+        @Override public void onSerialIoError(Exception e) { events.add("ioError " + e.getMessage()); }
+        @Override public void onSerialRead(SerialProcessor.Update update) { fail(); }
+        @Override public void onSerialRead(BufferPool.Chunk chunk) {
+            chunkLengths.add(chunk.length);
+            chunk.release();
+        }
+    }
+
+    private FakeGatt gatt;
+    private Listener listener;
+    private BufferPool pool;
+    private BleSocket socket;
+
+    @Before
+    public void setUp() throws IOException {
+        gatt = new FakeGatt();
+        listener = new Listener();
+        pool = new BufferPool(4, 1024);
+        socket = new BleSocket(gatt);
+        socket.connect(listener, pool, Runnable::run);
+    }
+
+    private void establish(int mtu) {
+        gatt.callback.onConnectionStateChange(true, GattLayer.GATT_SUCCESS);
+        gatt.callback.onMtuChanged(mtu, GattLayer.GATT_SUCCESS);
+        gatt.callback.onServicesDiscovered(true, GattLayer.GATT_SUCCESS);
+        gatt.callback.onNotificationsEnabled(GattLayer.GATT_SUCCESS);
+    }
+
+    @Test
+    public void connectSequence() {
+        establish(247);
+        assertEquals("[connect, mtu 247, priority, discover, notify]", gatt.calls.toString());
+        assertEquals("[connect]", listener.events.toString());
+        assertEquals(244, socket.getPayloadSize());
+    }
+
+    @Test
+    public void mtuRejectedKeepsDefaultPayload() {
+        gatt.callback.onConnectionStateChange(true, GattLayer.GATT_SUCCESS);
+        gatt.callback.onMtuChanged(247, 4);
+        assertEquals(BleSocket.DEFAULT_MTU - 3, socket.getPayloadSize());
+        assertTrue(gatt.calls.contains("discover"));
+    }
+
+    @Test
+    public void missingUartServiceIsConnectError() {
+        gatt.callback.onConnectionStateChange(true, GattLayer.GATT_SUCCESS);
+        gatt.callback.onMtuChanged(247, GattLayer.GATT_SUCCESS);
+        gatt.callback.onServicesDiscovered(false, GattLayer.GATT_SUCCESS);
+        assertEquals("[connectError Nordic UART service not found]", listener.events.toString());
+        assertFalse(gatt.calls.contains("notify"));
+    }
+
+    @Test
+    public void connectFailed() {
+        gatt.callback.onConnectionStateChange(false, 133);
+        assertEquals("[connectError gatt connect failed, status 133]", listener.events.toString());
+    }
+
+    @Test
+    public void connectionLost() {
+        establish(247);
+        gatt.callback.onConnectionStateChange(false, 8);
+        assertEquals("[connect, ioError connection lost, status 8]", listener.events.toString());
+    }
+
+    @Test
+    public void notificationsAreBatched() {
+        establish(247);
+        gatt.callback.onCharacteristicChanged(new byte[20]);
+        gatt.callback.onCharacteristicChanged(new byte[20]);
+        gatt.callback.onCharacteristicChanged(new byte[40]);
+        assertTrue(listener.chunkLengths.isEmpty());
+        assertEquals(1, gatt.posted.size());
+        gatt.runPosted();
+        assertEquals("[80]", listener.chunkLengths.toString());
+        assertEquals(0, pool.getAllocatedCount());
+    }
+
+    @Test
+    public void fullBatchIsDeliveredWithoutDelay() {
+        establish(247);
+        for (int i = 0; i < 4; i++)
+            gatt.callback.onCharacteristicChanged(new byte[244]);
+        // 976 bytes, next notification would not fit into 1024 byte chunk
+        assertEquals("[976]", listener.chunkLengths.toString());
+        gatt.callback.onCharacteristicChanged(new byte[10]);
+        gatt.runPosted();
+        assertEquals("[976, 10]", listener.chunkLengths.toString());
+    }
+
+    @Test
+    public void writesAreSplitAndSerialized() throws IOException {
+        establish(23); // 20 byte payload
+        socket.write(new byte[45]);
+        assertEquals(1, gatt.writes.size());
+        assertEquals(20, gatt.writes.get(0).length);
+        gatt.callback.onWriteComplete(GattLayer.GATT_SUCCESS);
+        assertEquals(2, gatt.writes.size());
+        gatt.callback.onWriteComplete(GattLayer.GATT_SUCCESS);
+        assertEquals(3, gatt.writes.size());
+        assertEquals(5, gatt.writes.get(2).length);
+        gatt.callback.onWriteComplete(GattLayer.GATT_SUCCESS);
+        assertEquals(3, gatt.writes.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void writeBeforeConnect() throws IOException {
+        socket.write(new byte[1]);
+    }
+
+    @Test
+    public void disconnectReleasesPendingBatch() {
+        establish(247);
+        gatt.callback.onCharacteristicChanged(new byte[20]);
+        assertEquals(3, pool.getFreeCount());
+        socket.disconnect();
+        gatt.runPosted();
+        assertTrue(gatt.closed);
+        assertEquals(4, pool.getFreeCount());
+        assertTrue(listener.chunkLengths.isEmpty());
+    }
+}
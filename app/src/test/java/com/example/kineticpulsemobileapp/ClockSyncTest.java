@@ -0,0 +1,135 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ClockSyncTest {
+
+    private final ClockSync sync = new ClockSync();
+    private final Random random = new Random(7);
+
+    /**
+     * simulated device: phone = offset + device * (1 + drift), one way delays
+     * of base + exponential jitter in each direction
+     */
+    private long offsetNanos = 3_600_000_000_000L;
+    private double driftPpm = 0;
+    private long baseDelayNanos = 7_500_000;
+    private double jitterNanos = 5_000_000;
+
+    private long phoneNanos(double deviceMs) {
+        return offsetNanos + Math.round(deviceMs * 1e6 * (1 + driftPpm * 1e-6));
+    }
+
+    private long delay() {
+        return baseDelayNanos + Math.round(-Math.log(1 - random.nextDouble()) * jitterNanos);
+    }
+
+    /**
+     * one exchange at device time, returns the exact phone time of deviceMs
+     */
+    private void exchange(long deviceMs) {
+        long replyNanos = phoneNanos(deviceMs + random.nextDouble()); // millis() truncates
+        sync.addExchange(replyNanos - delay(), replyNanos + delay(), deviceMs);
+    }
+
+    private void exchanges(long fromMs, int n, long intervalMs) {
+        for (int i = 0; i < n; i++)
+            exchange(fromMs + i * intervalMs);
+    }
+
+    @Test
+    public void notSynchronizedUntilEnoughExchanges() {
+        assertFalse(sync.isSynchronized());
+        exchange(1000);
+        exchange(3000);
+        assertFalse(sync.isSynchronized());
+        exchange(5000);
+        assertTrue(sync.isSynchronized());
+    }
+
+    @Test
+    public void offsetWithJitter() {
+        exchanges(10_000, 20, 2000);
+        assertTrue(sync.isSynchronized());
+        long error = sync.toPhoneNanos(50_000) - phoneNanos(50_000);
+        assertTrue("error " + error, Math.abs(error) < 2_000_000);
+        assertTrue(sync.getErrorBoundNanos() >= baseDelayNanos);
+    }
+
+    @Test
+    public void deviceTimeOfPhoneTime() {
+        driftPpm = 80;
+        exchanges(0, 200, 2000);
+        long phone = sync.toPhoneNanos(300_000);
+        assertEquals(300_000, sync.toDeviceMs(phone));
+        assertEquals(299_999, sync.toDeviceMs(phone - 1));
+    }
+
+    @Test
+    public void drift() {
+        driftPpm = 80;
+        exchanges(0, 200, 2000); // ~7 minutes
+        assertEquals(80, sync.getDriftPpm(), 20);
+        // extrapolate a minute ahead, 80ppm would be 4.8ms off without drift
+        long error = sync.toPhoneNanos(460_000) - phoneNanos(460_000);
+        assertTrue("error " + error, Math.abs(error) < 2_000_000);
+    }
+
+    @Test
+    public void driftIsLimited() {
+        driftPpm = 5000;
+        exchanges(0, 100, 2000);
+        assertEquals(ClockSync.MAX_DRIFT_PPM, sync.getDriftPpm(), 1e-6);
+    }
+
+    @Test
+    public void noDriftFromShortSpan() {
+        driftPpm = 300;
+        exchanges(0, 10, 1000);
+        assertEquals(0, sync.getDriftPpm(), 0);
+    }
+
+    @Test
+    public void slowExchangesAreIgnored() {
+        exchanges(0, 20, 2000);
+        long before = sync.toPhoneNanos(40_000);
+        // congested link: long and asymmetric, midpoint 100ms off
+        for (int i = 0; i < 5; i++) {
+            long replyNanos = phoneNanos(40_000 + i * 2000);
+            sync.addExchange(replyNanos - 10_000_000, replyNanos + 210_000_000, 40_000 + i * 2000);
+        }
+        assertEquals(before, sync.toPhoneNanos(40_000), 1_000_000);
+    }
+
+    @Test
+    public void rejectsInvalidRoundTrip() {
+        assertFalse(sync.addExchange(100, 50, 0));
+        assertFalse(sync.addExchange(0, ClockSync.MAX_ROUND_TRIP_NANOS + 1, 0));
+        assertEquals(2, sync.getRejectedCount());
+        assertEquals(0, sync.getExchangeCount());
+    }
+
+    @Test
+    public void deviceRestart() {
+        exchanges(100_000, 10, 2000);
+        // reboot: millis() starts at 0 again, phone time goes on
+        offsetNanos += 200_000_000_000L;
+        exchanges(0, 3, 2000);
+        assertEquals(1, sync.getRestartCount());
+        assertTrue(sync.isSynchronized());
+        long error = sync.toPhoneNanos(4000) - phoneNanos(4000);
+        assertTrue("error " + error, Math.abs(error) < 5_000_000);
+    }
+
+    @Test
+    public void reset() {
+        exchanges(0, 5, 2000);
+        sync.reset();
+        assertFalse(sync.isSynchronized());
+        assertEquals(0, sync.getExchangeCount());
+    }
+}
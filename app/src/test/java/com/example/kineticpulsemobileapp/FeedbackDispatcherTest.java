@@ -0,0 +1,189 @@
+package com.example.kineticpulsemobileapp;
+
+import com.example.kineticpulsemobileapp.motion.Movement;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class FeedbackDispatcherTest {
+
+    private final FeedbackDispatcher dispatcher = new FeedbackDispatcher(new SerialMetrics());
+    private final List<ExecutorService> executors = new ArrayList<>();
+
+    /** runs tasks when the test says so, like a frame callback */
+    private static final class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty())
+                tasks.poll().run();
+        }
+    }
+
+    @After
+    public void shutdown() {
+        for (ExecutorService executor : executors)
+            executor.shutdownNow();
+    }
+
+    private static FeedbackDispatcher.Feedback feedback(Movement movement, int left) {
+        return new FeedbackDispatcher.Feedback(movement, false, left, 0, 0, 0, 0);
+    }
+
+    @Test
+    public void latestWins() {
+        ManualExecutor frame = new ManualExecutor();
+        List<Movement> shown = new ArrayList<>();
+        FeedbackDispatcher.Sink ui = dispatcher.addSink("ui", FeedbackDispatcher.Policy.LATEST, frame, f -> shown.add(f.movement));
+
+        dispatcher.dispatch(feedback(Movement.LEFT, 1));
+        dispatcher.dispatch(feedback(Movement.RIGHT, 1));
+        dispatcher.dispatch(feedback(Movement.BACK, 1));
+        assertEquals(1, frame.tasks.size());
+        frame.runAll();
+        assertEquals(Collections.singletonList(Movement.BACK), shown);
+        assertEquals(1, ui.getRunCount());
+        assertEquals(2, ui.getCoalescedCount());
+
+        dispatcher.dispatch(feedback(Movement.FORWARD, 1));
+        frame.runAll();
+        assertEquals(Movement.FORWARD, shown.get(1));
+        assertEquals(2, ui.getRunCount());
+    }
+
+    @Test
+    public void dropIfBusy() {
+        ManualExecutor executor = new ManualExecutor();
+        boolean[] speaking = {false};
+        List<Movement> spoken = new ArrayList<>();
+        FeedbackDispatcher.Sink tts = dispatcher.addDropIfBusySink("tts", executor, () -> speaking[0], f -> spoken.add(f.movement));
+
+        dispatcher.dispatch(feedback(Movement.LEFT, 1));
+        dispatcher.dispatch(feedback(Movement.RIGHT, 2)); // pending run, dropped
+        executor.runAll();
+        speaking[0] = true;
+        dispatcher.dispatch(feedback(Movement.BACK, 2));  // busy, dropped
+        executor.runAll();
+        speaking[0] = false;
+        dispatcher.dispatch(feedback(Movement.FORWARD, 2));
+        executor.runAll();
+
+        assertEquals(Arrays.asList(Movement.LEFT, Movement.FORWARD), spoken);
+        assertEquals(2, tts.getDroppedCount());
+        assertEquals(2, tts.getRunCount());
+    }
+
+    @Test
+    public void batchRunsAreSpaced() throws Exception {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        executors.add(executor);
+        List<Long> runs = Collections.synchronizedList(new ArrayList<>());
+        List<Integer> totals = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(2);
+        FeedbackDispatcher.Sink api = dispatcher.addBatchSink("api", executor, 100, f -> {
+            runs.add(System.nanoTime());
+            totals.add(f.left);
+            done.countDown();
+        });
+
+        for (int i = 1; i <= 20; i++) {
+            dispatcher.dispatch(feedback(Movement.LEFT, i));
+            Thread.sleep(5);
+        }
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        Thread.sleep(150);
+
+        // first run right away, the rest coalesced into runs a batch interval apart
+        assertTrue(runs.size() >= 2 && runs.size() < 5);
+        for (int i = 1; i < runs.size(); i++)
+            assertTrue(runs.get(i) - runs.get(i - 1) >= TimeUnit.MILLISECONDS.toNanos(95));
+        assertEquals(20, (int) totals.get(totals.size() - 1));
+        assertEquals(20, api.getRunCount() + api.getCoalescedCount());
+    }
+
+    @Test
+    public void slowSinkDoesNotBlockOthers() throws Exception {
+        ExecutorService slowExecutor = Executors.newSingleThreadExecutor(new FeedbackDispatcher.SinkThreadFactory("slow"));
+        ExecutorService fastExecutor = Executors.newSingleThreadExecutor(new FeedbackDispatcher.SinkThreadFactory("fast"));
+        executors.add(slowExecutor);
+        executors.add(fastExecutor);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch fastDone = new CountDownLatch(3);
+        List<String> threads = Collections.synchronizedList(new ArrayList<>());
+        FeedbackDispatcher.Sink slow = dispatcher.addSink("slow", FeedbackDispatcher.Policy.LATEST, slowExecutor, f -> release.await());
+        dispatcher.addSink("fast", FeedbackDispatcher.Policy.LATEST, fastExecutor, f -> {
+            threads.add(Thread.currentThread().getName());
+            fastDone.countDown();
+        });
+
+        long start = System.nanoTime();
+        for (int i = 1; i <= 3; i++) {
+            dispatcher.dispatch(feedback(Movement.LEFT, i));
+            Thread.sleep(20);
+        }
+        assertTrue(fastDone.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        assertEquals("Feedback-fast-1", threads.get(0));
+        assertEquals(0, slow.getRunCount());
+
+        release.countDown();
+        slowExecutor.shutdown();
+        assertTrue(slowExecutor.awaitTermination(1, TimeUnit.SECONDS));
+        // one run blocked, the two feedbacks meanwhile coalesced into one more
+        assertEquals(2, slow.getRunCount());
+        assertEquals(1, slow.getCoalescedCount());
+    }
+
+    @Test
+    public void metrics() {
+        ManualExecutor executor = new ManualExecutor();
+        dispatcher.addSink("led", FeedbackDispatcher.Policy.LATEST, executor, f -> {
+            throw new IllegalStateException("not connected");
+        });
+        dispatcher.dispatch(feedback(Movement.LEFT, 1));
+        dispatcher.dispatch(feedback(Movement.RIGHT, 1));
+        executor.runAll();
+
+        SerialMetrics metrics = dispatcher.getMetrics();
+        assertEquals(2, metrics.counter("led offered").get());
+        assertEquals(1, metrics.counter("led coalesced").get());
+        assertEquals(1, metrics.counter("led failed").get());
+        assertEquals(0, metrics.counter("led run").get());
+        assertTrue(metrics.snapshot().contains("led delay"));
+    }
+
+    @Test
+    public void shutDownExecutorDrops() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        FeedbackDispatcher.Sink sink = dispatcher.addSink("led", FeedbackDispatcher.Policy.LATEST, executor, f -> fail());
+        dispatcher.dispatch(feedback(Movement.LEFT, 1));
+        dispatcher.dispatch(feedback(Movement.LEFT, 2));
+        assertEquals(2, sink.getDroppedCount());
+        assertEquals(0, sink.getCoalescedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void batchNeedsScheduledExecutor() {
+        dispatcher.addSink("api", FeedbackDispatcher.Policy.BATCH, new ManualExecutor(), f -> { });
+    }
+}
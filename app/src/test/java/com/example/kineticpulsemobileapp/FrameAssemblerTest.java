@@ -0,0 +1,115 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameAssemblerTest {
+
+    private final List<String> frames = new ArrayList<>();
+
+    private FrameAssembler assembler(FrameAssembler.Mode mode, int maxFrameLength) {
+        return new FrameAssembler(mode, maxFrameLength,
+                (buf, offset, length) -> frames.add(new String(buf, offset, length, StandardCharsets.UTF_8)));
+    }
+
+    private static void feed(FrameAssembler assembler, byte[] data, int... splits) {
+        int pos = 0;
+        for (int split : splits) {
+            assembler.append(data, pos, split - pos);
+            pos = split;
+        }
+        assembler.append(data, pos, data.length - pos);
+    }
+
+    @Test
+    public void newline_singleChunk() {
+        FrameAssembler assembler = assembler(FrameAssembler.Mode.NEWLINE, 64);
+        feed(assembler, "ACCEL:1,2,3\nMOVE:LEFT\r\n\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(2, frames.size());
+        assertEquals("ACCEL:1,2,3", frames.get(0));
+        assertEquals("MOVE:LEFT", frames.get(1));
+        assertEquals(2, assembler.getFrameCount());
+    }
+
+    @Test
+    public void newline_everySplitPosition() {
+        byte[] data = "ACCEL:0.25,-0.13,0.07\r\nMOVE:RIGHT\r\nÜbergang ✓\n".getBytes(StandardCharsets.UTF_8);
+        for (int a = 0; a <= data.length; a++) {
+            for (int b = a; b <= data.length; b++) {
+                frames.clear();
+                feed(assembler(FrameAssembler.Mode.NEWLINE, 64), data, a, b);
+                assertEquals("split " + a + "," + b, 3, frames.size());
+                assertEquals("ACCEL:0.25,-0.13,0.07", frames.get(0));
+                assertEquals("MOVE:RIGHT", frames.get(1));
+                assertEquals("Übergang ✓", frames.get(2));
+            }
+        }
+    }
+
+    @Test
+    public void newline_randomChunking() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 1000; i++)
+            sb.append("ACCEL:").append(i).append(",0,0\n");
+        byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+        Random random = new Random(1);
+        FrameAssembler assembler = assembler(FrameAssembler.Mode.NEWLINE, 64);
+        int pos = 0;
+        while (pos < data.length) {
+            int n = Math.min(data.length - pos, 1 + random.nextInt(40));
+            assembler.append(data, pos, n);
+            pos += n;
+        }
+        assertEquals(1000, frames.size());
+        assertEquals("ACCEL:999,0,0", frames.get(999));
+        assertEquals(1000, assembler.getFrameCount());
+    }
+
+    @Test
+    public void newline_tooLongFrameIsDropped() {
+        FrameAssembler assembler = assembler(FrameAssembler.Mode.NEWLINE, 8);
+        feed(assembler, "0123456789ABCDEF\nOK\n".getBytes(StandardCharsets.UTF_8), 4, 12);
+        assertEquals(1, frames.size());
+        assertEquals("OK", frames.get(0));
+        assertEquals(1, assembler.getDroppedCount());
+    }
+
+    @Test
+    public void newline_tooLongFrameInOneChunkIsDropped() {
+        FrameAssembler assembler = assembler(FrameAssembler.Mode.NEWLINE, 8);
+        assembler.append("0123456789ABCDEF\nOK\n".getBytes(StandardCharsets.UTF_8), 0, 20);
+        assertEquals(1, frames.size());
+        assertEquals("OK", frames.get(0));
+        assertEquals(1, assembler.getDroppedCount());
+    }
+
+    @Test
+    public void lengthPrefixed_everySplitPosition() {
+        byte[] data = {0, 3, 'a', 'b', 'c', 0, 0, 0, 1, 'x', 0, 2, 'y', 'z'};
+        for (int a = 0; a <= data.length; a++) {
+            for (int b = a; b <= data.length; b++) {
+                frames.clear();
+                feed(assembler(FrameAssembler.Mode.LENGTH_PREFIXED, 16), data, a, b);
+                assertEquals("split " + a + "," + b, 3, frames.size());
+                assertEquals("abc", frames.get(0));
+                assertEquals("x", frames.get(1));
+                assertEquals("yz", frames.get(2));
+            }
+        }
+    }
+
+    @Test
+    public void lengthPrefixed_tooLongFrameIsSkipped() {
+        FrameAssembler assembler = assembler(FrameAssembler.Mode.LENGTH_PREFIXED, 2);
+        feed(assembler, new byte[]{0, 4, 1, 2, 3, 4, 0, 2, 'o', 'k'}, 3);
+        assertEquals(1, frames.size());
+        assertEquals("ok", frames.get(0));
+        assertEquals(1, assembler.getDroppedCount());
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+public class JsonSampleDecoderTest {
+
+    // as sent by esp32-gyro firmware
+    private static final String SAMPLE = "{\"t\":123456,\"ax\":0.125,\"ay\":-1.000,\"az\":2.500,\"gx\":10.50,\"gy\":-0.25,\"gz\":0.00,\"mm\":0.333}";
+
+    private final List<String> events = new ArrayList<>();
+    private final JsonSampleDecoder decoder = new JsonSampleDecoder(new JsonSampleDecoder.Listener() {
+        @Override
+        public void onSample(JsonSampleDecoder.Sample s) {
+            events.add(String.format(Locale.US, "S@%d:%s,%s,%s,%s,%s,%s,%s", s.timeMs, s.ax, s.ay, s.az, s.gx, s.gy, s.gz, s.mm));
+        }
+
+        @Override public void onState(boolean gyroOn) { events.add("state " + gyroOn); }
+        @Override public void onCalibration(boolean done) { events.add("cal " + done); }
+        @Override public void onPong(long id, long deviceTimeMs) { events.add(id < 0 ? "pong" : "pong " + id + "@" + deviceTimeMs); }
+        @Override public void onRate(int hz) { events.add("rate " + hz); }
+        @Override public void onFormat(boolean binary) { events.add("fmt " + binary); }
+
+        @Override
+        public void onText(byte[] buf, int offset, int length) {
+            String text = new String(buf, offset, length, StandardCharsets.UTF_8);
+            if (!events.isEmpty() && events.get(events.size() - 1).startsWith("T"))
+                events.set(events.size() - 1, events.get(events.size() - 1) + text);
+            else
+                events.add("T" + text);
+        }
+    });
+
+    private void append(String s) {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        decoder.append(b, 0, b.length);
+    }
+
+    private static final String SAMPLE_EVENT = "S@123456:0.125,-1.0,2.5,10.5,-0.25,0.0,0.333";
+
+    @Test
+    public void sample() {
+        append(SAMPLE);
+        assertEquals("[" + SAMPLE_EVENT + "]", events.toString());
+        assertEquals(1, decoder.getSampleCount());
+    }
+
+    @Test
+    public void concatenatedNotifications() {
+        // BLE: one object per notification, no line end, batched into one chunk
+        append(SAMPLE + SAMPLE + SAMPLE);
+        assertEquals(3, events.size());
+        assertEquals(3, decoder.getSampleCount());
+    }
+
+    @Test
+    public void splitAtEveryPosition() {
+        String stream = "READY GYRO:OFF\r\n" + SAMPLE + "{\"state\":\"GYRO_ON\"}\r\n" + SAMPLE;
+        byte[] b = stream.getBytes(StandardCharsets.UTF_8);
+        for (int split = 0; split <= b.length; split++) {
+            events.clear();
+            decoder.reset();
+            decoder.append(b, 0, split);
+            decoder.append(b, split, b.length - split);
+            assertEquals("split " + split, "[TREADY GYRO:OFF\r\n, " + SAMPLE_EVENT + ", state true, T{\"state\":\"GYRO_ON\"}\n\r\n, " + SAMPLE_EVENT + "]", events.toString());
+        }
+    }
+
+    @Test
+    public void statusObjects() {
+        append("{\"state\":\"GYRO_OFF\"}{\"cal\":\"started\"}{\"cal\":\"ok\"}{\"pong\":true}{\"rate\":100}{\"fmt\":\"bin\"}{\"fmt\":\"json\"}");
+        assertEquals("[state false, T{\"state\":\"GYRO_OFF\"}\n, cal false, T{\"cal\":\"started\"}\n, cal true, T{\"cal\":\"ok\"}\n"
+                + ", pong, T{\"pong\":true}\n, rate 100, T{\"rate\":100}\n, fmt true, T{\"fmt\":\"bin\"}\n, fmt false, T{\"fmt\":\"json\"}\n]", events.toString());
+        assertEquals(0, decoder.getErrorCount());
+    }
+
+    @Test
+    public void pongWithTime() {
+        append("{\"pong\":42,\"t\":123456}{\"pong\":7}{\"pong\":false}");
+        assertEquals("[pong 42@123456, T{\"pong\":42,\"t\":123456}\n, pong 7@-1, T{\"pong\":7}\n{\"pong\":false}\n]", events.toString());
+        assertEquals(0, decoder.getSampleCount());
+        assertEquals(0, decoder.getErrorCount());
+    }
+
+    @Test
+    public void otherObjectsAreText() {
+        append("{\"error\":\"bad_cmd\"}{\"boot\":\"GYRO:OFF\"}{\"state\":\"SLEEPING\"}");
+        assertEquals("[T{\"error\":\"bad_cmd\"}\n{\"boot\":\"GYRO:OFF\"}\n{\"state\":\"SLEEPING\"}\n]", events.toString());
+        assertEquals(0, decoder.getErrorCount());
+    }
+
+    @Test
+    public void whitespaceAndKeyOrder() {
+        append("{ \"az\" : 1.5 , \"ay\":2,\t\"ax\":-3e-1, \"t\" : 7 }");
+        assertEquals("[S@7:-0.3,2.0,1.5,0.0,0.0,0.0,0.0]", events.toString());
+    }
+
+    @Test
+    public void bracesOnlyStartObjectsAtLineStart() {
+        append("value {not json}\n");
+        assertEquals("[Tvalue {not json}\n]", events.toString());
+        assertEquals(0, decoder.getErrorCount());
+    }
+
+    @Test
+    public void malformedObjects() {
+        append("{\"t\":1,\"ax\":x,\"ay\":0,\"az\":0}{\"t\":\"1\",\"ax\":0,\"ay\":0,\"az\":0}{\"t\" 1}{\"rate\":1,}");
+        assertEquals(4, decoder.getErrorCount());
+        assertEquals(0, decoder.getSampleCount());
+        assertEquals(1, events.size()); // all passed on as text
+    }
+
+    @Test
+    public void lineEndInsideObjectIsText() {
+        append("{\"t\":1,\n");
+        append(SAMPLE);
+        assertEquals("[T{\"t\":1,\n, " + SAMPLE_EVENT + "]", events.toString());
+        assertEquals(1, decoder.getErrorCount());
+    }
+
+    @Test
+    public void tooLongObjectIsDropped() {
+        StringBuilder sb = new StringBuilder("{\"info\":\"");
+        while (sb.length() < JsonSampleDecoder.MAX_OBJECT_LENGTH)
+            sb.append('x');
+        append(sb.toString());
+        append("\"}" + SAMPLE);
+        assertEquals("[" + SAMPLE_EVENT + "]", events.toString());
+        assertEquals(1, decoder.getErrorCount());
+    }
+
+    @Test
+    public void stringWithBrace() {
+        append("{\"info\":\"a}b\\\"}\"}" + SAMPLE);
+        assertEquals("[T{\"info\":\"a}b\\\"}\"}\n, " + SAMPLE_EVENT + "]", events.toString());
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MessageDispatcherTest {
+
+    private final List<String> calls = new ArrayList<>();
+    private final MessageDispatcher dispatcher = new MessageDispatcher();
+
+    private MessageDispatcher.Handler handler(String name) {
+        return (buf, offset, length) -> calls.add(name + ":" + new String(buf, offset, length, StandardCharsets.UTF_8));
+    }
+
+    private boolean dispatch(String frame) {
+        // frame in the middle of a larger buffer, like from the receive chunk
+        byte[] b = ("##" + frame + "##").getBytes(StandardCharsets.UTF_8);
+        return dispatcher.dispatch(b, 2, b.length - 4);
+    }
+
+    @Test
+    public void noPatterns() {
+        assertFalse(dispatch("ACCEL:1,2,3"));
+        assertFalse(dispatch(""));
+    }
+
+    @Test
+    public void prefixIsAnchored() {
+        dispatcher.registerPrefix("MOVE:", handler("move"));
+        assertTrue(dispatch("MOVE:LEFT"));
+        assertFalse(dispatch(" MOVE:LEFT"));
+        assertFalse(dispatch("XMOVE:LEFT"));
+        assertFalse(dispatch("MOVE"));
+        assertEquals("[move:MOVE:LEFT]", calls.toString());
+    }
+
+    @Test
+    public void phraseAnywhere() {
+        dispatcher.registerPhrase("Backward Jump", handler("back"));
+        assertTrue(dispatch("Backward Jump"));
+        assertTrue(dispatch("-> Backward Jump detected"));
+        assertFalse(dispatch("Backward Jum"));
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void prefixWinsOverPhrase() {
+        dispatcher.registerPhrase("Movement", handler("phrase"));
+        dispatcher.registerPrefix("MOVE:", handler("prefix"));
+        dispatch("MOVE:Movement");
+        dispatch("Movement MOVE:");
+        assertEquals("[prefix:MOVE:Movement, phrase:Movement MOVE:]", calls.toString());
+    }
+
+    @Test
+    public void firstRegisteredPhraseWins() {
+        dispatcher.registerPhrase("Lateral-Left Movement Detected", handler("left"));
+        dispatcher.registerPhrase("Jump detected! Yahoo! ^^", handler("jump"));
+        dispatch("Jump detected! Yahoo! ^^ Lateral-Left Movement Detected");
+        assertEquals("[left:Jump detected! Yahoo! ^^ Lateral-Left Movement Detected]", calls.toString());
+    }
+
+    @Test
+    public void overlappingPatterns() {
+        // needs failure links: "abcd" fails at 'x', "bcx" must still be found
+        dispatcher.registerPhrase("abcd", handler("abcd"));
+        dispatcher.registerPhrase("bcx", handler("bcx"));
+        dispatcher.registerPhrase("aab", handler("aab"));
+        assertTrue(dispatch("abcx"));
+        assertTrue(dispatch("aaab"));
+        assertFalse(dispatch("abcabc"));
+        // suffix pattern ending inside a longer one
+        dispatcher.registerPhrase("cd", handler("cd"));
+        assertTrue(dispatch("xabcd"));
+        assertEquals("[bcx:abcx, aab:aaab, abcd:xabcd]", calls.toString());
+    }
+
+    @Test
+    public void prefixAndPhraseSharingBytes() {
+        dispatcher.registerPrefix("ACCEL:", handler("accel"));
+        dispatcher.registerPhrase("CEL", handler("cel"));
+        dispatch("ACCEL:1");
+        dispatch("ACCE");
+        dispatch("xACCEL:1");
+        assertEquals("[accel:ACCEL:1, cel:xACCEL:1]", calls.toString());
+    }
+
+    @Test
+    public void nonAsciiBytes() {
+        dispatcher.registerPhrase("ü", handler("umlaut"));
+        dispatcher.registerPrefix("A", handler("a"));
+        assertTrue(dispatch("grün"));
+        assertFalse(dispatch("ÿþ"));
+        assertFalse(dispatch("Ä A"));
+        assertTrue(dispatch("A Ä"));
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void equalsIgnoreCase() {
+        byte[] b = "MOVE: left \r".getBytes(StandardCharsets.US_ASCII);
+        assertTrue(MessageDispatcher.equalsIgnoreCase(b, 5, b.length, "LEFT"));
+        assertFalse(MessageDispatcher.equalsIgnoreCase(b, 5, b.length, "LEF"));
+        assertFalse(MessageDispatcher.equalsIgnoreCase(b, 5, b.length, "RIGHT"));
+        byte[] c = "a@".getBytes(StandardCharsets.US_ASCII);
+        assertFalse(MessageDispatcher.equalsIgnoreCase(c, 0, c.length, "A`")); // '@' | 0x20 == '`'
+    }
+}
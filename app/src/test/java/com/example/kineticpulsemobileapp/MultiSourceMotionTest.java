@@ -0,0 +1,104 @@
+package com.example.kineticpulsemobileapp;
+
+import com.example.kineticpulsemobileapp.motion.Movement;
+import com.example.kineticpulsemobileapp.motion.SampleMerger;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MultiSourceMotionTest {
+
+    private static final long PERIOD = 10_000_000; // 100Hz
+    private static final int PHONE = MultiSourceMotion.FIRST_REMOTE;
+
+    private final List<Movement> movements = new ArrayList<>();
+    private long now;
+    private final MultiSourceMotion motion = new MultiSourceMotion(() -> now, (movement, sampleNanos) -> movements.add(movement));
+
+    /**
+     * 300ms at 100Hz: ESP32 accel x in g and phone gyro x in rad/s, rest before and after.
+     * withPhone false: the phone sends no samples, e.g. connected but not streaming
+     */
+    private void run(float espPeak, float phonePeak, long phoneDelayNanos, boolean withPhone) {
+        for (int i = 0; i < 30; i++) {
+            now += PERIOD;
+            float shape = i >= 10 && i < 14 ? 1 : 0;
+            motion.espSample(now, espPeak * shape, 0, 1, 0, 0, 0);
+            if (withPhone)
+                motion.sample(PHONE, SampleMerger.GYRO, now - phoneDelayNanos, phonePeak * shape, 0, 0);
+        }
+        now += 500_000_000L;
+        motion.flush();
+    }
+
+    private void run(float espPeak, float phonePeak, long phoneDelayNanos) {
+        run(espPeak, phonePeak, phoneDelayNanos, true);
+    }
+
+    @Test
+    public void bothSourcesConfirm() {
+        // below the single source thresholds (2g, 2rad/s), above the lowered ones
+        run(1.6f, -1.6f, 20_000_000L);
+        assertEquals("[RIGHT]", movements.toString());
+    }
+
+    @Test
+    public void oneSourceAloneIsNotConfirmed() {
+        run(1.6f, 0, 0);
+        run(0, 1.6f, 0);
+        assertTrue(movements.isEmpty());
+        assertTrue(motion.getStats().contains("unconfirmed=1"));
+    }
+
+    @Test
+    public void singleActiveSourceUsesFullThresholds() {
+        run(-1.6f, 0, 0, false);
+        assertTrue(movements.isEmpty());
+        run(-2.5f, 0, 0, false);
+        assertEquals("[LEFT]", movements.toString());
+        assertTrue(motion.getStats().contains("active=1000"));
+        assertTrue(motion.getStats().contains("required=1"));
+    }
+
+    @Test
+    public void pausedSourceReportsPendingPeak() {
+        // ESP32 stops within its peak, the phone keeps streaming
+        for (int i = 0; i < 60; i++) {
+            now += PERIOD;
+            float shape = i >= 10 && i < 14 ? 1 : 0;
+            if (i < 14)
+                motion.espSample(now, 1.6f * shape, 0, 1, 0, 0, 0);
+            motion.sample(PHONE, SampleMerger.GYRO, now, -1.6f * shape, 0, 0);
+        }
+        assertEquals("[RIGHT]", movements.toString());
+    }
+
+    @Test
+    public void timedOutSourceReportsPendingPeak() {
+        for (int i = 0; i < 14; i++) {
+            now += PERIOD;
+            motion.espSample(now, i >= 10 ? -2.5f : 0, 0, 1, 0, 0, 0);
+        }
+        // no more samples of the ESP32, the phone starts after the timeout
+        now += 2 * MultiSourceMotion.SOURCE_TIMEOUT_NANOS;
+        motion.sample(PHONE, SampleMerger.GYRO, now, 0, 0, 0);
+        assertEquals("[LEFT]", movements.toString());
+        assertTrue(motion.getStats().contains("active=0100"));
+    }
+
+    @Test
+    public void silentSourceIsDeactivated() {
+        run(0, 0, 0);
+        assertTrue(motion.getStats().contains("required=2"));
+        now += MultiSourceMotion.SOURCE_TIMEOUT_NANOS;
+        run(-2.5f, 0, 0, false);
+        assertEquals("[LEFT]", movements.toString());
+        assertTrue(motion.getStats().contains("active=1000"));
+        motion.deactivate(MultiSourceMotion.ESP32);
+        assertTrue(motion.getStats().contains("active=0000"));
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SampleFrameDecoderTest {
+
+    // golden vectors, as sent by esp32-gyro firmware
+    private static final byte[] ZERO = bytes(
+            0xA5, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00,
+            0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x2A);
+    // seq 7, t 123456, ax 1g, ay -1g, az 2g, gx 10dps, gy -10dps, gz max
+    private static final byte[] TYPICAL = bytes(
+            0xA5, 0x01, 0x07, 0x40, 0xE2, 0x01, 0x00, 0x00, 0x10, 0x00,
+            0xF0, 0x00, 0x20, 0xA4, 0x00, 0x5C, 0xFF, 0xFF, 0x7F, 0x59);
+    // seq 255, t 0xffffffff, extreme values, payload contains \n
+    private static final byte[] EXTREME = bytes(
+            0xA5, 0x01, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x00, 0x80, 0x01,
+            0x00, 0xFF, 0xFF, 0x34, 0x12, 0xFE, 0xFF, 0x0A, 0x0A, 0xB5);
+
+    private final List<String> events = new ArrayList<>();
+    private final SampleFrameDecoder decoder = new SampleFrameDecoder(new SampleFrameDecoder.Listener() {
+        @Override
+        public void onSample(SampleFrameDecoder.Sample s) {
+            events.add("S" + s.sequence + "@" + s.timeMs + ":" + s.ax + "," + s.ay + "," + s.az + "," + s.gx + "," + s.gy + "," + s.gz);
+        }
+
+        @Override
+        public void onText(byte[] buf, int offset, int length) {
+            String text = new String(buf, offset, length, StandardCharsets.ISO_8859_1);
+            if (!events.isEmpty() && events.get(events.size() - 1).startsWith("T"))
+                events.set(events.size() - 1, events.get(events.size() - 1) + text);
+            else
+                events.add("T" + text);
+        }
+    });
+
+    private static byte[] bytes(int... values) {
+        byte[] b = new byte[values.length];
+        for (int i = 0; i < values.length; i++)
+            b[i] = (byte) values[i];
+        return b;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int n = 0;
+        for (byte[] p : parts) n += p.length;
+        byte[] b = new byte[n];
+        int pos = 0;
+        for (byte[] p : parts) {
+            System.arraycopy(p, 0, b, pos, p.length);
+            pos += p.length;
+        }
+        return b;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void crc8_checkValue() {
+        assertEquals(0xF4, SampleFrameDecoder.crc8(ascii("123456789"), 0, 9));
+    }
+
+    @Test
+    public void goldenVectors() {
+        decoder.append(ZERO, 0, ZERO.length);
+        decoder.append(TYPICAL, 0, TYPICAL.length);
+        decoder.append(EXTREME, 0, EXTREME.length);
+        assertEquals(3, events.size());
+        assertEquals("S0@0:0,0,0,0,0,0", events.get(0));
+        assertEquals("S7@123456:4096,-4096,8192,164,-164,32767", events.get(1));
+        assertEquals("S255@4294967295:-32768,1,-1,4660,-2,2570", events.get(2));
+        assertEquals(3, decoder.getFrameCount());
+        assertEquals(0, decoder.getErrorCount());
+    }
+
+    @Test
+    public void scaledValues() {
+        SampleFrameDecoder.Sample[] last = new SampleFrameDecoder.Sample[1];
+        float[] values = new float[6];
+        SampleFrameDecoder d = new SampleFrameDecoder(new SampleFrameDecoder.Listener() {
+            @Override
+            public void onSample(SampleFrameDecoder.Sample s) {
+                last[0] = s;
+                values[0] = s.accelX(); values[1] = s.accelY(); values[2] = s.accelZ();
+                values[3] = s.gyroX();  values[4] = s.gyroY();  values[5] = s.gyroZ();
+            }
+
+            @Override
+            public void onText(byte[] buf, int offset, int length) {
+                fail("unexpected text");
+            }
+        });
+        d.append(TYPICAL, 0, TYPICAL.length);
+        assertNotNull(last[0]);
+        assertEquals(1.0f, values[0], 1e-6);
+        assertEquals(-1.0f, values[1], 1e-6);
+        assertEquals(2.0f, values[2], 1e-6);
+        assertEquals(10.0f, values[3], 1e-4);
+        assertEquals(-10.0f, values[4], 1e-4);
+    }
+
+    @Test
+    public void encodeMatchesGoldenVector() {
+        SampleFrameDecoder.Sample s = new SampleFrameDecoder.Sample();
+        s.sequence = 255;
+        s.timeMs = 0xFFFFFFFFL;
+        s.ax = -32768; s.ay = 1; s.az = -1;
+        s.gx = 0x1234; s.gy = -2; s.gz = 0x0A0A;
+        byte[] buf = new byte[SampleFrameDecoder.FRAME_LENGTH];
+        SampleFrameDecoder.encode(s, buf, 0);
+        assertArrayEquals(EXTREME, buf);
+    }
+
+    @Test
+    public void mixedTextAndFrames_everySplitPosition() {
+        byte[] data = concat(ascii("{\"rate\":200}\n"), TYPICAL, EXTREME, ascii("{\"pong\":true}\n"));
+        for (int a = 0; a <= data.length; a++) {
+            for (int b = a; b <= data.length; b++) {
+                events.clear();
+                decoder.reset();
+                decoder.append(data, 0, a);
+                decoder.append(data, a, b - a);
+                decoder.append(data, b, data.length - b);
+                assertEquals("split " + a + "," + b, 4, events.size());
+                assertEquals("T{\"rate\":200}\n", events.get(0));
+                assertEquals("S7@123456:4096,-4096,8192,164,-164,32767", events.get(1));
+                assertEquals("S255@4294967295:-32768,1,-1,4660,-2,2570", events.get(2));
+                assertEquals("T{\"pong\":true}\n", events.get(3));
+            }
+        }
+    }
+
+    @Test
+    public void corruptFrameIsPassedAsTextAndResyncs() {
+        byte[] corrupt = TYPICAL.clone();
+        corrupt[10] ^= 0x01;
+        byte[] data = concat(corrupt, ZERO);
+        for (int a = 0; a <= data.length; a++) {
+            events.clear();
+            decoder.reset();
+            decoder.append(data, 0, a);
+            decoder.append(data, a, data.length - a);
+            assertEquals("split " + a, 2, events.size());
+            assertEquals(corrupt.length + 1, events.get(0).length()); // "T" + corrupt frame
+            assertEquals("S0@0:0,0,0,0,0,0", events.get(1));
+        }
+    }
+
+    @Test
+    public void truncatedFrameFollowedByFrame() {
+        // sync byte inside the dropped frame, the next frame starts right after it
+        byte[] data = concat(new byte[]{(byte) 0xA5, 0x01, 0x03}, TYPICAL);
+        decoder.append(data, 0, data.length);
+        assertEquals(2, events.size());
+        assertEquals(4, events.get(0).length()); // "T" + 3 bytes
+        assertEquals("S7@123456:4096,-4096,8192,164,-164,32767", events.get(1));
+        assertEquals(1, decoder.getErrorCount());
+    }
+
+    @Test
+    public void wrongVersionIsText() {
+        byte[] other = TYPICAL.clone();
+        other[1] = 0x02;
+        other[19] = (byte) SampleFrameDecoder.crc8(other, 1, 18);
+        decoder.append(other, 0, other.length);
+        assertEquals(1, events.size());
+        assertTrue(events.get(0).startsWith("T"));
+        assertEquals(0, decoder.getFrameCount());
+    }
+}
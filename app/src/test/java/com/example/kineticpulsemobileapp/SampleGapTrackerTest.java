@@ -0,0 +1,123 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.example.kineticpulsemobileapp.SampleGapTracker.Result.*;
+import static org.junit.Assert.*;
+
+public class SampleGapTrackerTest {
+
+    private final SampleGapTracker tracker = new SampleGapTracker();
+
+    @Test
+    public void sequenceNumbers() {
+        assertEquals(FIRST, tracker.track(1000, 250));
+        assertEquals(NEXT, tracker.track(1010, 251));
+        assertEquals(GAP, tracker.track(1050, 255)); // 252..254 missing
+        assertEquals(3, tracker.getLastMissing());
+        assertEquals(NEXT, tracker.track(1060, 0));  // wraps around
+        assertEquals(DUPLICATE, tracker.track(1060, 0));
+        assertEquals(LATE, tracker.track(1040, 254));
+        assertEquals(4, tracker.getReceivedCount());
+        assertEquals(3, tracker.getLostCount());
+        assertEquals(1, tracker.getDuplicateCount());
+        assertEquals(1, tracker.getLateCount());
+        assertEquals(3 / 7.0, tracker.getLossRate(), 1e-9);
+    }
+
+    @Test
+    public void sequenceWrapsDuringLongGap() {
+        tracker.setNominalPeriod(5);
+        tracker.track(0, 10);
+        assertEquals(GAP, tracker.track(5 * 300, 10 + 300 - 256));
+        assertEquals(299, tracker.getLastMissing());
+        // same sequence number, but 256 periods later
+        assertEquals(GAP, tracker.track(5 * 300 + 5 * 256, 10 + 300 - 256));
+        assertEquals(255, tracker.getLastMissing());
+    }
+
+    @Test
+    public void nominalPeriodWithJitter() {
+        tracker.setNominalPeriod(10);
+        tracker.track(0, -1);
+        assertEquals(NEXT, tracker.track(13, -1));
+        assertEquals(NEXT, tracker.track(18, -1));
+        assertEquals(GAP, tracker.track(41, -1));
+        assertEquals(1, tracker.getLastMissing());
+        assertEquals(DUPLICATE, tracker.track(41, -1));
+        assertEquals(LATE, tracker.track(35, -1));
+        assertEquals(1, tracker.getLostCount());
+    }
+
+    @Test
+    public void estimatedPeriod() {
+        // JSON samples: 100ms with jitter, first delta is a gap
+        Random random = new Random(1);
+        long time = 0;
+        tracker.track(time, -1);
+        time += 200;
+        tracker.track(time, -1);
+        for (int i = 0; i < 100; i++) {
+            time += 100 + random.nextInt(21) - 10;
+            assertNotEquals(GAP, tracker.track(time, -1));
+        }
+        assertEquals(100, tracker.getPeriod(), 5);
+        time += 400;
+        assertEquals(GAP, tracker.track(time, -1));
+        assertEquals(3, tracker.getLastMissing());
+        assertEquals(3, tracker.getLostCount());
+    }
+
+    @Test
+    public void noLossCountedWhileSettling() {
+        assertEquals(0, tracker.getPeriod(), 0);
+        tracker.track(0, -1);
+        assertEquals(NEXT, tracker.track(10, -1));
+        assertEquals(NEXT, tracker.track(50, -1));
+        assertEquals(0, tracker.getLostCount());
+    }
+
+    @Test
+    public void restartAndResume() {
+        tracker.track(100_000, 5);
+        assertEquals(RESTART, tracker.track(50, 0));     // device reboot
+        assertEquals(NEXT, tracker.track(60, 1));
+        assertEquals(RESUME, tracker.track(60_000, 77)); // streaming was off
+        assertEquals(NEXT, tracker.track(60_010, 78));
+        assertEquals(0, tracker.getLostCount());
+        assertEquals(2, tracker.getRestartCount());
+        tracker.restart();
+        assertEquals(FIRST, tracker.track(0, 0));
+        tracker.reset();
+        assertEquals(0, tracker.getReceivedCount());
+        assertEquals(0, tracker.getRestartCount());
+    }
+
+    @Test
+    public void fillGap() {
+        SensorRing ring = new SensorRing(16, 2);
+        SensorRing.Window window = new SensorRing.Window();
+        float[] previous = {0, 10};
+        float[] current = {4, 2};
+        tracker.track(100, 0);
+        ring.append(100, previous);
+        tracker.track(140, 4);
+        assertEquals(3, tracker.fill(ring, previous, current, 5));
+        ring.append(140, current);
+        ring.latest(window, 16);
+        assertEquals(5, window.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(100 + 10 * i, window.time(i));
+            assertEquals(i, window.value(0, i), 1e-6);
+            assertEquals(10 - 2 * i, window.value(1, i), 1e-6);
+        }
+        assertEquals(3, tracker.getFilledCount());
+
+        tracker.track(240, 14);
+        assertEquals(0, tracker.fill(ring, current, previous, 5)); // too long
+        tracker.track(250, 15);
+        assertEquals(0, tracker.fill(ring, current, previous, 5)); // no gap
+    }
+}
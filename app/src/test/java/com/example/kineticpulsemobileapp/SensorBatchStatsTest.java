@@ -0,0 +1,55 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorBatchStatsTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final int LOW_LATENCY = 0, BATCHED = 1;
+
+    private final SensorBatchStats stats = new SensorBatchStats("LOW_LATENCY", "BATCHED");
+
+    @Test
+    public void perMode() {
+        stats.switchTo(LOW_LATENCY, 0, 1000);
+        // 200Hz gyro and accelerometer, one event per wakeup
+        for (int i = 0; i < 2 * 200 * 30; i++)
+            stats.onBurst(1, 10_000);
+        stats.switchTo(BATCHED, 30 * SECOND, 1600);
+        // one burst per second with the FIFO contents
+        for (int i = 0; i < 60; i++)
+            stats.onBurst(400, 1_000_000);
+        stats.stop(90 * SECOND, 1720);
+
+        assertEquals(2 * 200 * 60, stats.getWakeupsPerMinute(LOW_LATENCY, 100 * SECOND), 1e-6);
+        assertEquals(1, stats.getEventsPerBurst(LOW_LATENCY), 1e-9);
+        assertEquals(240, stats.getHandlerCpuMsPerMinute(LOW_LATENCY, 100 * SECOND), 1e-6);
+        assertEquals(1200, stats.getProcessCpuMsPerMinute(LOW_LATENCY, 100 * SECOND, 2000), 1e-6);
+
+        assertEquals(60, stats.getWakeupsPerMinute(BATCHED, 100 * SECOND), 1e-6);
+        assertEquals(400, stats.getEventsPerBurst(BATCHED), 1e-9);
+        assertEquals(60, stats.getHandlerCpuMsPerMinute(BATCHED, 100 * SECOND), 1e-6);
+        assertEquals(120, stats.getProcessCpuMsPerMinute(BATCHED, 100 * SECOND, 2000), 1e-6);
+    }
+
+    @Test
+    public void currentModeIncludesRunningTime() {
+        stats.switchTo(BATCHED, 10 * SECOND, 0);
+        stats.onBurst(200, 0);
+        assertEquals(12, stats.getWakeupsPerMinute(BATCHED, 15 * SECOND), 1e-6);
+        assertEquals(600, stats.getProcessCpuMsPerMinute(BATCHED, 15 * SECOND, 50), 1e-6);
+        assertEquals(0, stats.getWakeupsPerMinute(LOW_LATENCY, 15 * SECOND), 1e-9);
+        assertTrue(stats.toString(15 * SECOND, 50).contains("BATCHED* 5.0s: 12 wakeups/min"));
+    }
+
+    @Test
+    public void burstsWhileStoppedAreIgnored() {
+        stats.onBurst(1, 1);
+        stats.switchTo(LOW_LATENCY, 0, 0);
+        stats.stop(SECOND, 0);
+        stats.onBurst(1, 1);
+        assertEquals(0, stats.getWakeupsPerMinute(LOW_LATENCY, 2 * SECOND), 1e-9);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class SensorRingTest {
+
+    private final SensorRing.Window window = new SensorRing.Window();
+
+    @Test
+    public void capacityIsPowerOfTwo() {
+        assertEquals(1, new SensorRing(1, 1).getCapacity());
+        assertEquals(8, new SensorRing(5, 3).getCapacity());
+        assertEquals(1024, new SensorRing(1024, 6).getCapacity());
+    }
+
+    @Test
+    public void appendAndRead() {
+        SensorRing ring = new SensorRing(8, 3);
+        assertEquals(0, ring.latest(window, 8).size());
+        for (int i = 0; i < 5; i++)
+            ring.append(100 + i, i, -i, 2 * i);
+        assertEquals(5, ring.getSequence());
+        ring.latest(window, 3);
+        assertEquals(3, window.size());
+        assertEquals(2, window.getStart());
+        assertEquals(102, window.time(0));
+        assertEquals(4f, window.value(0, 2), 0);
+        assertEquals(-4f, window.value(1, 2), 0);
+        assertEquals(8f, window.value(2, 2), 0);
+        assertTrue(window.isValid());
+    }
+
+    @Test
+    public void sixAxesAndArray() {
+        SensorRing ring = new SensorRing(4, 6);
+        ring.append(1, 1, 2, 3, 4, 5, 6);
+        ring.append(2, new float[]{7, 8, 9, 10, 11, 12});
+        ring.latest(window, 2);
+        assertEquals(6f, window.value(5, 0), 0);
+        assertEquals(12f, window.value(5, 1), 0);
+    }
+
+    @Test
+    public void wrapAround() {
+        SensorRing ring = new SensorRing(4, 1);
+        for (int i = 0; i < 10; i++)
+            ring.append(i, new float[]{i});
+        ring.latest(window, 100);
+        assertEquals(4, window.size());
+        assertEquals(6, window.getStart());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(6 + i, window.time(i));
+            assertEquals(6f + i, window.value(0, i), 0);
+        }
+    }
+
+    @Test
+    public void sinceContinuesAfterPreviousWindow() {
+        SensorRing ring = new SensorRing(4, 1);
+        ring.append(0, new float[]{0});
+        ring.append(1, new float[]{1});
+        ring.since(window, 0);
+        long next = window.getEnd();
+        ring.append(2, new float[]{2});
+        ring.since(window, next);
+        assertEquals(1, window.size());
+        assertEquals(2f, window.value(0, 0), 0);
+        // reader fell behind: starts at the oldest sample still kept
+        for (int i = 3; i < 10; i++)
+            ring.append(i, new float[]{i});
+        ring.since(window, next);
+        assertEquals(6, window.getStart());
+        assertEquals(4, window.size());
+    }
+
+    @Test
+    public void sinceTime() {
+        SensorRing ring = new SensorRing(16, 1);
+        for (int i = 0; i < 10; i++)
+            ring.append(i * 10, new float[]{i});
+        ring.sinceTime(window, 35);
+        assertEquals(6, window.size());
+        assertEquals(40, window.time(0));
+        ring.sinceTime(window, 1000);
+        assertEquals(0, window.size());
+        ring.sinceTime(window, -1);
+        assertEquals(10, window.size());
+    }
+
+    @Test
+    public void clearHidesOldSamples() {
+        SensorRing ring = new SensorRing(8, 1);
+        ring.append(0, new float[]{0});
+        ring.append(1, new float[]{1});
+        ring.clear();
+        assertEquals(0, ring.latest(window, 8).size());
+        ring.append(2, new float[]{2});
+        ring.latest(window, 8);
+        assertEquals(1, window.size());
+        assertEquals(2, window.getStart());
+    }
+
+    @Test
+    public void overwrittenWindowIsInvalid() {
+        SensorRing ring = new SensorRing(4, 1);
+        for (int i = 0; i < 4; i++)
+            ring.append(i, new float[]{i});
+        ring.latest(window, 4);
+        assertTrue(window.isValid());
+        ring.append(4, new float[]{4});
+        assertFalse(window.isValid());
+    }
+
+    @Test
+    public void concurrentReaders() throws InterruptedException {
+        // writer stores value == time, valid windows must be consistent
+        SensorRing ring = new SensorRing(64, 2);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong checked = new AtomicLong();
+        Thread[] readers = new Thread[3];
+        for (int r = 0; r < readers.length; r++) {
+            readers[r] = new Thread(() -> {
+                SensorRing.Window w = new SensorRing.Window();
+                while (!done.get()) {
+                    ring.latest(w, 16);
+                    boolean consistent = true;
+                    for (int i = 0; i < w.size(); i++) {
+                        long time = w.time(i);
+                        consistent &= time == w.getStart() + i
+                                && w.value(0, i) == (float) time
+                                && w.value(1, i) == -(float) time;
+                    }
+                    if (w.isValid()) {
+                        checked.incrementAndGet();
+                        if (!consistent)
+                            errors.incrementAndGet();
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        for (long i = 0; i < 2_000_000; i++)
+            ring.append(i, new float[]{i, -i});
+        done.set(true);
+        for (Thread reader : readers)
+            reader.join();
+        assertEquals(0, errors.get());
+        assertTrue(checked.get() > 0);
+    }
+}
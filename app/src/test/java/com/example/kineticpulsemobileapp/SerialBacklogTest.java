@@ -0,0 +1,149 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SerialBacklogTest {
+
+    private static final int PAYLOAD = 10;                  // "record0001"
+    private static final int RECORD = 8 + 1 + 2 + PAYLOAD;  // with header
+    private static final int MEMORY = 3 * RECORD + 1;       // spill on every 4th add
+    private static final long FILE_BYTES = 200;             // rotate at 100, after one spill
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+    private SerialBacklog backlog;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = tmp.newFolder();
+        backlog = new SerialBacklog(dir, MEMORY, FILE_BYTES);
+    }
+
+    private void add(int i, int flags) throws IOException {
+        byte[] payload = String.format("record%04d", i).getBytes(StandardCharsets.US_ASCII);
+        backlog.add(1000L * i, flags, payload, 0, payload.length);
+    }
+
+    private static List<String> readAll(SerialBacklog.Replay replay) throws IOException {
+        List<String> records = new ArrayList<>();
+        while (replay.read(2 * PAYLOAD, (timeMs, flags, buf, offset, length) ->
+                records.add(timeMs + ":" + flags + ":" + new String(buf, offset, length, StandardCharsets.US_ASCII)))) {
+        }
+        return records;
+    }
+
+    private int fileCount() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith("serial-backlog."));
+        return files == null ? 0 : files.length;
+    }
+
+    @Test
+    public void keepsRecordsInMemoryUntilFull() throws IOException {
+        for (int i = 1; i <= 3; i++)
+            add(i, 0);
+        assertEquals(0, fileCount());
+        add(4, 0);
+        File current = new File(dir, "serial-backlog.0");
+        assertTrue(current.exists());
+        assertEquals(3 * RECORD, current.length());
+        assertEquals(4, backlog.getRecordCount());
+        assertEquals(0, backlog.getDroppedCount());
+    }
+
+    @Test
+    public void rotatesAtHalfFileBudgetAndCountsDropped() throws IOException {
+        for (int i = 1; i <= 7; i++)
+            add(i, 0);
+        // second spill would exceed maxFileBytes / 2, first generation moved aside
+        assertEquals(3 * RECORD, new File(dir, "serial-backlog.1").length());
+        assertEquals(3 * RECORD, new File(dir, "serial-backlog.0").length());
+        assertEquals(0, backlog.getDroppedCount());
+        for (int i = 8; i <= 10; i++)
+            add(i, 0);
+        assertEquals(3, backlog.getDroppedCount());
+        assertEquals(2, fileCount());
+
+        List<String> records = readAll(backlog.startReplay(11_000));
+        assertEquals(7, records.size());
+        assertEquals("4000:0:record0004", records.get(0));
+        assertEquals("10000:0:record0010", records.get(6));
+    }
+
+    @Test
+    public void replayReturnsAllRecordsInOrderAndDeletesFiles() throws IOException {
+        for (int i = 1; i <= 5; i++)
+            add(i, i == 2 ? SerialBacklog.FLAG_HEX : 0);
+        SerialBacklog.Replay replay = backlog.startReplay(6000);
+        assertEquals(0, backlog.getRecordCount());
+        // backlog is reused while the replay is read
+        add(6, 0);
+
+        List<String> records = readAll(replay);
+        assertEquals(5, records.size());
+        assertEquals("1000:0:record0001", records.get(0));
+        assertEquals("2000:" + SerialBacklog.FLAG_HEX + ":record0002", records.get(1));
+        assertEquals("5000:0:record0005", records.get(4));
+        replay.close();
+        assertEquals(0, fileCount());
+
+        records = readAll(backlog.startReplay(7000));
+        assertEquals(1, records.size());
+        assertEquals("6000:0:record0006", records.get(0));
+    }
+
+    @Test
+    public void closeDeletesUnreadReplay() throws IOException {
+        for (int i = 1; i <= 7; i++)
+            add(i, 0);
+        SerialBacklog.Replay replay = backlog.startReplay(8000);
+        assertEquals(2, fileCount());
+        replay.close();
+        assertEquals(0, fileCount());
+    }
+
+    @Test
+    public void latestPolicyReplaysOnlyKeptTime() throws IOException {
+        backlog.setPolicy(SerialBacklog.Policy.LATEST, 2500);
+        for (int i = 1; i <= 5; i++)
+            add(i, 0);
+        List<String> records = readAll(backlog.startReplay(6000));
+        assertEquals(2, records.size());
+        assertEquals("4000:0:record0004", records.get(0));
+        assertEquals("5000:0:record0005", records.get(1));
+    }
+
+    @Test
+    public void movementsPolicyKeepsOnlyMovements() throws IOException {
+        backlog.setPolicy(SerialBacklog.Policy.MOVEMENTS, 0);
+        for (int i = 1; i <= 6; i++)
+            add(i, i % 3 == 0 ? SerialBacklog.FLAG_MOVEMENT | SerialBacklog.FLAG_HEX : 0);
+        assertEquals(2, backlog.getRecordCount());
+        List<String> records = readAll(backlog.startReplay(7000));
+        assertEquals(2, records.size());
+        assertEquals("3000:3:record0003", records.get(0));
+        assertEquals("6000:3:record0006", records.get(1));
+    }
+
+    @Test
+    public void clearDeletesFiles() throws IOException {
+        for (int i = 1; i <= 7; i++)
+            add(i, 0);
+        backlog.clear();
+        assertEquals(0, fileCount());
+        assertEquals(0, backlog.getRecordCount());
+        assertFalse(backlog.startReplay(8000).read(1000, (timeMs, flags, buf, offset, length) -> fail()));
+    }
+}
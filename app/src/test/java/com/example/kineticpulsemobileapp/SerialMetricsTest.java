@@ -0,0 +1,57 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SerialMetricsTest {
+
+    @Test
+    public void bucketsArePowersOfTwo() {
+        assertEquals(0, SerialMetrics.Histogram.bucket(0));
+        assertEquals(1, SerialMetrics.Histogram.bucket(1));
+        assertEquals(2, SerialMetrics.Histogram.bucket(2));
+        assertEquals(2, SerialMetrics.Histogram.bucket(3));
+        assertEquals(11, SerialMetrics.Histogram.bucket(1024));
+        assertEquals(63, SerialMetrics.Histogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void histogramPercentiles() {
+        SerialMetrics.Histogram histogram = new SerialMetrics.Histogram("us");
+        for (int i = 0; i < 99; i++)
+            histogram.record(10);
+        histogram.record(5000);
+        assertEquals(100, histogram.getCount());
+        assertEquals(5000, histogram.getMax());
+        assertEquals(59.9, histogram.getMean(), 1e-9);
+        assertEquals(15, histogram.getPercentile(50)); // upper bound of [8, 16)
+        assertEquals(15, histogram.getPercentile(99));
+        assertEquals(5000, histogram.getPercentile(100)); // capped at max
+    }
+
+    @Test
+    public void summaryResetsHistograms() {
+        SerialMetrics metrics = new SerialMetrics();
+        SerialMetrics.Counter reads = metrics.counter("reads");
+        SerialMetrics.Histogram size = metrics.histogram("size", "B");
+        metrics.gauge("depth", () -> 3);
+        reads.add(5);
+        size.record(100);
+        String summary = metrics.summary();
+        assertTrue(summary, summary.startsWith("reads: 5 ("));
+        assertTrue(summary, summary.contains("size: n=1 avg=100.0 p50=100 p99=100 max=100B"));
+        assertTrue(summary, summary.endsWith("depth: 3"));
+        assertEquals(0, size.getCount());
+        assertEquals(5, reads.get());
+    }
+
+    @Test
+    public void registeringAgainReturnsExisting() {
+        SerialMetrics metrics = new SerialMetrics();
+        SerialMetrics.Histogram histogram = metrics.histogram("ui receive", "us");
+        assertSame(histogram, metrics.histogram("ui receive", "us"));
+        assertSame(metrics.counter("reads"), metrics.counter("reads"));
+        assertEquals("ui receive={n=0 avg=0.0 p50=0 p99=0 max=0us}, reads=0", metrics.snapshot());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class SerialWriterTest {
+
+    private static final int LED = 1;
+
+    /**
+     * blocks the first write until released, so following messages queue up
+     */
+    private static class BlockingSink implements SerialWriter.Sink {
+        final CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> writes = new ArrayList<>();
+        final CountDownLatch done;
+
+        BlockingSink(int expectedWrites) {
+            done = new CountDownLatch(expectedWrites);
+        }
+
+        @Override
+        public void write(byte[] data) throws IOException {
+            firstWriteStarted.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            synchronized (writes) {
+                writes.add(new String(data, StandardCharsets.US_ASCII));
+            }
+            done.countDown();
+        }
+    }
+
+    private final List<IOException> errors = new ArrayList<>();
+    private SerialWriter writer;
+
+    @Before
+    public void setUp() {
+        writer = new SerialWriter(64, 16, e -> { synchronized (errors) { errors.add(e); } });
+        writer.start();
+    }
+
+    @After
+    public void tearDown() {
+        writer.quit();
+    }
+
+    private static byte[] b(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void queuedMessagesAreMergedAndLedStateReplaced() throws Exception {
+        BlockingSink sink = new BlockingSink(3);
+        writer.setSink(sink);
+        assertTrue(writer.write(b("first\n"), SerialWriter.NO_STATE));
+        assertTrue(sink.firstWriteStarted.await(5, TimeUnit.SECONDS));
+        // queued while first write blocks
+        assertTrue(writer.write(b("r\n"), LED));
+        assertTrue(writer.write(b("ON\n"), SerialWriter.NO_STATE));
+        assertTrue(writer.write(b("g\n"), LED));
+        assertTrue(writer.write(b("b\n"), LED));
+        assertTrue(writer.write(b("0123456789AB\n"), SerialWriter.NO_STATE));
+        assertEquals(3, writer.getQueueDepth());
+        assertEquals(2, writer.getReplacedCount());
+        sink.release.countDown();
+        assertTrue(sink.done.await(5, TimeUnit.SECONDS));
+        // "b\nON\n" fits the 16 byte write limit, the long message follows separately
+        assertEquals("[first\n, b\nON\n, 0123456789AB\n]", sink.writes.toString());
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void fullQueueDropsMessages() throws Exception {
+        BlockingSink sink = new BlockingSink(1);
+        writer.setSink(sink);
+        writer.write(b("first"), SerialWriter.NO_STATE);
+        assertTrue(sink.firstWriteStarted.await(5, TimeUnit.SECONDS));
+        assertTrue(writer.write(new byte[60], SerialWriter.NO_STATE));
+        assertFalse(writer.write(new byte[10], SerialWriter.NO_STATE));
+        assertEquals(1, writer.getDroppedCount());
+        sink.release.countDown();
+    }
+
+    @Test
+    public void noSink() {
+        assertFalse(writer.write(b("x"), SerialWriter.NO_STATE));
+    }
+
+    @Test
+    public void writeErrorIsReported() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        SerialWriter w = new SerialWriter(64, 16, e -> failed.countDown());
+        w.start();
+        try {
+            w.setSink(data -> { throw new IOException("broken pipe"); });
+            w.write(b("x"), SerialWriter.NO_STATE);
+            assertTrue(failed.await(5, TimeUnit.SECONDS));
+        } finally {
+            w.quit();
+        }
+    }
+
+    @Test
+    public void runtimeExceptionKeepsWriterAlive() throws Exception {
+        CountDownLatch failed = new CountDownLatch(1);
+        SerialWriter w = new SerialWriter(64, 16, e -> failed.countDown());
+        w.start();
+        try {
+            w.setSink(data -> { throw new IllegalStateException("socket closed"); });
+            w.write(b("x"), SerialWriter.NO_STATE);
+            assertTrue(failed.await(5, TimeUnit.SECONDS));
+            BlockingSink sink = new BlockingSink(1);
+            sink.release.countDown();
+            w.setSink(sink);
+            w.write(b("y"), SerialWriter.NO_STATE);
+            assertTrue(sink.done.await(5, TimeUnit.SECONDS));
+        } finally {
+            w.quit();
+        }
+    }
+
+    @Test
+    public void writtenListenerGetsWriteTime() throws Exception {
+        BlockingSink sink = new BlockingSink(2);
+        writer.setSink(sink);
+        writer.write(b("first\n"), SerialWriter.NO_STATE);
+        assertTrue(sink.firstWriteStarted.await(5, TimeUnit.SECONDS));
+        long queuedNanos = System.nanoTime();
+        long[] written = new long[2];
+        CountDownLatch done = new CountDownLatch(1);
+        writer.write(b("PING 1\n"), LED, writeNanos -> written[0] = writeNanos);
+        writer.write(b("PING 2\n"), LED, writeNanos -> { written[1] = writeNanos; done.countDown(); });
+        Thread.sleep(20); // queued behind the blocked write
+        sink.release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(0, written[0]); // replaced, never written
+        assertTrue(written[1] - queuedNanos >= 20_000_000L);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.kineticpulsemobileapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class TcpSocketTest {
+
+    private static class Listener implements SerialListener {
+        final CountDownLatch connected = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+        @Override public void onSerialConnect() { connected.countDown(); }
+        @Override public void onSerialConnectError(Exception e) { fail(e.getMessage()); }
+        @Override public void onSerialIoError(Exception e) { closed.countDown(); }
+        @Override public void onSerialRead(SerialProcessor.Update update) { fail(); }
+        @Override public void onSerialRead(BufferPool.Chunk chunk) {
+            synchronized (received) {
+                received.write(chunk.data, 0, chunk.length);
+            }
+            chunk.release();
+        }
+    }
+
+    @Test
+    public void fromAddress() {
+        TcpSocket socket = TcpSocket.fromAddress("tcp:10.0.2.2:7777");
+        assertEquals("10.0.2.2:7777", socket.getName());
+        assertTrue(TcpSocket.isAddress(TcpSocket.EMULATOR_HOST_ADDRESS));
+        assertFalse(TcpSocket.isAddress("00:11:22:33:44:55"));
+    }
+
+    @Test
+    public void loopback() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Listener listener = new Listener();
+            BufferPool pool = new BufferPool(8, 64);
+            TcpSocket socket = new TcpSocket("127.0.0.1", server.getLocalPort());
+            socket.connect(listener, pool, executor);
+            Socket peer = server.accept();
+            assertTrue(listener.connected.await(5, TimeUnit.SECONDS));
+
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 1000; i++)
+                sb.append("ACCEL:").append(i).append(",0,0\n");
+            byte[] data = sb.toString().getBytes(StandardCharsets.UTF_8);
+            OutputStream out = peer.getOutputStream();
+            out.write(data);
+            out.flush();
+
+            socket.write("PING\n".getBytes(StandardCharsets.UTF_8));
+            InputStream in = peer.getInputStream();
+            byte[] ping = new byte[5];
+            int n = 0;
+            while (n < ping.length)
+                n += in.read(ping, n, ping.length - n);
+            assertEquals("PING\n", new String(ping, StandardCharsets.UTF_8));
+
+            peer.close();
+            assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+            synchronized (listener.received) {
+                assertArrayEquals(data, listener.received.toByteArray());
+            }
+            assertEquals(8, pool.getFreeCount());
+            socket.disconnect();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void disconnectMidStreamReleasesChunks() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Thread sender = null;
+        try (ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Listener listener = new Listener();
+            BufferPool pool = new BufferPool(8, 64);
+            TcpSocket socket = new TcpSocket("127.0.0.1", server.getLocalPort());
+            socket.connect(listener, pool, executor);
+            Socket peer = server.accept();
+            assertTrue(listener.connected.await(5, TimeUnit.SECONDS));
+            sender = new Thread(() -> {
+                byte[] line = "ACCEL:1,2,3\n".getBytes(StandardCharsets.UTF_8);
+                try (OutputStream out = peer.getOutputStream()) {
+                    while (!Thread.currentThread().isInterrupted())
+                        out.write(line);
+                } catch (Exception ignored) {
+                    // closed by the test
+                }
+            });
+            sender.start();
+            while (true) {
+                synchronized (listener.received) {
+                    if (listener.received.size() > 1000)
+                        break;
+                }
+                Thread.sleep(1);
+            }
+
+            socket.disconnect(); // read loop is blocked in read() or about to enter it
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+            assertEquals(8, pool.getFreeCount());
+            assertEquals(0, pool.getAllocatedCount());
+            peer.close();
+        } finally {
+            if (sender != null)
+                sender.interrupt();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -21,6 +21,16 @@ static const uint16_t DEFAULT_RATE_HZ = 100;   // sampling (10–200)
 static const uint16_t TX_HZ = 10;              // BLE transmit downsample
 static const size_t   RING_SIZE = 256;         // buffered samples while disconnected
 
+// Binary sample frame (FMT BIN), 20 bytes little endian:
+//  sync 0xA5 | version | seq u8 | t_ms u32 | ax ay az gx gy gz i16 raw counts | CRC-8 (poly 0x07) over version..gz
+static const uint8_t  FRAME_SYNC = 0xA5;
+static const uint8_t  FRAME_VERSION = 1;
+static const size_t   FRAME_LEN = 20;
+static const size_t   FRAME_BATCH_MAX = 8;     // frames per notification, limited by MTU
+static const uint32_t FRAME_FLUSH_MS = 20;     // max delay of a partly filled batch
+static const float    ACCEL_LSB_PER_G = 4096.0f;
+static const float    GYRO_LSB_PER_DPS = 16.4f;
+
 // MPU-6050 registers (subset)
 static const uint8_t REG_PWR_MGMT_1   = 0x6B;
 static const uint8_t REG_SMPLRT_DIV   = 0x19;
@@ -50,6 +60,7 @@ static NimBLEServer *g_server = nullptr;
 static NimBLECharacteristic *g_tx = nullptr;
 static NimBLECharacteristic *g_rx = nullptr;
 static bool g_connected = false;
+static uint16_t g_mtu = 23;                    // ATT MTU, notification payload is MTU-3
 
 // ============================= Gyro driver + sampling =============================
 static bool gyro_present = false;
@@ -60,6 +71,12 @@ static uint32_t next_sample_ms = 0;
 static uint32_t next_tx_ms = 0;
 static uint32_t tx_period_ms = 1000 / TX_HZ;
 static uint32_t gyro_error_count = 0;
+static uint8_t sample_seq = 0;
+
+static bool tx_binary = false;                 // FMT BIN: every sample as binary frame, else downsampled JSON
+static uint8_t tx_batch[FRAME_BATCH_MAX * FRAME_LEN];
+static size_t tx_batch_len = 0;
+static uint32_t tx_batch_ms = 0;
 
 static bool calibrating = false;
 static const uint16_t CAL_SAMPLES = 200;
@@ -76,6 +93,7 @@ struct Sample {
   float ax, ay, az;
   float gx, gy, gz;
   float mm;
+  uint8_t seq;
 };
 static Sample ring[RING_SIZE];
 static size_t ring_head = 0;
@@ -201,12 +219,26 @@ static void ackJSONRate(uint16_t hz) {
   txJSON(buf);
 }
 
+static void ackJSONFormat() {
+  const char* s = tx_binary ? "{\"fmt\":\"bin\"}" : "{\"fmt\":\"json\"}";
+  Serial.println(s);
+  txJSON(s);
+}
+
 static void pongJSON() {
   static const char* s = "{\"pong\":true}";
   Serial.println(s);
   txJSON(s);
 }
 
+// clock sync: echo the id with the device time, same clock as sample "t"
+static void pongJSONTime(uint32_t id) {
+  static char buf[64];
+  snprintf(buf, sizeof(buf), "{\"pong\":%lu,\"t\":%lu}", (unsigned long)id, (unsigned long)millis());
+  Serial.println(buf);
+  txJSON(buf);
+}
+
 // ============================= BLE Callbacks =============================
 class ServerCB : public NimBLEServerCallbacks {
   void onConnect(NimBLEServer* pServer) override {
@@ -215,9 +247,14 @@ class ServerCB : public NimBLEServerCallbacks {
   }
   void onDisconnect(NimBLEServer* pServer) override {
     g_connected = false;
+    g_mtu = 23;
+    tx_batch_len = 0;
     state = BLE_DISCONNECTED;
     NimBLEDevice::startAdvertising();
   }
+  void onMTUChange(uint16_t MTU, ble_gap_conn_desc* desc) override {
+    g_mtu = MTU;
+  }
 };
 
 class RxCB : public NimBLECharacteristicCallbacks {
@@ -226,6 +263,7 @@ class RxCB : public NimBLECharacteristicCallbacks {
     if (rx.empty()) return;
     String s = String(rx.c_str()); s.trim(); s.toUpperCase();
     if (s == "PING") { pongJSON(); return; }
+    if (s.startsWith("PING ")) { pongJSONTime((uint32_t)s.substring(5).toInt()); return; }
     if (s == "ON") {
       if (!gyro_present) { statusJSON("error","gyro_not_found"); return; }
       if (!mpuWake() || !mpuConfigRate(rate_hz)) { statusJSON("error","gyro_fail"); return; }
@@ -242,6 +280,12 @@ class RxCB : public NimBLECharacteristicCallbacks {
       cal_sum_ax=cal_sum_ay=cal_sum_az=0; cal_sum_gx=cal_sum_gy=cal_sum_gz=0;
       statusJSON("cal","started"); return;
     }
+    if (s.startsWith("FMT")) {
+      if (s.endsWith("BIN")) tx_binary = true;
+      else if (s.endsWith("JSON")) tx_binary = false;
+      tx_batch_len = 0;
+      ackJSONFormat(); return;
+    }
     if (s.startsWith("RATE")) {
       int sp = s.indexOf(' ');
       if (sp > 0 && sp+1 < (int)s.length()) {
@@ -259,6 +303,7 @@ class RxCB : public NimBLECharacteristicCallbacks {
 // ============================= Setup & Loop =============================
 static void bleInit() {
   NimBLEDevice::init(DEVNAME_BOOT);
+  NimBLEDevice::setMTU(FRAME_BATCH_MAX * FRAME_LEN + 3);
   NimBLEDevice::setPower(ESP_PWR_LVL_P7);
   NimBLEDevice::setSecurityAuth(false,false,true);
   g_server = NimBLEDevice::createServer();
@@ -322,6 +367,60 @@ static void streamOne(const Sample &s) {
   }
 }
 
+static uint8_t crc8(const uint8_t *p, size_t n) {
+  uint8_t crc = 0;
+  while (n--) {
+    crc ^= *p++;
+    for (uint8_t b = 0; b < 8; ++b) crc = (crc & 0x80) ? (uint8_t)((crc << 1) ^ 0x07) : (uint8_t)(crc << 1);
+  }
+  return crc;
+}
+
+static int16_t toRaw(float v, float lsb) {
+  float r = v * lsb;
+  if (r > 32767.0f) return 32767;
+  if (r < -32768.0f) return -32768;
+  return (int16_t)lroundf(r);
+}
+
+static void putI16(uint8_t *p, int16_t v) { p[0] = (uint8_t)v; p[1] = (uint8_t)((uint16_t)v >> 8); }
+
+static void encodeFrame(const Sample &s, uint8_t *out) {
+  out[0] = FRAME_SYNC;
+  out[1] = FRAME_VERSION;
+  out[2] = s.seq;
+  out[3] = (uint8_t)s.t; out[4] = (uint8_t)(s.t >> 8); out[5] = (uint8_t)(s.t >> 16); out[6] = (uint8_t)(s.t >> 24);
+  putI16(out + 7,  toRaw(s.ax, ACCEL_LSB_PER_G));
+  putI16(out + 9,  toRaw(s.ay, ACCEL_LSB_PER_G));
+  putI16(out + 11, toRaw(s.az, ACCEL_LSB_PER_G));
+  putI16(out + 13, toRaw(s.gx, GYRO_LSB_PER_DPS));
+  putI16(out + 15, toRaw(s.gy, GYRO_LSB_PER_DPS));
+  putI16(out + 17, toRaw(s.gz, GYRO_LSB_PER_DPS));
+  out[FRAME_LEN - 1] = crc8(out + 1, FRAME_LEN - 2);
+}
+
+static void flushFrames() {
+  if (tx_batch_len == 0) return;
+  if (g_connected && g_tx) { g_tx->setValue(tx_batch, tx_batch_len); g_tx->notify(); }
+  tx_batch_len = 0;
+}
+
+// send all buffered samples, batched into as few notifications as the MTU allows
+static void streamFrames(uint32_t now) {
+  if (!g_connected) return; // keep buffering in ring
+  size_t batch = (g_mtu - 3) / FRAME_LEN;
+  if (batch < 1) batch = 1;
+  if (batch > FRAME_BATCH_MAX) batch = FRAME_BATCH_MAX;
+  Sample s;
+  while (ringPop(s)) {
+    if (tx_batch_len == 0) tx_batch_ms = now;
+    encodeFrame(s, tx_batch + tx_batch_len);
+    tx_batch_len += FRAME_LEN;
+    if (tx_batch_len >= batch * FRAME_LEN) flushFrames();
+  }
+  if (now - tx_batch_ms >= FRAME_FLUSH_MS) flushFrames();
+}
+
 static void sampleTick() {
   if (state != GYRO_ON || !gyro_present) return;
   uint32_t now = millis();
@@ -338,10 +437,12 @@ static void sampleTick() {
   }
   gyro_error_count = 0;
   float mm = sqrtf(gx*gx + gy*gy + gz*gz);
-  Sample s{now, ax, ay, az, gx, gy, gz, mm};
+  Sample s{now, ax, ay, az, gx, gy, gz, mm, sample_seq++};
   processCalibration(ax,ay,az,gx,gy,gz);
   ringPush(s);
-  if (now >= next_tx_ms) {
+  if (tx_binary) {
+    streamFrames(now);
+  } else if (now >= next_tx_ms) {
     next_tx_ms += tx_period_ms;
     Sample latest; while (ring_count > 1) { Sample d; ringPop(d);} if (ringPop(latest)) streamOne(latest);
   }
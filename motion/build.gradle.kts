@@ -0,0 +1,22 @@
+// Movement classification without Android dependencies, runs on any JVM.
+// ./gradlew :motion:test for unit tests, ./gradlew :motion:jmh for benchmarks
+plugins {
+    `java-library`
+    id("me.champeau.jmh")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+dependencies {
+    testImplementation("junit:junit:4.13.2")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+}
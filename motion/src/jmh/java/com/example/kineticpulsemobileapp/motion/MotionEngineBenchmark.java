@@ -0,0 +1,85 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * per sample cost of the classifiers, ./gradlew :motion:jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MotionEngineBenchmark {
+
+    private static final int SAMPLES = 4096; // power of two
+    private static final long PERIOD = 5_000_000;
+
+    private final float[] x = new float[SAMPLES];
+    private final float[] y = new float[SAMPLES];
+    private final float[] z = new float[SAMPLES];
+    private MotionEngine accelEngine;
+    private MotionEngine gyroEngine;
+    private final OrientationFilter filter = new OrientationFilter();
+    private final WindowFeatures features = new WindowFeatures(200);
+    private long time;
+    private int index;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        Random random = new Random(1);
+        for (int i = 0; i < SAMPLES; i++) {
+            // mostly below the thresholds, occasional movement
+            x[i] = (float) random.nextGaussian() * 0.7f;
+            y[i] = (float) random.nextGaussian() * 0.7f;
+            z[i] = (float) random.nextGaussian() * 0.7f;
+        }
+        accelEngine = new MotionEngine(MotionEngine.SYSTEM_CLOCK, this::consume);
+        accelEngine.addClassifier(PeakClassifier.espAccelerometer());
+        gyroEngine = new MotionEngine(MotionEngine.SYSTEM_CLOCK, this::consume);
+        gyroEngine.addClassifier(new GyroPoseClassifier());
+        filter.accel(0, 0, 9.81f, 0);
+        filter.setReference();
+    }
+
+    private void consume(MovementEvent event) {
+        blackhole.consume(event);
+    }
+
+    @Benchmark
+    public void espAccelerometer() {
+        int i = index++ & (SAMPLES - 1);
+        accelEngine.accel(time += PERIOD, x[i], y[i], z[i]);
+    }
+
+    @Benchmark
+    public void gyroPose() {
+        int i = index++ & (SAMPLES - 1);
+        gyroEngine.gyro(time += PERIOD, x[i], y[i], z[i]);
+    }
+
+    @Benchmark
+    public void orientationFilter() {
+        int i = index++ & (SAMPLES - 1);
+        filter.gyro(time += PERIOD, x[i], y[i], z[i]);
+        filter.accel(time, y[i], 9.81f + x[i], z[i]);
+        blackhole.consume(filter.getYaw());
+    }
+
+    @Benchmark
+    public void windowFeatures() {
+        int i = index++ & (SAMPLES - 1);
+        features.add(x[i], y[i], z[i]);
+        blackhole.consume(features.getVariance(0));
+    }
+}
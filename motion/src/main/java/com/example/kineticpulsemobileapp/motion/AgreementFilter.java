@@ -0,0 +1,92 @@
+package com.example.kineticpulsemobileapp.motion;
+
+/**
+ * confirm a movement only if several sources detected it at about the same time.
+ * use chain: SampleMerger -> per source MotionEngine -> AgreementFilter -> Listener
+ *
+ * The last unused movement of each source is kept. A movement is confirmed once
+ * `required` sources report the same movement within windowNanos of each other,
+ * their movements are used then and do not confirm again. A single sensor can so
+ * run with lower thresholds: its extra false detections are not confirmed unless
+ * another sensor happens to see the same movement at the same time.
+ *
+ * Movements must arrive in event time order, e.g. from samples merged by SampleMerger.
+ * With required 1 every movement is confirmed, e.g. while only one source is active.
+ * Pure Java, no allocation, single thread.
+ */
+public final class AgreementFilter {
+
+    public interface Listener {
+        void onConfirmed(Movement movement, long timeNanos);
+    }
+
+    private final long windowNanos;
+    private final Listener listener;
+    private final Movement[] pending;
+    private final long[] pendingNanos;
+    private int required = 2;
+    private long confirmed;
+    private long unconfirmed;
+
+    public AgreementFilter(int sources, long windowNanos, Listener listener) {
+        this.windowNanos = windowNanos;
+        this.listener = listener;
+        pending = new Movement[sources];
+        pendingNanos = new long[sources];
+    }
+
+    /**
+     * number of agreeing sources for a confirmation, at least 1
+     */
+    public void setRequired(int required) {
+        this.required = Math.max(1, required);
+    }
+
+    public int getRequired() {
+        return required;
+    }
+
+    public void onMovement(int source, Movement movement, long timeNanos) {
+        if (pending[source] != null)
+            unconfirmed++;
+        pending[source] = movement;
+        pendingNanos[source] = timeNanos;
+
+        int agreeing = 0;
+        for (int i = 0; i < pending.length; i++) {
+            if (pending[i] != null && timeNanos - pendingNanos[i] > windowNanos) {
+                pending[i] = null; // too old to agree with anything that follows
+                unconfirmed++;
+            } else if (pending[i] == movement) {
+                agreeing++;
+            }
+        }
+        if (agreeing < required)
+            return;
+        for (int i = 0; i < pending.length; i++) {
+            if (pending[i] == movement)
+                pending[i] = null;
+        }
+        confirmed++;
+        listener.onConfirmed(movement, timeNanos);
+    }
+
+    /**
+     * forget pending movements, counters are kept
+     */
+    public void reset() {
+        for (int i = 0; i < pending.length; i++)
+            pending[i] = null;
+    }
+
+    public long getConfirmedCount() {
+        return confirmed;
+    }
+
+    /**
+     * movements that expired or were replaced without agreement
+     */
+    public long getUnconfirmedCount() {
+        return unconfirmed;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.kineticpulsemobileapp.motion;
+
+/**
+ * detects movements in a sample stream, registered with MotionEngine.addClassifier().
+ *
+ * Samples are passed in the order received, with time in ns. Units are those of the
+ * source, each classifier documents what it expects. Called on the engine thread only,
+ * implementations keep state without synchronization.
+ */
+public interface Classifier {
+
+    /**
+     * accelerometer sample, returns the detected movement or null
+     */
+    default Movement onAccel(long timeNanos, float x, float y, float z) {
+        return null;
+    }
+
+    /**
+     * gyroscope sample, returns the detected movement or null
+     */
+    default Movement onGyro(long timeNanos, float x, float y, float z) {
+        return null;
+    }
+
+    /**
+     * no sample since a while, called with the engine time. Returns a movement that
+     * was waiting for a following sample, or null
+     */
+    default Movement onTick(long timeNanos) {
+        return null;
+    }
+
+    /**
+     * forget the state, e.g. after the sample stream was interrupted
+     */
+    default void reset() {
+    }
+}
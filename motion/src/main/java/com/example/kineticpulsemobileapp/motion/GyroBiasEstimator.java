@@ -0,0 +1,193 @@
+package com.example.kineticpulsemobileapp.motion;
+
+/**
+ * online gyroscope bias and noise per axis, learned from stationary periods.
+ * use chain: GyroPoseClassifier.onGyro/onAccel -> GyroBiasEstimator -> bias, stationary blocks
+ *
+ * Samples are collected in blocks of BLOCK_NANOS sample time. A block is steady if
+ * the mean rate of every axis is below MAX_BIAS and the accelerometer deviation
+ * is below MAX_ACCEL_DEVIATION of its magnitude, i.e. the device is held still,
+ * maybe by hand. It is stationary if in addition on every axis the gyro standard
+ * deviation is below the axis threshold (slow steady turns have a low deviation too).
+ * The first stationary block sets bias and noise, later ones refine them with
+ * BLOCK_WEIGHT. The threshold of an axis follows its noise: NOISE_FACTOR standard
+ * deviations, within MIN_THRESHOLD and MAX_THRESHOLD.
+ *
+ * Estimates are properties of the sensor and are kept by restartBlock().
+ * Units: gyro in rad/s, accelerometer in any unit. No allocation, single thread.
+ */
+public final class GyroBiasEstimator {
+
+    public static final long BLOCK_NANOS = 200_000_000L;
+    static final int MIN_BLOCK_SAMPLES = 10;
+    static final float MAX_BIAS = 0.05f;
+    static final float DEFAULT_THRESHOLD = 0.02f;
+    static final float MIN_THRESHOLD = 0.002f;
+    static final float MAX_THRESHOLD = 0.05f;
+    static final float NOISE_FACTOR = 3;
+    static final float BLOCK_WEIGHT = 0.1f;
+    static final float MAX_ACCEL_DEVIATION = 0.03f;
+
+    private final float[] bias = new float[3];
+    private final float[] noise = new float[3];
+    private final float[] threshold = {DEFAULT_THRESHOLD, DEFAULT_THRESHOLD, DEFAULT_THRESHOLD};
+    private boolean hasEstimate;
+    private long stationaryBlocks;
+    private long movingBlocks;
+
+    // current block
+    private boolean blockStarted;
+    private long blockStartNanos;
+    private int gyroSamples;
+    private final double[] gyroSum = new double[3];
+    private final double[] gyroSumSq = new double[3];
+    private int accelSamples;
+    private final double[] accelSum = new double[3];
+    private final double[] accelSumSq = new double[3];
+
+    // last completed block
+    private boolean lastSteady;
+    private boolean lastStationary;
+    private boolean lastHasAccel;
+    private final float[] lastAccel = new float[3];
+
+    /**
+     * add a gyro sample, returns true if it completed a block
+     */
+    public boolean gyro(long timeNanos, float x, float y, float z) {
+        if (!blockStarted) {
+            blockStarted = true;
+            blockStartNanos = timeNanos;
+        }
+        gyroSamples++;
+        add(gyroSum, gyroSumSq, x, y, z);
+        if (timeNanos - blockStartNanos < BLOCK_NANOS)
+            return false;
+        completeBlock();
+        return true;
+    }
+
+    public void accel(float x, float y, float z) {
+        accelSamples++;
+        add(accelSum, accelSumSq, x, y, z);
+    }
+
+    /**
+     * drop the current block, the next one starts with the next gyro sample
+     */
+    public void restartBlock() {
+        blockStarted = false;
+        gyroSamples = accelSamples = 0;
+        for (int i = 0; i < 3; i++)
+            gyroSum[i] = gyroSumSq[i] = accelSum[i] = accelSumSq[i] = 0;
+    }
+
+    /**
+     * estimated bias of axis 0..2 (x, y, z) in rad/s, 0 before the first stationary block
+     */
+    public float getBias(int axis) {
+        return bias[axis];
+    }
+
+    /**
+     * standard deviation at rest of axis 0..2 in rad/s
+     */
+    public float getNoise(int axis) {
+        return noise[axis];
+    }
+
+    /**
+     * max standard deviation of a stationary block on axis 0..2 in rad/s
+     */
+    public float getThreshold(int axis) {
+        return threshold[axis];
+    }
+
+    public boolean hasEstimate() {
+        return hasEstimate;
+    }
+
+    public boolean isLastBlockSteady() {
+        return lastSteady;
+    }
+
+    public boolean isLastBlockStationary() {
+        return lastStationary;
+    }
+
+    /**
+     * false if the last block had no accelerometer samples
+     */
+    public boolean hasLastBlockAccel() {
+        return lastHasAccel;
+    }
+
+    /**
+     * mean accelerometer of the last completed block on axis 0..2
+     */
+    public float getLastBlockAccel(int axis) {
+        return lastAccel[axis];
+    }
+
+    public long getStationaryBlockCount() {
+        return stationaryBlocks;
+    }
+
+    public long getMovingBlockCount() {
+        return movingBlocks;
+    }
+
+    private void completeBlock() {
+        boolean steady = gyroSamples >= MIN_BLOCK_SAMPLES;
+        boolean stationary = steady;
+        for (int i = 0; i < 3 && steady; i++) {
+            double m = gyroSum[i] / gyroSamples;
+            double variance = Math.max(0, gyroSumSq[i] / gyroSamples - m * m);
+            steady = Math.abs(m) < MAX_BIAS;
+            stationary &= Math.sqrt(variance) < threshold[i];
+        }
+        lastHasAccel = accelSamples > 0;
+        if (lastHasAccel) {
+            double magnitudeSq = 0, variance = 0;
+            for (int i = 0; i < 3; i++) {
+                double m = accelSum[i] / accelSamples;
+                lastAccel[i] = (float) m;
+                magnitudeSq += m * m;
+                variance += Math.max(0, accelSumSq[i] / accelSamples - m * m);
+            }
+            if (variance > MAX_ACCEL_DEVIATION * MAX_ACCEL_DEVIATION * magnitudeSq)
+                steady = false;
+        }
+        stationary &= steady;
+        lastSteady = steady;
+        lastStationary = stationary;
+        if (stationary) {
+            stationaryBlocks++;
+            for (int i = 0; i < 3; i++) {
+                float m = (float) (gyroSum[i] / gyroSamples);
+                float sigma = (float) Math.sqrt(Math.max(0, gyroSumSq[i] / gyroSamples - (double) m * m));
+                if (hasEstimate) {
+                    bias[i] += BLOCK_WEIGHT * (m - bias[i]);
+                    noise[i] += BLOCK_WEIGHT * (sigma - noise[i]);
+                } else {
+                    bias[i] = m;
+                    noise[i] = sigma;
+                }
+                threshold[i] = Math.max(MIN_THRESHOLD, Math.min(MAX_THRESHOLD, NOISE_FACTOR * noise[i]));
+            }
+            hasEstimate = true;
+        } else {
+            movingBlocks++;
+        }
+        restartBlock();
+    }
+
+    private static void add(double[] sum, double[] sumSq, float x, float y, float z) {
+        sum[0] += x;
+        sum[1] += y;
+        sum[2] += z;
+        sumSq[0] += (double) x * x;
+        sumSq[1] += (double) y * y;
+        sumSq[2] += (double) z * z;
+    }
+}
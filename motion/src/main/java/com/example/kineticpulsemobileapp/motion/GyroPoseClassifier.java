@@ -0,0 +1,150 @@
+package com.example.kineticpulsemobileapp.motion;
+
+/**
+ * poses from phone gyroscope rates in rad/s and accelerometer samples.
+ * use chain: GyroManager -> MotionEngine.gyro()/accel() -> GyroPoseClassifier -> GyroBiasEstimator, OrientationFilter
+ *
+ * Gyroscope and accelerometer are fused into tilt angles relative to the neutral
+ * pose (see OrientationFilter), so angles do not drift and need no reset after a
+ * detection. The stronger angle beyond POSE_THRESHOLD gives the pose: yaw (z) right
+ * or left, pitch (x) forward or back. Entering a pose is reported if DEBOUNCE_NANOS
+ * passed since the last report, returning to neutral is not reported.
+ *
+ * Calibration runs in the background: GyroBiasEstimator learns gyro bias and noise
+ * from every stationary period and the bias is removed before fusion. After reset()
+ * the current pose becomes neutral: the mean gravity of the first steady block
+ * (GyroBiasEstimator.BLOCK_NANOS) is the reference, or of the last block after
+ * MAX_WAIT_NANOS if the device is not held still. Detection starts then. Later steady
+ * blocks near neutral move the reference with REFERENCE_WEIGHT, to follow a slowly
+ * changing grip. Without accelerometer the gyro angles are used alone and leak back
+ * to neutral.
+ */
+public final class GyroPoseClassifier implements Classifier {
+
+    public interface CalibrationListener {
+        void onCalibrationComplete();
+    }
+
+    public static final long DEBOUNCE_NANOS = 80_000_000L;
+    public static final long MAX_WAIT_NANOS = 1_000_000_000L;
+    static final float POSE_THRESHOLD = (float) Math.toRadians(6);
+    static final float REFERENCE_WEIGHT = 0.02f;  // per block, time constant about 10s
+
+    private final GyroBiasEstimator estimator = new GyroBiasEstimator();
+    private final OrientationFilter filter = new OrientationFilter();
+    private CalibrationListener calibrationListener;
+    private Movement currentPose;  // null: neutral
+    private boolean hasEvent;
+    private long lastEventNanos;
+    private boolean calibrating = true;
+    private boolean waitStarted;
+    private long waitStartNanos;
+
+    public void setCalibrationListener(CalibrationListener listener) {
+        calibrationListener = listener;
+    }
+
+    /**
+     * true until the neutral pose is known after reset()
+     */
+    public boolean isCalibrating() {
+        return calibrating;
+    }
+
+    /**
+     * fused yaw and pitch in radians relative to the neutral pose
+     */
+    public float getYaw() {
+        return filter.getYaw();
+    }
+
+    public float getPitch() {
+        return filter.getPitch();
+    }
+
+    /**
+     * bias and noise estimates, read in the sensor thread only
+     */
+    public GyroBiasEstimator getBiasEstimator() {
+        return estimator;
+    }
+
+    /**
+     * take the next steady pose as neutral, bias estimates are kept
+     */
+    @Override
+    public void reset() {
+        calibrating = true;
+        waitStarted = false;
+        hasEvent = false;
+        currentPose = null;
+        filter.reset();
+        estimator.restartBlock();
+    }
+
+    @Override
+    public Movement onAccel(long timeNanos, float x, float y, float z) {
+        estimator.accel(x, y, z);
+        filter.accel(timeNanos, x, y, z);
+        return null;
+    }
+
+    @Override
+    public Movement onGyro(long timeNanos, float x, float y, float z) {
+        if (!waitStarted) {
+            waitStarted = true;
+            waitStartNanos = timeNanos;
+        }
+        if (estimator.gyro(timeNanos, x, y, z))
+            onBlock(timeNanos);
+        filter.gyro(timeNanos, x - estimator.getBias(0), y - estimator.getBias(1), z - estimator.getBias(2));
+        if (calibrating)
+            return null;
+
+        float yaw = filter.getYaw();
+        float pitch = filter.getPitch();
+        Movement pose = null;
+        if (Math.abs(yaw) > Math.abs(pitch)) {
+            if (yaw > POSE_THRESHOLD)
+                pose = Movement.RIGHT;
+            else if (yaw < -POSE_THRESHOLD)
+                pose = Movement.LEFT;
+        } else {
+            if (pitch > POSE_THRESHOLD)
+                pose = Movement.FORWARD;
+            else if (pitch < -POSE_THRESHOLD)
+                pose = Movement.BACK;
+        }
+        if (pose == currentPose)
+            return null;
+        if (pose == null) {
+            currentPose = null;
+            return null;
+        }
+        if (hasEvent && timeNanos - lastEventNanos <= DEBOUNCE_NANOS)
+            return null;
+        currentPose = pose;
+        hasEvent = true;
+        lastEventNanos = timeNanos;
+        return pose;
+    }
+
+    private void onBlock(long timeNanos) {
+        boolean hasAccel = estimator.hasLastBlockAccel();
+        float ax = estimator.getLastBlockAccel(0);
+        float ay = estimator.getLastBlockAccel(1);
+        float az = estimator.getLastBlockAccel(2);
+        if (calibrating) {
+            if (!estimator.isLastBlockSteady() && timeNanos - waitStartNanos < MAX_WAIT_NANOS)
+                return;
+            if (hasAccel)
+                filter.setReference(ax, ay, az);
+            calibrating = false;
+            if (calibrationListener != null)
+                calibrationListener.onCalibrationComplete();
+        } else if (hasAccel && estimator.isLastBlockSteady()
+                && Math.abs(filter.getPitch()) < POSE_THRESHOLD / 2 && Math.abs(filter.getYaw()) < POSE_THRESHOLD / 2) {
+            filter.refineReference(ax, ay, az, REFERENCE_WEIGHT);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * classify sensor samples into movement events.
+ * use chain: SerialProcessor / GyroManager / phone sensor -> MotionEngine -> Classifier -> Listener
+ *
+ * No Android dependencies: samples are primitives with a timestamp, time is taken
+ * from an injected Clock, so the engine runs on any thread and any JVM, and tests
+ * can run faster than real time.
+ *
+ * Each sample is passed to all classifiers in registration order, every movement
+ * returned is reported as MovementEvent. With setFeatureWindow() the engine also
+ * keeps WindowFeatures of the accel and gyro streams, updated before the classifiers
+ * see the sample, so classifiers and diagnostics can use windowed statistics.
+ * Single thread: samples, classifier changes and reset() must come from the same
+ * thread, the listener is called on it.
+ */
+public final class MotionEngine {
+
+    public interface Clock {
+        long nanoTime();
+    }
+
+    public interface Listener {
+        void onMovement(MovementEvent event);
+    }
+
+    public static final Clock SYSTEM_CLOCK = System::nanoTime;
+
+    private final Clock clock;
+    private final Listener listener;
+    private final List<Classifier> classifiers = new ArrayList<>();
+    private WindowFeatures accelFeatures;
+    private WindowFeatures gyroFeatures;
+    private long samples;
+    private long events;
+
+    public MotionEngine(Clock clock, Listener listener) {
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    public void addClassifier(Classifier classifier) {
+        classifiers.add(classifier);
+    }
+
+    public void removeClassifier(Classifier classifier) {
+        classifiers.remove(classifier);
+    }
+
+    /**
+     * keep features over the last windowSamples accel and gyro samples each
+     */
+    public void setFeatureWindow(int windowSamples) {
+        accelFeatures = new WindowFeatures(windowSamples);
+        gyroFeatures = new WindowFeatures(windowSamples);
+    }
+
+    /**
+     * features of the accel stream, null without setFeatureWindow()
+     */
+    public WindowFeatures getAccelFeatures() {
+        return accelFeatures;
+    }
+
+    public WindowFeatures getGyroFeatures() {
+        return gyroFeatures;
+    }
+
+    /**
+     * current time of the engine clock, e.g. for samples without own timestamp
+     */
+    public long now() {
+        return clock.nanoTime();
+    }
+
+    public void accel(long timeNanos, float x, float y, float z) {
+        samples++;
+        if (accelFeatures != null)
+            accelFeatures.add(x, y, z);
+        for (int i = 0; i < classifiers.size(); i++) {
+            Classifier classifier = classifiers.get(i);
+            report(classifier.onAccel(timeNanos, x, y, z), timeNanos, classifier);
+        }
+    }
+
+    public void gyro(long timeNanos, float x, float y, float z) {
+        samples++;
+        if (gyroFeatures != null)
+            gyroFeatures.add(x, y, z);
+        for (int i = 0; i < classifiers.size(); i++) {
+            Classifier classifier = classifiers.get(i);
+            report(classifier.onGyro(timeNanos, x, y, z), timeNanos, classifier);
+        }
+    }
+
+    /**
+     * let classifiers report movements pending at timeNanos, e.g. some time after the
+     * last sample of a stream that may have paused. Same time base as the samples
+     */
+    public void tick(long timeNanos) {
+        for (int i = 0; i < classifiers.size(); i++) {
+            Classifier classifier = classifiers.get(i);
+            report(classifier.onTick(timeNanos), timeNanos, classifier);
+        }
+    }
+
+    /**
+     * reset all classifiers
+     */
+    public void reset() {
+        for (int i = 0; i < classifiers.size(); i++)
+            classifiers.get(i).reset();
+    }
+
+    public long getSampleCount() {
+        return samples;
+    }
+
+    public long getEventCount() {
+        return events;
+    }
+
+    private void report(Movement movement, long timeNanos, Classifier classifier) {
+        if (movement == null)
+            return;
+        events++;
+        listener.onMovement(new MovementEvent(movement, timeNanos, clock.nanoTime(), classifier));
+    }
+}
@@ -0,0 +1,6 @@
+package com.example.kineticpulsemobileapp.motion;
+
+/**
+ * movements the game reacts to
+ */
+public enum Movement { LEFT, RIGHT, FORWARD, BACK }
@@ -0,0 +1,46 @@
+package com.example.kineticpulsemobileapp.motion;
+
+/**
+ * movement detected by a classifier
+ */
+public final class MovementEvent {
+
+    private final Movement movement;
+    private final long sampleNanos;
+    private final long detectedNanos;
+    private final Classifier classifier;
+
+    MovementEvent(Movement movement, long sampleNanos, long detectedNanos, Classifier classifier) {
+        this.movement = movement;
+        this.sampleNanos = sampleNanos;
+        this.detectedNanos = detectedNanos;
+        this.classifier = classifier;
+    }
+
+    public Movement getMovement() {
+        return movement;
+    }
+
+    /**
+     * time of the sample that completed the movement
+     */
+    public long getSampleNanos() {
+        return sampleNanos;
+    }
+
+    /**
+     * engine clock when the movement was detected
+     */
+    public long getDetectedNanos() {
+        return detectedNanos;
+    }
+
+    public Classifier getClassifier() {
+        return classifier;
+    }
+
+    @Override
+    public String toString() {
+        return movement + "@" + sampleNanos;
+    }
+}
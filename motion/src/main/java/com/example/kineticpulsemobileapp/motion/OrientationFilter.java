@@ -0,0 +1,173 @@
+package com.example.kineticpulsemobileapp.motion;
+
+/**
+ * tilt angles around the device x (pitch) and z (yaw) axes from gyroscope and accelerometer.
+ * use chain: GyroPoseClassifier.onGyro/onAccel -> OrientationFilter -> pitch, yaw
+ *
+ * Complementary filter per axis: the gyro rate is integrated, which is smooth but
+ * drifts, and pulled towards the angle of gravity measured by the accelerometer,
+ * which is noisy but drift free, with time constant TIME_CONSTANT_NANOS.
+ * Angles are relative to the reference gravity from setReference(), i.e. the neutral pose.
+ *
+ * The accelerometer can only correct an axis that is not parallel to gravity
+ * (yaw of a phone lying flat), the correction is weighted with how much gravity
+ * turns around the axis. Unobservable angles leak to zero with LEAK_TIME_CONSTANT_NANOS
+ * instead. Accelerometer samples off the reference magnitude by more than
+ * MAX_LINEAR_ACCEL (jumps, shakes) are not used.
+ *
+ * Units: gyro in rad/s, accelerometer in any unit, but the same for all samples.
+ * No allocation, single thread.
+ */
+public final class OrientationFilter {
+
+    public static final long TIME_CONSTANT_NANOS = 500_000_000L;
+    public static final long LEAK_TIME_CONSTANT_NANOS = 5_000_000_000L;
+    static final float MAX_LINEAR_ACCEL = 0.2f;   // of reference magnitude
+    private static final float MIN_OBSERVABLE = 0.3f;
+
+    private float pitch, yaw;
+    private boolean hasGyro;
+    private long lastGyroNanos;
+    private boolean hasAccel;
+    private long lastAccelNanos;
+    private float ax, ay, az;                    // last accelerometer sample
+
+    private boolean hasReference;
+    private float rx, ry, rz, referenceMagnitude;
+    private int referenceSamples;
+    private double sumX, sumY, sumZ;             // for setReference()
+
+    /**
+     * rotation around x in radians since the reference, positive for positive rates
+     */
+    public float getPitch() {
+        return pitch;
+    }
+
+    /**
+     * rotation around z in radians since the reference
+     */
+    public float getYaw() {
+        return yaw;
+    }
+
+    public boolean hasReference() {
+        return hasReference;
+    }
+
+    /**
+     * restart from the neutral pose, keeps the reference
+     */
+    public void reset() {
+        pitch = yaw = 0;
+        hasGyro = hasAccel = false;
+        sumX = sumY = sumZ = 0;
+        referenceSamples = 0;
+    }
+
+    /**
+     * use the average gravity since the last reset() or setReference() as neutral pose,
+     * or the last sample if none. Returns false without accelerometer samples
+     */
+    public boolean setReference() {
+        if (!hasAccel) {
+            pitch = yaw = 0;
+            return false;
+        }
+        if (referenceSamples > 0)
+            return setReference((float) (sumX / referenceSamples), (float) (sumY / referenceSamples), (float) (sumZ / referenceSamples));
+        return setReference(ax, ay, az);
+    }
+
+    /**
+     * use gravity (x, y, z) as neutral pose, e.g. the mean of a steady period
+     */
+    public boolean setReference(float x, float y, float z) {
+        pitch = yaw = 0;
+        rx = x;
+        ry = y;
+        rz = z;
+        referenceMagnitude = (float) Math.sqrt(rx * rx + ry * ry + rz * rz);
+        hasReference = referenceMagnitude > 0;
+        sumX = sumY = sumZ = 0;
+        referenceSamples = 0;
+        return hasReference;
+    }
+
+    /**
+     * move the reference by weight (0..1) towards gravity (x, y, z), to follow a
+     * slowly changing neutral pose. The angles follow with the accelerometer correction
+     */
+    public void refineReference(float x, float y, float z, float weight) {
+        if (!hasReference) {
+            setReference(x, y, z);
+            return;
+        }
+        rx += weight * (x - rx);
+        ry += weight * (y - ry);
+        rz += weight * (z - rz);
+        referenceMagnitude = (float) Math.sqrt(rx * rx + ry * ry + rz * rz);
+    }
+
+    public void gyro(long timeNanos, float x, float y, float z) {
+        if (hasGyro) {
+            long dtNanos = timeNanos - lastGyroNanos;
+            float dt = dtNanos / 1e9f;
+            pitch += x * dt;
+            yaw += z * dt;
+            if (!hasReference) {
+                float leak = leak(dtNanos);
+                pitch -= pitch * leak;
+                yaw -= yaw * leak;
+            }
+        }
+        hasGyro = true;
+        lastGyroNanos = timeNanos;
+    }
+
+    public void accel(long timeNanos, float x, float y, float z) {
+        long dtNanos = hasAccel ? timeNanos - lastAccelNanos : 0;
+        hasAccel = true;
+        lastAccelNanos = timeNanos;
+        ax = x;
+        ay = y;
+        az = z;
+        sumX += x;
+        sumY += y;
+        sumZ += z;
+        referenceSamples++;
+        if (!hasReference || dtNanos <= 0)
+            return;
+
+        float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        if (Math.abs(magnitude - referenceMagnitude) > MAX_LINEAR_ACCEL * referenceMagnitude)
+            return;
+        float gain = dtNanos / (float) (TIME_CONSTANT_NANOS + dtNanos);
+        float leak = leak(dtNanos);
+
+        // device rotation +a around an axis turns gravity by -a in device coordinates
+        float yz = (float) Math.sqrt((ry * ry + rz * rz) * (y * y + z * z));
+        float pitchWeight = observability(yz / (referenceMagnitude * magnitude));
+        float accelPitch = -(float) Math.atan2(ry * z - rz * y, ry * y + rz * z);
+        pitch += gain * pitchWeight * (accelPitch - pitch) - leak * (1 - pitchWeight) * pitch;
+
+        float xy = (float) Math.sqrt((rx * rx + ry * ry) * (x * x + y * y));
+        float yawWeight = observability(xy / (referenceMagnitude * magnitude));
+        float accelYaw = -(float) Math.atan2(rx * y - ry * x, rx * x + ry * y);
+        yaw += gain * yawWeight * (accelYaw - yaw) - leak * (1 - yawWeight) * yaw;
+    }
+
+    /**
+     * 0 if gravity is (nearly) parallel to the axis, 1 if perpendicular, from the
+     * product of the projected and full lengths of reference and sample
+     */
+    private static float observability(float projected) {
+        if (projected <= MIN_OBSERVABLE)
+            return 0;
+        return Math.min(1, (projected - MIN_OBSERVABLE) / (1 - MIN_OBSERVABLE));
+    }
+
+    private static float leak(long dtNanos) {
+        return dtNanos / (float) (LEAK_TIME_CONSTANT_NANOS + dtNanos);
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.kineticpulsemobileapp.motion;
+
+/**
+ * one movement per peak on the x or y axis, with hysteresis and a refractory time.
+ * use chain: MotionEngine.accel()/gyro() -> PeakClassifier -> Movement
+ *
+ * States per input stream:
+ * - ARMED: waits for x or y to exceed the arm threshold
+ * - PEAK: tracks the signed peak of each axis until both fall below the release
+ *   threshold or maxPeakNanos passed, then reports the axis with the larger peak
+ *   (x on a tie), in the direction of its peak
+ * - REFRACTORY: ignores the input for refractoryNanos, e.g. the landing or the
+ *   rebound of the same jump, and until both axes were below the release threshold.
+ *   The first sample after that may arm again, so sparse samples are not lost
+ * A sustained signal is reported once. O(1) per sample, no allocation.
+ *
+ * A stream that pauses for maxPeakNanos counts as released: onTick() reports the
+ * pending peak, so a single spike without release sample is not held until the
+ * next sample arrives.
+ *
+ * ESP32 accelerometer in g:  espAccelerometer()
+ * phone gyroscope in rad/s:  phoneGyroscope()
+ * both with lower thresholds for confirmation by AgreementFilter: espAccelerometer(scale), phoneGyroscope(scale)
+ */
+public final class PeakClassifier implements Classifier {
+
+    public enum Input { ACCEL, GYRO }
+
+    enum State { ARMED, PEAK, REFRACTORY }
+
+    private final Input input;
+    private final float armThreshold;
+    private final float releaseThreshold;
+    private final long maxPeakNanos;
+    private final long refractoryNanos;
+    private final Movement xPositive, xNegative, yPositive, yNegative;
+
+    private State state = State.ARMED;
+    private long stateStartNanos;
+    private float peakX, peakY;
+    private boolean releaseSeen;
+    private long lastSampleNanos;
+
+    public PeakClassifier(Input input, float armThreshold, float releaseThreshold, long maxPeakNanos, long refractoryNanos,
+                          Movement xPositive, Movement xNegative, Movement yPositive, Movement yNegative) {
+        this.input = input;
+        this.armThreshold = armThreshold;
+        this.releaseThreshold = releaseThreshold;
+        this.maxPeakNanos = maxPeakNanos;
+        this.refractoryNanos = refractoryNanos;
+        this.xPositive = xPositive;
+        this.xNegative = xNegative;
+        this.yPositive = yPositive;
+        this.yNegative = yNegative;
+    }
+
+    /**
+     * ESP32 + ADXL345, 2g. orientation as worn: x right, y forward
+     */
+    public static PeakClassifier espAccelerometer() {
+        return espAccelerometer(1);
+    }
+
+    /**
+     * thresholds times thresholdScale, e.g. below 1 if AgreementFilter confirms the movements
+     */
+    public static PeakClassifier espAccelerometer(float thresholdScale) {
+        return new PeakClassifier(Input.ACCEL, 2.0f * thresholdScale, 1.2f * thresholdScale, 150_000_000L, 300_000_000L,
+                Movement.RIGHT, Movement.LEFT, Movement.FORWARD, Movement.BACK);
+    }
+
+    /**
+     * phone held in hand, 2 rad/s. rotating around x tilts left
+     */
+    public static PeakClassifier phoneGyroscope() {
+        return phoneGyroscope(1);
+    }
+
+    public static PeakClassifier phoneGyroscope(float thresholdScale) {
+        return new PeakClassifier(Input.GYRO, 2.0f * thresholdScale, 1.0f * thresholdScale, 150_000_000L, 250_000_000L,
+                Movement.LEFT, Movement.RIGHT, Movement.FORWARD, Movement.BACK);
+    }
+
+    State getState() {
+        return state;
+    }
+
+    @Override
+    public void reset() {
+        state = State.ARMED;
+    }
+
+    @Override
+    public Movement onAccel(long timeNanos, float x, float y, float z) {
+        return input == Input.ACCEL ? classify(timeNanos, x, y) : null;
+    }
+
+    @Override
+    public Movement onGyro(long timeNanos, float x, float y, float z) {
+        return input == Input.GYRO ? classify(timeNanos, x, y) : null;
+    }
+
+    @Override
+    public Movement onTick(long timeNanos) {
+        if (timeNanos - lastSampleNanos < maxPeakNanos)
+            return null; // stream running, the next sample decides
+        if (state == State.REFRACTORY)
+            releaseSeen = true;
+        return state == State.PEAK ? endPeak(timeNanos, true) : null;
+    }
+
+    private Movement classify(long timeNanos, float x, float y) {
+        lastSampleNanos = timeNanos;
+        while (true) {
+            switch (state) {
+                case REFRACTORY:
+                    if (released(x, y))
+                        releaseSeen = true;
+                    if (timeNanos - stateStartNanos < refractoryNanos || !releaseSeen)
+                        return null;
+                    state = State.ARMED;
+                    continue; // this sample may arm again
+                case ARMED:
+                    if (Math.abs(x) > armThreshold || Math.abs(y) > armThreshold) {
+                        state = State.PEAK;
+                        stateStartNanos = timeNanos;
+                        peakX = x;
+                        peakY = y;
+                    }
+                    return null;
+                default: // PEAK
+                    if (Math.abs(x) > Math.abs(peakX))
+                        peakX = x;
+                    if (Math.abs(y) > Math.abs(peakY))
+                        peakY = y;
+                    if (!released(x, y) && timeNanos - stateStartNanos < maxPeakNanos)
+                        return null;
+                    return endPeak(timeNanos, released(x, y));
+            }
+        }
+    }
+
+    private Movement endPeak(long timeNanos, boolean released) {
+        state = State.REFRACTORY;
+        stateStartNanos = timeNanos;
+        releaseSeen = released;
+        if (Math.abs(peakX) >= Math.abs(peakY))
+            return peakX > 0 ? xPositive : xNegative;
+        return peakY > 0 ? yPositive : yNegative;
+    }
+
+    private boolean released(float x, float y) {
+        return Math.abs(x) < releaseThreshold && Math.abs(y) < releaseThreshold;
+    }
+}
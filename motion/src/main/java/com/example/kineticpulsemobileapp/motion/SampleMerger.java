@@ -0,0 +1,241 @@
+package com.example.kineticpulsemobileapp.motion;
+
+/**
+ * merge samples of several sources into one stream in event time order.
+ * use chain: ESP32 / remote phone streams -> SampleMerger -> per source MotionEngine
+ *
+ * Sources deliver with different delays (BLE connection interval, Wi-Fi, batching),
+ * so samples are buffered in a min heap on event time and emitted once no earlier
+ * sample can arrive any more. The watermark is the latest time every active source
+ * has reached, but at most windowNanos behind the latest time seen or the clock
+ * passed to advance(): a stalled source delays the stream by at most the window.
+ * Samples earlier than the last emitted one are late and dropped, a full buffer
+ * emits its earliest sample early. Ties are emitted in arrival order.
+ *
+ * Event times of all sources must be in the same clock, e.g. phone time from ClockSync.
+ * Pure Java, no allocation after construction, single thread.
+ */
+public final class SampleMerger {
+
+    public static final int ACCEL = 0;
+    public static final int GYRO = 1;
+
+    public interface Listener {
+        void onSample(int source, int kind, long timeNanos, float x, float y, float z);
+    }
+
+    private final int capacity;
+    private final long windowNanos;
+    private final Listener listener;
+
+    // sample slots, heap holds slot indices ordered by time and sequence
+    private final long[] time;
+    private final long[] sequence;
+    private final int[] sourceOf;
+    private final int[] kindOf;
+    private final float[] values;
+    private final int[] heap;
+    private final int[] freeSlots;
+    private int size;
+    private long nextSequence;
+
+    // per source
+    private final boolean[] active;
+    private final boolean[] hasLatest;
+    private final long[] latest;
+    private final long[] late;
+
+    private boolean hasEmitted;
+    private long emittedNanos;
+    private boolean hasMaxSeen;
+    private long maxSeenNanos;
+    private long merged;
+    private long forced;
+
+    public SampleMerger(int sources, int capacity, long windowNanos, Listener listener) {
+        this.capacity = capacity;
+        this.windowNanos = windowNanos;
+        this.listener = listener;
+        time = new long[capacity];
+        sequence = new long[capacity];
+        sourceOf = new int[capacity];
+        kindOf = new int[capacity];
+        values = new float[capacity * 3];
+        heap = new int[capacity];
+        freeSlots = new int[capacity];
+        for (int i = 0; i < capacity; i++)
+            freeSlots[i] = capacity - 1 - i;
+        active = new boolean[sources];
+        hasLatest = new boolean[sources];
+        latest = new long[sources];
+        late = new long[sources];
+    }
+
+    /**
+     * only active sources hold back the watermark, e.g. connected streams.
+     * a source becoming active starts over, its earlier times are forgotten
+     */
+    public void setActive(int source, boolean active) {
+        this.active[source] = active;
+        hasLatest[source] = false;
+        drain(watermark());
+    }
+
+    public boolean isActive(int source) {
+        return active[source];
+    }
+
+    /**
+     * add a sample, samples due are emitted to the listener.
+     * returns false if the sample is late and was dropped
+     */
+    public boolean offer(int source, int kind, long timeNanos, float x, float y, float z) {
+        if (size == capacity && !(hasEmitted && timeNanos < emittedNanos)) {
+            forced++;
+            emitFirst();
+        }
+        if (hasEmitted && timeNanos < emittedNanos) {
+            late[source]++;
+            return false;
+        }
+        int slot = freeSlots[capacity - 1 - size];
+        time[slot] = timeNanos;
+        sequence[slot] = nextSequence++;
+        sourceOf[slot] = source;
+        kindOf[slot] = kind;
+        values[slot * 3] = x;
+        values[slot * 3 + 1] = y;
+        values[slot * 3 + 2] = z;
+        heap[size] = slot;
+        siftUp(size++);
+
+        if (!hasLatest[source] || timeNanos > latest[source]) {
+            latest[source] = timeNanos;
+            hasLatest[source] = true;
+        }
+        if (!hasMaxSeen || timeNanos > maxSeenNanos) {
+            maxSeenNanos = timeNanos;
+            hasMaxSeen = true;
+        }
+        drain(watermark());
+        return true;
+    }
+
+    /**
+     * emit samples older than the window before nowNanos, for sources that stopped sending
+     */
+    public void advance(long nowNanos) {
+        drain(Math.max(watermark(), nowNanos - windowNanos));
+    }
+
+    /**
+     * emit all buffered samples, e.g. when merging stops
+     */
+    public void flush() {
+        while (size > 0)
+            emitFirst();
+    }
+
+    /**
+     * drop buffered samples and per source times, counters are kept
+     */
+    public void clear() {
+        size = 0;
+        for (int i = 0; i < capacity; i++)
+            freeSlots[i] = capacity - 1 - i;
+        for (int i = 0; i < hasLatest.length; i++)
+            hasLatest[i] = false;
+        hasEmitted = false;
+        hasMaxSeen = false;
+    }
+
+    public int getBufferedCount() {
+        return size;
+    }
+
+    public long getMergedCount() {
+        return merged;
+    }
+
+    /**
+     * samples emitted before their time because the buffer was full
+     */
+    public long getForcedCount() {
+        return forced;
+    }
+
+    public long getLateCount(int source) {
+        return late[source];
+    }
+
+    private long watermark() {
+        if (!hasMaxSeen)
+            return Long.MIN_VALUE;
+        long mark = maxSeenNanos - windowNanos;
+        boolean all = true;
+        long min = Long.MAX_VALUE;
+        for (int i = 0; i < active.length; i++) {
+            if (!active[i])
+                continue;
+            if (!hasLatest[i]) {
+                all = false;
+                break;
+            }
+            min = Math.min(min, latest[i]);
+        }
+        if (all && min != Long.MAX_VALUE)
+            mark = Math.max(mark, min);
+        return mark;
+    }
+
+    private void drain(long watermark) {
+        while (size > 0 && time[heap[0]] <= watermark)
+            emitFirst();
+    }
+
+    private void emitFirst() {
+        int slot = heap[0];
+        size--;
+        heap[0] = heap[size];
+        siftDown(0);
+        freeSlots[capacity - 1 - size] = slot;
+        hasEmitted = true;
+        emittedNanos = time[slot];
+        merged++;
+        listener.onSample(sourceOf[slot], kindOf[slot], time[slot], values[slot * 3], values[slot * 3 + 1], values[slot * 3 + 2]);
+    }
+
+    private boolean before(int a, int b) {
+        return time[a] < time[b] || (time[a] == time[b] && sequence[a] < sequence[b]);
+    }
+
+    private void siftUp(int i) {
+        int slot = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+            if (!before(slot, heap[parent]))
+                break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+
+    private void siftDown(int i) {
+        if (size == 0)
+            return;
+        int slot = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && before(heap[child + 1], heap[child]))
+                child++;
+            if (!before(heap[child], slot))
+                break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = slot;
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.kineticpulsemobileapp.motion;
+
+/**
+ * statistics of the last `window` samples of a 3 axis stream, updated in O(1) per sample.
+ * use chain: MotionEngine.accel()/gyro() -> WindowFeatures -> classifiers, diagnostics
+ *
+ * Per axis: mean and variance (sliding Welford update: the new sample is added and
+ * the one leaving the window removed in one step), min and max (monotonic deques
+ * of sample indices, each sample is pushed and popped at most once) and energy
+ * (mean square). Over all axes: signal magnitude area, the mean of |x| + |y| + |z|.
+ * Sums are kept in double, exact enough for float samples over any stream length.
+ *
+ * Until the window is full the statistics cover the samples so far.
+ * Primitive arrays only, no allocation after construction, single thread.
+ * appendTo() formats with fixed-point appends into a caller's StringBuilder, so a
+ * periodic summary on the sensor thread does not allocate either.
+ */
+public final class WindowFeatures {
+
+    private static final int AXES = 3;
+
+    private final int window;
+    private final float[] ring;         // window samples per axis
+    private long count;                 // samples added since clear()
+
+    private final double[] mean = new double[AXES];
+    private final double[] m2 = new double[AXES];      // sum of squared deviations
+    private final double[] sumSq = new double[AXES];
+    private double sumAbs;
+
+    // deques of sample indices per axis, circular with capacity window
+    private final long[] minDeque;
+    private final long[] maxDeque;
+    private final int[] minHead = new int[AXES], minSize = new int[AXES];
+    private final int[] maxHead = new int[AXES], maxSize = new int[AXES];
+
+    public WindowFeatures(int window) {
+        if (window < 1)
+            throw new IllegalArgumentException("window " + window);
+        this.window = window;
+        ring = new float[AXES * window];
+        minDeque = new long[AXES * window];
+        maxDeque = new long[AXES * window];
+    }
+
+    public void add(float x, float y, float z) {
+        int slot = (int) (count % window);
+        boolean full = count >= window;
+        int n = (int) Math.min(count + 1, window);
+        if (full)
+            sumAbs -= Math.abs(ring[slot]) + Math.abs(ring[window + slot]) + Math.abs(ring[2 * window + slot]);
+        sumAbs += Math.abs(x) + Math.abs(y) + Math.abs(z);
+        addAxis(0, slot, full, n, x);
+        addAxis(1, slot, full, n, y);
+        addAxis(2, slot, full, n, z);
+        count++;
+    }
+
+    public void clear() {
+        count = 0;
+        sumAbs = 0;
+        for (int a = 0; a < AXES; a++) {
+            mean[a] = m2[a] = sumSq[a] = 0;
+            minSize[a] = maxSize[a] = 0;
+        }
+    }
+
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * samples in the window
+     */
+    public int getSize() {
+        return (int) Math.min(count, window);
+    }
+
+    public boolean isFull() {
+        return count >= window;
+    }
+
+    public float getMean(int axis) {
+        return (float) mean[axis];
+    }
+
+    /**
+     * population variance of axis 0..2
+     */
+    public float getVariance(int axis) {
+        int n = getSize();
+        return n > 0 ? (float) (m2[axis] / n) : 0;
+    }
+
+    public float getStandardDeviation(int axis) {
+        return (float) Math.sqrt(getVariance(axis));
+    }
+
+    public float getMin(int axis) {
+        return minSize[axis] > 0 ? value(axis, minDeque[axis * window + minHead[axis]]) : 0;
+    }
+
+    public float getMax(int axis) {
+        return maxSize[axis] > 0 ? value(axis, maxDeque[axis * window + maxHead[axis]]) : 0;
+    }
+
+    /**
+     * mean square of axis 0..2
+     */
+    public float getEnergy(int axis) {
+        int n = getSize();
+        return n > 0 ? (float) (sumSq[axis] / n) : 0;
+    }
+
+    /**
+     * signal magnitude area, mean of |x| + |y| + |z|
+     */
+    public float getSignalMagnitudeArea() {
+        int n = getSize();
+        return n > 0 ? (float) (sumAbs / n) : 0;
+    }
+
+    /**
+     * n, sma and per axis mean, std, min, max, energy with 3 decimals, returns sb
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        sb.append("n=").append(getSize());
+        appendFixed(sb.append(" sma="), getSignalMagnitudeArea());
+        for (int a = 0; a < AXES; a++) {
+            sb.append(' ').append((char) ('x' + a)).append(':');
+            appendFixed(sb.append(" mean="), getMean(a));
+            appendFixed(sb.append(" std="), getStandardDeviation(a));
+            appendFixed(sb.append(" min="), getMin(a));
+            appendFixed(sb.append(" max="), getMax(a));
+            appendFixed(sb.append(" energy="), getEnergy(a));
+        }
+        return sb;
+    }
+
+    @Override
+    public String toString() {
+        return appendTo(new StringBuilder()).toString();
+    }
+
+    private static void appendFixed(StringBuilder sb, float value) {
+        long milli = Math.round(value * 1000.0);
+        if (milli < 0) {
+            sb.append('-');
+            milli = -milli;
+        }
+        long fraction = milli % 1000;
+        sb.append(milli / 1000).append('.');
+        if (fraction < 100)
+            sb.append('0');
+        if (fraction < 10)
+            sb.append('0');
+        sb.append(fraction);
+    }
+
+    private void addAxis(int axis, int slot, boolean full, int n, float x) {
+        int base = axis * window;
+        if (full) {
+            double old = ring[base + slot];
+            double delta = x - old;
+            double newMean = mean[axis] + delta / n;
+            m2[axis] = Math.max(0, m2[axis] + delta * (x - newMean + old - mean[axis]));
+            mean[axis] = newMean;
+            sumSq[axis] += (double) x * x - old * old;
+        } else {
+            double delta = x - mean[axis];
+            mean[axis] += delta / n;
+            m2[axis] += delta * (x - mean[axis]);
+            sumSq[axis] += (double) x * x;
+        }
+        ring[base + slot] = x;
+
+        // drop the index leaving the window, then dominated ones from the back
+        long index = count;
+        long oldest = index - window + 1;
+        if (minSize[axis] > 0 && minDeque[base + minHead[axis]] < oldest) {
+            minHead[axis] = (minHead[axis] + 1) % window;
+            minSize[axis]--;
+        }
+        while (minSize[axis] > 0 && value(axis, minDeque[base + (minHead[axis] + minSize[axis] - 1) % window]) >= x)
+            minSize[axis]--;
+        minDeque[base + (minHead[axis] + minSize[axis]++) % window] = index;
+
+        if (maxSize[axis] > 0 && maxDeque[base + maxHead[axis]] < oldest) {
+            maxHead[axis] = (maxHead[axis] + 1) % window;
+            maxSize[axis]--;
+        }
+        while (maxSize[axis] > 0 && value(axis, maxDeque[base + (maxHead[axis] + maxSize[axis] - 1) % window]) <= x)
+            maxSize[axis]--;
+        maxDeque[base + (maxHead[axis] + maxSize[axis]++) % window] = index;
+    }
+
+    private float value(int axis, long index) {
+        return ring[axis * window + (int) (index % window)];
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class AgreementFilterTest {
+
+    private static final long MS = 1_000_000;
+
+    private final List<String> confirmed = new ArrayList<>();
+    private final AgreementFilter filter = new AgreementFilter(3, 200 * MS,
+            (movement, timeNanos) -> confirmed.add(movement + "@" + timeNanos / MS));
+
+    @Test
+    public void twoSourcesConfirm() {
+        filter.onMovement(0, Movement.LEFT, 1000 * MS);
+        assertTrue(confirmed.isEmpty());
+        filter.onMovement(1, Movement.LEFT, 1080 * MS);
+        assertEquals("[LEFT@1080]", confirmed.toString());
+        // used, a third source does not confirm the same jump again
+        filter.onMovement(2, Movement.LEFT, 1100 * MS);
+        assertEquals(1, confirmed.size());
+        assertEquals(1, filter.getConfirmedCount());
+    }
+
+    @Test
+    public void singleSourceFalsePositivesAreNotConfirmed() {
+        filter.onMovement(0, Movement.RIGHT, 1000 * MS);
+        filter.onMovement(0, Movement.RIGHT, 1500 * MS);    // same source never agrees with itself
+        filter.onMovement(1, Movement.BACK, 1550 * MS);     // different movement
+        filter.onMovement(1, Movement.RIGHT, 1900 * MS);    // too late for 1500
+        assertTrue(confirmed.isEmpty());
+        filter.onMovement(0, Movement.RIGHT, 2000 * MS);
+        assertEquals("[RIGHT@2000]", confirmed.toString());
+        assertEquals(3, filter.getUnconfirmedCount()); // replaced RIGHT and BACK, expired RIGHT@1500
+    }
+
+    @Test
+    public void requiredOneConfirmsEverything() {
+        filter.setRequired(1);
+        filter.onMovement(2, Movement.FORWARD, 10 * MS);
+        filter.onMovement(2, Movement.FORWARD, 20 * MS);
+        assertEquals("[FORWARD@10, FORWARD@20]", confirmed.toString());
+        filter.setRequired(0);
+        assertEquals(1, filter.getRequired());
+    }
+
+    @Test
+    public void resetForgetsPending() {
+        filter.onMovement(0, Movement.LEFT, 1000 * MS);
+        filter.reset();
+        filter.onMovement(1, Movement.LEFT, 1010 * MS);
+        assertTrue(confirmed.isEmpty());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GyroBiasEstimatorTest {
+
+    private final GyroBiasEstimator estimator = new GyroBiasEstimator();
+    private final MotionSimulator sim = new MotionSimulator(new MotionSimulator.Sink() {
+        @Override
+        public void gyro(long timeNanos, float x, float y, float z) {
+            estimator.gyro(timeNanos, x, y, z);
+        }
+
+        @Override
+        public void accel(long timeNanos, float x, float y, float z) {
+            estimator.accel(x, y, z);
+        }
+    });
+
+    @Test
+    public void learnsBiasAndNoise() {
+        sim.gyroBiasX = 0.01f;
+        sim.gyroBiasZ = -0.02f;
+        sim.gyroNoise = 0.004f;
+        sim.accelNoise = 0.02f;
+        assertFalse(estimator.hasEstimate());
+        sim.rest(205);
+        assertTrue(estimator.hasEstimate());
+        sim.rest(10_000);
+        assertEquals(0.01f, estimator.getBias(0), 0.001f);
+        assertEquals(0, estimator.getBias(1), 0.001f);
+        assertEquals(-0.02f, estimator.getBias(2), 0.001f);
+        for (int axis = 0; axis < 3; axis++) {
+            assertEquals(0.004f, estimator.getNoise(axis), 0.0005f);
+            assertEquals(3 * estimator.getNoise(axis), estimator.getThreshold(axis), 1e-6f);
+        }
+        // blocks of 41 samples
+        assertEquals(10_205 / 205, estimator.getStationaryBlockCount());
+        assertEquals(0, estimator.getMovingBlockCount());
+    }
+
+    @Test
+    public void movementIsNotStationary() {
+        sim.gyroBiasX = 0.01f;
+        sim.rest(2000);
+        float bias = estimator.getBias(0);
+        long stationary = estimator.getStationaryBlockCount();
+        // slow steady turn: low deviation, but mean rate above any bias
+        sim.rotate(0.2, 0, 2000);
+        // shaking
+        for (int i = 0; i < 20; i++) {
+            sim.turnTo(10, 0, 50);
+            sim.turnTo(-10, 0, 50);
+        }
+        assertEquals(stationary, estimator.getStationaryBlockCount());
+        assertEquals(20, estimator.getMovingBlockCount()); // 4s and the block the turn starts in
+        assertEquals(bias, estimator.getBias(0), 0);
+        assertFalse(estimator.isLastBlockSteady());
+    }
+
+    @Test
+    public void steadyHandIsNotStationary() {
+        sim.rest(2000);
+        // tremor: deviation above the threshold learned at rest, gravity steady
+        sim.gyroNoise = 0.02f;
+        sim.rest(400);
+        assertTrue(estimator.isLastBlockSteady());
+        assertFalse(estimator.isLastBlockStationary());
+        assertTrue(estimator.hasLastBlockAccel());
+        assertEquals(MotionSimulator.G, estimator.getLastBlockAccel(1), 0.01f);
+    }
+
+    @Test
+    public void linearAccelerationIsNotSteady() {
+        sim.rest(1000);
+        for (int i = 0; i < 10; i++) {
+            sim.linearAccelY = i % 2 == 0 ? 2 : -2;
+            sim.rest(20);
+        }
+        assertFalse(estimator.isLastBlockSteady());
+    }
+
+    @Test
+    public void restartBlock() {
+        sim.rest(150);
+        estimator.restartBlock();
+        sim.rest(150);
+        assertFalse(estimator.hasEstimate());
+        sim.rest(55);
+        assertTrue(estimator.hasEstimate());
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class GyroPoseClassifierTest {
+
+    private final GyroPoseClassifier classifier = new GyroPoseClassifier();
+    private final StringBuilder events = new StringBuilder();
+    private final MotionSimulator sim = MotionSimulator.of(classifier, events);
+
+    /**
+     * neutral pose is the current one
+     */
+    private void calibrate() {
+        classifier.reset();
+        sim.rest(210);
+        assertFalse(classifier.isCalibrating());
+    }
+
+    @Test
+    public void poses() {
+        calibrate();
+        sim.turnTo(0, 15, 150);
+        sim.rest(200);
+        sim.turnTo(0, 0, 150);
+        sim.rest(200);
+        sim.turnTo(0, -15, 150);
+        sim.rest(200);
+        sim.turnTo(15, 0, 150);
+        sim.rest(200);
+        sim.turnTo(-15, 0, 150);
+        sim.rest(200);
+        assertEquals("RIGHT,LEFT,FORWARD,BACK", events.toString());
+    }
+
+    @Test
+    public void holdingPoseReportsOnce() {
+        calibrate();
+        sim.gyroNoise = 0.05f;
+        sim.accelNoise = 0.3f;
+        sim.turnTo(0, 20, 150);
+        sim.rest(10_000);
+        assertEquals("RIGHT", events.toString());
+    }
+
+    @Test
+    public void noDriftTriggers() {
+        // integrated gyro bias would pass 6 degrees after 5s
+        sim.gyroBiasX = 0.02f;
+        sim.gyroBiasZ = 0.02f;
+        calibrate();
+        sim.rest(60_000);
+        assertEquals("", events.toString());
+    }
+
+    @Test
+    public void debounce() {
+        calibrate();
+        sim.turnTo(0, 10, 50);
+        sim.turnTo(0, -10, 50);  // left within 80ms is suppressed
+        assertEquals("RIGHT", events.toString());
+        sim.rest(100);
+        assertEquals("RIGHT,LEFT", events.toString());
+    }
+
+    @Test
+    public void calibrationTakesCurrentPose() {
+        int[] completed = new int[1];
+        classifier.setCalibrationListener(() -> completed[0]++);
+        // neutral pose tilted forward, e.g. phone held at an angle
+        sim.turnTo(30, 0, 200);
+        classifier.reset();
+        events.setLength(0);
+        assertTrue(classifier.isCalibrating());
+        sim.rest(190);
+        assertEquals(0, completed[0]);
+        sim.rest(20);
+        assertEquals(1, completed[0]);
+        assertFalse(classifier.isCalibrating());
+        assertEquals(0, Math.toDegrees(classifier.getPitch()), 0.5);
+        sim.turnTo(50, 0, 200);
+        assertEquals("FORWARD", events.toString());
+    }
+
+    @Test
+    public void firstDetectionWithinHalfASecond() {
+        sim.gyroBiasZ = 0.03f;
+        sim.gyroNoise = 0.005f;
+        sim.accelNoise = 0.02f;
+        classifier.reset();
+        sim.rest(250);
+        sim.turnTo(0, 15, 150);
+        sim.rest(50);
+        assertEquals("RIGHT", events.toString());
+    }
+
+    @Test
+    public void movingDuringCalibration() {
+        classifier.reset();
+        sim.turnTo(0, 40, 900);
+        assertTrue(classifier.isCalibrating());
+        // neutral from the last block after MAX_WAIT_NANOS
+        sim.rest(300);
+        assertFalse(classifier.isCalibrating());
+        assertEquals("", events.toString());
+        sim.turnTo(0, 25, 150);
+        assertEquals("LEFT", events.toString());
+    }
+
+    @Test
+    public void referenceFollowsSlowGripChange() {
+        calibrate();
+        // 4 degrees over a minute, below the pose threshold
+        for (int i = 1; i <= 60; i++) {
+            sim.turnTo(i / 15.0, 0, 200);
+            sim.rest(800);
+        }
+        sim.rest(30_000);
+        assertEquals(0, Math.toDegrees(classifier.getPitch()), 1.5);
+        // so the pose is detected relative to the current grip
+        sim.turnTo(4 + 7, 0, 150);
+        assertEquals("FORWARD", events.toString());
+    }
+
+    @Test
+    public void gyroOnly() {
+        // no accelerometer: integrated angles, leaking back to neutral
+        for (long t = 0; t <= 200_000_000; t += 5_000_000)
+            assertNull(classifier.onGyro(t, 0, 0, 0));
+        assertFalse(classifier.isCalibrating());
+        assertNull(classifier.onGyro(250_000_000, 0, 0, 1f));
+        assertEquals(Movement.RIGHT, classifier.onGyro(350_000_000, 0, 0, 1f));
+    }
+
+    @Test
+    public void engineWithSimulatedTime() {
+        // one minute of sensor data, runs in milliseconds: turn right and back every second
+        List<MovementEvent> movements = new ArrayList<>();
+        MotionEngine engine = new MotionEngine(() -> sim.time, movements::add);
+        engine.addClassifier(classifier);
+        MotionSimulator engineSim = new MotionSimulator(new MotionSimulator.Sink() {
+            @Override
+            public void gyro(long timeNanos, float x, float y, float z) {
+                engine.gyro(timeNanos, x, y, z);
+            }
+
+            @Override
+            public void accel(long timeNanos, float x, float y, float z) {
+                engine.accel(timeNanos, x, y, z);
+            }
+        });
+        engineSim.rest(100);
+        classifier.reset();
+        engineSim.rest(210);
+        for (int i = 0; i < 60; i++) {
+            engineSim.turnTo(0, 12, 200);
+            engineSim.rest(300);
+            engineSim.turnTo(0, 0, 200);
+            engineSim.rest(300);
+        }
+        assertEquals(60, movements.size());
+        for (MovementEvent event : movements)
+            assertEquals(Movement.RIGHT, event.getMovement());
+        assertEquals(2 * (20 + 42 + 60 * 200), engine.getSampleCount());
+    }
+}
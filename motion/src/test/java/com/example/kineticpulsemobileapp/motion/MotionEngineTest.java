@@ -0,0 +1,98 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MotionEngineTest {
+
+    private long now = 1_000;
+    private final List<MovementEvent> events = new ArrayList<>();
+    private final MotionEngine engine = new MotionEngine(() -> now, events::add);
+
+    private static final long MS = 1_000_000;
+
+    @Test
+    public void espAccelerometer() {
+        engine.addClassifier(PeakClassifier.espAccelerometer());
+        engine.accel(0, 2.5f, 0, 1);
+        engine.accel(10 * MS, 0, 0, 1);         // reported on release
+        engine.accel(400 * MS, -2.5f, 3, 1);
+        engine.accel(410 * MS, 0, 0, 1);        // larger peak wins
+        engine.accel(800 * MS, 0, -2.1f, 1);
+        engine.accel(810 * MS, 0, 0, 1);
+        engine.accel(1200 * MS, -2.1f, 1.9f, 1);
+        engine.accel(1210 * MS, 0, 0, 1);
+        engine.accel(1600 * MS, 2.0f, 0, 1);    // not above
+        engine.gyro(1610 * MS, 500, 500, 0);    // accel only
+        assertEquals("[RIGHT, FORWARD, BACK, LEFT]", movements());
+        assertEquals(10, engine.getSampleCount());
+        assertEquals(4, engine.getEventCount());
+    }
+
+    @Test
+    public void phoneGyroscope() {
+        engine.addClassifier(PeakClassifier.phoneGyroscope());
+        for (int i = 0; i < 4; i++) {
+            engine.gyro(i * 400 * MS, i == 0 ? 2.5f : i == 1 ? -2.5f : 0, i == 2 ? 2.5f : i == 3 ? -2.5f : 0, 0);
+            engine.gyro((i * 400 + 10) * MS, 0, 0, 0);
+        }
+        engine.accel(2000 * MS, 9, 9, 9);
+        assertEquals("[LEFT, RIGHT, FORWARD, BACK]", movements());
+    }
+
+    private String movements() {
+        List<Movement> movements = new ArrayList<>();
+        for (MovementEvent event : events)
+            movements.add(event.getMovement());
+        return movements.toString();
+    }
+
+    @Test
+    public void eventsCarryClockAndClassifier() {
+        Classifier classifier = PeakClassifier.espAccelerometer();
+        engine.addClassifier(classifier);
+        now = 42;
+        engine.accel(7, 3, 0, 0);
+        engine.accel(8, 0, 0, 0);
+        MovementEvent event = events.get(0);
+        assertEquals(Movement.RIGHT, event.getMovement());
+        assertEquals(8, event.getSampleNanos());
+        assertEquals(42, event.getDetectedNanos());
+        assertSame(classifier, event.getClassifier());
+        assertEquals(42, engine.now());
+    }
+
+    @Test
+    public void allClassifiersInOrder() {
+        engine.addClassifier(new Classifier() {
+            @Override
+            public Movement onAccel(long timeNanos, float x, float y, float z) {
+                return z > 0 ? Movement.BACK : null;
+            }
+        });
+        Classifier threshold = PeakClassifier.espAccelerometer();
+        engine.addClassifier(threshold);
+        engine.accel(1, 3, 0, 1);
+        engine.accel(2, 0, 0, 1);
+        engine.removeClassifier(threshold);
+        engine.accel(3, 3, 0, 1);
+        assertEquals("[BACK@1, BACK@2, RIGHT@2, BACK@3]", events.toString());
+    }
+
+    @Test
+    public void resetResetsClassifiers() {
+        int[] resets = {0};
+        engine.addClassifier(new Classifier() {
+            @Override
+            public void reset() {
+                resets[0]++;
+            }
+        });
+        engine.reset();
+        assertEquals(1, resets[0]);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import java.util.Random;
+
+/**
+ * phone gyroscope and accelerometer at 200Hz for a simulated orientation.
+ * Rotations are around one axis at a time: pitch (x) or yaw (z), gravity
+ * is (0, G, 0) in the neutral pose, i.e. phone held upright.
+ */
+final class MotionSimulator {
+
+    static final long PERIOD = 5_000_000;
+    static final float G = 9.81f;
+
+    interface Sink {
+        void gyro(long timeNanos, float x, float y, float z);
+        void accel(long timeNanos, float x, float y, float z);
+    }
+
+    private final Sink sink;
+    private final Random random = new Random(3);
+    long time = 1_000_000_000L;
+    double pitch, yaw;                 // true angles, radians
+    float gravityX = 0, gravityY = G, gravityZ = 0;
+    float gyroBiasX, gyroBiasZ;        // rad/s
+    float gyroNoise, accelNoise;
+    float linearAccelY;                // e.g. jumping
+
+    MotionSimulator(Sink sink) {
+        this.sink = sink;
+    }
+
+    static MotionSimulator of(GyroPoseClassifier classifier, StringBuilder events) {
+        return new MotionSimulator(new Sink() {
+            @Override
+            public void gyro(long timeNanos, float x, float y, float z) {
+                Movement movement = classifier.onGyro(timeNanos, x, y, z);
+                if (movement != null)
+                    events.append(events.length() > 0 ? "," : "").append(movement);
+            }
+
+            @Override
+            public void accel(long timeNanos, float x, float y, float z) {
+                classifier.onAccel(timeNanos, x, y, z);
+            }
+        });
+    }
+
+    /**
+     * rotate with constant rates in rad/s for durationMs
+     */
+    void rotate(double pitchRate, double yawRate, long durationMs) {
+        for (long t = 0; t < durationMs * 1_000_000; t += PERIOD) {
+            time += PERIOD;
+            pitch += pitchRate * PERIOD / 1e9;
+            yaw += yawRate * PERIOD / 1e9;
+            sink.gyro(time, (float) (pitchRate + gyroBiasX + noise(gyroNoise)), noise(gyroNoise),
+                    (float) (yawRate + gyroBiasZ + noise(gyroNoise)));
+            // gravity in device coordinates: turned by -pitch around x, -yaw around z
+            double cp = Math.cos(pitch), sp = Math.sin(pitch), cy = Math.cos(yaw), sy = Math.sin(yaw);
+            double x1 = gravityX * cy + gravityY * sy;
+            double y1 = -gravityX * sy + gravityY * cy;
+            double z1 = gravityZ;
+            double y2 = y1 * cp + z1 * sp;
+            double z2 = -y1 * sp + z1 * cp;
+            sink.accel(time + PERIOD / 2, (float) x1 + noise(accelNoise), (float) y2 + linearAccelY + noise(accelNoise),
+                    (float) z2 + noise(accelNoise));
+        }
+    }
+
+    void rest(long durationMs) {
+        rotate(0, 0, durationMs);
+    }
+
+    /**
+     * turn to the angles in degrees within durationMs
+     */
+    void turnTo(double pitchDegrees, double yawDegrees, long durationMs) {
+        double seconds = durationMs / 1000.0;
+        rotate((Math.toRadians(pitchDegrees) - pitch) / seconds, (Math.toRadians(yawDegrees) - yaw) / seconds, durationMs);
+    }
+
+    private float noise(float amplitude) {
+        return amplitude == 0 ? 0 : (float) random.nextGaussian() * amplitude;
+    }
+}
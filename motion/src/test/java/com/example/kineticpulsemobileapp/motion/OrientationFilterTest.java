@@ -0,0 +1,89 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OrientationFilterTest {
+
+    private final OrientationFilter filter = new OrientationFilter();
+    private final MotionSimulator sim = new MotionSimulator(new MotionSimulator.Sink() {
+        @Override
+        public void gyro(long timeNanos, float x, float y, float z) {
+            filter.gyro(timeNanos, x, y, z);
+        }
+
+        @Override
+        public void accel(long timeNanos, float x, float y, float z) {
+            filter.accel(timeNanos, x, y, z);
+        }
+    });
+
+    private static float degrees(float radians) {
+        return (float) Math.toDegrees(radians);
+    }
+
+    @Before
+    public void neutral() {
+        sim.accelNoise = 0.3f;
+        sim.gyroNoise = 0.02f;
+        sim.rest(500);
+        assertTrue(filter.setReference());
+    }
+
+    @Test
+    public void followsRotation() {
+        sim.turnTo(20, 0, 200);
+        assertEquals(20, degrees(filter.getPitch()), 1.5);
+        sim.turnTo(0, -15, 200);
+        assertEquals(0, degrees(filter.getPitch()), 1.5);
+        assertEquals(-15, degrees(filter.getYaw()), 1.5);
+        sim.rest(3000);
+        assertEquals(-15, degrees(filter.getYaw()), 1.5); // pose is kept, no baseline reset
+    }
+
+    @Test
+    public void gyroBiasDoesNotDrift() {
+        // pure integration would be 69 degrees off after a minute
+        sim.gyroBiasX = 0.02f;
+        sim.gyroBiasZ = -0.02f;
+        sim.rest(60_000);
+        assertEquals(0, degrees(filter.getPitch()), 1.0);
+        assertEquals(0, degrees(filter.getYaw()), 1.0);
+    }
+
+    @Test
+    public void linearAccelerationIsIgnored() {
+        sim.turnTo(10, 0, 100);
+        sim.linearAccelY = 8; // jump
+        sim.rest(300);
+        assertEquals(10, degrees(filter.getPitch()), 1.5);
+    }
+
+    @Test
+    public void unobservableYawLeaks() {
+        // phone lying flat: gravity along z, yaw only from the gyro
+        sim.gravityY = 0;
+        sim.gravityZ = MotionSimulator.G;
+        filter.reset();
+        sim.rest(500);
+        assertTrue(filter.setReference());
+        sim.turnTo(0, 20, 200);
+        assertEquals(20, degrees(filter.getYaw()), 1.5);
+        sim.rest(30_000);
+        assertEquals(0, degrees(filter.getYaw()), 0.5);
+        sim.turnTo(20, 0, 200);
+        assertEquals(20, degrees(filter.getPitch()), 1.5);
+    }
+
+    @Test
+    public void withoutAccelerometer() {
+        OrientationFilter gyroOnly = new OrientationFilter();
+        assertFalse(gyroOnly.setReference());
+        gyroOnly.gyro(0, 0, 0, 0);
+        gyroOnly.gyro(100_000_000, 1, 0, -1);
+        assertEquals(0.1f, gyroOnly.getPitch(), 0.01f);
+        assertEquals(-0.1f, gyroOnly.getYaw(), 0.01f);
+    }
+}
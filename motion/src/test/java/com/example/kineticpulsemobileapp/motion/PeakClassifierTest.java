@@ -0,0 +1,130 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PeakClassifierTest {
+
+    private static final long PERIOD = 10_000_000; // 100Hz
+    private final PeakClassifier classifier = PeakClassifier.espAccelerometer();
+    private final List<Movement> events = new ArrayList<>();
+    private final Random random = new Random(5);
+    private long time;
+    private int samplesAboveThreshold;
+
+    /**
+     * x, y in g for durationMs: half sine push with amplitude, then landing with -0.8 amplitude
+     */
+    private void jump(float amplitudeX, float amplitudeY, long durationMs) {
+        int n = (int) (durationMs * 1_000_000 / PERIOD);
+        for (int i = 0; i < 2 * n; i++) {
+            double phase = Math.sin(Math.PI * (i % n) / n) * (i < n ? 1 : -0.8);
+            sample((float) (amplitudeX * phase), (float) (amplitudeY * phase));
+        }
+    }
+
+    private void rest(long durationMs) {
+        for (long t = 0; t < durationMs * 1_000_000; t += PERIOD)
+            sample(0, 0);
+    }
+
+    private void sample(float x, float y) {
+        x += (float) random.nextGaussian() * 0.05f;
+        y += (float) random.nextGaussian() * 0.05f;
+        if (Math.abs(x) > 2 || Math.abs(y) > 2)
+            samplesAboveThreshold++;
+        Movement movement = classifier.onAccel(time += PERIOD, x, y, 1);
+        if (movement != null)
+            events.add(movement);
+    }
+
+    @Test
+    public void oneEventPerJump() {
+        rest(100);
+        jump(3, 0.5f, 120);
+        rest(300);
+        jump(0.8f, -3.5f, 120);
+        rest(300);
+        jump(-3, 1, 120);
+        rest(300);
+        assertEquals("[RIGHT, BACK, LEFT]", events.toString());
+        // the stateless threshold reported every one of them
+        assertTrue(samplesAboveThreshold >= 10 * events.size());
+    }
+
+    @Test
+    public void landingIsRefractory() {
+        // landing peak (-0.8 * 3.5 = -2.8g) within the refractory time
+        jump(3.5f, 0, 100);
+        rest(200);
+        assertEquals("[RIGHT]", events.toString());
+        assertEquals(PeakClassifier.State.ARMED, classifier.getState());
+    }
+
+    @Test
+    public void sustainedSignalReportsOnce() {
+        for (int i = 0; i < 200; i++)
+            sample(2.5f, 0);
+        assertEquals("[RIGHT]", events.toString());
+        assertEquals(PeakClassifier.State.REFRACTORY, classifier.getState());
+        rest(10);
+        assertEquals(PeakClassifier.State.ARMED, classifier.getState());
+        jump(3, 0, 100);
+        assertEquals("[RIGHT, RIGHT]", events.toString());
+    }
+
+    @Test
+    public void hysteresis() {
+        // hovering around the arm threshold, never released below 1.2g
+        for (int i = 0; i < 100; i++)
+            sample(i % 2 == 0 ? 2.1f : 1.5f, 0);
+        assertEquals("[RIGHT]", events.toString());
+    }
+
+    @Test
+    public void reportedAtMaxPeakDuration() {
+        sample(2.5f, 0);
+        for (int i = 0; i < 14; i++)
+            sample(2.5f, 0);
+        assertEquals("[]", events.toString());
+        sample(2.5f, 0);  // 150ms after arming
+        assertEquals("[RIGHT]", events.toString());
+    }
+
+    @Test
+    public void resetRearms() {
+        sample(2.5f, 0);
+        sample(0, 0);
+        classifier.reset();
+        sample(0, -2.5f);
+        sample(0, 0);
+        assertEquals("[RIGHT, BACK]", events.toString());
+    }
+
+    @Test
+    public void isolatedSpikesReportedOnTick() {
+        // single ACCEL frames 1.5s apart without release sample, as the test sequence sends them
+        float[][] spikes = {{-3, 0.5f}, {3, 0.5f}, {0.2f, 3}, {0.2f, -3}};
+        for (float[] spike : spikes) {
+            time += 1_500_000_000L;
+            assertNull(classifier.onAccel(time, spike[0], spike[1], 0.2f));
+            assertNull(classifier.onTick(time + 100_000_000L)); // still within maxPeakNanos
+            events.add(classifier.onTick(time + 200_000_000L));
+        }
+        assertEquals("[LEFT, RIGHT, FORWARD, BACK]", events.toString());
+    }
+
+    @Test
+    public void tickWhileStreamingDoesNotEndPeak() {
+        sample(2.5f, 0);
+        assertNull(classifier.onTick(time + PERIOD));
+        assertEquals(PeakClassifier.State.PEAK, classifier.getState());
+        sample(0, 0);
+        assertEquals("[RIGHT]", events.toString());
+    }
+}
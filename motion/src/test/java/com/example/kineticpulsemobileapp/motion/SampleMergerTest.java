@@ -0,0 +1,124 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SampleMergerTest {
+
+    private static final long MS = 1_000_000;
+    private static final long WINDOW = 50 * MS;
+
+    private final List<Long> times = new ArrayList<>();
+    private final List<Integer> sources = new ArrayList<>();
+    private final SampleMerger merger = new SampleMerger(3, 64, WINDOW, (source, kind, timeNanos, x, y, z) -> {
+        times.add(timeNanos);
+        sources.add(source);
+        assertEquals(timeNanos / MS, (long) x); // values travel with their time
+    });
+
+    private boolean offer(int source, long timeNanos) {
+        return merger.offer(source, SampleMerger.ACCEL, timeNanos, timeNanos / MS, 0, 0);
+    }
+
+    private void assertOrdered() {
+        for (int i = 1; i < times.size(); i++)
+            assertTrue(times.get(i - 1) <= times.get(i));
+    }
+
+    @Test
+    public void waitsForAllActiveSources() {
+        merger.setActive(0, true);
+        merger.setActive(1, true);
+        offer(0, 10 * MS);
+        offer(0, 20 * MS);
+        assertTrue(times.isEmpty()); // source 1 may still send earlier samples
+        offer(1, 15 * MS);
+        assertEquals("[10000000, 15000000]", times.toString());
+        offer(1, 30 * MS);
+        assertEquals(3, times.size());
+        assertEquals(1, merger.getBufferedCount()); // 30ms waits for source 0
+    }
+
+    @Test
+    public void stalledSourceDelaysAtMostTheWindow() {
+        merger.setActive(0, true);
+        merger.setActive(1, true);
+        for (long t = 0; t <= 100 * MS; t += 10 * MS)
+            offer(0, t);
+        // source 1 sent nothing, samples older than the window are emitted anyway
+        assertEquals(6, times.size());
+        assertEquals(50 * MS, (long) times.get(5));
+        merger.advance(200 * MS);
+        assertEquals(11, times.size());
+        merger.setActive(1, false);
+        offer(0, 110 * MS);
+        assertEquals(12, times.size());
+    }
+
+    @Test
+    public void lateSamplesAreDropped() {
+        merger.setActive(0, true);
+        offer(0, 100 * MS);
+        assertFalse(offer(0, 90 * MS));
+        assertTrue(offer(0, 100 * MS));
+        assertEquals(1, merger.getLateCount(0));
+        assertEquals(0, merger.getLateCount(1));
+    }
+
+    @Test
+    public void fullBufferEmitsEarliest() {
+        SampleMerger small = new SampleMerger(2, 4, WINDOW, (source, kind, timeNanos, x, y, z) -> times.add(timeNanos));
+        small.setActive(0, true);
+        small.setActive(1, true);
+        for (int i = 0; i < 6; i++)
+            small.offer(0, SampleMerger.GYRO, i * MS, 0, 0, 0);
+        assertEquals("[0, 1000000]", times.toString());
+        assertEquals(2, small.getForcedCount());
+        small.flush();
+        assertEquals(6, times.size());
+        assertEquals(0, small.getBufferedCount());
+    }
+
+    @Test
+    public void jitteredStreamsAreMergedInOrder() {
+        Random random = new Random(3);
+        merger.setActive(0, true);
+        merger.setActive(1, true);
+        merger.setActive(2, true);
+        // three 100Hz streams, each delivered in bursts with up to 40ms delay
+        long[] next = {0, 3 * MS, 7 * MS};
+        int offered = 0;
+        for (long now = 0; now < 2000 * MS; now += MS) {
+            for (int s = 0; s < 3; s++) {
+                long delay = random.nextInt(40) * MS;
+                while (next[s] + delay <= now) {
+                    assertTrue(offer(s, next[s]));
+                    offered++;
+                    next[s] += 10 * MS;
+                }
+            }
+        }
+        merger.flush();
+        assertEquals(offered, times.size());
+        assertOrdered();
+        assertEquals(0, merger.getForcedCount());
+        assertTrue(sources.contains(2));
+    }
+
+    @Test
+    public void tiesKeepArrivalOrder() {
+        merger.setActive(0, true);
+        merger.setActive(1, true);
+        offer(1, 5 * MS);
+        offer(0, 5 * MS);
+        offer(0, 6 * MS);
+        offer(1, 6 * MS);
+        merger.flush();
+        assertEquals("[1, 0, 0, 1]", sources.toString());
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.kineticpulsemobileapp.motion;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WindowFeaturesTest {
+
+    /**
+     * compare with recomputation over the last window samples after every sample
+     */
+    private static void assertMatchesNaive(int window, float[][] samples) {
+        WindowFeatures features = new WindowFeatures(window);
+        for (int i = 0; i < samples.length; i++) {
+            features.add(samples[i][0], samples[i][1], samples[i][2]);
+            int from = Math.max(0, i - window + 1);
+            int n = i - from + 1;
+            assertEquals(n, features.getSize());
+            assertEquals(n == window, features.isFull());
+            double sma = 0;
+            for (int j = from; j <= i; j++)
+                sma += Math.abs(samples[j][0]) + Math.abs(samples[j][1]) + Math.abs(samples[j][2]);
+            assertEquals(sma / n, features.getSignalMagnitudeArea(), 1e-4);
+            for (int a = 0; a < 3; a++) {
+                double sum = 0, sumSq = 0;
+                float min = Float.MAX_VALUE, max = -Float.MAX_VALUE;
+                for (int j = from; j <= i; j++) {
+                    float v = samples[j][a];
+                    sum += v;
+                    sumSq += (double) v * v;
+                    min = Math.min(min, v);
+                    max = Math.max(max, v);
+                }
+                double mean = sum / n;
+                double variance = 0;
+                for (int j = from; j <= i; j++)
+                    variance += (samples[j][a] - mean) * (samples[j][a] - mean);
+                variance /= n;
+                String at = "sample " + i + " axis " + a;
+                assertEquals(at, mean, features.getMean(a), 1e-4);
+                assertEquals(at, variance, features.getVariance(a), 1e-3 * variance + 1e-9);
+                assertEquals(at, min, features.getMin(a), 0);
+                assertEquals(at, max, features.getMax(a), 0);
+                assertEquals(at, sumSq / n, features.getEnergy(a), 1e-3 * Math.max(1, sumSq / n));
+            }
+        }
+    }
+
+    private static float[][] noise(int count, long seed, float offset, float scale) {
+        Random random = new Random(seed);
+        float[][] samples = new float[count][3];
+        for (float[] sample : samples) {
+            for (int a = 0; a < 3; a++)
+                sample[a] = offset + (float) random.nextGaussian() * scale;
+        }
+        return samples;
+    }
+
+    @Test
+    public void randomStream() {
+        assertMatchesNaive(50, noise(2000, 1, 0, 2));
+    }
+
+    @Test
+    public void largeOffset() {
+        // gravity plus small noise, variance must not cancel out
+        assertMatchesNaive(100, noise(3000, 2, 9.81f, 0.01f));
+    }
+
+    @Test
+    public void monotonicAndRepeatedValues() {
+        float[][] samples = new float[300][3];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i][0] = i;                  // rising: min leaves the window every sample
+            samples[i][1] = -i;                 // falling: max leaves the window every sample
+            samples[i][2] = (i / 7) % 3;        // plateaus with equal values
+        }
+        assertMatchesNaive(16, samples);
+    }
+
+    @Test
+    public void windowOfOne() {
+        assertMatchesNaive(1, noise(20, 3, 1, 1));
+    }
+
+    @Test
+    public void clearStartsOver() {
+        WindowFeatures features = new WindowFeatures(4);
+        for (int i = 0; i < 10; i++)
+            features.add(i, i, i);
+        features.clear();
+        assertEquals(0, features.getSize());
+        assertEquals(0, features.getMax(0), 0);
+        features.add(-1, 2, 3);
+        assertEquals(-1, features.getMax(0), 0);
+        assertEquals(-1, features.getMin(0), 0);
+        assertEquals(6, features.getSignalMagnitudeArea(), 1e-6);
+        assertEquals(0, features.getVariance(1), 0);
+    }
+
+    @Test
+    public void engineUpdatesFeaturesBeforeClassifiers() {
+        MotionEngine engine = new MotionEngine(() -> 0, event -> { });
+        assertNull(engine.getGyroFeatures());
+        engine.setFeatureWindow(8);
+        float[] seen = new float[1];
+        engine.addClassifier(new Classifier() {
+            @Override
+            public Movement onAccel(long timeNanos, float x, float y, float z) {
+                seen[0] = engine.getAccelFeatures().getMax(0);
+                return null;
+            }
+        });
+        engine.accel(0, 3, 0, 1);
+        assertEquals(3, seen[0], 0);
+        engine.gyro(0, 1, 1, 1);
+        assertEquals(1, engine.getGyroFeatures().getSize());
+        assertEquals(1, engine.getAccelFeatures().getSize());
+    }
+
+    @Test
+    public void fixedPointFormat() {
+        WindowFeatures features = new WindowFeatures(4);
+        features.add(-1.25f, 0.002f, 2);
+        features.add(-1.25f, 0.004f, 2);
+        StringBuilder sb = new StringBuilder("accel ");
+        assertSame(sb, features.appendTo(sb));
+        assertEquals("accel n=2 sma=3.253"
+                + " x: mean=-1.250 std=0.000 min=-1.250 max=-1.250 energy=1.563"
+                + " y: mean=0.003 std=0.001 min=0.002 max=0.004 energy=0.000"
+                + " z: mean=2.000 std=0.000 min=2.000 max=2.000 energy=4.000", sb.toString());
+    }
+}
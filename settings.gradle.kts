@@ -15,4 +15,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "KineticPulseMobileApp"
 include(":app")
+include(":motion")
  
\ No newline at end of file
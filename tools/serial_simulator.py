@@ -0,0 +1,167 @@
+#!/usr/bin/env python3
+"""ESP32 stream simulator for TcpSocket, load tests without hardware.
+
+Listens on TCP, streams sensor messages to the connected app and answers
+commands like the esp32-gyro firmware (PING [id], ON, OFF, CAL, RATE n, FMT BIN|JSON).
+
+  python3 tools/serial_simulator.py --rate 2000 --format accel
+
+In the app use "Connect to simulator" in the device list. The emulator
+reaches this computer as 10.0.2.2, for a phone use `adb reverse tcp:7777 tcp:7777`
+and connect to tcp:127.0.0.1:7777.
+"""
+import argparse
+import json
+import math
+import random
+import socket
+import struct
+import threading
+import time
+
+
+def crc8(data):
+    crc = 0
+    for b in data:
+        crc ^= b
+        for _ in range(8):
+            crc = ((crc << 1) ^ 0x07) & 0xFF if crc & 0x80 else (crc << 1) & 0xFF
+    return crc
+
+
+def binary_frame(seq, t_ms, ax, ay, az, gx, gy, gz):
+    """same layout as SampleFrameDecoder / esp32-gyro encodeFrame()"""
+    def raw(v, lsb):
+        return max(-32768, min(32767, round(v * lsb)))
+    body = struct.pack('<BBI6h', 1, seq & 0xFF, t_ms & 0xFFFFFFFF,
+                       raw(ax, 4096), raw(ay, 4096), raw(az, 4096),
+                       raw(gx, 16.4), raw(gy, 16.4), raw(gz, 16.4))
+    return b'\xa5' + body + bytes([crc8(body)])
+
+
+class Session:
+    def __init__(self, conn, args):
+        self.conn = conn
+        self.args = args
+        self.rate = args.rate
+        self.fmt = args.format
+        self.running = True
+        self.sent = 0
+        self.start = time.monotonic()  # sample clock, "t" of samples and timed pongs
+        self.lock = threading.Lock()
+
+    def send(self, data):
+        with self.lock:
+            self.conn.sendall(data)
+
+    def status(self, obj):
+        self.send((json.dumps(obj, separators=(',', ':')) + '\n').encode())
+
+    def command(self, line):
+        cmd = line.strip().upper()
+        if cmd == 'PING':
+            self.status({'pong': True})
+        elif cmd.startswith('PING '):
+            # like pongJSONTime() in the firmware, "t" on the same clock as the samples
+            t_ms = int((time.monotonic() - self.start) * 1000) & 0xFFFFFFFF
+            arg = cmd[5:].strip()
+            self.status({'pong': int(arg) & 0xFFFFFFFF if arg.isdigit() else 0, 't': t_ms})
+        elif cmd == 'ON':
+            self.running = True
+            self.status({'state': 'GYRO_ON'})
+        elif cmd == 'OFF':
+            self.running = False
+            self.status({'state': 'GYRO_OFF'})
+        elif cmd == 'CAL':
+            self.status({'cal': 'started'})
+            self.status({'cal': 'ok'})
+        elif cmd.startswith('RATE'):
+            parts = cmd.split()
+            if len(parts) > 1:
+                self.rate = max(1, int(parts[1]))
+            self.status({'rate': self.rate})
+        elif cmd.startswith('FMT'):
+            self.fmt = 'bin' if cmd.endswith('BIN') else 'json'
+            self.status({'fmt': self.fmt})
+        elif cmd:
+            print('<', line.strip())
+
+    def reader(self):
+        buf = b''
+        try:
+            while True:
+                data = self.conn.recv(4096)
+                if not data:
+                    break
+                buf += data
+                while b'\n' in buf or b'\r' in buf:
+                    cut = min(i for i in (buf.find(b'\n'), buf.find(b'\r')) if i >= 0)
+                    line, buf = buf[:cut], buf[cut + 1:]
+                    self.command(line.decode(errors='replace'))
+        except OSError:
+            pass
+        self.running = None
+
+    def message(self, seq, t):
+        phase = t * 2 * math.pi
+        ax, ay, az = math.sin(phase) * 2.5, math.cos(phase * 0.7) * 2.5, 1.0 + random.gauss(0, 0.02)
+        gx, gy, gz = math.sin(phase) * 90, math.cos(phase) * 90, random.gauss(0, 1)
+        if self.fmt == 'bin':
+            return binary_frame(seq, int(t * 1000), ax, ay, az, gx, gy, gz)
+        if self.fmt == 'json':
+            mm = math.sqrt(gx * gx + gy * gy + gz * gz)
+            return ('{"t":%d,"ax":%.3f,"ay":%.3f,"az":%.3f,"gx":%.2f,"gy":%.2f,"gz":%.2f,"mm":%.3f}\n'
+                    % (int(t * 1000), ax, ay, az, gx, gy, gz, mm)).encode()
+        if self.fmt == 'move':
+            return ('MOVE:%s\n' % random.choice(['LEFT', 'RIGHT', 'FORWARD', 'BACK'])).encode()
+        return ('ACCEL:%.2f,%.2f,%.2f\n' % (ax, ay, az)).encode()
+
+    def run(self):
+        threading.Thread(target=self.reader, daemon=True).start()
+        start = self.start
+        next_t = start
+        last_report, last_sent = start, 0
+        seq = 0
+        while self.running is not None:
+            now = time.monotonic()
+            if self.running and now >= next_t:
+                # send everything due, in batches of args.batch messages
+                due = min(int((now - next_t) * self.rate) + 1, self.args.batch)
+                data = b''.join(self.message(seq + i, next_t - start + i / self.rate) for i in range(due))
+                try:
+                    self.send(data)
+                except OSError:
+                    break
+                seq += due
+                self.sent += due
+                next_t += due / self.rate
+            else:
+                time.sleep(min(0.001, max(0.0, next_t - now)))
+            if now - last_report >= 1.0:
+                print('%d msg/s (%s), total %d' % ((self.sent - last_sent) / (now - last_report), self.fmt, self.sent))
+                last_report, last_sent = now, self.sent
+
+
+def main():
+    parser = argparse.ArgumentParser(description=__doc__, formatter_class=argparse.RawDescriptionHelpFormatter)
+    parser.add_argument('--port', type=int, default=7777)
+    parser.add_argument('--rate', type=int, default=100, help='messages per second')
+    parser.add_argument('--batch', type=int, default=64, help='max messages per write')
+    parser.add_argument('--format', choices=['accel', 'move', 'json', 'bin'], default='accel')
+    args = parser.parse_args()
+    server = socket.socket(socket.AF_INET, socket.SOCK_STREAM)
+    server.setsockopt(socket.SOL_SOCKET, socket.SO_REUSEADDR, 1)
+    server.bind(('0.0.0.0', args.port))
+    server.listen(1)
+    print('listening on port %d' % args.port)
+    while True:
+        conn, addr = server.accept()
+        conn.setsockopt(socket.IPPROTO_TCP, socket.TCP_NODELAY, 1)
+        print('connected', addr)
+        Session(conn, args).run()
+        conn.close()
+        print('disconnected', addr)
+
+
+if __name__ == '__main__':
+    main()